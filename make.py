@@ -46,6 +46,7 @@ RES_DIR = "res/"
 EDLED_APP_DIR = "EDLed/"
 EDLED_DIR     = "de/mpg/cbs/edled/"
 EDLED_MAIN    = "Launcher.java"
+EDLED_BATCH   = "BatchValidator.java"
 STIMULUS_DIR  = "de/mpg/cbs/edledplugin/stimulus/"
 STIMULUS_MAIN = "StimulusPlugin.java"
 DESIGN_DIR    = "de/mpg/cbs/edledplugin/design/"
@@ -103,6 +104,7 @@ if __name__ == "__main__":
 
     print(" Compiling EDLed...")
     build(libsWithPaths, BUILD_DIR + EDLED_DIR + EDLED_MAIN)
+    build(libsWithPaths, BUILD_DIR + EDLED_DIR + EDLED_BATCH)
 
     print(" Compiling Stimuli plugin...")
     build(libsWithPaths, BUILD_DIR + STIMULUS_DIR + STIMULUS_MAIN)
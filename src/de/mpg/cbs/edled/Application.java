@@ -2,7 +2,6 @@ package de.mpg.cbs.edled;
 
 import java.io.File;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,12 +16,17 @@ import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import de.mpg.cbs.edled.core.AutosaveLog;
 import de.mpg.cbs.edled.core.Model;
-import de.mpg.cbs.edled.core.XSOMMetaTreeBuilder;
-import de.mpg.cbs.edled.core.metatree.MetaTreeBuilder;
+import de.mpg.cbs.edled.core.ModelExecutor;
+import de.mpg.cbs.edled.core.ModelTask;
+import de.mpg.cbs.edled.core.SchemaCache;
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.StreamingDocumentLoader;
 import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
 import de.mpg.cbs.edled.plugin.Plugin;
 import de.mpg.cbs.edled.plugin.PluginLoader;
+import de.mpg.cbs.edled.plugin.PluginNodeIndex;
 import de.mpg.cbs.edled.plugin.ReplacementManager;
 import de.mpg.cbs.edled.util.Configuration;
 import de.mpg.cbs.edled.util.FileStatus;
@@ -56,9 +60,13 @@ public class Application implements Runnable {
 	
 	/** All plugins identified by their qualified names. */
 	private Map<String, Plugin> plugins = null;
+	/** The nodes of the model's document that are configured by plugins. */
+	private PluginNodeIndex pluginNodes = null;
 	
 	/** The application's model. */
 	private Model model = null;
+	/** Runs all edits of the model (off the event dispatch thread). */
+	private final ModelExecutor executor = new ModelExecutor();
 	/** The application's view. */
 	private View view = null;
 	
@@ -80,12 +88,17 @@ public class Application implements Runnable {
 	/** File where the history of recent files is saved. */
 	private File historyFile = null;
 	
+	/** Log of the unsaved edits of the model for crash recovery. */
+	private AutosaveLog autosave = null;
+	/** Time (ms) to wait for the autosave log to be written on exit. */
+	private static final long AUTOSAVE_CLOSE_TIMEOUT = 5000;
+	
 	public Application(final String[] args) {
 		init();
 		setupPlugins();
 		
 		// If first argument is a file path: open that file
-		if (args.length >= 1) {
+		if (!recover() && args.length >= 1) {
 			File initialFile = new File(args[0]);
 			if (initialFile.exists()) {
 				this.load(initialFile);
@@ -107,10 +120,64 @@ public class Application implements Runnable {
 		
 		// TODO: exception in case the document element was not found!
 		this.xsdFile = new File(this.config.getProp(Configuration.XSD));
+		SchemaCache.getSingleton().setSnapshotDirectory(new File(this.config.resolveVariables("$CONFIG_DIR$/")));
 		validateXSD();
 		
 		this.edlRulesFile = new File(this.config.getProp(Configuration.EDLRULES));
 		this.edlValidator = new EDLRuleValidator(edlRulesFile);
+		
+		this.autosave = new AutosaveLog(new File(this.config.resolveVariables("$CONFIG_DIR$/")));
+		final AutosaveLog log = this.autosave;
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				log.close(AUTOSAVE_CLOSE_TIMEOUT);
+			}
+		});
+	}
+	
+	/**
+	 * Offers to recover the unsaved edits of the last session (see AutosaveLog).
+	 * 
+	 * @return True if the edits were recovered.
+	 */
+	private boolean recover() {
+		if (!this.autosave.hasRecovery() || !this.xsdFile.exists()) {
+			return false;
+		}
+		
+		File file = this.autosave.getRecoveryFile();
+		String name = (file != null) ? file.getName() : "a new document";
+		if (!this.view.confirm("There are unsaved changes of " + name + " from the last session.\n" 
+							   + "Do you want to recover them?")) {
+			this.autosave.discard();
+			return false;
+		}
+		
+		CachedSchema cachedSchema = SchemaCache.getSingleton().get(this.xsdFile);
+		Document document = this.autosave.recover(cachedSchema.getSchema());
+		Model recovered = null;
+		if (document != null) {
+			try {
+				recovered = new Model(document, cachedSchema, this.edlValidator);
+			} catch (RuntimeException e) {
+				logger.warn("Recovered document is not schema compliant!", e);
+			}
+		}
+		if (recovered == null) {
+			this.view.showErrorDialog("Could not recover the unsaved changes!");
+			return false;
+		}
+		
+		this.model = recovered;
+		this.currentXML = file;
+		indexPluginNodes();
+		this.view.setModel(this.model);
+		// Keeps the recovered changes until they are saved.
+		this.autosave.start(this.model, file, true);
+		logger.info("Recovered unsaved changes" + ((file != null) ? " of " + file.getPath() : "") + ".");
+		
+		return true;
 	}
 	
 	/**
@@ -126,7 +193,8 @@ public class Application implements Runnable {
 	 * instance of the XML schema specification (XSD of XSDs).
 	 * 
 	 * The validation is performed in a different thread since it usually
-	 * takes 40-50 seconds.
+	 * takes 40-50 seconds. Its result is remembered in the meta tree snapshot
+	 * of the XSD, so it is only performed again if the XSD changes.
 	 */
 	private void validateXSD() {
 		final Application self = this;
@@ -136,16 +204,28 @@ public class Application implements Runnable {
 			public void run() {
 				if (self.xsdFile.exists()) {
 					logger.info("XSD file found.");
-					Schema xsdSchema = XMLUtility.loadSchema(new File(
-							self.config.resolveVariables(Application.XSD_XSD_PATH)));
-					if (xsdSchema == null) {
-						logger.warn("Could not find the XML schema for XSDs! No internet connection?");
-						self.view.showWarnDialog("Could not find the XML schema for XSDs!\n" 
-								+ "Please check your EDLed installation and internet connection!");
+					CachedSchema cachedSchema = SchemaCache.getSingleton().get(self.xsdFile);
+					Boolean xsdValid = cachedSchema.getXSDValidity();
+					if (xsdValid != null) {
+						logger.info("XSD validation result taken from meta tree snapshot.");
+					} else {
+						Schema xsdSchema = XMLUtility.loadSchema(new File(
+								self.config.resolveVariables(Application.XSD_XSD_PATH)));
+						if (xsdSchema == null) {
+							logger.warn("Could not find the XML schema for XSDs! No internet connection?");
+							self.view.showWarnDialog("Could not find the XML schema for XSDs!\n" 
+									+ "Please check your EDLed installation and internet connection!");
+						}
+						
+						Document xsdDoc = XMLUtility.loadDocument(self.xsdFile, xsdSchema);
+						xsdValid = Boolean.valueOf(xsdDoc != null);
+						// Only a verdict against the XSD of XSDs is worth remembering
+						if (xsdSchema != null) {
+							cachedSchema.setXSDValidity(xsdValid.booleanValue());
+						}
 					}
 					
-					Document xsdDoc = XMLUtility.loadDocument(self.xsdFile, xsdSchema);
-					if (xsdDoc == null) {
+					if (!xsdValid.booleanValue()) {
 						logger.warn("EDL XSD is not a valid XSD!");
 						self.view.showErrorDialog("The current XSD file is not valid!\n" 
 								+ Application.MSG_HOWTO_CORRECT_XSD);
@@ -237,16 +317,24 @@ public class Application implements Runnable {
 	public Model getModel() {
 		return this.model;
 	}
+	
+	/**
+	 * Executor getter. All edits of the model are run by the executor.
+	 * @return The executor running the model thread.
+	 */
+	public ModelExecutor getExecutor() {
+		return this.executor;
+	}
 
 	/**
 	 * Creates a new XML (EDL) document to work on.
 	 */
 	public void newDocument() {
+		this.executor.flush();
 		if (xsdFile.exists()) {
-//			Schema schema = XMLUtility.loadSchema(this.xsdFile);
-			MetaTreeBuilder metaTreeBuilder = new XSOMMetaTreeBuilder(this.xsdFile);
+			CachedSchema cachedSchema = SchemaCache.getSingleton().get(this.xsdFile);
 			this.model = new Model(this.config.getProp(Configuration.DOCUMENTELEMENT), 
-								   metaTreeBuilder,
+								   cachedSchema,
 								   this.edlValidator);
 			
 //			this.model.printToStdout();
@@ -255,7 +343,9 @@ public class Application implements Runnable {
 		this.currentXML = null;
 		if (this.model != null) {
 //			this.plugins.put(StimulusPlugin.class.toString(), new StimulusPlugin(this.model.getDocument(), ""));
+			indexPluginNodes();
 			this.view.setModel(this.model);
+			this.autosave.start(this.model, null, false);
 			logger.info("New document created.");
 		} else {
 			logger.error("Could not create new document!");
@@ -270,11 +360,34 @@ public class Application implements Runnable {
 	 */
 	// TODO: use overwrite flag!
 	public void save(final File to, final boolean overwrite) {
-		XMLUtility.saveDocument(this.model.getDocument(), to);
-		XMLUtility.loadDocument(to, XMLUtility.loadSchema(this.xsdFile));
+		// Save the document with all edits made so far.
+		this.executor.flush();
+		Schema schema = SchemaCache.getSingleton().get(this.xsdFile).getSchema();
+		boolean saved;
+		// The DOM is not thread-safe: don't read it while the autosave 
+		// writer copies it (or a task changes it).
+		synchronized (this.model) {
+			Document document = this.model.getDocument();
+			
+			// Validate the document in memory instead of parsing the written file again.
+			if (schema != null) {
+				for (String message : XMLUtility.validate(document, schema)) {
+					logger.warn(message);
+				}
+			}
+			
+			saved = XMLUtility.saveDocument(document, to);
+			if (saved) {
+				this.autosave.saved(this.model, to);
+			}
+		}
 		
-		setCurrentXMLFile(to);
-		logger.info("Saved document to " + to.getPath());
+		if (saved) {
+			setCurrentXMLFile(to);
+			logger.info("Saved document to " + to.getPath());
+		} else {
+			logger.error("Could not save document to " + to.getPath());
+		}
 	}
 	
 	/**
@@ -286,27 +399,31 @@ public class Application implements Runnable {
 	 * 			   given XSD.
 	 */
 	public FileStatus load(final File from) {
-		Schema schema = XMLUtility.loadSchema(this.xsdFile);
-		Document document = XMLUtility.loadDocument(from, schema);
-		MetaTreeBuilder metaTreeBuilder = new XSOMMetaTreeBuilder(this.xsdFile);
+		this.executor.flush();
+		CachedSchema cachedSchema = SchemaCache.getSingleton().get(this.xsdFile);
+		Model newModel = new StreamingDocumentLoader(cachedSchema).load(from, this.edlValidator);
 		
-		Model newModel = null;
-		
-		if (document != null) {
-			try {
-				newModel = new Model(document, metaTreeBuilder, this.edlValidator);
-			} catch (RuntimeException e) {
-				logger.warn("XML/EDL file is not schema compliant!");
-				newModel = null;
+		if (newModel == null) {
+			// Documents the single pass cannot decide on are validated and mapped separately.
+			Document document = XMLUtility.loadDocument(from, cachedSchema.getSchema());
+			if (document != null) {
+				try {
+					newModel = new Model(document, cachedSchema, this.edlValidator);
+				} catch (RuntimeException e) {
+					logger.warn("XML/EDL file is not schema compliant!");
+					newModel = null;
+				}
+			} else {
+				return FileStatus.NOT_FOUND;
 			}
-		} else {
-			return FileStatus.NOT_FOUND;
 		}
 		
 		if (newModel != null) {
 			setCurrentXMLFile(from);
 			this.model = newModel;
+			indexPluginNodes();
 			this.view.setModel(this.model);
+			this.autosave.start(this.model, from, false);
 			
 			logger.info("Opened " + from.getPath());
 			
@@ -352,6 +469,7 @@ public class Application implements Runnable {
 		if (plugin != null) {
 			logger.debug("Updating plugin: " + qualifiedName);
 			if (this.model != null) {
+				this.executor.flush();
 				plugin.update(this.model);
 			}
 		}
@@ -371,20 +489,44 @@ public class Application implements Runnable {
 		Plugin plugin = this.plugins.get(qualifiedName);
 		if (plugin != null) {
 			logger.debug("Updating from plugin: " + qualifiedName);
-			ReplacementManager mapper = plugin.getReplacementManager(true);
+			final ReplacementManager mapper = plugin.getReplacementManager(true);
 			if (mapper != null) {
-				for (XPathExpression xpathOfNodeToReplace : mapper.getXPaths()) {
-					try {
-						Node toReplace = (Node) xpathOfNodeToReplace.evaluate(this.model.getDocument(), XPathConstants.NODE);
-						logger.debug("Node to replace: " + toReplace);
-						if (toReplace != null) {
-							this.model.replace(toReplace, mapper.nodeFor(xpathOfNodeToReplace));
-						}
-					} catch (XPathExpressionException e) {
-						logger.debug("XPathException while updating the application from a plugin.", e);
+				final Model model = this.model;
+				this.executor.execute(new ModelTask<Void>() {
+					@Override
+					protected Void run() {
+						replaceFrom(mapper, model);
+						return null;
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the nodes of a model by the ones a plugin provides.
+	 * Runs on the model thread.
+	 * 
+	 * @param mapper The plugin's replacements.
+	 * @param model	 The model to update.
+	 */
+	private void replaceFrom(final ReplacementManager mapper, final Model model) {
+		// Rules, options and the tree view are updated once for all replacements.
+		model.beginBatch();
+		try {
+			for (XPathExpression xpathOfNodeToReplace : mapper.getXPaths()) {
+				try {
+					Node toReplace = (Node) xpathOfNodeToReplace.evaluate(model.getDocument(), XPathConstants.NODE);
+					logger.debug("Node to replace: " + toReplace);
+					if (toReplace != null) {
+						model.replace(toReplace, mapper.nodeFor(xpathOfNodeToReplace));
 					}
+				} catch (XPathExpressionException e) {
+					logger.debug("XPathException while updating the application from a plugin.", e);
 				}
 			}
+		} finally {
+			model.commitBatch();
 		}
 	}
 	
@@ -399,31 +541,30 @@ public class Application implements Runnable {
 	
 	/**
 	 * Returns all the DOM nodes that are also modelled by plugins.
+	 * The nodes are looked up only if the document changed since the last 
+	 * call (see PluginNodeIndex).
 	 * 
-	 * @return A map containing all DOM nodes of the current application model
-	 * 		   that may be also created/modelled by a plugin.
+	 * @return An unmodifiable map containing all DOM nodes (compared by 
+	 * 		   identity) of the current application model that may be also 
+	 * 		   created/modelled by a plugin.
 	 */
 	public Map<Node, Plugin> getNodesConfiguredByPlugins() {
-		Map<Node, Plugin> nodes = new HashMap<Node, Plugin>();
-		
-		Document xmlDocument = this.model.getDocument();
-		for (Plugin plugin : this.plugins.values()) {
-			ReplacementManager mapper = plugin.getReplacementManager(false);
-			if (mapper != null) {
-				for (XPathExpression xpath : mapper.getXPaths()) {
-					try {
-						Node node = (Node) xpath.evaluate(xmlDocument, XPathConstants.NODE);
-						if (node != null) {
-							nodes.put(node, plugin);
-						}
-					} catch (XPathExpressionException e) {
-						logger.debug("XPathException while querying for nodes which are configured by plugins", e);
-					}
-				}
-			}
+		if (this.pluginNodes == null) {
+			return Collections.emptyMap();
 		}
 		
-		return nodes;
+		return this.pluginNodes.getNodes();
+	}
+	
+	/**
+	 * Indexes the nodes configured by plugins in the current model instead
+	 * of the previous one.
+	 */
+	private void indexPluginNodes() {
+		if (this.pluginNodes != null) {
+			this.pluginNodes.close();
+		}
+		this.pluginNodes = new PluginNodeIndex(this.model, this.plugins.values());
 	}
 	
 //	private boolean loadDefaultProperties() {
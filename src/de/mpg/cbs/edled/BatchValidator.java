@@ -0,0 +1,552 @@
+package de.mpg.cbs.edled;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.Model;
+import de.mpg.cbs.edled.core.SchemaCache;
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.SourceLocation;
+import de.mpg.cbs.edled.core.StreamingDocumentLoader;
+import de.mpg.cbs.edled.core.validation.EDLRule;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.core.validation.ValidationResult;
+import de.mpg.cbs.edled.util.Configuration;
+import de.mpg.cbs.edled.util.FileUtility;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+/**
+ * Headless entry point validating many XML (EDL) files against the XSD
+ * types and the EDL rules, e.g. for nightly checks of generated paradigms.
+ * No View is created.
+ *
+ * Usage:
+ * BatchValidator [--xsd file] [--rules file] [--format json|tsv] [--threads n]
+ * 				  [--out file] [--list file] [--verbose] (file | directory)...
+ *
+ * Directories are searched recursively for .edl files, --list names a file
+ * with one path per line. XSD and rules default to the application
+ * configuration. Results are written in input order with the time spent
+ * on each file. The exit code is 0 if all files are valid, 1 if not and
+ * 2 on usage errors.
+ *
+ * The compiled schema and the meta tree are shared by all files (see
+ * SchemaCache). Files are validated concurrently, each worker thread uses
+ * its own EDLRuleValidator and StreamingDocumentLoader since rules keep
+ * their evaluation state.
+ *
+ * @author Oliver Z.
+ */
+public class BatchValidator {
+
+	private static final Logger logger = Logger.getLogger(BatchValidator.class);
+
+	/** File extension of the files searched for in directories. */
+	private static final String EDL_EXTENSION = ".edl";
+
+	private static final int EXIT_VALID = 0;
+	private static final int EXIT_INVALID = 1;
+	private static final int EXIT_USAGE = 2;
+
+	private static final String USAGE =
+			"Usage: BatchValidator [--xsd file] [--rules file] [--format json|tsv] [--threads n]\n"
+		  + "                      [--out file] [--list file] [--verbose] (file | directory)...";
+
+	/** Outcome of validating a single file. */
+	public enum Status {
+		/** Schema compliant and all values and rules are valid. */
+		VALID,
+		/** Schema compliant, but some values or rules are invalid. */
+		INVALID,
+		/** The document does not match the structure of the XSD. */
+		NOT_COMPLIANT,
+		/** The file could not be read or is not well-formed. */
+		NOT_LOADED;
+	}
+
+	private final CachedSchema cachedSchema;
+	private final File edlRulesFile;
+	private final int threadCount;
+
+	/** Rule validator and loader of each worker thread. */
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		@Override
+		protected Worker initialValue() {
+			return new Worker();
+		}
+	};
+
+	/**
+	 * @param xsdFile	   The XSD the files have to comply with.
+	 * @param edlRulesFile The EDL rules file.
+	 * @param threadCount  Number of files validated concurrently.
+	 */
+	public BatchValidator(final File xsdFile, final File edlRulesFile, final int threadCount) {
+		this.cachedSchema = SchemaCache.getSingleton().get(xsdFile);
+		this.edlRulesFile = edlRulesFile;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Validates files concurrently. The results are passed to the sink in
+	 * the order of the files as soon as they are available.
+	 *
+	 * @param files Files to validate.
+	 * @param sink	Receives the result of each file. Called by the calling thread only.
+	 * @return		True if all files are valid.
+	 */
+	public boolean validate(final List<File> files, final ResultSink sink) {
+		// Compile the schema before the workers compete for it.
+		this.cachedSchema.getSchema();
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.threadCount);
+		boolean allValid = true;
+		try {
+			List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(files.size());
+			for (final File file : files) {
+				futures.add(executor.submit(new Callable<FileResult>() {
+					@Override
+					public FileResult call() {
+						return validate(file);
+					}
+				}));
+			}
+
+			for (int fileNr = 0; fileNr < futures.size(); fileNr++) {
+				FileResult result;
+				try {
+					result = futures.get(fileNr).get();
+				} catch (ExecutionException e) {
+					logger.error("Could not validate " + files.get(fileNr).getPath(), e.getCause());
+					result = new FileResult(files.get(fileNr), Status.NOT_LOADED, 0);
+				}
+				allValid = allValid & (result.getStatus() == Status.VALID);
+				sink.put(result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			allValid = false;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return allValid;
+	}
+
+	/**
+	 * Validates a single file on the calling thread.
+	 *
+	 * @param file The XML (EDL) file.
+	 * @return	   The validation result.
+	 */
+	public FileResult validate(final File file) {
+		long start = System.nanoTime();
+		Worker worker = this.workers.get();
+
+		Model model = worker.loader.load(file, worker.edlValidator);
+		if (model == null) {
+			// Same fallback as Application.load.
+			Document document = XMLUtility.loadDocument(file, this.cachedSchema.getSchema());
+			if (document == null) {
+				return new FileResult(file, Status.NOT_LOADED, System.nanoTime() - start);
+			}
+			try {
+				model = new Model(document, this.cachedSchema, worker.edlValidator);
+			} catch (RuntimeException e) {
+				return new FileResult(file, Status.NOT_COMPLIANT, System.nanoTime() - start);
+			}
+		}
+
+		List<Issue> issues = new LinkedList<Issue>();
+		Node root = model.getDocument().getDocumentElement();
+		collectIssues(model, root, "/" + root.getNodeName(), issues);
+
+		return new FileResult(file,
+							  issues.isEmpty() ? Status.VALID : Status.INVALID,
+							  System.nanoTime() - start,
+							  issues);
+	}
+
+	private static void collectIssues(final Model model,
+									  final Node element,
+									  final String path,
+									  final List<Issue> issues) {
+		addIssue(model, element, path, issues);
+
+		if (element.hasAttributes()) {
+			NamedNodeMap attrs = element.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				Node attr = attrs.item(attrNr);
+				addIssue(model, attr, path + "/@" + attr.getNodeName(), issues);
+			}
+		}
+
+		Map<String, Integer> positions = new HashMap<String, Integer>();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				String name = child.getNodeName();
+				Integer position = positions.get(name);
+				position = (position == null) ? 1 : position + 1;
+				positions.put(name, position);
+				collectIssues(model, child, path + "/" + name + "[" + position + "]", issues);
+			}
+		}
+	}
+
+	private static void addIssue(final Model model,
+								 final Node node,
+								 final String path,
+								 final List<Issue> issues) {
+		ValidationResult result = model.getValidationResult(node, false);
+		if (!result.isValid()) {
+			List<String> ruleIDs = new ArrayList<String>(result.getViolatedRules().size());
+			for (EDLRule rule : result.getViolatedRules()) {
+				ruleIDs.add(rule.getID());
+			}
+			issues.add(new Issue(path, model.getSourceLocation(node), ruleIDs));
+		}
+	}
+
+	/**
+	 * Per thread validation state.
+	 */
+	private class Worker {
+		private final EDLRuleValidator edlValidator = new EDLRuleValidator(BatchValidator.this.edlRulesFile);
+		private final StreamingDocumentLoader loader = new StreamingDocumentLoader(BatchValidator.this.cachedSchema);
+	}
+
+	/**
+	 * An invalid node of a validated file.
+	 */
+	public static class Issue {
+
+		private final String path;
+		private final SourceLocation location;
+		private final List<String> violatedRuleIDs;
+
+		Issue(final String path, final SourceLocation location, final List<String> violatedRuleIDs) {
+			this.path = path;
+			this.location = location;
+			this.violatedRuleIDs = violatedRuleIDs;
+		}
+
+		/**
+		 * @return Path of the node, e.g. /rtExperiment/environment[1]/logging[1]/@doLogging.
+		 */
+		public String getPath() {
+			return this.path;
+		}
+		/**
+		 * @return Location of the node in the file. Null if unknown.
+		 */
+		public SourceLocation getLocation() {
+			return this.location;
+		}
+		/**
+		 * @return IDs of the violated EDL rules. Empty if the node value
+		 * 		   does not match its XSD type.
+		 */
+		public List<String> getViolatedRuleIDs() {
+			return this.violatedRuleIDs;
+		}
+		public boolean isTypeError() {
+			return this.violatedRuleIDs.isEmpty();
+		}
+	}
+
+	/**
+	 * Validation result of a single file.
+	 */
+	public static class FileResult {
+
+		private final File file;
+		private final Status status;
+		private final long nanos;
+		private final List<Issue> issues;
+
+		FileResult(final File file, final Status status, final long nanos) {
+			this(file, status, nanos, new LinkedList<Issue>());
+		}
+		FileResult(final File file, final Status status, final long nanos, final List<Issue> issues) {
+			this.file = file;
+			this.status = status;
+			this.nanos = nanos;
+			this.issues = issues;
+		}
+
+		public File getFile() {
+			return this.file;
+		}
+		public Status getStatus() {
+			return this.status;
+		}
+		/**
+		 * @return Time spent on loading and validating the file in milliseconds.
+		 */
+		public double getMillis() {
+			return this.nanos / 1000000.0;
+		}
+		public List<Issue> getIssues() {
+			return this.issues;
+		}
+	}
+
+	/**
+	 * Receiver of the file results.
+	 */
+	public interface ResultSink {
+		void put(FileResult result);
+	}
+
+	/**
+	 * Writes one JSON object per file into a JSON array:
+	 * {"file": ..., "status": ..., "ms": ..., "issues": [{"path": ..., "line": ...,
+	 * "column": ..., "rules": [...]}]}. Line and column are omitted if unknown.
+	 */
+	static class JSONSink implements ResultSink {
+
+		private final PrintWriter out;
+		private boolean first = true;
+
+		JSONSink(final PrintWriter out) {
+			this.out = out;
+		}
+
+		@Override
+		public void put(final FileResult result) {
+			this.out.print(this.first ? "[\n" : ",\n");
+			this.first = false;
+
+			this.out.print("{\"file\": " + quote(result.getFile().getPath())
+						   + ", \"status\": \"" + result.getStatus() + "\""
+						   + ", \"ms\": " + String.format(Locale.US, "%.3f", result.getMillis())
+						   + ", \"issues\": [");
+			boolean firstIssue = true;
+			for (Issue issue : result.getIssues()) {
+				this.out.print((firstIssue ? "" : ", ") + "{\"path\": " + quote(issue.getPath()));
+				firstIssue = false;
+				if (issue.getLocation() != null) {
+					this.out.print(", \"line\": " + issue.getLocation().getLine()
+								   + ", \"column\": " + issue.getLocation().getColumn());
+				}
+				this.out.print(", \"rules\": [");
+				boolean firstRule = true;
+				for (String ruleID : issue.getViolatedRuleIDs()) {
+					this.out.print((firstRule ? "" : ", ") + quote(ruleID));
+					firstRule = false;
+				}
+				this.out.print("]}");
+			}
+			this.out.print("]}");
+		}
+
+		void close() {
+			this.out.println(this.first ? "[]" : "\n]");
+			this.out.flush();
+		}
+
+		private static String quote(final String str) {
+			StringBuilder quoted = new StringBuilder(str.length() + 2);
+			quoted.append('"');
+			for (int charNr = 0; charNr < str.length(); charNr++) {
+				char c = str.charAt(charNr);
+				switch (c) {
+				case '"':  quoted.append("\\\""); break;
+				case '\\': quoted.append("\\\\"); break;
+				case '\n': quoted.append("\\n"); break;
+				case '\r': quoted.append("\\r"); break;
+				case '\t': quoted.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						quoted.append(String.format("\\u%04x", (int) c));
+					} else {
+						quoted.append(c);
+					}
+				}
+			}
+			quoted.append('"');
+
+			return quoted.toString();
+		}
+	}
+
+	/**
+	 * Writes one line per file: file, status, milliseconds, number of
+	 * invalid nodes and the violated rule IDs (separated by commas).
+	 */
+	static class TSVSink implements ResultSink {
+
+		private final PrintWriter out;
+
+		TSVSink(final PrintWriter out) {
+			this.out = out;
+			this.out.println("file\tstatus\tms\tissues\trules");
+		}
+
+		@Override
+		public void put(final FileResult result) {
+			List<String> ruleIDs = new ArrayList<String>();
+			for (Issue issue : result.getIssues()) {
+				for (String ruleID : issue.getViolatedRuleIDs()) {
+					if (!ruleIDs.contains(ruleID)) {
+						ruleIDs.add(ruleID);
+					}
+				}
+			}
+
+			StringBuilder rules = new StringBuilder();
+			for (String ruleID : ruleIDs) {
+				if (rules.length() > 0) {
+					rules.append(',');
+				}
+				rules.append(ruleID);
+			}
+
+			this.out.println(result.getFile().getPath().replace('\t', ' ')
+							 + "\t" + result.getStatus()
+							 + "\t" + String.format(Locale.US, "%.3f", result.getMillis())
+							 + "\t" + result.getIssues().size()
+							 + "\t" + rules);
+		}
+	}
+
+	/**
+	 * Adds a file or the .edl files of a directory (recursively, sorted by name).
+	 */
+	private static void addFiles(final File file, final List<File> files) {
+		if (file.isDirectory()) {
+			File[] entries = file.listFiles();
+			if (entries != null) {
+				Arrays.sort(entries);
+				for (File entry : entries) {
+					if (entry.isDirectory() || entry.getName().endsWith(EDL_EXTENSION)) {
+						addFiles(entry, files);
+					}
+				}
+			}
+		} else {
+			files.add(file);
+		}
+	}
+
+	/**
+	 * Batch validator entry point.
+	 *
+	 * @param args Command line arguments (see class description).
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		String xsdPath = null;
+		String edlRulesPath = null;
+		String format = "json";
+		String outPath = null;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		boolean verbose = false;
+		List<File> files = new ArrayList<File>();
+
+		try {
+			for (int argNr = 0; argNr < args.length; argNr++) {
+				String arg = args[argNr];
+				if (arg.equals("--xsd")) {
+					xsdPath = args[++argNr];
+				} else if (arg.equals("--rules")) {
+					edlRulesPath = args[++argNr];
+				} else if (arg.equals("--format")) {
+					format = args[++argNr];
+				} else if (arg.equals("--threads")) {
+					threadCount = Integer.parseInt(args[++argNr]);
+				} else if (arg.equals("--out")) {
+					outPath = args[++argNr];
+				} else if (arg.equals("--list")) {
+					for (String line : FileUtility.lines(new File(args[++argNr]))) {
+						if (!line.trim().isEmpty()) {
+							addFiles(new File(line.trim()), files);
+						}
+					}
+				} else if (arg.equals("--verbose")) {
+					verbose = true;
+				} else if (arg.startsWith("--")) {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				} else {
+					addFiles(new File(arg), files);
+				}
+			}
+			if (!format.equals("json") && !format.equals("tsv")) {
+				throw new IllegalArgumentException("Unknown format " + format);
+			}
+		} catch (RuntimeException e) {
+			System.err.println((e.getMessage() != null ? e.getMessage() + "\n" : "") + USAGE);
+			System.exit(EXIT_USAGE);
+		}
+
+		if (xsdPath == null || edlRulesPath == null) {
+			Configuration config = Configuration.getInstance();
+			xsdPath = (xsdPath == null) ? config.getProp(Configuration.XSD) : xsdPath;
+			edlRulesPath = (edlRulesPath == null) ? config.getProp(Configuration.EDLRULES) : edlRulesPath;
+		}
+		if (!Logger.getRootLogger().getAllAppenders().hasMoreElements()) {
+			Logger.getRootLogger().addAppender(new ConsoleAppender(new PatternLayout("[%-5p]: %m%n"),
+																   ConsoleAppender.SYSTEM_ERR));
+		}
+		Logger.getRootLogger().setLevel(verbose ? Level.DEBUG : Level.WARN);
+
+		File xsdFile = new File(xsdPath);
+		if (!xsdFile.exists()) {
+			System.err.println("No XSD file was found: " + xsdPath);
+			System.exit(EXIT_USAGE);
+		}
+
+		OutputStream outstream = System.out;
+		try {
+			if (outPath != null) {
+				outstream = new FileOutputStream(outPath);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not write " + outPath + ": " + e.getMessage());
+			System.exit(EXIT_USAGE);
+		}
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outstream)));
+
+		long start = System.nanoTime();
+		BatchValidator validator = new BatchValidator(xsdFile, new File(edlRulesPath), threadCount);
+		boolean allValid;
+		if (format.equals("tsv")) {
+			allValid = validator.validate(files, new TSVSink(out));
+		} else {
+			JSONSink sink = new JSONSink(out);
+			allValid = validator.validate(files, sink);
+			sink.close();
+		}
+		out.close();
+
+		logger.info("Validated " + files.size() + " files in "
+					+ (System.nanoTime() - start) / 1000000 + " ms.");
+		System.exit(allValid ? EXIT_VALID : EXIT_INVALID);
+	}
+}
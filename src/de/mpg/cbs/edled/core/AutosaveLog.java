@@ -0,0 +1,784 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.validation.Schema;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import de.mpg.cbs.edled.util.FileUtility;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+/**
+ * Crash recovery for the unsaved edits of a model.
+ *
+ * Instead of writing the whole document after every edit, the edits are
+ * appended as small records (see EditListener) to a log file. The log
+ * starts with a header naming the snapshot of the document the records
+ * apply to. Saving the document drops log and snapshot (nothing to recover).
+ *
+ * Records are written by a background thread, so editing never waits for
+ * the disk: the thread collects the records of a burst of edits for a
+ * moment (e.g. typing a value), keeps only the last value of a node changed
+ * repeatedly, appends the records and syncs the file once. When the log
+ * grows too large it is compacted into a new snapshot, which is written by
+ * the background thread as well. Only copying the document for the snapshot
+ * holds the model's lock.
+ *
+ * Records (one per line, fields separated by tabs):
+ * - G generation file:	  header, snapshot and edited file (may be empty)
+ * - V path value:	 	  value of a node changed
+ * - I path index xml:	  element inserted before the index-th child element
+ * - A path name value:	  attribute inserted
+ * - D path:			  node removed
+ * - R path xml:		  element replaced
+ * Paths are indices of child elements starting from the document element,
+ * e.g. "/2/0", or "/2/0@name" for attributes.
+ *
+ * @author Oliver Z.
+ */
+public class AutosaveLog implements EditListener {
+	
+	private static final Logger logger = Logger.getLogger(AutosaveLog.class);
+	
+	/** Name of the log file. */
+	private static final String LOG_FILE = "autosave.log";
+	/** Prefix of the snapshot file names (followed by the generation). */
+	private static final String SNAPSHOT_PREFIX = "autosave-";
+	private static final String SNAPSHOT_SUFFIX = ".xml";
+	
+	/** Time (ms) the records of a burst of edits are collected before writing them. */
+	private static final long COALESCE_MS = 1000;
+	/** Log size (bytes) from which on the log is compacted into a new snapshot. */
+	private static final long COMPACT_SIZE = 1024 * 1024;
+	
+	private static final String ENCODING = "UTF-8";
+	
+	private enum EntryKind {
+		START,
+		SAVED,
+		RECORD,
+		CLOSE
+	}
+	
+	/** Item passed from the editing thread to the writer thread. */
+	private static final class Entry {
+		final EntryKind kind;
+		final Model model;
+		/** Number of the last edit of model before this entry. */
+		final long sequence;
+		/** START: edited file. */
+		final File file;
+		/** START: true if the document has unsaved edits already. */
+		final boolean dirty;
+		/** RECORD: path of the node whose value was changed, if a V record. */
+		final String valuePath;
+		/** RECORD: the record's line. */
+		final String line;
+		
+		Entry(final EntryKind kind, final Model model, final long sequence,
+			  final File file, final boolean dirty,
+			  final String valuePath, final String line) {
+			this.kind = kind;
+			this.model = model;
+			this.sequence = sequence;
+			this.file = file;
+			this.dirty = dirty;
+			this.valuePath = valuePath;
+			this.line = line;
+		}
+	}
+	
+	/** Directory containing log and snapshots. */
+	private final File directory;
+	private final File logFile;
+	/** Time (ms) the records of a burst of edits are collected before writing them. */
+	private final long coalesceMs;
+	
+	/** Entries waiting for the writer thread. */
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+	/** Number of the last edit. Incremented while holding the model's lock. */
+	private final AtomicLong sequence = new AtomicLong();
+	/** Model whose edits are logged. */
+	private Model model = null;
+	private Thread writer = null;
+	
+	/* State of the writer thread. */
+	/** Model of the current log. */
+	private Model session = null;
+	/** File edited in the current session. */
+	private File sessionFile = null;
+	/** Generation of the current snapshot. */
+	private long generation = System.currentTimeMillis();
+	/** Number of the last edit contained in the current snapshot or saved file. */
+	private long snapshotSequence = 0;
+	/** True if the next record has to start a new snapshot. */
+	private boolean needsSnapshot = true;
+	/** Stream appending to the log. Null if the log was not started yet. */
+	private FileOutputStream out = null;
+	/** Records not written yet. */
+	private final StringBuilder pending = new StringBuilder();
+	
+	/**
+	 * @param directory Directory for the log and snapshot files
+	 * 					(e.g. the configuration directory).
+	 */
+	public AutosaveLog(final File directory) {
+		this(directory, COALESCE_MS);
+	}
+	
+	/**
+	 * @param directory  Directory for the log and snapshot files.
+	 * @param coalesceMs Time (ms) the records of a burst of edits are
+	 * 					 collected before writing them (e.g. 0 for tests).
+	 */
+	AutosaveLog(final File directory, final long coalesceMs) {
+		this.directory = directory;
+		this.logFile = new File(directory, LOG_FILE);
+		this.coalesceMs = coalesceMs;
+	}
+	
+	/**
+	 * Starts logging the edits of a model. Stops logging the edits of the
+	 * previous model.
+	 *
+	 * @param model The model to log.
+	 * @param file  The file the model was loaded from. Null if none.
+	 * @param dirty True if the model has unsaved edits already (e.g. if
+	 * 				it was recovered), so a snapshot is written right away.
+	 * 				Otherwise, a snapshot is written on the first edit.
+	 */
+	public synchronized void start(final Model model, final File file, final boolean dirty) {
+		if (this.model != null) {
+			this.model.removeEditListener(this);
+		}
+		this.model = model;
+		
+		if (this.writer == null) {
+			this.writer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					write();
+				}
+			}, "Autosave");
+			this.writer.setDaemon(true);
+			this.writer.start();
+		}
+		
+		synchronized (model) {
+			model.addEditListener(this);
+			this.queue.offer(new Entry(EntryKind.START, model, this.sequence.get(), file, dirty, null, null));
+		}
+	}
+	
+	/**
+	 * Informs the log that the document of a model was saved, so there
+	 * are no edits to recover.
+	 *
+	 * @param model The saved model.
+	 * @param file  The file the document was saved to.
+	 */
+	public void saved(final Model model, final File file) {
+		synchronized (model) {
+			this.queue.offer(new Entry(EntryKind.SAVED, model, this.sequence.get(), file, false, null, null));
+		}
+	}
+	
+	/**
+	 * Writes the pending records and stops the writer thread, e.g. when
+	 * the application exits.
+	 *
+	 * @param timeout Maximum time (ms) to wait for the writer.
+	 */
+	public void close(final long timeout) {
+		Thread writerThread;
+		synchronized (this) {
+			writerThread = this.writer;
+		}
+		if (writerThread == null) {
+			return;
+		}
+		
+		this.queue.offer(new Entry(EntryKind.CLOSE, null, 0, null, false, null, null));
+		try {
+			writerThread.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * @return True if there is a log of unsaved edits (of a previous session).
+	 * 		   Only meaningful before start.
+	 */
+	public boolean hasRecovery() {
+		return readHeader() != null;
+	}
+	
+	/**
+	 * @return The file edited in the session whose edits can be recovered.
+	 * 		   Null if the edited document was not saved before (or if there
+	 * 		   is nothing to recover).
+	 */
+	public File getRecoveryFile() {
+		String[] header = readHeader();
+		if (header == null || header.length < 3 || header[2].length() == 0) {
+			return null;
+		}
+		return new File(header[2]);
+	}
+	
+	/**
+	 * Replays the log on its snapshot. Stops at the first record that cannot
+	 * be applied (e.g. the last record if it was written partially).
+	 *
+	 * @param schema Schema to load the snapshot with (see XMLUtility.loadDocument).
+	 * @return		 The recovered document. Null if there is none.
+	 */
+	public Document recover(final Schema schema) {
+		String[] header = readHeader();
+		if (header == null) {
+			return null;
+		}
+		
+		File snapshot = snapshotFile(Long.parseLong(header[1]));
+		Document document = XMLUtility.loadDocument(snapshot, schema);
+		if (document == null) {
+			logger.error("Could not load autosave snapshot " + snapshot.getPath());
+			return null;
+		}
+		
+		List<String> lines = readLines();
+		int applied = 0;
+		for (int lineNr = 1; lineNr < lines.size(); lineNr++) {
+			try {
+				apply(document, split(lines.get(lineNr)));
+				applied++;
+			} catch (RuntimeException e) {
+				logger.warn("Stopped recovering at autosave record " + lineNr + ".", e);
+				break;
+			}
+		}
+		logger.info("Recovered " + applied + " edits from " + this.logFile.getPath());
+		
+		return document;
+	}
+	
+	/**
+	 * Deletes log and snapshots (e.g. if recovering was declined).
+	 * Only meaningful before start.
+	 */
+	public void discard() {
+		deleteFiles();
+	}
+	
+	@Override
+	public void nodeValueChanged(final Node node) {
+		String path = pathOf(node);
+		record(path, join("V", path, XMLUtility.getNodeValue(node)));
+	}
+	
+	@Override
+	public void nodeInserted(final Node node) {
+		if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+			Attr attr = (Attr) node;
+			record(null, join("A", pathOf(attr.getOwnerElement()), attr.getName(), attr.getValue()));
+		} else {
+			int index = 0;
+			for (Node sibling = node.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+				if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+					index++;
+				}
+			}
+			record(null, join("I", pathOf(node.getParentNode()), String.valueOf(index), toXML(node)));
+		}
+	}
+	
+	@Override
+	public void nodeRemoving(final Node node) {
+		record(null, join("D", pathOf(node)));
+	}
+	
+	@Override
+	public void nodeReplaced(final Node replacement) {
+		record(null, join("R", pathOf(replacement), toXML(replacement)));
+	}
+	
+	/**
+	 * Called while holding the model's lock.
+	 */
+	private void record(final String valuePath, final String line) {
+		this.queue.offer(new Entry(EntryKind.RECORD, this.model, this.sequence.incrementAndGet(),
+								   null, false, valuePath, line));
+	}
+	
+	/**
+	 * Writer thread: writes the entries of a burst of edits at once.
+	 */
+	private void write() {
+		List<Entry> entries = new ArrayList<Entry>();
+		try {
+			while (true) {
+				Entry entry = this.queue.take();
+				entries.add(entry);
+				long deadline = System.currentTimeMillis() + this.coalesceMs;
+				while (entry.kind != EntryKind.CLOSE) {
+					long wait = deadline - System.currentTimeMillis();
+					entry = (wait > 0) ? this.queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+					if (entry == null) {
+						break;
+					}
+					entries.add(entry);
+				}
+				
+				boolean closing = process(entries);
+				entries.clear();
+				if (closing) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Autosave stopped.");
+		}
+	}
+	
+	/**
+	 * @return True if the writer was closed.
+	 */
+	private boolean process(final List<Entry> entries) {
+		for (int entryNr = 0; entryNr < entries.size(); entryNr++) {
+			Entry entry = entries.get(entryNr);
+			switch (entry.kind) {
+			case START:
+				closeLog();
+				this.session = entry.model;
+				this.sessionFile = entry.file;
+				this.snapshotSequence = entry.sequence;
+				this.needsSnapshot = true;
+				if (entry.dirty) {
+					compact();
+				} else {
+					deleteFiles();
+				}
+				break;
+			case SAVED:
+				// A newer snapshot contains edits that were not saved.
+				if (entry.model == this.session && entry.sequence >= this.snapshotSequence) {
+					closeLog();
+					deleteFiles();
+					this.sessionFile = entry.file;
+					this.snapshotSequence = entry.sequence;
+					this.needsSnapshot = true;
+				}
+				break;
+			case RECORD:
+				if (entry.model != this.session
+					|| entry.sequence <= this.snapshotSequence
+					|| isOverwritten(entry, entries, entryNr)) {
+					break;
+				}
+				if (this.needsSnapshot) {
+					// The snapshot contains this edit.
+					compact();
+				} else {
+					this.pending.append(entry.line).append('\n');
+				}
+				break;
+			case CLOSE:
+				flush();
+				closeLog();
+				return true;
+			}
+		}
+		
+		flush();
+		if (this.out != null && this.logFile.length() > COMPACT_SIZE) {
+			compact();
+		}
+		return false;
+	}
+	
+	/**
+	 * @return True if the next entry changes the value of the same node again.
+	 */
+	private static boolean isOverwritten(final Entry entry, final List<Entry> entries, final int entryNr) {
+		if (entry.valuePath == null || entryNr + 1 >= entries.size()) {
+			return false;
+		}
+		Entry next = entries.get(entryNr + 1);
+		return next.kind == EntryKind.RECORD
+			   && next.model == entry.model
+			   && entry.valuePath.equals(next.valuePath);
+	}
+	
+	/**
+	 * Appends the pending records to the log and syncs it.
+	 */
+	private void flush() {
+		if (this.pending.length() == 0 || this.out == null) {
+			this.pending.setLength(0);
+			return;
+		}
+		
+		try {
+			this.out.write(this.pending.toString().getBytes(ENCODING));
+			this.out.getFD().sync();
+		} catch (IOException e) {
+			logger.warn("Could not write " + this.logFile.getPath(), e);
+		}
+		this.pending.setLength(0);
+	}
+	
+	/**
+	 * Writes a snapshot of the session's document and starts a new log on it.
+	 * The previous log and snapshot are replaced only after the new ones
+	 * were written.
+	 */
+	private void compact() {
+		Document copy;
+		long copySequence;
+		synchronized (this.session) {
+			copy = (Document) this.session.getDocument().cloneNode(true);
+			copySequence = this.sequence.get();
+		}
+		
+		long newGeneration = this.generation + 1;
+		File snapshot = snapshotFile(newGeneration);
+		if (!XMLUtility.saveDocument(copy, snapshot)) {
+			logger.warn("Could not write autosave snapshot " + snapshot.getPath());
+			return;
+		}
+		
+		closeLog();
+		File tempFile = new File(this.logFile.getPath() + ".tmp");
+		String path = (this.sessionFile == null) ? "" : this.sessionFile.getPath();
+		FileOutputStream tempOut = null;
+		boolean replaced = false;
+		try {
+			tempOut = new FileOutputStream(tempFile);
+			tempOut.write((join("G", String.valueOf(newGeneration), path) + "\n").getBytes(ENCODING));
+			tempOut.getFD().sync();
+			tempOut.close();
+			tempOut = null;
+			FileUtility.replace(tempFile, this.logFile);
+			replaced = true;
+			this.out = new FileOutputStream(this.logFile, true);
+		} catch (IOException e) {
+			logger.warn("Could not start autosave log " + this.logFile.getPath(), e);
+			// Keep the snapshot if the new log (or its temporary file, if 
+			// the previous log is gone) refers to it.
+			if (!replaced && this.logFile.exists()) {
+				tempFile.delete();
+				snapshot.delete();
+			}
+			return;
+		} finally {
+			if (tempOut != null) {
+				try {
+					tempOut.close();
+				} catch (IOException e) {
+					logger.warn("Could not close " + tempFile.getPath(), e);
+				}
+			}
+		}
+		
+		this.generation = newGeneration;
+		this.snapshotSequence = copySequence;
+		this.needsSnapshot = false;
+		this.pending.setLength(0);
+		deleteSnapshotsExcept(snapshot);
+		logger.debug("Compacted autosave log into " + snapshot.getPath());
+	}
+	
+	private void closeLog() {
+		if (this.out != null) {
+			try {
+				this.out.close();
+			} catch (IOException e) {
+				logger.warn("Could not close " + this.logFile.getPath(), e);
+			}
+			this.out = null;
+		}
+	}
+	
+	private void deleteFiles() {
+		this.logFile.delete();
+		deleteSnapshotsExcept(null);
+	}
+	private void deleteSnapshotsExcept(final File keep) {
+		File[] files = this.directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.getName().startsWith(SNAPSHOT_PREFIX)
+				&& !file.equals(keep)) {
+				file.delete();
+			}
+		}
+	}
+	
+	private File snapshotFile(final long snapshotGeneration) {
+		return new File(this.directory, SNAPSHOT_PREFIX + snapshotGeneration + SNAPSHOT_SUFFIX);
+	}
+	
+	/**
+	 * @return Header fields of the log. Null if there is no (valid) log.
+	 */
+	private String[] readHeader() {
+		List<String> lines = readLines();
+		if (lines.isEmpty()) {
+			return null;
+		}
+		String[] header = split(lines.get(0));
+		if (header.length < 2 || !header[0].equals("G")) {
+			return null;
+		}
+		try {
+			if (!snapshotFile(Long.parseLong(header[1])).exists()) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return header;
+	}
+	
+	/**
+	 * @return Complete lines of the log (without a partially written last line).
+	 */
+	private List<String> readLines() {
+		List<String> lines = new ArrayList<String>();
+		if (!this.logFile.exists()) {
+			return lines;
+		}
+		
+		String content;
+		try {
+			content = FileUtils.readFileToString(this.logFile, ENCODING);
+		} catch (IOException e) {
+			logger.warn("Could not read " + this.logFile.getPath(), e);
+			return lines;
+		}
+		int start = 0;
+		int end = content.indexOf('\n');
+		while (end >= 0) {
+			lines.add(content.substring(start, end));
+			start = end + 1;
+			end = content.indexOf('\n', start);
+		}
+		return lines;
+	}
+	
+	private static void apply(final Document document, final String[] record) {
+		String kind = record[0];
+		if (kind.equals("V")) {
+			XMLUtility.setNodeValue(resolve(document, record[1]), record[2]);
+		} else if (kind.equals("A")) {
+			((Element) resolve(document, record[1])).setAttribute(record[2], record[3]);
+		} else if (kind.equals("I")) {
+			Node parent = resolve(document, record[1]);
+			parent.insertBefore(parse(document, record[3]),
+								childElement(parent, Integer.parseInt(record[2])));
+		} else if (kind.equals("D")) {
+			Node node = resolve(document, record[1]);
+			if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+				((Attr) node).getOwnerElement().removeAttributeNode((Attr) node);
+			} else {
+				node.getParentNode().removeChild(node);
+			}
+		} else if (kind.equals("R")) {
+			Node node = resolve(document, record[1]);
+			node.getParentNode().replaceChild(parse(document, record[2]), node);
+		} else {
+			throw new IllegalArgumentException("Unknown autosave record " + kind + ".");
+		}
+	}
+	
+	/**
+	 * @return Node at path (see class description).
+	 * @throws IllegalArgumentException If there is no such node.
+	 */
+	private static Node resolve(final Document document, final String path) {
+		int attrStart = path.indexOf('@');
+		String elemPath = (attrStart < 0) ? path : path.substring(0, attrStart);
+		
+		Node node = document.getDocumentElement();
+		int start = 1;
+		while (node != null && start <= elemPath.length()) {
+			int end = elemPath.indexOf('/', start);
+			if (end < 0) {
+				end = elemPath.length();
+			}
+			node = childElement(node, Integer.parseInt(elemPath.substring(start, end)));
+			start = end + 1;
+		}
+		if (node != null && attrStart >= 0) {
+			node = ((Element) node).getAttributeNode(path.substring(attrStart + 1));
+		}
+		if (node == null) {
+			throw new IllegalArgumentException("No node at " + path + ".");
+		}
+		return node;
+	}
+	
+	/**
+	 * @return The index-th child element of parent. Null if there is none.
+	 */
+	private static Node childElement(final Node parent, final int index) {
+		int elemNr = 0;
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				if (elemNr == index) {
+					return child;
+				}
+				elemNr++;
+			}
+		}
+		return null;
+	}
+	
+	private static String pathOf(final Node node) {
+		if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+			return pathOf(((Attr) node).getOwnerElement()) + "@" + node.getNodeName();
+		}
+		
+		StringBuilder path = new StringBuilder();
+		for (Node current = node; current.getParentNode() != null
+								  && current.getParentNode().getNodeType() != Node.DOCUMENT_NODE;
+			 current = current.getParentNode()) {
+			int index = 0;
+			for (Node sibling = current.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+				if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+					index++;
+				}
+			}
+			path.insert(0, index).insert(0, '/');
+		}
+		return path.toString();
+	}
+	
+	private static Node parse(final Document document, final String xml) {
+		try {
+			// Like loaded documents (see XMLUtility.loadDocument).
+			DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+			builderFactory.setNamespaceAware(true);
+			Document fragment = builderFactory.newDocumentBuilder()
+									.parse(new InputSource(new StringReader(xml)));
+			return document.importNode(fragment.getDocumentElement(), true);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Could not parse autosave record.", e);
+		}
+	}
+	
+	/**
+	 * Serializes an element (much faster than a Transformer for small subtrees).
+	 */
+	private static String toXML(final Node node) {
+		StringBuilder xml = new StringBuilder();
+		appendXML(node, xml);
+		return xml.toString();
+	}
+	private static void appendXML(final Node node, final StringBuilder xml) {
+		switch (node.getNodeType()) {
+		case Node.ELEMENT_NODE:
+			xml.append('<').append(node.getNodeName());
+			NamedNodeMap attrs = node.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				Node attr = attrs.item(attrNr);
+				xml.append(' ').append(attr.getNodeName()).append("=\"");
+				appendEscaped(attr.getNodeValue(), xml);
+				xml.append('"');
+			}
+			xml.append('>');
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				appendXML(child, xml);
+			}
+			xml.append("</").append(node.getNodeName()).append('>');
+			break;
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE:
+			appendEscaped(node.getNodeValue(), xml);
+			break;
+		default:
+			// Comments and processing instructions are not recovered.
+			break;
+		}
+	}
+	private static void appendEscaped(final String text, final StringBuilder xml) {
+		for (int charNr = 0; charNr < text.length(); charNr++) {
+			char c = text.charAt(charNr);
+			switch (c) {
+			case '&': xml.append("&amp;"); break;
+			case '<': xml.append("&lt;"); break;
+			case '>': xml.append("&gt;"); break;
+			case '"': xml.append("&quot;"); break;
+			case '\r': xml.append("&#13;"); break;
+			default: xml.append(c);
+			}
+		}
+	}
+	
+	/**
+	 * @return The fields joined by tabs, tabs and line breaks within
+	 * 		   the fields escaped.
+	 */
+	private static String join(final String... fields) {
+		StringBuilder line = new StringBuilder();
+		for (int fieldNr = 0; fieldNr < fields.length; fieldNr++) {
+			if (fieldNr > 0) {
+				line.append('\t');
+			}
+			String field = (fields[fieldNr] == null) ? "" : fields[fieldNr];
+			for (int charNr = 0; charNr < field.length(); charNr++) {
+				char c = field.charAt(charNr);
+				switch (c) {
+				case '\\': line.append("\\\\"); break;
+				case '\t': line.append("\\t"); break;
+				case '\n': line.append("\\n"); break;
+				case '\r': line.append("\\r"); break;
+				default: line.append(c);
+				}
+			}
+		}
+		return line.toString();
+	}
+	private static String[] split(final String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		for (int charNr = 0; charNr < line.length(); charNr++) {
+			char c = line.charAt(charNr);
+			if (c == '\t') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\\' && charNr + 1 < line.length()) {
+				char escaped = line.charAt(++charNr);
+				field.append((escaped == 't') ? '\t'
+							 : (escaped == 'n') ? '\n'
+							 : (escaped == 'r') ? '\r'
+							 : escaped);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+}
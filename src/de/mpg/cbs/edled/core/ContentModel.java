@@ -0,0 +1,151 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode;
+
+/**
+ * Deterministic automaton over the element children of a meta node.
+ * 
+ * The states are positions in the node's DescendantTable: state i means the
+ * descendants before i are done with. Reading an element name in state i leads
+ * to the first descendant at or after i with that name, provided all descendants
+ * skipped on the way are optional (minOccurs 0 or alternatives of a choice).
+ * After the occurrences of a descendant the automaton continues behind it,
+ * respectively behind all further alternatives of its choice.
+ * A state is accepting if all descendants from there on have minOccurs 0.
+ * 
+ * These are the rules TreeManager.mapExisting has always applied when walking
+ * the descendants. The automaton is compiled once per meta node, so matching
+ * the children of an element is a single pass without rescanning the descendants.
+ * 
+ * @author Oliver Z.
+ */
+final class ContentModel {
+	
+	private final DescendantTable descendants;
+	/** Transitions of each state: element name mapped to the descendant reached. */
+	private final List<Map<String, Integer>> transitions;
+	/** State following the occurrences of each descendant. */
+	private final int[] statesAfter;
+	private final boolean[] skippable;
+	private final boolean[] accepting;
+	
+	/**
+	 * Compiles the content model of a meta node.
+	 * 
+	 * @param metaNode The meta node (usually an element).
+	 */
+	ContentModel(final MetaNode metaNode) {
+		this.descendants = new DescendantTable(metaNode);
+		
+		int size = this.descendants.size();
+		// Filled from the last state on.
+		this.transitions = new ArrayList<Map<String, Integer>>(Collections.<Map<String, Integer>>nCopies(size + 1, null));
+		this.statesAfter = new int[size];
+		this.skippable = new boolean[size];
+		this.accepting = new boolean[size + 1];
+		
+		this.transitions.set(size, new HashMap<String, Integer>());
+		this.accepting[size] = true;
+		for (int index = size - 1; index >= 0; index--) {
+			MetaNode descendant = this.descendants.get(index);
+			int minOccurs = descendant.getConstraint().getMinOccurs();
+			this.skippable[index] = (minOccurs == 0 || this.descendants.getChoice(index) != null);
+			this.accepting[index] = (minOccurs == 0 && this.accepting[index + 1]);
+			
+			// Optional descendants can be passed, so the transitions behind them remain reachable.
+			Map<String, Integer> stateTransitions;
+			if (this.skippable[index]) {
+				stateTransitions = new HashMap<String, Integer>(this.transitions.get(index + 1));
+			} else {
+				stateTransitions = new HashMap<String, Integer>(2);
+			}
+			stateTransitions.put(descendant.getName(), Integer.valueOf(index));
+			this.transitions.set(index, stateTransitions);
+		}
+		
+		for (int index = 0; index < size; index++) {
+			MetaNode choice = this.descendants.getChoice(index);
+			int next = index + 1;
+			if (choice != null) {
+				// Skip the other alternatives of the choice.
+				next = index;
+				while (next < size && this.descendants.getChoice(next) == choice) {
+					next++;
+				}
+			}
+			this.statesAfter[index] = next;
+		}
+	}
+	
+	DescendantTable getDescendantTable() {
+		return this.descendants;
+	}
+	
+	/**
+	 * @param state	   A state (0 is the initial state).
+	 * @param elemName Name of the next element child.
+	 * @return		   Index of the descendant the element can be mapped to. 
+	 * 				   -1 if the element is not allowed in state.
+	 */
+	int getTransition(final int state, final String elemName) {
+		Integer target = this.transitions.get(state).get(elemName);
+		return (target == null) ? -1 : target.intValue();
+	}
+	
+	/**
+	 * @param index Index of a descendant.
+	 * @return		The state following the occurrences of the descendant.
+	 */
+	int getStateAfter(final int index) {
+		return this.statesAfter[index];
+	}
+	
+	/**
+	 * @param index Index of a descendant.
+	 * @return		True if the descendant may be left out (minOccurs 0 or choice alternative).
+	 */
+	boolean isSkippable(final int index) {
+		return this.skippable[index];
+	}
+	
+	/**
+	 * @param state A state.
+	 * @return		True if no further children are required in state.
+	 */
+	boolean isAccepting(final int state) {
+		return this.accepting[state];
+	}
+	
+	/**
+	 * Counts for each element the run of adjacent, equally named sibling elements 
+	 * it belongs to (like XMLUtility.getOccurs does for a single node).
+	 * 
+	 * @param elements The element children of a node in document order.
+	 * @return		   The occurrences of each element.
+	 */
+	static int[] getOccurrences(final List<? extends Node> elements) {
+		int[] occurrences = new int[elements.size()];
+		
+		int runStart = 0;
+		for (int index = 1; index <= elements.size(); index++) {
+			if (index == elements.size()
+				|| elements.get(index).getPreviousSibling() != elements.get(index - 1)
+				|| !elements.get(index).getNodeName().equals(elements.get(index - 1).getNodeName())) {
+				for (int runIndex = runStart; runIndex < index; runIndex++) {
+					occurrences[runIndex] = index - runStart;
+				}
+				runStart = index;
+			}
+		}
+		
+		return occurrences;
+	}
+}
@@ -0,0 +1,458 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * TreeModel (for a JTree) presenting the elements of a DOM document.
+ *
+ * The DOM elements themselves are the tree nodes, so no tree node objects
+ * mirroring the document have to be built. Children are read from the DOM
+ * on demand. The element children of nodes the JTree asked for are cached
+ * (skipping text and comment nodes) until the node is collapsed, hence
+ * memory usage is proportional to the visible part of the tree rather
+ * than to the document size.
+ *
+ * The model has to be informed about structural changes of the document
+ * (see nodeInserted, nodeRemoved and nodeStructureChanged) by the thread
+ * writing it, while holding the writer's lock. The events are built on
+ * that thread and handed to the publisher, which informs the listeners
+ * (e.g. on the event dispatch thread, see setPublisher). The listeners
+ * are always presented the document as of the last event they were
+ * informed about: until an event is published, the children it is about
+ * are remembered as they were before the change. (Children changed in a
+ * way only nodeStructureChanged tells about are read again anyway.)
+ *
+ * @author Oliver Z.
+ */
+public class DOMTreeModel implements TreeModel, TreeExpansionListener {
+	
+	/** Publisher informing the listeners right away. */
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(final Runnable command) {
+			command.run();
+		}
+	};
+	
+	/** Children of a node with changes that were not published yet. */
+	private static final class Pending {
+		/** The children as of the last published event. */
+		private Node[] children;
+		/** Number of events not published yet. */
+		private int count = 0;
+		
+		private Pending(final Node[] children) {
+			this.children = children;
+		}
+	}
+	
+	private final Document document;
+	/** Lock held by the thread writing the document. */
+	private final Object lock;
+	
+	/** Cached element children of the nodes the JTree has asked for. */
+	private final Map<Node, Node[]> childCache = new IdentityHashMap<Node, Node[]>();
+	/** Nodes with unpublished changes of their children (guarded by lock). */
+	private final Map<Node, Pending> pending = new IdentityHashMap<Node, Pending>();
+	
+	private final EventListenerList listeners = new EventListenerList();
+	/** Informs the listeners (and updates the cache going with the events). */
+	private volatile Executor publisher = DIRECT;
+	
+	/**
+	 * @param document The document to present. Its document element is the root.
+	 */
+	public DOMTreeModel(final Document document) {
+		this(document, new Object());
+	}
+	
+	/**
+	 * @param document The document to present. Its document element is the root.
+	 * @param lock	   Lock held by the thread writing the document while it
+	 * 				   changes the document and informs this model.
+	 */
+	public DOMTreeModel(final Document document, final Object lock) {
+		this.document = document;
+		this.lock = lock;
+	}
+	
+	/**
+	 * Sets where the listeners are informed about changes. By default they
+	 * are informed right away on the thread changing the document.
+	 *
+	 * @param publisher Runs the listener notifications, e.g. ModelExecutor.EDT.
+	 */
+	public void setPublisher(final Executor publisher) {
+		this.publisher = (publisher != null) ? publisher : DIRECT;
+	}
+	
+	@Override
+	public Object getRoot() {
+		return this.document.getDocumentElement();
+	}
+	
+	@Override
+	public Object getChild(final Object parent, final int index) {
+		Node[] children = childrenOf((Node) parent);
+		if (index < 0 || index >= children.length) {
+			return null;
+		}
+		
+		return children[index];
+	}
+	
+	@Override
+	public int getChildCount(final Object parent) {
+		return childrenOf((Node) parent).length;
+	}
+	
+	@Override
+	public boolean isLeaf(final Object node) {
+		// Avoid caching the children of every visible node just to draw the handles.
+		if (!this.childCache.containsKey(node)) {
+			synchronized (this.lock) {
+				Pending changed = this.pending.get(node);
+				if (changed != null) {
+					return changed.children.length == 0;
+				}
+				for (Node child = ((Node) node).getFirstChild(); child != null; child = child.getNextSibling()) {
+					if (child.getNodeType() == Node.ELEMENT_NODE) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		
+		return getChildCount(node) == 0;
+	}
+	
+	@Override
+	public int getIndexOfChild(final Object parent, final Object child) {
+		if (parent == null || child == null) {
+			return -1;
+		}
+		
+		return indexIn(childrenOf((Node) parent), child);
+	}
+	
+	@Override
+	public void valueForPathChanged(final TreePath path, final Object newValue) {
+		// Tree is not editable. Values are changed via the Model.
+	}
+	
+	@Override
+	public void addTreeModelListener(final TreeModelListener listener) {
+		this.listeners.add(TreeModelListener.class, listener);
+	}
+	
+	@Override
+	public void removeTreeModelListener(final TreeModelListener listener) {
+		this.listeners.remove(TreeModelListener.class, listener);
+	}
+	
+	/**
+	 * Releases the cached children of a collapsed node (and of its descendants).
+	 */
+	@Override
+	public void treeCollapsed(final TreeExpansionEvent event) {
+		release((Node) event.getPath().getLastPathComponent());
+	}
+	
+	@Override
+	public void treeExpanded(final TreeExpansionEvent event) {
+	}
+	
+	/**
+	 * Returns the path from the root to a node.
+	 *
+	 * @param node An element of the document.
+	 * @return	   TreePath with the DOM elements from the document element down to node.
+	 */
+	public TreePath getPathTo(final Node node) {
+		LinkedList<Object> path = new LinkedList<Object>();
+		
+		Node current = node;
+		while (current != null
+			   && current.getNodeType() == Node.ELEMENT_NODE) {
+			path.addFirst(current);
+			current = current.getParentNode();
+		}
+		
+		return new TreePath(path.toArray());
+	}
+	
+	/**
+	 * Informs the model that an element was inserted into the document.
+	 *
+	 * @param child The inserted element (already attached to its parent).
+	 */
+	void nodeInserted(final Node child) {
+		Node parent = child.getParentNode();
+		Node[] children = elementsOf(parent);
+		int index = indexIn(children, child);
+		
+		changing(parent, without(children, index));
+		publish(parent, children, true,
+				new TreeModelEvent(this, getPathTo(parent), new int[]{index}, new Object[]{child}));
+	}
+	
+	/**
+	 * Informs the model that an element was removed from the document.
+	 *
+	 * @param parent The former parent of the element.
+	 * @param index  The former index of the element (see elementIndexOf).
+	 * @param child  The removed element.
+	 */
+	void nodeRemoved(final Node parent, final int index, final Node child) {
+		Node[] children = elementsOf(parent);
+		
+		changing(parent, with(children, index, child));
+		publish(parent, children, false,
+				new TreeModelEvent(this, getPathTo(parent), new int[]{index}, new Object[]{child}));
+	}
+	
+	/**
+	 * Informs the model that an element was replaced by another one.
+	 *
+	 * @param index       The index of both elements (see elementIndexOf).
+	 * @param replaced    The removed element.
+	 * @param replacement The inserted element (already attached in place of replaced).
+	 */
+	void nodeReplaced(final int index, final Node replaced, final Node replacement) {
+		Node parent = replacement.getParentNode();
+		Node[] children = elementsOf(parent);
+		Node[] before = children.clone();
+		before[index] = replaced;
+		Node[] between = without(children, index);
+		TreePath path = getPathTo(parent);
+		
+		changing(parent, before);
+		publish(parent, between, false,
+				new TreeModelEvent(this, path, new int[]{index}, new Object[]{replaced}));
+		changing(parent, between);
+		publish(parent, children, true,
+				new TreeModelEvent(this, path, new int[]{index}, new Object[]{replacement}));
+	}
+	
+	/**
+	 * Informs the model that the presentation of a node changed.
+	 *
+	 * @param node An element of the document.
+	 */
+	void nodeChanged(final Node node) {
+		final Node parent = node.getParentNode();
+		if (parent == null
+			|| parent.getNodeType() != Node.ELEMENT_NODE) {
+			final TreeModelEvent event = new TreeModelEvent(this, getPathTo(node), null, null);
+			this.publisher.execute(new Runnable() {
+				@Override
+				public void run() {
+					fireTreeNodesChanged(event);
+				}
+			});
+		} else {
+			final TreePath path = getPathTo(parent);
+			this.publisher.execute(new Runnable() {
+				@Override
+				public void run() {
+					int index = getIndexOfChild(parent, node);
+					if (index >= 0) {
+						fireTreeNodesChanged(new TreeModelEvent(DOMTreeModel.this, path,
+																new int[]{index}, new Object[]{node}));
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Informs the model that the children of an element changed in any way,
+	 * e.g. after a batch of edits (see Model.beginBatch).
+	 *
+	 * @param node An element of the document.
+	 */
+	void nodeStructureChanged(final Node node) {
+		final TreeModelEvent event = new TreeModelEvent(this, getPathTo(node));
+		this.publisher.execute(new Runnable() {
+			@Override
+			public void run() {
+				release(node);
+				fireTreeStructureChanged(event);
+			}
+		});
+	}
+	
+	/**
+	 * Counts the element siblings before an element.
+	 *
+	 * @param node An element of the document.
+	 * @return	   Index of node among the element children of its parent.
+	 */
+	static int elementIndexOf(final Node node) {
+		int index = 0;
+		for (Node sibling = node.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+			if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+				index++;
+			}
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * @return Number of nodes whose children are currently cached.
+	 */
+	int getCachedNodeCount() {
+		return this.childCache.size();
+	}
+	
+	private Node[] childrenOf(final Node parent) {
+		Node[] children = this.childCache.get(parent);
+		if (children == null) {
+			synchronized (this.lock) {
+				Pending changed = this.pending.get(parent);
+				children = (changed != null) ? changed.children : elementsOf(parent);
+			}
+			this.childCache.put(parent, children);
+		}
+		
+		return children;
+	}
+	
+	private void release(final Node node) {
+		Node[] children = this.childCache.remove(node);
+		if (children != null) {
+			for (Node child : children) {
+				release(child);
+			}
+		}
+	}
+	
+	/**
+	 * Remembers the children of a node as the listeners know them until an
+	 * event about a change of them is published.
+	 *
+	 * @param before The children before the change. Ignored if there are
+	 * 				 unpublished changes already.
+	 */
+	private void changing(final Node parent, final Node[] before) {
+		Pending changed = this.pending.get(parent);
+		if (changed == null) {
+			changed = new Pending(before);
+			this.pending.put(parent, changed);
+		}
+		changed.count++;
+	}
+	
+	/**
+	 * Publishes an event about an inserted or removed child.
+	 *
+	 * @param children The children after the change.
+	 * @param inserted True if the child was inserted, false if it was removed.
+	 */
+	private void publish(final Node parent,
+						 final Node[] children,
+						 final boolean inserted,
+						 final TreeModelEvent event) {
+		this.publisher.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					Pending changed = pending.get(parent);
+					if (--changed.count == 0) {
+						pending.remove(parent);
+					} else {
+						changed.children = children;
+					}
+				}
+				
+				// The listeners may ask for the children while being informed.
+				boolean cached = childCache.containsKey(parent);
+				childCache.put(parent, children);
+				if (inserted) {
+					fireTreeNodesInserted(event);
+				} else {
+					release((Node) event.getChildren()[0]);
+					fireTreeNodesRemoved(event);
+				}
+				if (!cached) {
+					childCache.remove(parent);
+				}
+			}
+		});
+	}
+	
+	private static Node[] elementsOf(final Node parent) {
+		List<Node> elements = new ArrayList<Node>();
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				elements.add(child);
+			}
+		}
+		
+		return elements.toArray(new Node[elements.size()]);
+	}
+	
+	private static Node[] without(final Node[] children, final int index) {
+		Node[] result = new Node[children.length - 1];
+		System.arraycopy(children, 0, result, 0, index);
+		System.arraycopy(children, index + 1, result, index, result.length - index);
+		return result;
+	}
+	
+	private static Node[] with(final Node[] children, final int index, final Node child) {
+		Node[] result = new Node[children.length + 1];
+		System.arraycopy(children, 0, result, 0, index);
+		result[index] = child;
+		System.arraycopy(children, index, result, index + 1, children.length - index);
+		return result;
+	}
+	
+	private static int indexIn(final Node[] children, final Object child) {
+		for (int index = 0; index < children.length; index++) {
+			if (children[index] == child) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private void fireTreeNodesInserted(final TreeModelEvent event) {
+		for (TreeModelListener listener : this.listeners.getListeners(TreeModelListener.class)) {
+			listener.treeNodesInserted(event);
+		}
+	}
+	private void fireTreeNodesRemoved(final TreeModelEvent event) {
+		for (TreeModelListener listener : this.listeners.getListeners(TreeModelListener.class)) {
+			listener.treeNodesRemoved(event);
+		}
+	}
+	private void fireTreeNodesChanged(final TreeModelEvent event) {
+		for (TreeModelListener listener : this.listeners.getListeners(TreeModelListener.class)) {
+			listener.treeNodesChanged(event);
+		}
+	}
+	private void fireTreeStructureChanged(final TreeModelEvent event) {
+		for (TreeModelListener listener : this.listeners.getListeners(TreeModelListener.class)) {
+			listener.treeStructureChanged(event);
+		}
+	}
+}
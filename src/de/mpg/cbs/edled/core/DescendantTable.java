@@ -0,0 +1,117 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode;
+import de.mpg.cbs.edled.core.metatree.MetaNode.MetaXMLNodeKind;
+
+/**
+ * The element descendants of a meta node which are only separated from it
+ * by compositors (see TreeManager.getNonCompDirectDescendants), in schema order.
+ * 
+ * The table is built once per meta node and answers position and choice
+ * lookups in constant time.
+ * 
+ * @author Oliver Z.
+ */
+final class DescendantTable {
+	
+	private final List<MetaNode> descendants;
+	/** Position of each descendant in descendants. */
+	private final Map<MetaNode, Integer> indices;
+	/** Position of the first descendant with each name. */
+	private final Map<String, Integer> firstIndices;
+	/** Choice compositor each descendant is a direct alternative of (null if none). */
+	private final MetaNode[] choices;
+	
+	/**
+	 * @param metaNode The meta node (usually an element).
+	 */
+	DescendantTable(final MetaNode metaNode) {
+		List<MetaNode> descendants = new ArrayList<MetaNode>();
+		collect(metaNode, descendants);
+		this.descendants = Collections.unmodifiableList(descendants);
+		
+		this.indices = new IdentityHashMap<MetaNode, Integer>(descendants.size());
+		this.firstIndices = new HashMap<String, Integer>();
+		this.choices = new MetaNode[descendants.size()];
+		for (int index = 0; index < descendants.size(); index++) {
+			MetaNode descendant = descendants.get(index);
+			this.indices.put(descendant, Integer.valueOf(index));
+			if (!this.firstIndices.containsKey(descendant.getName())) {
+				this.firstIndices.put(descendant.getName(), Integer.valueOf(index));
+			}
+			
+			MetaNode parent = descendant.getParent();
+			if (parent != null && parent.getKind() == MetaXMLNodeKind.CHOICE_COMPOSITOR) {
+				this.choices[index] = parent;
+			}
+		}
+	}
+	
+	private static void collect(final MetaNode metaNode, final List<MetaNode> descendants) {
+		for (MetaNode child : metaNode.getChildren()) {
+			switch(child.getKind()) {
+			case ATTRIBUTE:
+				break;
+			case ELEMENT:
+				descendants.add(child);
+				break;
+			case CHOICE_COMPOSITOR:
+			case GROUP_COMPOSITOR:
+			case SEQUENCE_COMPOSITOR:
+				collect(child, descendants);
+				break;
+			default:
+				throw new RuntimeException("getNonCompLeaves: child has unspecified node kind!");
+			}
+		}
+	}
+	
+	/**
+	 * @return All descendants in schema order (unmodifiable).
+	 */
+	List<MetaNode> getDescendants() {
+		return this.descendants;
+	}
+	
+	int size() {
+		return this.descendants.size();
+	}
+	
+	MetaNode get(final int index) {
+		return this.descendants.get(index);
+	}
+	
+	/**
+	 * @param metaNode A meta node (may be null).
+	 * @return		   Position of metaNode among the descendants. -1 if it is none of them.
+	 */
+	int indexOf(final MetaNode metaNode) {
+		Integer index = this.indices.get(metaNode);
+		return (index == null) ? -1 : index.intValue();
+	}
+	
+	/**
+	 * @param name An element name.
+	 * @return	   Position of the first descendant named name. -1 if there is none.
+	 */
+	int indexOfName(final String name) {
+		Integer index = this.firstIndices.get(name);
+		return (index == null) ? -1 : index.intValue();
+	}
+	
+	/**
+	 * @param index Position of a descendant.
+	 * @return		The choice compositor the descendant is an alternative of.
+	 * 				Null if the descendant is not a direct child of a choice.
+	 */
+	MetaNode getChoice(final int index) {
+		return this.choices[index];
+	}
+}
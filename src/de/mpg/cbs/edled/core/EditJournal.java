@@ -0,0 +1,228 @@
+package de.mpg.cbs.edled.core;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Journal of reversible edits for undo and redo.
+ *
+ * Edits are kept in a ring buffer that is bounded by the (estimated)
+ * memory the edits hold on to rather than by their number: if recording
+ * an edit exceeds the capacity, the oldest edits are dropped. Edits that
+ * were undone can be redone until a new edit is recorded.
+ *
+ * Edits have to be undone and redone in the order they were recorded, so
+ * they may refer to the nodes of the document they were recorded on
+ * (instead of copies of the document).
+ *
+ * @author Oliver Z.
+ */
+final class EditJournal {
+	
+	/** */
+	private static final Logger logger = Logger.getLogger(EditJournal.class);
+	
+	/** Estimated bytes held by every edit and every node it refers to. */
+	static final long OVERHEAD = 48;
+	
+	/**
+	 * An edit that can be reverted and applied again.
+	 */
+	interface Edit {
+		/** Reverts the edit. */
+		void undo();
+		/** Applies the reverted edit again. */
+		void redo();
+		/** @return Estimated number of bytes held by the edit. */
+		long getSize();
+	}
+	
+	/** Maximum number of bytes held by all edits. */
+	private final long capacity;
+	/** Ring buffer of edits, oldest first. */
+	private Edit[] edits = new Edit[16];
+	/** Index of the oldest edit. */
+	private int first = 0;
+	/** Number of edits in the buffer. */
+	private int count = 0;
+	/** Number of edits that can be undone, the others can be redone. */
+	private int undoable = 0;
+	/** Estimated number of bytes held by all edits. */
+	private long size = 0;
+	/** True while an edit is undone or redone. */
+	private boolean replaying = false;
+	
+	/**
+	 * @param capacity Maximum number of bytes (see Edit.getSize) the
+	 * 				   journal holds on to.
+	 */
+	EditJournal(final long capacity) {
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Records an edit and drops the edits that could be redone. Ignored
+	 * while an edit is undone or redone.
+	 *
+	 * @param edit The edit that was just applied.
+	 */
+	void record(final Edit edit) {
+		if (this.replaying) {
+			return;
+		}
+		
+		while (this.count > this.undoable) {
+			dropLast();
+		}
+		if (this.count == this.edits.length) {
+			Edit[] grown = new Edit[this.edits.length * 2];
+			for (int i = 0; i < this.count; i++) {
+				grown[i] = at(i);
+			}
+			this.edits = grown;
+			this.first = 0;
+		}
+		this.edits[index(this.count)] = edit;
+		this.count++;
+		this.undoable++;
+		this.size += edit.getSize();
+		
+		while (this.size > this.capacity && this.count > 0) {
+			dropFirst();
+		}
+	}
+	
+	/**
+	 * @return True if there is an edit to undo.
+	 */
+	boolean canUndo() {
+		return this.undoable > 0;
+	}
+	
+	/**
+	 * @return True if there is an edit to redo.
+	 */
+	boolean canRedo() {
+		return this.count > this.undoable;
+	}
+	
+	/**
+	 * Reverts the last edit that was not undone yet.
+	 *
+	 * @return False if there was no edit to undo.
+	 */
+	boolean undo() {
+		if (this.replaying || !canUndo()) {
+			return false;
+		}
+		
+		Edit edit = at(this.undoable - 1);
+		replay(edit, true);
+		this.undoable--;
+		return true;
+	}
+	
+	/**
+	 * Applies the last undone edit again.
+	 *
+	 * @return False if there was no edit to redo.
+	 */
+	boolean redo() {
+		if (this.replaying || !canRedo()) {
+			return false;
+		}
+		
+		Edit edit = at(this.undoable);
+		replay(edit, false);
+		this.undoable++;
+		return true;
+	}
+	
+	/**
+	 * Drops all edits.
+	 */
+	void clear() {
+		while (this.count > 0) {
+			dropLast();
+		}
+		this.first = 0;
+	}
+	
+	/**
+	 * @return Estimated number of bytes held by the recorded edits.
+	 */
+	long getSize() {
+		return this.size;
+	}
+	
+	/**
+	 * Estimates the memory held by a subtree of the document.
+	 *
+	 * @param node Root of the subtree.
+	 * @return	   Estimated number of bytes.
+	 */
+	static long sizeOf(final Node node) {
+		long size = OVERHEAD;
+		String value = node.getNodeValue();
+		if (value != null) {
+			size += 2 * value.length();
+		}
+		
+		NamedNodeMap attrs = node.getAttributes();
+		if (attrs != null) {
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				size += sizeOf(attrs.item(attrNr));
+			}
+		}
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			size += sizeOf(child);
+		}
+		
+		return size;
+	}
+	
+	private void replay(final Edit edit, final boolean undo) {
+		this.replaying = true;
+		try {
+			if (undo) {
+				edit.undo();
+			} else {
+				edit.redo();
+			}
+		} catch (RuntimeException e) {
+			// The document no longer matches the remaining edits.
+			logger.error("Could not " + (undo ? "undo" : "redo") + " the last edit, dropping the journal.", e);
+			clear();
+			throw e;
+		} finally {
+			this.replaying = false;
+		}
+	}
+	
+	private Edit at(final int offset) {
+		return this.edits[index(offset)];
+	}
+	private int index(final int offset) {
+		return (this.first + offset) % this.edits.length;
+	}
+	
+	private void dropFirst() {
+		this.size -= this.edits[this.first].getSize();
+		this.edits[this.first] = null;
+		this.first = (this.first + 1) % this.edits.length;
+		this.count--;
+		if (this.undoable > 0) {
+			this.undoable--;
+		}
+	}
+	private void dropLast() {
+		int last = index(this.count - 1);
+		this.size -= this.edits[last].getSize();
+		this.edits[last] = null;
+		this.count--;
+		if (this.undoable > this.count) {
+			this.undoable = this.count;
+		}
+	}
+}
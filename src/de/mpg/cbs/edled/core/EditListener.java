@@ -0,0 +1,45 @@
+package de.mpg.cbs.edled.core;
+
+import org.w3c.dom.Node;
+
+/**
+ * Listener for the edits of a model's document (see Model.addEditListener).
+ * 
+ * Called by the thread editing the model while it holds the model's lock,
+ * right when the document changed (also while batching, see 
+ * Model.beginBatch, and when undoing or redoing edits). Listeners may read
+ * the document but must not change it.
+ * 
+ * @author Oliver Z.
+ */
+public interface EditListener {
+	
+	/**
+	 * An element or attribute was inserted into the document.
+	 * 
+	 * @param node The inserted node.
+	 */
+	public void nodeInserted(final Node node);
+	
+	/**
+	 * An element or attribute is about to be removed from the document.
+	 * 
+	 * @param node The node to remove. Still attached.
+	 */
+	public void nodeRemoving(final Node node);
+	
+	/**
+	 * The value of an element or attribute changed.
+	 * 
+	 * @param node The changed node.
+	 */
+	public void nodeValueChanged(final Node node);
+	
+	/**
+	 * An element was replaced by another one.
+	 * 
+	 * @param replacement The element that took the place of the replaced one.
+	 */
+	public void nodeReplaced(final Node replacement);
+	
+}
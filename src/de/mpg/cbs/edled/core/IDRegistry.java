@@ -0,0 +1,204 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Node;
+
+/**
+ * Index of the ID and IDREF(S) values of a single document.
+ *
+ * For each ID the nodes carrying it are kept in insertion order. The first
+ * node holds the ID, the following nodes are candidates for the ID if the
+ * holder gets a different ID or gets deleted.
+ * Additionally the nodes referring to each ID are kept, so referrers of an
+ * ID and dangling references can be found without scanning the document.
+ * All updates and lookups take constant time.
+ *
+ * @author Oliver Z.
+ */
+public class IDRegistry {
+
+	private static final Logger logger = Logger.getLogger(IDRegistry.class);
+
+	/** Nodes carrying each ID (holder first). */
+	private final Map<String, LinkedHashSet<Node>> nodesWithID = new HashMap<String, LinkedHashSet<Node>>();
+	/** The ID each node is registered with. */
+	private final Map<Node, String> idOfNode = new IdentityHashMap<Node, String>();
+
+	/** Nodes (IDREF/IDREFS) referring to each ID. */
+	private final Map<String, LinkedHashSet<Node>> referringNodes = new HashMap<String, LinkedHashSet<Node>>();
+	/** The IDs each node refers to. */
+	private final Map<Node, String[]> referencesOfNode = new IdentityHashMap<Node, String[]>();
+
+	/** IDs whose holder changed since the last call of takeChangedIDs. */
+	private final Set<String> changedIDs = new LinkedHashSet<String>();
+
+	/**
+	 * Registers a node carrying an ID. A previously registered ID of
+	 * the node is replaced.
+	 *
+	 * @param node The node (attribute or element of type ID).
+	 * @param id   The ID value. Empty or null values are not registered.
+	 */
+	public void putID(final Node node, final String id) {
+		String previousID = this.idOfNode.get(node);
+		if (previousID != null) {
+			if (previousID.equals(id)) {
+				return;
+			}
+			removeID(node);
+		}
+
+		if (id == null || id.isEmpty()) {
+			return;
+		}
+
+		LinkedHashSet<Node> nodes = this.nodesWithID.get(id);
+		if (nodes == null) {
+			nodes = new LinkedHashSet<Node>();
+			this.nodesWithID.put(id, nodes);
+			this.changedIDs.add(id);
+			logger.trace("Put ID: " + id);
+		} else {
+			logger.trace("Put ID applicant: " + id);
+		}
+		nodes.add(node);
+		this.idOfNode.put(node, id);
+	}
+
+	/**
+	 * Unregisters the ID of a node.
+	 *
+	 * @param node The node carrying an ID.
+	 */
+	public void removeID(final Node node) {
+		String id = this.idOfNode.remove(node);
+		if (id == null) {
+			return;
+		}
+
+		LinkedHashSet<Node> nodes = this.nodesWithID.get(id);
+		if (nodes.iterator().next() == node) {
+			this.changedIDs.add(id);
+		}
+		nodes.remove(node);
+		if (nodes.isEmpty()) {
+			this.nodesWithID.remove(id);
+		}
+	}
+
+	/**
+	 * @param id An ID value.
+	 * @return	 The node holding the ID. Null if no node carries the ID.
+	 */
+	public Node getNodeForID(final String id) {
+		LinkedHashSet<Node> nodes = this.nodesWithID.get(id);
+		if (nodes == null) {
+			return null;
+		}
+
+		return nodes.iterator().next();
+	}
+
+	public boolean isIDInUse(final String id) {
+		return this.nodesWithID.containsKey(id);
+	}
+
+	/**
+	 * Registers the IDs a node refers to. Previous references of the node
+	 * are replaced.
+	 *
+	 * @param node  The node (attribute or element of type IDREF or IDREFS).
+	 * @param value The node value: one or more whitespace separated IDs.
+	 */
+	public void putReferences(final Node node, final String value) {
+		removeReferences(node);
+
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+
+		String[] ids = value.trim().split("\\s+");
+		for (String id : ids) {
+			LinkedHashSet<Node> nodes = this.referringNodes.get(id);
+			if (nodes == null) {
+				nodes = new LinkedHashSet<Node>();
+				this.referringNodes.put(id, nodes);
+			}
+			nodes.add(node);
+		}
+		this.referencesOfNode.put(node, ids);
+	}
+
+	/**
+	 * Unregisters all references of a node.
+	 *
+	 * @param node The referring node.
+	 */
+	public void removeReferences(final Node node) {
+		String[] ids = this.referencesOfNode.remove(node);
+		if (ids == null) {
+			return;
+		}
+
+		for (String id : ids) {
+			LinkedHashSet<Node> nodes = this.referringNodes.get(id);
+			if (nodes != null) {
+				nodes.remove(node);
+				if (nodes.isEmpty()) {
+					this.referringNodes.remove(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param id An ID value.
+	 * @return	 All nodes referring to the ID.
+	 */
+	public Set<Node> getReferringNodes(final String id) {
+		LinkedHashSet<Node> nodes = this.referringNodes.get(id);
+		if (nodes == null) {
+			return Collections.emptySet();
+		}
+
+		return Collections.unmodifiableSet(nodes);
+	}
+
+	/**
+	 * @return All nodes referring to at least one ID no node carries.
+	 */
+	public List<Node> getDanglingReferences() {
+		Set<Node> dangling = new LinkedHashSet<Node>();
+
+		for (Map.Entry<String, LinkedHashSet<Node>> entry : this.referringNodes.entrySet()) {
+			if (!this.nodesWithID.containsKey(entry.getKey())) {
+				dangling.addAll(entry.getValue());
+			}
+		}
+
+		return new LinkedList<Node>(dangling);
+	}
+
+	/**
+	 * Returns the IDs whose holder changed (an ID appeared, disappeared or
+	 * passed to another node) since the last call and resets them.
+	 * The holders and referrers of these IDs need to be revalidated.
+	 *
+	 * @return IDs with changed holders.
+	 */
+	public List<String> takeChangedIDs() {
+		List<String> ids = new LinkedList<String>(this.changedIDs);
+		this.changedIDs.clear();
+
+		return ids;
+	}
+}
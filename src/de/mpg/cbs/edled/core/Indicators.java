@@ -0,0 +1,56 @@
+package de.mpg.cbs.edled.core;
+
+import de.mpg.cbs.edled.core.ManipulationOption.ManipulationOptionKind;
+
+/**
+ * Flags of what is indicated next to a node in the tree view (see
+ * Model.getIndicators). The flags of a node are combined in a bitmask.
+ *
+ * @author Oliver Z.
+ */
+public final class Indicators {
+	
+	/** The node or one of its descendants is invalid. */
+	public static final int ERROR = 1;
+	/** Additional nodes of the same type can be added. */
+	public static final int ADD = 1 << 1;
+	/** An optional attribute can be added. */
+	public static final int ADD_ATTRIBUTE = 1 << 2;
+	/** An optional child element can be added. */
+	public static final int ADD_CHILD = 1 << 3;
+	/** An alternative node can be chosen. */
+	public static final int CHOICE = 1 << 4;
+	/** The node can be removed. */
+	public static final int REMOVE = 1 << 5;
+	/** The node has attributes that can be removed. */
+	public static final int REMOVE_ATTRIBUTE = 1 << 6;
+	
+	/** Indicators that were not computed yet. */
+	static final int UNKNOWN = -1;
+	
+	private Indicators() {
+	}
+	
+	/**
+	 * @param kind The kind of a manipulation option.
+	 * @return	   The flag indicating options of that kind.
+	 */
+	public static int of(final ManipulationOptionKind kind) {
+		switch (kind) {
+		case ADD_ADDITIONAL:
+			return ADD;
+		case ADD_ATTRIBUTE:
+			return ADD_ATTRIBUTE;
+		case ADD_CHILD:
+			return ADD_CHILD;
+		case CHOICE:
+			return CHOICE;
+		case REMOVE:
+			return REMOVE;
+		case REMOVE_ATTRIBUTE:
+			return REMOVE_ATTRIBUTE;
+		default:
+			throw new RuntimeException("Undefined ManipulationOptionKind occured!");
+		}
+	}
+}
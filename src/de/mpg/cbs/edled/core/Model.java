@@ -1,15 +1,19 @@
 package de.mpg.cbs.edled.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Set;
 
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeModel;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -26,9 +30,12 @@ import de.mpg.cbs.edled.core.metatree.MetaNode;
 import de.mpg.cbs.edled.core.metatree.MetaTreeBuilder;
 import de.mpg.cbs.edled.core.metatree.NodeConstraint;
 import de.mpg.cbs.edled.core.metatree.MetaNode.MetaXMLNodeKind;
+import de.mpg.cbs.edled.core.validation.DocumentSnapshot;
 import de.mpg.cbs.edled.core.validation.EDLRule;
 import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.core.validation.ParallelValidator;
 import de.mpg.cbs.edled.core.validation.SimpleTypeValidator;
+import de.mpg.cbs.edled.core.validation.TypedValue;
 import de.mpg.cbs.edled.core.validation.ValidationResult;
 import de.mpg.cbs.edled.xml.XMLUtility;
 
@@ -51,7 +58,7 @@ public class Model extends Observable implements Observer {
 	/** The XML document (EDL configuration) that is subject to editing. */
 	private Document xmlDocument = null;
 	/** Model for the JTree (visual representation of the XML document). */
-	private DefaultTreeModel treeModel = null;
+	private DOMTreeModel treeModel = null;
 	/** The meta tree abstracting the XML schema. */
 	private MetaNode xmlMetaTree = null;
 	
@@ -60,6 +67,28 @@ public class Model extends Observable implements Observer {
 	
 	/** EDL rule validator object. */
 	private EDLRuleValidator edlValidator = null;
+	/** Number of rules that were (re-)evaluated by the last edit. */
+	private int lastRuleEvaluationCount = 0;
+	
+	/** Number of open batches (see beginBatch). Edits are deferred while positive. */
+	private int batchDepth = 0;
+	/** Rules affected by the edits of the open batch. */
+	private final Set<EDLRule> batchRules = new LinkedHashSet<EDLRule>();
+	/** Nodes added or changed by the edits of the open batch. */
+	private final Set<Node> batchNodes = new LinkedHashSet<Node>();
+	/** Elements whose children were added or removed by the edits of the open batch. */
+	private final Set<Node> batchParents = new LinkedHashSet<Node>();
+	
+	/** Memory (in bytes) the undo journal may hold on to. */
+	private static final long JOURNAL_CAPACITY = 8L * 1024 * 1024;
+	/** Undo/redo journal of all edits. */
+	private final EditJournal journal = new EditJournal(JOURNAL_CAPACITY);
+	/** Edits recorded as one (see beginEditGroup). Null if none is open. */
+	private EditGroup editGroup = null;
+	/** Number of open edit groups. */
+	private int editGroupDepth = 0;
+	/** Listeners informed about every change of the document. */
+	private final List<EditListener> editListeners = new ArrayList<EditListener>();
 	
 	/**
 	 * Constructor for a empty model (XML document).
@@ -83,6 +112,8 @@ public class Model extends Observable implements Observer {
 		
 		this.treeManager = new TreeManager(this.xmlDocument);
 		this.xmlDocument.appendChild(this.treeManager.create(this.xmlMetaTree));
+		this.treeManager.getIDRegistry().takeChangedIDs();
+		this.treeModel = new DOMTreeModel(this.xmlDocument, this);
 		
 		// First time rule validation.
 		checkRules(this.edlValidator.getRules());
@@ -114,15 +145,78 @@ public class Model extends Observable implements Observer {
 		if (!this.treeManager.mapExisting(document.getDocumentElement(), this.xmlMetaTree)) {
 			throw new RuntimeException("Parameter document is not valid!");
 		}
+		this.treeManager.getIDRegistry().takeChangedIDs();
 		
 		this.xmlDocument = document;
 		this.edlValidator = edlValidator;
+		this.treeModel = new DOMTreeModel(this.xmlDocument, this);
 		
 		// First time rule validation.
 		checkRules(this.edlValidator.getRules());
 	}
 	
-	public MetaNode getMetaXMLNodeForNode(final Node node) {
+	/**
+	 * Constructor for a document that has already been mapped while
+	 * loading it (see StreamingDocumentLoader).
+	 * 
+	 * @param document	  The XML document.
+	 * @param metaTree	  The meta tree of the document element.
+	 * @param treeManager TreeManager all nodes of document are mapped in.
+	 */
+	Model(final Document document,
+		  final MetaNode metaTree,
+		  final TreeManager treeManager,
+		  final EDLRuleValidator edlValidator) {
+		this.xmlMetaTree = metaTree;
+		this.treeManager = treeManager;
+		this.treeManager.getIDRegistry().takeChangedIDs();
+		
+		this.xmlDocument = document;
+		this.edlValidator = edlValidator;
+		this.treeModel = new DOMTreeModel(this.xmlDocument, this);
+		
+		// First time rule validation.
+		checkRules(this.edlValidator.getRules());
+	}
+	
+	/**
+	 * @return The IDs and ID references of the model's document 
+	 * 		   (e.g. for querying dangling references).
+	 */
+	public IDRegistry getIDRegistry() {
+		return this.treeManager.getIDRegistry();
+	}
+	
+	/**
+	 * @param node A node of the model's document.
+	 * @return	   Line and column of the node in the file it was loaded from.
+	 * 			   Null if unknown (e.g. the node was added after loading).
+	 */
+	public SourceLocation getSourceLocation(final Node node) {
+		return this.treeManager.getSourceLocation(node);
+	}
+	
+	/**
+	 * Returns the value of a node parsed according to the node's type.
+	 * The value is parsed once per value of the node and shared with
+	 * validation and EDL rules.
+	 * 
+	 * @param node A node of the model's document (an attribute or an element with text content).
+	 * @return	   The parsed value of the node.
+	 */
+	public synchronized TypedValue getTypedValue(final Node node) {
+		return this.treeManager.getTypedValue(node, XMLUtility.getNodeValue(node));
+	}
+	
+	/**
+	 * @param node A node of the model's document (an attribute or an element with text content).
+	 * @return	   The value of the node as number. NaN if it is not a number.
+	 */
+	public double getNumericValue(final Node node) {
+		return getTypedValue(node).getNumber();
+	}
+	
+	public synchronized MetaNode getMetaXMLNodeForNode(final Node node) {
 		return this.treeManager.getMetaNode(node);
 	}
 	
@@ -143,7 +237,7 @@ public class Model extends Observable implements Observer {
 	 * 3. check for alternatives to node
 	 * 4. check for currently not used optional child elements of node. those could be added
 	 */
-	public List<ManipulationOption> getManipulationOptionsFor(final Node node) {
+	public synchronized List<ManipulationOption> getManipulationOptionsFor(final Node node) {
 	
 		MetaNode metaNode = this.treeManager.getMetaNode(node);
 		if (metaNode == null) {
@@ -206,55 +300,55 @@ public class Model extends Observable implements Observer {
 			}
 			
 			// 4. check for currently not used optional child elements of node. those could be added
-			NodeList children = node.getChildNodes();
-			List<MetaNode> descendants = this.treeManager.getNonCompDirectDescendants(metaNode);
-			for (MetaNode descendant : descendants) {
-				NodeConstraint descConstraint = descendant.getConstraint();
+			DescendantTable descendants = this.treeManager.getDescendantTable(metaNode);
+			if (descendants.size() > 0) {
+				// Single pass over the children collecting the names in use, the choices
+				// already represented and the last child mapped to each descendant.
+				Set<String> childNames = new HashSet<String>();
+				Set<MetaNode> representedChoices = Collections.newSetFromMap(new IdentityHashMap<MetaNode, Boolean>());
+				Node[] lastChildren = new Node[descendants.size()];
+				int[] lastPositions = new int[descendants.size()];
+				Arrays.fill(lastPositions, -1);
 				
-				int descMaxOccurs = descConstraint.getMaxOccurs();
-				int descOccurs = XMLUtility.getOccurs(descendant.getName(), children); //descConstraint.getOccurs();
-				if (descOccurs == 0 
-					&& (descMaxOccurs == NodeConstraint.UNBOUNDED || descOccurs < descMaxOccurs)) {
-					
-					List<MetaNode> choiceAlternatives;
-					MetaNode descendantParent = descendant.getParent();
-					if (descendantParent.getKind() == MetaXMLNodeKind.CHOICE_COMPOSITOR) {
-						choiceAlternatives = descendantParent.getChildren();
-					} else {
-						choiceAlternatives = new LinkedList<MetaNode>();
+				int position = 0;
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					if (child.getNodeType() == Node.ELEMENT_NODE) {
+						childNames.add(child.getNodeName());
 					}
-					
-					// Find exact position where to add the child.
-					// Also check whether descendant is part of a choice that is already represented.
-					Node prevChild = null;
-					boolean skipBecauseOfChoice = false;
-//					Node nextChild = null;
-					int childNr = 0;
-					while (childNr < children.getLength()
-						   /* && (nextChild == null) */
-						   && !skipBecauseOfChoice) {
-						Node child = children.item(childNr);
-						MetaNode childMeta = this.treeManager.getMetaNode(child);
-						
-						if (choiceAlternatives.contains(childMeta)) {
-							skipBecauseOfChoice = true;
-						}
-						
-						if (!skipBecauseOfChoice
-							&& descendants.contains(childMeta) // TODO: <-- not sure if this check/line is necessary
-							&& descendants.indexOf(childMeta) < descendants.indexOf(descendant)) {
-							prevChild = child;
+					int childIndex = descendants.indexOf(this.treeManager.getMetaNode(child));
+					if (childIndex >= 0) {
+						lastChildren[childIndex] = child;
+						lastPositions[childIndex] = position;
+						MetaNode choice = descendants.getChoice(childIndex);
+						if (choice != null) {
+							representedChoices.add(choice);
 						}
-						
-						childNr++;
 					}
-					if (!skipBecauseOfChoice) {
+					position++;
+				}
+				
+				// New children are inserted after the last child preceding them in schema order.
+				Node prevChild = null;
+				int prevChildPosition = -1;
+				for (int descendantNr = 0; descendantNr < descendants.size(); descendantNr++) {
+					MetaNode descendant = descendants.get(descendantNr);
+					int descMaxOccurs = descendant.getConstraint().getMaxOccurs();
+					MetaNode choice = descendants.getChoice(descendantNr);
+					
+					if (!childNames.contains(descendant.getName())
+						&& (descMaxOccurs == NodeConstraint.UNBOUNDED || descMaxOccurs > 0)
+						&& (choice == null || !representedChoices.contains(choice))) {
 						options.add(new ManipulationAddOption(this, 
 								  							  descendant, 
 								  							  node, 
 								  							  prevChild,
 								  							  ManipulationOption.ManipulationOptionKind.ADD_CHILD));
 					}
+					
+					if (lastPositions[descendantNr] > prevChildPosition) {
+						prevChildPosition = lastPositions[descendantNr];
+						prevChild = lastChildren[descendantNr];
+					}
 				}
 			}
 		} else if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
@@ -332,10 +426,53 @@ public class Model extends Observable implements Observer {
 		return options;
 	}
 	
-	public ValidationResult getValidationResult(final Node node, final boolean deep) {
+	public synchronized ValidationResult getValidationResult(final Node node, final boolean deep) {
 		return getValidationResult(node, deep, false);
 	}
 	
+	/**
+	 * Returns what to indicate next to a node in the tree view: whether the
+	 * node or one of its descendants is invalid and which kinds of 
+	 * manipulation options the node (or one of its attributes) has.
+	 * The indicators are computed once and kept until the node, one of its
+	 * attributes or its subtree changes.
+	 * 
+	 * @param node An element of the document.
+	 * @return	   Bitmask of Indicators flags. 0 if the node is not part of 
+	 * 			   the model (anymore), e.g. if it is painted after its 
+	 * 			   removal but before the tree got notified.
+	 */
+	public synchronized int getIndicators(final Node node) {
+		if (this.treeManager.getMetaNode(node) == null) {
+			return 0;
+		}
+		
+		int indicators = this.treeManager.getIndicators(node);
+		if (indicators != Indicators.UNKNOWN) {
+			return indicators;
+		}
+		
+		indicators = 0;
+		if (node.getNodeType() == Node.ELEMENT_NODE && countErrors(node) > 0) {
+			indicators |= Indicators.ERROR;
+		}
+		for (ManipulationOption option : getManipulationOptionsFor(node)) {
+			indicators |= Indicators.of(option.getKind());
+		}
+		if (node.hasAttributes()) {
+			NamedNodeMap attrs = node.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				if (!getManipulationOptionsFor(attrs.item(attrNr)).isEmpty()) {
+					indicators |= Indicators.REMOVE_ATTRIBUTE;
+					break;
+				}
+			}
+		}
+		
+		this.treeManager.putIndicators(node, indicators);
+		return indicators;
+	}
+	
 	private ValidationResult getValidationResult(final Node node, 
 												 final boolean deep,
 											 	 final boolean force) {
@@ -343,7 +480,8 @@ public class Model extends Observable implements Observer {
 			return new ValidationResult(false);
 		}
 		
-		if (isWhitelisted(node)) {
+		if (isWhitelisted(node) || this.treeManager.getMetaNode(node) == null) {
+			// Unmapped nodes (e.g. just removed ones) have nothing to violate.
 			return new ValidationResult(true);
 		}
 		
@@ -357,6 +495,10 @@ public class Model extends Observable implements Observer {
 			validationResult = this.treeManager.getValidationResult(node);
 		}
 
+		if (deep && !force && node.getNodeType() == Node.ELEMENT_NODE) {
+			return new ValidationResult(countErrors(node) == 0);
+		}
+		
 		if (deep) {
 			boolean isValid = validationResult.isValid();
 			
@@ -385,6 +527,46 @@ public class Model extends Observable implements Observer {
 		}
 	}
 	
+	/**
+	 * Returns the number of invalid nodes (the element itself, attributes 
+	 * and descendants) in the subtree of an element, validating nodes that
+	 * were not validated yet. The count is kept by the TreeManager and 
+	 * updated there as the validity of the nodes changes, so the subtree is
+	 * only walked if it changed since the last call.
+	 * 
+	 * @param element An element.
+	 * @return		  Number of invalid nodes. 0 for unmapped elements.
+	 */
+	private int countErrors(final Node element) {
+		if (isWhitelisted(element) || this.treeManager.getMetaNode(element) == null) {
+			return 0;
+		}
+		
+		int errors = this.treeManager.getErrors(element);
+		if (errors != TreeManager.UNCOUNTED) {
+			return errors;
+		}
+		
+		getValidationResult(element, false, false);
+		errors = this.treeManager.countInvalid(element);
+		if (element.hasAttributes()) {
+			NamedNodeMap attrs = element.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				Node attr = attrs.item(attrNr);
+				getValidationResult(attr, false, false);
+				errors += this.treeManager.countInvalid(attr);
+			}
+		}
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				errors += countErrors(child);
+			}
+		}
+		
+		this.treeManager.putErrors(element, errors);
+		return errors;
+	}
+	
 	private void validate(final Node node) {
 		if (node == null) {
 			return;
@@ -399,6 +581,20 @@ public class Model extends Observable implements Observer {
 		this.treeManager.put(node, new ValidationResult(validNodeValue, this.treeManager.getRelevantRules(node)));
 	}
 
+	/**
+	 * Revalidates holders and referrers of all IDs whose holder changed
+	 * since the last call.
+	 */
+	private void revalidateChangedIDs() {
+		IDRegistry ids = this.treeManager.getIDRegistry();
+		for (String id : ids.takeChangedIDs()) {
+			validate(ids.getNodeForID(id));
+			for (Node referrer : new ArrayList<Node>(ids.getReferringNodes(id))) {
+				validate(referrer);
+			}
+		}
+	}
+
 	private List<EDLRule> validateRules(final Node node, final boolean deep) {
 		
 		List<EDLRule> violatedRules = new LinkedList<EDLRule>();
@@ -437,15 +633,17 @@ public class Model extends Observable implements Observer {
 	}
 
 	private boolean validateValue(final Node node, final boolean deep) {
-		if (isWhitelisted(node)) {
+		MetaNode metaNode = this.treeManager.getMetaNode(node);
+		if (isWhitelisted(node) || metaNode == null) {
 			return true;
 		}
 		
-		NodeConstraint constraint = this.treeManager.getMetaNode(node).getConstraint();
+		NodeConstraint constraint = metaNode.getConstraint();
 		
 		boolean isValid = true;
 		if (constraint.canHaveTextContent()) {
-			isValid = SimpleTypeValidator.getSingleton().validate(node, constraint);
+			TypedValue typedValue = this.treeManager.getTypedValue(node, XMLUtility.getNodeValue(node));
+			isValid = SimpleTypeValidator.getSingleton().validate(typedValue, node, constraint, this.treeManager.getIDRegistry());
 		}
 		
 		if (deep) {
@@ -470,12 +668,40 @@ public class Model extends Observable implements Observer {
 		return isValid;
 	}
 
-	private void checkRules(final List<EDLRule> rules) {
-		Map<EDLRule, List<Node>> rulesUsingNodes = this.edlValidator.validate(this.xmlDocument, rules);
-		
+	/**
+	 * Evaluates the given rules and updates the node-rule associations.
+	 * 
+	 * @param rules Rules to evaluate.
+	 * @return		Number of evaluated rules.
+	 */
+	private int checkRules(final List<EDLRule> rules) {
+		return associateRules(this.edlValidator.validate(this.xmlDocument, rules, this.treeManager));
+	}
+	
+	/**
+	 * Updates the node-rule associations after evaluating rules.
+	 * 
+	 * @param rulesUsingNodes Evaluated rules mapped to the nodes they refer to.
+	 * @return				  Number of evaluated rules.
+	 */
+	private int associateRules(final Map<EDLRule, List<Node>> rulesUsingNodes) {
 		for (EDLRule rule : rulesUsingNodes.keySet()) {
 			List<Node> usedNodes = rulesUsingNodes.get(rule);
 			
+			// Detach rule from nodes it does not refer to anymore.
+			List<Node> previouslyUsedNodes = this.treeManager.getUsedNodes(rule);
+			if (previouslyUsedNodes != null) {
+				for (Node previouslyUsedNode : previouslyUsedNodes) {
+					List<EDLRule> relevantRulesForNode = this.treeManager.getRelevantRules(previouslyUsedNode);
+					if (relevantRulesForNode != null
+						&& !usedNodes.contains(previouslyUsedNode)) {
+						relevantRulesForNode.remove(rule);
+					}
+					// The value of the rule may have changed.
+					this.treeManager.updateErrors(previouslyUsedNode);
+				}
+			}
+			
 			for (Node usedNode : usedNodes) {
 				List<EDLRule> relevantRulesForNode = this.treeManager.getRelevantRules(usedNode);
 				if (relevantRulesForNode == null) {
@@ -487,22 +713,35 @@ public class Model extends Observable implements Observer {
 			 			relevantRulesForNode.add(rule);
 			 		}
 			 	}
+				this.treeManager.updateErrors(usedNode);
 			}
 			
 			this.treeManager.put(rule, usedNodes);
 		}
+		
+		this.lastRuleEvaluationCount = rulesUsingNodes.size();
+		return this.lastRuleEvaluationCount;
+	}
+	
+	/**
+	 * Returns how many EDL rules were re-evaluated by the last edit
+	 * (or the initial validation if the model has not been edited yet).
+	 * 
+	 * @return Number of rules.
+	 */
+	public int getLastRuleEvaluationCount() {
+		return this.lastRuleEvaluationCount;
 	}
 	
 	public boolean isWhitelisted(final Node node) {
 		return this.treeManager.isWhitelisted(node.getNodeName());
 	}
 	
-	public TreeModel treeModel() {
-		if (this.treeModel == null) {
-//			this.treeModel = new DefaultTreeModel(this.buildTree(this.xmlDocument.getDocumentElement()));
-			this.treeModel = new DefaultTreeModel(this.treeManager.create(this.xmlDocument.getDocumentElement()));
-		}
-		
+	/**
+	 * @return Model for a JTree presenting the document's elements. 
+	 * 		   The tree nodes are the DOM elements themselves.
+	 */
+	public DOMTreeModel treeModel() {
 		return this.treeModel;
 	}
 	
@@ -512,9 +751,169 @@ public class Model extends Observable implements Observer {
 	
 	/**
 	 * Revalidates (checking XSD types and EDL rules) the whole model. 
+	 * Validates in parallel if more than one processor is available.
 	 */
 	public void revalidate() {
-		getValidationResult(this.xmlDocument.getDocumentElement(), true, true);
+		revalidate(Runtime.getRuntime().availableProcessors() > 1);
+	}
+	
+	/**
+	 * Revalidates (checking XSD types and EDL rules) the whole model.
+	 * 
+	 * @param inParallel Whether to validate on the threads of the ParallelValidator.
+	 */
+	public synchronized void revalidate(final boolean inParallel) {
+		this.treeManager.getIDRegistry().takeChangedIDs();
+		if (!inParallel) {
+			checkRules(this.edlValidator.getRules());
+			getValidationResult(this.xmlDocument.getDocumentElement(), true, true);
+			return;
+		}
+		
+		// Only this thread touches the DOM: snapshot values and resolve rule parameters...
+		List<Node> nodes = new ArrayList<Node>();
+		List<NodeConstraint> constraints = new ArrayList<NodeConstraint>();
+		List<String> values = new ArrayList<String>();
+		snapshot(this.xmlDocument.getDocumentElement(), nodes, constraints, values);
+		DocumentSnapshot snapshot = new DocumentSnapshot(nodes, constraints, values, this.treeManager.getIDRegistry());
+		
+		List<EDLRule> rules = this.edlValidator.getRules();
+		Map<EDLRule, List<Node>> rulesUsingNodes = this.edlValidator.resolve(this.xmlDocument, rules, this.treeManager);
+		
+		// ...validate on the worker threads...
+		boolean[] validValues = ParallelValidator.getSingleton().validate(snapshot, rules);
+		
+		// ...and publish all results at once.
+		associateRules(rulesUsingNodes);
+		Map<Node, ValidationResult> results = new IdentityHashMap<Node, ValidationResult>(snapshot.size());
+		for (int index = 0; index < snapshot.size(); index++) {
+			Node node = snapshot.getNode(index);
+			results.put(node, new ValidationResult(validValues[index], this.treeManager.getRelevantRules(node)));
+		}
+		this.treeManager.putAll(results);
+		
+		logger.debug("Revalidated " + snapshot.size() + " nodes and " + rules.size() + " rules in parallel.");
+	}
+	
+	private void snapshot(final Node node,
+						  final List<Node> nodes,
+						  final List<NodeConstraint> constraints,
+						  final List<String> values) {
+		if (isWhitelisted(node)) {
+			return;
+		}
+		
+		NodeConstraint constraint = this.treeManager.getMetaNode(node).getConstraint();
+		nodes.add(node);
+		constraints.add(constraint);
+		values.add(constraint.canHaveTextContent() ? XMLUtility.getNodeValue(node) : null);
+		
+		if (node.hasAttributes()) {
+			NamedNodeMap attrs = node.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				snapshot(attrs.item(attrNr), nodes, constraints, values);
+			}
+		}
+		
+		NodeList children = node.getChildNodes();
+		for (int childNr = 0; childNr < children.getLength(); childNr++) {
+			Node child = children.item(childNr);
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				snapshot(child, nodes, constraints, values);
+			}
+		}
+	}
+	
+	/**
+	 * Starts a batch of edits. Until the matching commitBatch, edits change
+	 * the document right away, but EDL rules, validation results, 
+	 * manipulation options and TreeModel events are only updated once on 
+	 * commit. Batches may be nested, only the outermost commit updates.
+	 * The edits of a batch are undone as one.
+	 */
+	public synchronized void beginBatch() {
+		this.batchDepth++;
+		beginEditGroup(true);
+	}
+	
+	/**
+	 * Ends a batch of edits (see beginBatch). Evaluates the rules affected
+	 * by any edit of the batch once, validates the added and changed nodes 
+	 * and informs the TreeModel about the changed subtrees.
+	 * 
+	 * @throws IllegalStateException If no batch is open.
+	 */
+	public synchronized void commitBatch() {
+		if (this.batchDepth == 0) {
+			throw new IllegalStateException("No batch to commit!");
+		}
+		this.batchDepth--;
+		endEditGroup();
+		if (this.batchDepth > 0) {
+			return;
+		}
+		
+		List<EDLRule> rules = new ArrayList<EDLRule>(this.batchRules);
+		List<Node> nodes = new ArrayList<Node>(this.batchNodes);
+		List<Node> parents = new ArrayList<Node>(this.batchParents);
+		this.batchRules.clear();
+		this.batchNodes.clear();
+		this.batchParents.clear();
+		
+		int ruleCount = checkRules(rules);
+		for (Node node : nodes) {
+			if (isAttached(node)) {
+				validate(node);
+			}
+		}
+		revalidateChangedIDs();
+		
+		Set<Node> changedParents = new HashSet<Node>();
+		for (Node parent : parents) {
+			if (isAttached(parent)) {
+				this.treeManager.invalidateOptionsBelow(parent);
+				changedParents.add(parent);
+			}
+		}
+		for (Node parent : changedParents) {
+			// Events for the outermost changed elements cover their descendants.
+			if (!hasAncestorIn(parent, changedParents)) {
+				this.treeModel.nodeStructureChanged(parent);
+			}
+		}
+		for (Node node : nodes) {
+			Node presented = (node.getNodeType() == Node.ATTRIBUTE_NODE) ? ((Attr) node).getOwnerElement() : node;
+			if (isAttached(node) 
+				&& !changedParents.contains(presented)
+				&& !hasAncestorIn(presented, changedParents)) {
+				this.treeModel.nodeChanged(presented);
+			}
+		}
+		
+		logger.info("Committed " + nodes.size() + " changed nodes (re-evaluated " + ruleCount + " rules).");
+	}
+	
+	private boolean isBatching() {
+		return this.batchDepth > 0;
+	}
+	
+	/**
+	 * @return True if node (or the owner element of an attribute) is part of the document.
+	 */
+	private boolean isAttached(final Node node) {
+		Node current = (node.getNodeType() == Node.ATTRIBUTE_NODE) ? ((Attr) node).getOwnerElement() : node;
+		while (current != null && current != this.xmlDocument) {
+			current = current.getParentNode();
+		}
+		return current == this.xmlDocument;
+	}
+	private static boolean hasAncestorIn(final Node node, final Set<Node> ancestors) {
+		for (Node current = node.getParentNode(); current != null; current = current.getParentNode()) {
+			if (ancestors.contains(current)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -532,89 +931,52 @@ public class Model extends Observable implements Observer {
 		
 //		Node newXMLNode = buildXMLTree(metaNode, true).get(0);
 		Node newXMLNode = this.treeManager.create(metaNode);
-		DefaultMutableTreeNode newTreeNode = this.treeManager.create(newXMLNode);
-		DefaultMutableTreeNode treeParent = this.treeManager.getTreeNode(xmlParent);
-		DefaultMutableTreeNode treePrevSibling = null; 
-		
-		int insertionIndex = 0;
-		if (xmlPrevSibling != null) {
-			treePrevSibling = this.treeManager.getTreeNode(xmlPrevSibling);
-			xmlParent.insertBefore(newXMLNode, 
-					   			   xmlPrevSibling.getNextSibling());
-			
-			insertionIndex = treeParent.getIndex(treePrevSibling) + 1;
-		} else {
-//			xmlParent.insertBefore(newXMLNode, 
-//								   null);
-//			
-//			insertionIndex = treeParent.getChildCount();
-//			// If there are no children yet, insert at index 0.
-//			// Else append at the end of child list, hence childCount - 1.
-//			if (insertionIndex > 0) {
-//				insertionIndex--;
-//			}
-			xmlParent.insertBefore(newXMLNode, xmlParent.getFirstChild());
-		}
-		
-		this.treeModel.insertNodeInto(newTreeNode, 
-						  			  treeParent, 
-						  			  insertionIndex);
-		
-		this.treeManager.invalidateOptions(xmlParent);
+		Node nextSibling = (xmlPrevSibling != null) 
+						   ? xmlPrevSibling.getNextSibling() 
+						   : xmlParent.getFirstChild();
 		
-		checkRules(this.edlValidator.getRulesMissingParameters(this.treeManager.getRulesUsingNodes()));
-		validate(newXMLNode);
-		
-		logger.info("Added " + newXMLNode.getNodeName() + " to " + xmlParent.getNodeName() + ".");
+		attachNode(newXMLNode, xmlParent, nextSibling, null);
+		recordEdit(new StructuralEdit(newXMLNode, xmlParent, nextSibling, metaNode, true));
 	}
 	
 	synchronized void removeNode(final Node xmlNode) {
-
-		Node parent = null;
+		Node parent;
+		Node nextSibling;
 		if (xmlNode.getNodeType() == Node.ATTRIBUTE_NODE) {
-			Attr attr = (Attr) xmlNode;
-			Element ownerElem = attr.getOwnerElement();
-			ownerElem.removeAttributeNode(attr);
-			parent = ownerElem;
+			parent = ((Attr) xmlNode).getOwnerElement();
+			nextSibling = null;
 		} else {
 			parent = xmlNode.getParentNode();
-			parent.removeChild(xmlNode);
-			this.treeModel.removeNodeFromParent(this.treeManager.getTreeNode(xmlNode));
-		}
-		
-		List<EDLRule> relevantRules = this.treeManager.getRelevantRules(xmlNode);
-		if (relevantRules != null) {
-			checkRules(relevantRules);
+			nextSibling = xmlNode.getNextSibling();
 		}
+		// Needed to map the node again when the removal is undone.
+		MetaNode metaNode = this.treeManager.getMetaNode(xmlNode);
 		
-		this.treeManager.invalidateOptions(parent);
-		this.treeManager.destroy(xmlNode);
-		
-		logger.info("Removed " + xmlNode.getNodeName() + ".");
+		detachNode(xmlNode);
+		recordEdit(new StructuralEdit(xmlNode, parent, nextSibling, metaNode, false));
 	}
 	
 	synchronized void addAttributeLike(final MetaAttr metaAttr,
 									   final Element elem) {
 		Attr attr = (Attr) this.treeManager.create(metaAttr);
-		elem.setAttributeNode(attr);
-		
-		this.treeManager.invalidateOptions(elem);
 		
-		checkRules(this.edlValidator.getRulesMissingParameters(this.treeManager.getRulesUsingNodes()));
-		validate(attr);
-		
-		logger.info("Added attribute " + attr.getNodeName() + " to " + elem.getNodeName() + ".");
+		attachNode(attr, elem, null, null);
+		recordEdit(new StructuralEdit(attr, elem, null, metaAttr, true));
 	}
 	
 	synchronized void chooseAlternative(MetaNode metaReplacement,
 									    Node xmlParent,
 									    Node xmlPrevSibling,
 									    Node xmlToReplace) {
-//		removeNode(xmlToReplace);
-		addNodeLike(metaReplacement, xmlParent, xmlPrevSibling);
-		removeNode(xmlToReplace);
-		
-		this.treeManager.invalidateOptions(xmlParent);
+		// Undone as one edit.
+		beginEditGroup(false);
+		try {
+//			removeNode(xmlToReplace);
+			addNodeLike(metaReplacement, xmlParent, xmlPrevSibling);
+			removeNode(xmlToReplace);
+		} finally {
+			endEditGroup();
+		}
 	}
 	
 	
@@ -622,30 +984,13 @@ public class Model extends Observable implements Observer {
 		// TODO: use nodevalue-changer-objects!
 		NodeConstraint constraint = this.treeManager.getMetaNode(node).getConstraint();
 		if (constraint.canHaveTextContent()) {
-			// Remove old value from IDs.
-			if (constraint.hasTypeName() 
-					&& constraint.getTypeName().equals("ID")) {
-				String oldID = XMLUtility.getNodeValue(node);
-				TreeManager.removeID(oldID, node);
-				validate(TreeManager.getNodeForID(oldID));
-			}
-			
-			// Change value.
-			XMLUtility.setNodeValue(node, newValue);
-			
-			// Add new value to IDs.
-			if (constraint.hasTypeName() 
-					&& constraint.getTypeName().equals("ID")) {
-				TreeManager.putID(node);
-			}
-			
-			List<EDLRule> relevantRules = this.treeManager.getRelevantRules(node);
-			if (relevantRules != null) {
-				checkRules(relevantRules);
+			String oldValue = XMLUtility.getNodeValue(node);
+			if (oldValue == null ? newValue == null : oldValue.equals(newValue)) {
+				// Nothing changed (e.g. the caret moved in the inspector).
+				return;
 			}
-			validate(node);
-			
-			logger.info("Changed value of " + node.getNodeName() + " to " + newValue);
+			changeNodeValue(node, newValue);
+			recordEdit(new ValueEdit(node, oldValue, newValue));
 		}
 	}
 	
@@ -657,36 +1002,445 @@ public class Model extends Observable implements Observer {
 		}
 		
 		MetaNode metaNode = this.treeManager.getMetaNode(xmlToReplace);
-		Node parent = xmlToReplace.getParentNode();
 		Node importedReplacement = this.xmlDocument.importNode(xmlReplacement, true);
-		parent.replaceChild(importedReplacement, xmlToReplace);
+		if (swapNode(xmlToReplace, importedReplacement, metaNode)) {
+			recordEdit(new ReplacementEdit(xmlToReplace, importedReplacement, metaNode));
+		}
+	}
+	
+	/**
+	 * Reverts the last edit (see EditJournal). The edit is reverted through 
+	 * the same incremental paths as any other edit, e.g. undoing a value
+	 * change only re-evaluates the rules depending on that value.
+	 * 
+	 * @return False if there is no edit to undo.
+	 */
+	public synchronized boolean undo() {
+		return this.journal.undo();
+	}
+	
+	/**
+	 * Applies the last undone edit again.
+	 * 
+	 * @return False if there is no edit to redo.
+	 */
+	public synchronized boolean redo() {
+		return this.journal.redo();
+	}
+	
+	public synchronized boolean canUndo() {
+		return this.journal.canUndo();
+	}
+	
+	public synchronized boolean canRedo() {
+		return this.journal.canRedo();
+	}
+	
+	/**
+	 * Registers a listener for all changes of the document, including 
+	 * undone and redone edits.
+	 * 
+	 * @param listener The listener to add.
+	 */
+	public synchronized void addEditListener(final EditListener listener) {
+		this.editListeners.add(listener);
+	}
+	
+	public synchronized void removeEditListener(final EditListener listener) {
+		this.editListeners.remove(listener);
+	}
+	
+	/**
+	 * Inserts a node and updates rules, validation results, options and the
+	 * TreeModel.
+	 * 
+	 * @param node		  Element or attribute to insert.
+	 * @param parent	  Element to insert node into.
+	 * @param nextSibling Node to insert node before. Null to append node.
+	 * @param remap		  MetaNode to map node (and its descendants) to, if 
+	 * 					  node is not mapped yet (e.g. was removed before).
+	 * @throws IllegalStateException If node could not be mapped to remap.
+	 */
+	private void attachNode(final Node node, 
+							final Node parent, 
+							final Node nextSibling, 
+							final MetaNode remap) {
+		boolean isAttr = (node.getNodeType() == Node.ATTRIBUTE_NODE);
+		if (isAttr) {
+			((Element) parent).setAttributeNode((Attr) node);
+			if (remap != null) {
+				this.treeManager.map(node, remap);
+			}
+		} else {
+			parent.insertBefore(node, nextSibling);
+			if (remap != null
+				&& !this.treeManager.mapExisting(node, remap)) {
+				parent.removeChild(node);
+				throw new IllegalStateException("Could not map " + node.getNodeName() + " again.");
+			}
+		}
+		for (EditListener listener : this.editListeners) {
+			listener.nodeInserted(node);
+		}
 		
-		if (this.treeManager.mapExisting(importedReplacement, metaNode)) {
-			DefaultMutableTreeNode treeReplacement = this.treeManager.create(importedReplacement);
-			DefaultMutableTreeNode treeParent = this.treeManager.getTreeNode(parent);
-			
-			DefaultMutableTreeNode treeToReplace = this.treeManager.getTreeNode(xmlToReplace);
-			int insertionIndex = treeParent.getIndex(treeToReplace);
-			this.treeModel.removeNodeFromParent(treeToReplace);
+		if (isBatching()) {
+			this.batchParents.add(parent);
+			this.batchRules.addAll(this.edlValidator.getRulesAffectedBy(node));
+			this.batchNodes.add(node);
+			return;
+		}
+		
+		if (isAttr) {
+			this.treeManager.invalidateOptions(parent);
+		} else {
+			this.treeModel.nodeInserted(node);
+			this.treeManager.invalidateOptionsAround(parent, 
+													 node.getPreviousSibling(), 
+													 node.getNextSibling());
+		}
+		
+		int ruleCount = checkRules(this.edlValidator.getRulesAffectedBy(node));
+		validate(node);
+		revalidateChangedIDs();
+		
+		logger.info("Added " + (isAttr ? "attribute " : "") + node.getNodeName() 
+					+ " to " + parent.getNodeName() + " (re-evaluated " + ruleCount + " rules).");
+	}
+	
+	/**
+	 * Removes a node and updates rules, validation results, options and the
+	 * TreeModel.
+	 * 
+	 * @param xmlNode Element or attribute to remove.
+	 */
+	private void detachNode(final Node xmlNode) {
+		
+		// Look up dependent rules while the node is still attached.
+		List<EDLRule> affectedRules = this.edlValidator.getRulesAffectedBy(xmlNode);
+		for (EditListener listener : this.editListeners) {
+			listener.nodeRemoving(xmlNode);
+		}
+
+		if (isBatching()) {
+			if (xmlNode.getNodeType() == Node.ATTRIBUTE_NODE) {
+				Element ownerElem = ((Attr) xmlNode).getOwnerElement();
+				ownerElem.removeAttributeNode((Attr) xmlNode);
+				this.batchParents.add(ownerElem);
+			} else {
+				this.batchParents.add(xmlNode.getParentNode());
+				xmlNode.getParentNode().removeChild(xmlNode);
+			}
+			this.batchRules.addAll(affectedRules);
+			this.treeManager.destroy(xmlNode);
+			return;
+		}
+		
+		if (xmlNode.getNodeType() == Node.ATTRIBUTE_NODE) {
+			Attr attr = (Attr) xmlNode;
+			Element ownerElem = attr.getOwnerElement();
+			ownerElem.removeAttributeNode(attr);
+			this.treeManager.invalidateOptions(ownerElem);
+		} else {
+			Node parent = xmlNode.getParentNode();
+			Node prev = xmlNode.getPreviousSibling();
+			Node next = xmlNode.getNextSibling();
+			int index = DOMTreeModel.elementIndexOf(xmlNode);
+			parent.removeChild(xmlNode);
+			this.treeModel.nodeRemoved(parent, index, xmlNode);
+			this.treeManager.invalidateOptionsAround(parent, prev, next);
+		}
+		
+		int ruleCount = checkRules(affectedRules);
+		
+		this.treeManager.destroy(xmlNode);
+		revalidateChangedIDs();
+		
+		logger.info("Removed " + xmlNode.getNodeName() + " (re-evaluated " + ruleCount + " rules).");
+	}
+	
+	/**
+	 * Sets the value of a node and updates rules, validation results and
+	 * the TreeModel.
+	 */
+	private void changeNodeValue(final Node node, final String newValue) {
+		XMLUtility.setNodeValue(node, newValue);
+		this.treeManager.invalidateTypedValue(node);
+		this.treeManager.updateIDs(node);
+		for (EditListener listener : this.editListeners) {
+			listener.nodeValueChanged(node);
+		}
+		
+		if (isBatching()) {
+			this.batchRules.addAll(this.edlValidator.getRulesAffectedBy(node));
+			this.batchNodes.add(node);
+			return;
+		}
+		
+		int ruleCount = checkRules(this.edlValidator.getRulesAffectedBy(node));
+		validate(node);
+		revalidateChangedIDs();
+		
+		if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+			this.treeModel.nodeChanged(((Attr) node).getOwnerElement());
+		} else {
+			this.treeModel.nodeChanged(node);
+		}
+		
+		logger.info("Changed value of " + node.getNodeName() + " to " + newValue 
+					+ " (re-evaluated " + ruleCount + " rules).");
+	}
+	
+	/**
+	 * Replaces an element by another element of the document and updates
+	 * rules, validation results, options and the TreeModel.
+	 * 
+	 * @param xmlToReplace The element to replace.
+	 * @param replacement  The element to replace it with. Not attached.
+	 * @param metaNode	   MetaNode of xmlToReplace, replacement is mapped to.
+	 * @return			   False if replacement could not be mapped to 
+	 * 					   metaNode (then xmlToReplace is kept).
+	 */
+	private boolean swapNode(final Node xmlToReplace, 
+							 final Node replacement, 
+							 final MetaNode metaNode) {
+		Node parent = xmlToReplace.getParentNode();
+		int index = DOMTreeModel.elementIndexOf(xmlToReplace);
+		parent.replaceChild(replacement, xmlToReplace);
+		
+		if (this.treeManager.mapExisting(replacement, metaNode)) {
+			for (EditListener listener : this.editListeners) {
+				listener.nodeReplaced(replacement);
+			}
 			
-			List<EDLRule> relevantRules = this.treeManager.getRelevantRules(xmlToReplace);
-			if (relevantRules != null) {
-				checkRules(relevantRules);
+			if (isBatching()) {
+				this.batchParents.add(parent);
+				this.treeManager.destroy(xmlToReplace);
+				this.batchRules.addAll(this.edlValidator.getRulesAffectedBy(replacement));
+				this.batchNodes.add(replacement);
+				return true;
 			}
 			
-			this.treeManager.invalidateOptions(parent);
+			this.treeModel.nodeReplaced(index, xmlToReplace, replacement);
+			
+			this.treeManager.invalidateOptionsAround(parent, 
+													 replacement.getPreviousSibling(), 
+													 replacement.getNextSibling());
 			this.treeManager.destroy(xmlToReplace);
 			
-			checkRules(this.edlValidator.getRulesMissingParameters(this.treeManager.getRulesUsingNodes()));
-			validate(importedReplacement);
+			// The replacement sits at the same path as the replaced node.
+			int ruleCount = checkRules(this.edlValidator.getRulesAffectedBy(replacement));
+			validate(replacement);
+			revalidateChangedIDs();
 			
-			this.treeModel.insertNodeInto(treeReplacement, 
-  					  					  treeParent, 
-  					  					  insertionIndex);
+			logger.info("Replaced " + replacement.getNodeName() 
+						+ " (re-evaluated " + ruleCount + " rules).");
+			return true;
 			
 		} else {
 			// Revert replacing process.
-			parent.replaceChild(xmlToReplace, importedReplacement);
+			parent.replaceChild(xmlToReplace, replacement);
+			return false;
+		}
+	}
+	
+	/**
+	 * Records an edit in the journal, or in the open edit group.
+	 */
+	private void recordEdit(final EditJournal.Edit edit) {
+		if (this.editGroup != null) {
+			this.editGroup.edits.add(edit);
+		} else {
+			this.journal.record(edit);
+		}
+	}
+	/**
+	 * Starts recording the following edits as one edit (groups may be nested).
+	 * 
+	 * @param batched True if the group is replayed as batch (see beginBatch).
+	 */
+	private void beginEditGroup(final boolean batched) {
+		if (this.editGroupDepth++ == 0) {
+			this.editGroup = new EditGroup(batched);
+		}
+	}
+	private void endEditGroup() {
+		if (--this.editGroupDepth == 0) {
+			EditGroup group = this.editGroup;
+			this.editGroup = null;
+			if (!group.edits.isEmpty()) {
+				this.journal.record(group);
+			}
+		}
+	}
+	
+	/**
+	 * Insertion or removal of an element or attribute. Refers to the node
+	 * itself, so a removed subtree is kept (and not copied) for undo.
+	 */
+	private final class StructuralEdit implements EditJournal.Edit {
+		private final Node node;
+		private final Node parent;
+		private final Node nextSibling;
+		private final MetaNode metaNode;
+		private final boolean inserted;
+		private final long size;
+		
+		StructuralEdit(final Node node, 
+					   final Node parent, 
+					   final Node nextSibling, 
+					   final MetaNode metaNode, 
+					   final boolean inserted) {
+			this.node = node;
+			this.parent = parent;
+			this.nextSibling = nextSibling;
+			this.metaNode = metaNode;
+			this.inserted = inserted;
+			this.size = EditJournal.sizeOf(node);
+		}
+		
+		@Override
+		public void undo() {
+			if (this.inserted) {
+				detachNode(this.node);
+			} else {
+				attachNode(this.node, this.parent, this.nextSibling, this.metaNode);
+			}
+		}
+		
+		@Override
+		public void redo() {
+			if (this.inserted) {
+				attachNode(this.node, this.parent, this.nextSibling, this.metaNode);
+			} else {
+				detachNode(this.node);
+			}
+		}
+		
+		@Override
+		public long getSize() {
+			return this.size;
+		}
+	}
+	
+	/**
+	 * Change of a node's value. Holds only the two values, so undoing it
+	 * costs no more than the change itself.
+	 */
+	private final class ValueEdit implements EditJournal.Edit {
+		private final Node node;
+		private final String oldValue;
+		private final String newValue;
+		
+		ValueEdit(final Node node, final String oldValue, final String newValue) {
+			this.node = node;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+		
+		@Override
+		public void undo() {
+			changeNodeValue(this.node, this.oldValue);
+		}
+		
+		@Override
+		public void redo() {
+			changeNodeValue(this.node, this.newValue);
+		}
+		
+		@Override
+		public long getSize() {
+			return EditJournal.OVERHEAD 
+				   + 2 * (((this.oldValue == null) ? 0 : this.oldValue.length()) 
+					 	  + ((this.newValue == null) ? 0 : this.newValue.length()));
+		}
+	}
+	
+	/**
+	 * Replacement of an element (see replace).
+	 */
+	private final class ReplacementEdit implements EditJournal.Edit {
+		private final Node replaced;
+		private final Node replacement;
+		private final MetaNode metaNode;
+		private final long size;
+		
+		ReplacementEdit(final Node replaced, final Node replacement, final MetaNode metaNode) {
+			this.replaced = replaced;
+			this.replacement = replacement;
+			this.metaNode = metaNode;
+			this.size = EditJournal.sizeOf(replaced) + EditJournal.sizeOf(replacement);
+		}
+		
+		@Override
+		public void undo() {
+			if (!swapNode(this.replacement, this.replaced, this.metaNode)) {
+				throw new IllegalStateException("Could not map " + this.replaced.getNodeName() + " again.");
+			}
+		}
+		
+		@Override
+		public void redo() {
+			if (!swapNode(this.replaced, this.replacement, this.metaNode)) {
+				throw new IllegalStateException("Could not map " + this.replacement.getNodeName() + " again.");
+			}
+		}
+		
+		@Override
+		public long getSize() {
+			return this.size;
+		}
+	}
+	
+	/**
+	 * Edits that are undone and redone as one, e.g. the edits of a batch.
+	 */
+	private final class EditGroup implements EditJournal.Edit {
+		private final List<EditJournal.Edit> edits = new ArrayList<EditJournal.Edit>();
+		private final boolean batched;
+		
+		EditGroup(final boolean batched) {
+			this.batched = batched;
+		}
+		
+		@Override
+		public void undo() {
+			if (this.batched) {
+				beginBatch();
+			}
+			try {
+				for (int editNr = this.edits.size() - 1; editNr >= 0; editNr--) {
+					this.edits.get(editNr).undo();
+				}
+			} finally {
+				if (this.batched) {
+					commitBatch();
+				}
+			}
+		}
+		
+		@Override
+		public void redo() {
+			if (this.batched) {
+				beginBatch();
+			}
+			try {
+				for (EditJournal.Edit edit : this.edits) {
+					edit.redo();
+				}
+			} finally {
+				if (this.batched) {
+					commitBatch();
+				}
+			}
+		}
+		
+		@Override
+		public long getSize() {
+			long size = 0;
+			for (EditJournal.Edit edit : this.edits) {
+				size += edit.getSize();
+			}
+			return size;
 		}
 	}
 	
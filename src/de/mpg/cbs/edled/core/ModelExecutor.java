@@ -0,0 +1,226 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.swing.SwingUtilities;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs all work on the model (edits and their validation) on a single
+ * model thread, one task after the other, so the event dispatch thread is
+ * never blocked by it.
+ *
+ * Tasks are run in the order they were submitted. A task submitted with a
+ * key replaces the last queued task if that has the same key and has not
+ * been started yet, so edits made faster than they are validated (e.g.
+ * keystrokes in a text field) are coalesced into one. Tasks queued in
+ * between (e.g. an undo) are never overtaken.
+ *
+ * The results of the tasks (or their failures) are handed to the event
+ * dispatch thread (see ModelTask.done and ModelTask.failed).
+ *
+ * @author Oliver Z.
+ */
+public final class ModelExecutor {
+	
+	/** */
+	private static final Logger logger = Logger.getLogger(ModelExecutor.class);
+	
+	/** Executor running its tasks on the event dispatch thread. */
+	public static final Executor EDT = new Executor() {
+		@Override
+		public void execute(final Runnable command) {
+			SwingUtilities.invokeLater(command);
+		}
+	};
+	
+	/** Queued task (and the key it was submitted with). */
+	private static final class Entry {
+		private final Object key;
+		private ModelTask<?> task;
+		
+		private Entry(final Object key, final ModelTask<?> task) {
+			this.key = key;
+			this.task = task;
+		}
+	}
+	
+	/** Runs the done part of the tasks. */
+	private final Executor publisher;
+	/** Tasks not started yet, oldest first. */
+	private final LinkedList<Entry> queue = new LinkedList<Entry>();
+	/** Queued entries by key. */
+	private final Map<Object, Entry> pending = new IdentityHashMap<Object, Entry>();
+	/** Number of entries queued so far. */
+	private long queued = 0;
+	/** Number of entries run so far. */
+	private long finished = 0;
+	/** The model thread. */
+	private final Thread thread;
+	/** True once the model thread stopped. */
+	private boolean stopped = false;
+	
+	/**
+	 * Creates an executor publishing the task results on the event
+	 * dispatch thread.
+	 */
+	public ModelExecutor() {
+		this(EDT);
+	}
+	
+	/**
+	 * @param publisher Runs the done part of the tasks.
+	 */
+	public ModelExecutor(final Executor publisher) {
+		this.publisher = publisher;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "Model");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	
+	/**
+	 * Queues a task.
+	 *
+	 * @param task The task to run on the model thread.
+	 */
+	public void execute(final ModelTask<?> task) {
+		coalesce(null, task);
+	}
+	
+	/**
+	 * Queues a task, replacing the last queued (not yet started) task if it
+	 * has the same key.
+	 *
+	 * @param key  Identifies the tasks that supersede each other (compared
+	 * 			   by identity), e.g. the node whose value is set. No task
+	 * 			   is replaced if null.
+	 * @param task The task to run on the model thread.
+	 */
+	public synchronized void coalesce(final Object key, final ModelTask<?> task) {
+		if (task == null) {
+			throw new IllegalArgumentException("No task to run!");
+		}
+		
+		Entry entry = (key != null) ? this.pending.get(key) : null;
+		if (entry != null && entry == this.queue.peekLast()) {
+			entry.task = task;
+			return;
+		}
+		
+		entry = new Entry(key, task);
+		this.queue.addLast(entry);
+		if (key != null) {
+			this.pending.put(key, entry);
+		}
+		this.queued++;
+		notifyAll();
+	}
+	
+	/**
+	 * Waits until all tasks queued so far have been run, e.g. before the
+	 * document is saved.
+	 *
+	 * @throws IllegalStateException If the model thread stopped, so the
+	 * 								 tasks will never be run.
+	 */
+	public void flush() {
+		if (isModelThread()) {
+			throw new IllegalStateException("Cannot wait for the model thread on the model thread!");
+		}
+		
+		synchronized (this) {
+			long target = this.queued;
+			boolean interrupted = false;
+			while (this.finished < target) {
+				if (this.stopped) {
+					throw new IllegalStateException("The model thread stopped!");
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * @return True if called on the model thread.
+	 */
+	public boolean isModelThread() {
+		return Thread.currentThread() == this.thread;
+	}
+	
+	private void work() {
+		try {
+			while (true) {
+				Entry entry;
+				synchronized (this) {
+					while (this.queue.isEmpty()) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					entry = this.queue.removeFirst();
+					if (entry.key != null && this.pending.get(entry.key) == entry) {
+						this.pending.remove(entry.key);
+					}
+				}
+				
+				try {
+					run(entry.task);
+				} finally {
+					synchronized (this) {
+						this.finished++;
+						notifyAll();
+					}
+				}
+			}
+		} finally {
+			synchronized (this) {
+				this.stopped = true;
+				notifyAll();
+			}
+			logger.warn("Model thread stopped.");
+		}
+	}
+	
+	private <T> void run(final ModelTask<T> task) {
+		final T result;
+		try {
+			result = task.run();
+		} catch (final Throwable t) {
+			// Also errors (e.g. StackOverflowError on a deep document) must
+			// not stop the model thread, or flush would block forever.
+			logger.error("Model task failed.", t);
+			this.publisher.execute(new Runnable() {
+				@Override
+				public void run() {
+					task.failed(t);
+				}
+			});
+			return;
+		}
+		
+		this.publisher.execute(new Runnable() {
+			@Override
+			public void run() {
+				task.done(result);
+			}
+		});
+	}
+}
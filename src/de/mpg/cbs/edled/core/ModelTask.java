@@ -0,0 +1,42 @@
+package de.mpg.cbs.edled.core;
+
+/**
+ * Work on the model that is run by a ModelExecutor.
+ *
+ * Like a SwingWorker, the task runs its model part on the model thread and
+ * hands the result to done (or its failure to failed), which runs on the
+ * event dispatch thread afterwards and may update the GUI.
+ *
+ * @param <T> Type of the result handed from run to done.
+ *
+ * @author Oliver Z.
+ */
+public abstract class ModelTask<T> {
+	
+	/**
+	 * Runs on the model thread.
+	 *
+	 * @return Result handed to done.
+	 */
+	protected abstract T run();
+	
+	/**
+	 * Runs on the event dispatch thread after run returned. Not called if
+	 * run threw an exception (see failed) or the task was replaced by a
+	 * later one (see ModelExecutor.coalesce).
+	 *
+	 * @param result The result of run.
+	 */
+	protected void done(final T result) {
+	}
+	
+	/**
+	 * Runs on the event dispatch thread instead of done if run threw an
+	 * exception (or error), e.g. to show the model's state again after an
+	 * edit that was applied partially or not at all.
+	 *
+	 * @param failure What run threw (already logged).
+	 */
+	protected void failed(final Throwable failure) {
+	}
+}
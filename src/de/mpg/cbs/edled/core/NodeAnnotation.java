@@ -0,0 +1,42 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.List;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode;
+import de.mpg.cbs.edled.core.validation.EDLRule;
+import de.mpg.cbs.edled.core.validation.TypedValue;
+import de.mpg.cbs.edled.core.validation.ValidationResult;
+
+/**
+ * Everything the TreeManager knows about a single DOM node.
+ * 
+ * Keeping all per-node information in one record means a single lookup
+ * per node instead of one lookup per aspect.
+ * 
+ * @author Oliver Z.
+ */
+final class NodeAnnotation {
+	
+	/** The meta node the DOM node is mapped to. */
+	MetaNode metaNode = null;
+	/** Cached manipulation options. Null if not cached. */
+	List<ManipulationOption> options = null;
+	/** Cached validation result. Null if not cached. */
+	ValidationResult validationResult = null;
+	/** EDL rules using the DOM node as a parameter. */
+	List<EDLRule> relevantRules = null;
+	/** Position of the node in the loaded file. Null if unknown. */
+	SourceLocation sourceLocation = null;
+	/** The parsed value of the node. Null if not parsed yet. */
+	TypedValue typedValue = null;
+	/** What the tree view indicates next to the node (see Indicators). */
+	int indicators = Indicators.UNKNOWN;
+	/** 
+	 * Invalid nodes in the subtree of the (element) node: itself, its 
+	 * attributes and its descendants. TreeManager.UNCOUNTED if not counted.
+	 */
+	int errors = TreeManager.UNCOUNTED;
+	/** Whether the node was invalid when its validity was counted last. */
+	boolean invalid = false;
+	
+}
@@ -0,0 +1,259 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.validation.Schema;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.sun.xml.xsom.XSSchemaSet;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode;
+import de.mpg.cbs.edled.core.metatree.MetaTreeBuilder;
+import de.mpg.cbs.edled.core.metatree.MetaTreeSnapshot;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+/**
+ * Process wide cache of parsed XML schemas.
+ *
+ * Parsing the EDL XSD with XSOM, compiling it for validation and building the
+ * meta tree are by far the most expensive steps of opening a document.
+ * The cache keeps these results per XSD file so that only the first document
+ * of a session pays for them.
+ * An entry is reused as long as the file's modification time and length are
+ * unchanged. If they changed, the content checksum decides whether the schema
+ * has to be parsed again.
+ *
+ * If a snapshot directory is set, built meta trees and the XSD validation
+ * result are additionally stored there (see MetaTreeSnapshot), keyed by the
+ * XSD checksum. A later session can then open documents without parsing
+ * the XSD with XSOM at all.
+ *
+ * @author Oliver Z.
+ */
+public class SchemaCache {
+
+	private static final Logger logger = Logger.getLogger(SchemaCache.class);
+
+	private static final SchemaCache singleton = new SchemaCache();
+
+	/** Cached schemas identified by the canonical path of their XSD file. */
+	private final Map<String, CachedSchema> entries = new HashMap<String, CachedSchema>();
+	/** Directory for meta tree snapshots. Null if snapshots are disabled. */
+	private File snapshotDirectory = null;
+
+	public static SchemaCache getSingleton() {
+		return SchemaCache.singleton;
+	}
+
+	/**
+	 * Enables persistent meta tree snapshots.
+	 * 
+	 * @param directory Directory the snapshot files are written to. 
+	 * 					Null disables snapshots.
+	 */
+	public synchronized void setSnapshotDirectory(final File directory) {
+		this.snapshotDirectory = directory;
+	}
+
+	/**
+	 * Returns the cached schema for a XSD file, parsing it if it is not
+	 * cached yet or its content changed since it was cached.
+	 *
+	 * @param xsdFile The XSD file.
+	 * @return		  Cached schema (also usable as MetaTreeBuilder).
+	 */
+	public synchronized CachedSchema get(final File xsdFile) {
+		String key = canonicalPathOf(xsdFile);
+		long lastModified = xsdFile.lastModified();
+		long length = xsdFile.length();
+
+		CachedSchema entry = this.entries.get(key);
+		if (entry != null) {
+			if (entry.lastModified == lastModified && entry.length == length) {
+				logger.debug("Reusing cached schema " + key);
+				return entry;
+			}
+
+			long checksum = checksumOf(xsdFile);
+			if (checksum != 0 && entry.checksum == checksum) {
+				logger.debug("Reusing cached schema " + key + " (touched but unchanged).");
+				entry.lastModified = lastModified;
+				entry.length = length;
+				return entry;
+			}
+
+			logger.info("XSD " + key + " changed, discarding cached schema.");
+		}
+
+		long checksum = checksumOf(xsdFile);
+		File snapshotFile = null;
+		if (this.snapshotDirectory != null) {
+			snapshotFile = new File(this.snapshotDirectory, 
+									"metatree_" + Long.toHexString(checksum) + ".bin");
+		}
+		entry = new CachedSchema(xsdFile, lastModified, length, checksum, snapshotFile);
+		this.entries.put(key, entry);
+
+		return entry;
+	}
+
+	/**
+	 * Drops all cached schemas.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+	}
+
+	private static String canonicalPathOf(final File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private static long checksumOf(final File file) {
+		try {
+			return FileUtils.checksumCRC32(file);
+		} catch (IOException e) {
+			logger.warn("Could not compute checksum of " + file.getPath(), e);
+			return 0;
+		}
+	}
+
+	/**
+	 * A parsed XSD: the XSOM schema set, the compiled validation schema and
+	 * the meta trees built from it so far. The XSOM schema set is only parsed
+	 * if a meta tree is neither in memory nor in the snapshot.
+	 *
+	 * Meta trees are built once per document element name and shared by all
+	 * models created from this entry. They are never modified after being built.
+	 */
+	public static class CachedSchema implements MetaTreeBuilder {
+
+		private final File xsdFile;
+		private final long checksum;
+		private long lastModified;
+		private long length;
+
+		private XSOMMetaTreeBuilder builder = null;
+		private Schema schema = null;
+		private boolean schemaLoaded = false;
+		private final Map<String, MetaNode> metaTrees = new HashMap<String, MetaNode>();
+		
+		/** File of the persistent snapshot. Null if snapshots are disabled. */
+		private final File snapshotFile;
+		private MetaTreeSnapshot snapshot = null;
+
+		private CachedSchema(final File xsdFile,
+							 final long lastModified,
+							 final long length,
+							 final long checksum,
+							 final File snapshotFile) {
+			this.xsdFile = xsdFile;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.checksum = checksum;
+			this.snapshotFile = snapshotFile;
+		}
+
+		public File getFile() {
+			return this.xsdFile;
+		}
+
+		public long getChecksum() {
+			return this.checksum;
+		}
+
+		/**
+		 * @return The XSOM schema set, parsed on first access.
+		 */
+		public synchronized XSSchemaSet getSchemaSet() {
+			return builder().getSchemaSet();
+		}
+
+		/**
+		 * @return The schema for validating documents (compiled on first access).
+		 * 		   Null if the XSD could not be loaded.
+		 */
+		public synchronized Schema getSchema() {
+			if (!this.schemaLoaded) {
+				this.schema = XMLUtility.loadSchema(this.xsdFile);
+				this.schemaLoaded = true;
+			}
+
+			return this.schema;
+		}
+
+		/**
+		 * @return True/false if the XSD is known to be a valid/invalid XML schema
+		 * 		   from an earlier validation. Null if it was not validated yet.
+		 */
+		public synchronized Boolean getXSDValidity() {
+			return snapshot().getXSDValidity();
+		}
+		
+		/**
+		 * Remembers the result of validating the XSD (persistently if snapshots are enabled).
+		 */
+		public synchronized void setXSDValidity(final boolean valid) {
+			snapshot().setXSDValidity(valid);
+			writeSnapshot();
+		}
+
+		/**
+		 * Returns the shared meta tree for an element, building it on first request.
+		 */
+		@Override
+		public synchronized MetaNode buildMetaXMLTree(final String elemName) {
+			MetaNode metaTree = this.metaTrees.get(elemName);
+			if (metaTree == null) {
+				metaTree = snapshot().getMetaTree(elemName);
+				if (metaTree == null) {
+					metaTree = builder().buildMetaXMLTree(elemName);
+					snapshot().putMetaTree(elemName, metaTree);
+					writeSnapshot();
+				} else {
+					logger.info("Using meta tree snapshot of " + elemName + ".");
+				}
+				this.metaTrees.put(elemName, metaTree);
+			}
+
+			return metaTree;
+		}
+		
+		private MetaTreeSnapshot snapshot() {
+			if (this.snapshot == null) {
+				if (this.snapshotFile != null) {
+					this.snapshot = MetaTreeSnapshot.read(this.snapshotFile, this.checksum);
+				}
+				if (this.snapshot == null) {
+					this.snapshot = new MetaTreeSnapshot(this.checksum);
+				}
+			}
+			
+			return this.snapshot;
+		}
+		
+		private void writeSnapshot() {
+			if (this.snapshotFile != null && this.checksum != 0) {
+				if (!this.snapshot.write(this.snapshotFile)) {
+					logger.warn("Could not write meta tree snapshot " + this.snapshotFile.getPath());
+				}
+			}
+		}
+
+		private XSOMMetaTreeBuilder builder() {
+			if (this.builder == null) {
+				this.builder = new XSOMMetaTreeBuilder(this.xsdFile);
+			}
+
+			return this.builder;
+		}
+	}
+}
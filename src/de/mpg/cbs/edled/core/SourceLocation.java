@@ -0,0 +1,35 @@
+package de.mpg.cbs.edled.core;
+
+/**
+ * Position of a node in the file its document was loaded from.
+ * For elements this is the end of the start tag (as reported by the
+ * StAX parser), attributes share the position of their element.
+ * 
+ * @author Oliver Z.
+ */
+public final class SourceLocation {
+	
+	private final int line;
+	private final int column;
+	
+	/**
+	 * @param line	 Line number (starting at 1).
+	 * @param column Column number (starting at 1).
+	 */
+	public SourceLocation(final int line, final int column) {
+		this.line = line;
+		this.column = column;
+	}
+	
+	public int getLine() {
+		return this.line;
+	}
+	public int getColumn() {
+		return this.column;
+	}
+	
+	@Override
+	public String toString() {
+		return this.line + ":" + this.column;
+	}
+}
@@ -0,0 +1,617 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode;
+import de.mpg.cbs.edled.core.metatree.MetaTreeBuilder;
+import de.mpg.cbs.edled.core.metatree.NodeConstraint;
+import de.mpg.cbs.edled.core.metatree.TypeRestriction;
+import de.mpg.cbs.edled.core.metatree.MetaNode.MetaXMLNodeKind;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+
+/**
+ * Loads EDL documents in a single pass over a StAX stream.
+ *
+ * While the DOM is built, each element is mapped to its MetaNode, its
+ * attributes and text are normalized and completed with default values
+ * like the schema validating parser does, IDs and ID references are
+ * registered and the line/column of each element is recorded
+ * (see Model.getSourceLocation).
+ * The structure of an element is checked against its meta node as soon
+ * as its end tag is read, following the same rules as TreeManager.mapExisting.
+ *
+ * Documents the single pass cannot decide on (malformed XML, unknown elements
+ * or attributes, elements that would have to be mapped differently than their
+ * first matching meta node, DTDs, CDATA sections, comments inside text content)
+ * are rejected with null, so the caller can fall back to
+ * XMLUtility.loadDocument and Model(Document, ...).
+ *
+ * @author Oliver Z.
+ */
+public class StreamingDocumentLoader {
+
+	private static final Logger logger = Logger.getLogger(StreamingDocumentLoader.class);
+
+	/** Built-in types whose values keep their whitespace. */
+	private static final Set<String> PRESERVING_TYPES = new HashSet<String>(Arrays.asList(
+			"string", "anySimpleType", "anyType"));
+	/** Built-in types whose values are collapsed (all others but normalizedString). */
+	private static final Set<String> COLLAPSING_TYPES = new HashSet<String>(Arrays.asList(
+			"token", "language", "Name", "NCName", "NMTOKEN", "NMTOKENS",
+			"ID", "IDREF", "IDREFS", "ENTITY", "ENTITIES", "QName", "NOTATION",
+			"boolean", "decimal", "integer", "int", "long", "short", "byte",
+			"nonNegativeInteger", "positiveInteger", "nonPositiveInteger", "negativeInteger",
+			"unsignedLong", "unsignedInt", "unsignedShort", "unsignedByte", "float", "double",
+			"duration", "dateTime", "time", "date", "gYearMonth", "gYear", "gMonthDay", "gDay", "gMonth",
+			"hexBinary", "base64Binary", "anyURI"));
+
+	/** Built-in types whose default values are inserted unchanged. */
+	private static final Set<String> LEXICAL_DEFAULT_TYPES = new HashSet<String>(Arrays.asList(
+			"string", "anySimpleType", "normalizedString", "token", "language", "Name", "NCName",
+			"NMTOKEN", "NMTOKENS", "ID", "IDREF", "IDREFS", "ENTITY", "ENTITIES", "anyURI"));
+	/** Built-in integer types. */
+	private static final Set<String> INTEGER_TYPES = new HashSet<String>(Arrays.asList(
+			"integer", "int", "long", "short", "byte",
+			"nonNegativeInteger", "positiveInteger", "nonPositiveInteger", "negativeInteger",
+			"unsignedLong", "unsignedInt", "unsignedShort", "unsignedByte"));
+
+	/** StAX property of the JDK parser for reporting CDATA sections separately. */
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private static final String PRESERVE = "preserve";
+	private static final String REPLACE = "replace";
+	private static final String COLLAPSE = "collapse";
+
+	private final MetaTreeBuilder metaTreeBuilder;
+	private final XMLInputFactory inputFactory;
+
+	/** Content models of the meta nodes used so far. */
+	private final Map<MetaNode, ContentModel> contentModels = new IdentityHashMap<MetaNode, ContentModel>();
+
+	/**
+	 * @param metaTreeBuilder MetaTreeBuilder providing the meta tree of the documents.
+	 */
+	public StreamingDocumentLoader(final MetaTreeBuilder metaTreeBuilder) {
+		this.metaTreeBuilder = metaTreeBuilder;
+
+		this.inputFactory = XMLInputFactory.newInstance();
+		this.inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		this.inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		if (this.inputFactory.isPropertySupported(REPORT_CDATA)) {
+			this.inputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Loads a document and creates a model for it.
+	 *
+	 * @param file		   The EDL file.
+	 * @param edlValidator EDLRuleValidator for the model.
+	 * @return			   The model. Null if the file could not be loaded in a
+	 * 					   single pass (see class description).
+	 */
+	public Model load(final File file, final EDLRuleValidator edlValidator) {
+		InputStream instream = null;
+		try {
+			instream = new BufferedInputStream(new FileInputStream(file));
+			XMLStreamReader reader = this.inputFactory.createXMLStreamReader(file.toURI().toString(), instream);
+
+			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			TreeManager treeManager = new TreeManager(document);
+			MetaNode metaTree = read(reader, document, treeManager);
+			reader.close();
+			document.setDocumentURI(file.toURI().toString());
+
+			return new Model(document, metaTree, treeManager, edlValidator);
+		} catch (NotStreamableException e) {
+			logger.info("Cannot load " + file.getPath() + " in a single pass: " + e.getMessage());
+		} catch (XMLStreamException e) {
+			logger.info("Cannot load " + file.getPath() + " in a single pass: " + e.getMessage());
+		} catch (IOException e) {
+			logger.info("Cannot load " + file.getPath() + " in a single pass: " + e.getMessage());
+		} catch (ParserConfigurationException e) {
+			logger.error("Could not create new XML/EDL document.", e);
+		} finally {
+			if (instream != null) {
+				try {
+					instream.close();
+				} catch (IOException e) {
+					logger.warn("Could not close " + file.getPath(), e);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Builds and maps the document.
+	 *
+	 * @return The meta tree of the document element.
+	 */
+	private MetaNode read(final XMLStreamReader reader,
+						  final Document document,
+						  final TreeManager treeManager) throws XMLStreamException, NotStreamableException {
+		MetaNode metaTree = null;
+		LinkedList<ElementFrame> stack = new LinkedList<ElementFrame>();
+
+		if (reader.standaloneSet()) {
+			document.setXmlStandalone(reader.isStandalone());
+		}
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+			ElementFrame current = stack.peek();
+
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				MetaNode metaNode = null;
+				if (current == null) {
+					metaTree = this.metaTreeBuilder.buildMetaXMLTree(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+					if (metaTree == null) {
+						throw new NotStreamableException("unknown document element " + reader.getLocalName());
+					}
+					metaNode = metaTree;
+				} else {
+					flushText(current);
+					metaNode = candidateFor(current, qualifiedName(reader.getPrefix(), reader.getLocalName()));
+				}
+
+				Element element = createElement(reader, document, metaNode, treeManager);
+				if (current == null) {
+					document.appendChild(element);
+				} else {
+					if (current.metaNode.getConstraint().canHaveTextContent()) {
+						throw new NotStreamableException("element " + element.getNodeName() + " inside text content");
+					}
+					current.element.appendChild(element);
+					current.children.add(element);
+				}
+
+				ElementFrame frame = new ElementFrame(element, metaNode);
+				stack.push(frame);
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				stack.pop();
+				finishText(current);
+				checkStructure(current);
+				treeManager.map(current.element, current.metaNode);
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				if (current != null) {
+					current.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+
+			case XMLStreamConstants.COMMENT:
+				appendMisc(current, document.createComment(reader.getText()), document);
+				break;
+
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				appendMisc(current, document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()), document);
+				break;
+
+			case XMLStreamConstants.CDATA:
+				throw new NotStreamableException("CDATA section");
+			case XMLStreamConstants.DTD:
+				throw new NotStreamableException("DTD");
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				throw new NotStreamableException("unresolved entity reference " + reader.getLocalName());
+			default:
+				break;
+			}
+		}
+
+		if (metaTree == null) {
+			throw new NotStreamableException("no document element");
+		}
+
+		return metaTree;
+	}
+
+	/**
+	 * Creates an element with its attributes (including namespace declarations
+	 * and default attributes) and maps the attributes.
+	 */
+	private Element createElement(final XMLStreamReader reader,
+								  final Document document,
+								  final MetaNode metaNode,
+								  final TreeManager treeManager) throws NotStreamableException {
+		Element element = document.createElementNS(reader.getNamespaceURI(),
+												   qualifiedName(reader.getPrefix(), reader.getLocalName()));
+		Location location = reader.getLocation();
+		SourceLocation sourceLocation = new SourceLocation(location.getLineNumber(), location.getColumnNumber());
+		treeManager.putSourceLocation(element, sourceLocation);
+
+		Map<String, MetaNode> metaAttributes = metaNode.getAttributes();
+
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			String name = (prefix == null || prefix.isEmpty()) ? XMLConstants.XMLNS_ATTRIBUTE
+															   : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+			if (!treeManager.isWhitelisted(name)) {
+				throw new NotStreamableException("unexpected namespace declaration " + name);
+			}
+			element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, reader.getNamespaceURI(i));
+		}
+
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+			String uri = reader.getAttributeNamespace(i);
+			if (uri != null && uri.isEmpty()) {
+				uri = null;
+			}
+
+			MetaNode metaAttr = metaAttributes.get(name);
+			if (metaAttr != null) {
+				String value = normalize(reader.getAttributeValue(i), metaAttr.getConstraint());
+				element.setAttributeNS(uri, name, value);
+				Attr attr = element.getAttributeNodeNS(uri, reader.getAttributeLocalName(i));
+				treeManager.putSourceLocation(attr, sourceLocation);
+				// Also registers IDs and ID references.
+				treeManager.map(attr, metaAttr);
+			} else if (treeManager.isWhitelisted(name)) {
+				element.setAttributeNS(uri, name, reader.getAttributeValue(i));
+			} else {
+				throw new NotStreamableException("unexpected attribute " + name);
+			}
+		}
+
+		// Default attributes the schema validating parser would add.
+		for (MetaNode metaAttr : metaAttributes.values()) {
+			NodeConstraint constraint = metaAttr.getConstraint();
+			String value = constraint.hasFixedValue() ? constraint.getFixedValue() : constraint.getDefaultValue();
+			if (value != null
+				&& !element.hasAttribute(metaAttr.getName())) {
+				element.setAttribute(metaAttr.getName(), value);
+				treeManager.map(element.getAttributeNode(metaAttr.getName()), metaAttr);
+			}
+		}
+
+		return element;
+	}
+
+	/**
+	 * Returns the meta node an element child has to be mapped to:
+	 * the first element descendant of the parent's meta node with the same name.
+	 */
+	private MetaNode candidateFor(final ElementFrame parent, final String name) throws NotStreamableException {
+		DescendantTable descendants = contentModelOf(parent.metaNode).getDescendantTable();
+		int index = descendants.indexOfName(name);
+		if (index < 0) {
+			throw new NotStreamableException("unexpected element " + name + " in " + parent.element.getNodeName());
+		}
+
+		return descendants.get(index);
+	}
+
+	private ContentModel contentModelOf(final MetaNode metaNode) {
+		ContentModel contentModel = this.contentModels.get(metaNode);
+		if (contentModel == null) {
+			contentModel = new ContentModel(metaNode);
+			this.contentModels.put(metaNode, contentModel);
+		}
+
+		return contentModel;
+	}
+
+	/**
+	 * Checks the element children of a completely read element against the
+	 * content model of its meta node like TreeManager.mapExisting does.
+	 */
+	private void checkStructure(final ElementFrame frame) throws NotStreamableException {
+		List<Element> children = frame.children;
+		int[] occurs = ContentModel.getOccurrences(children);
+		ContentModel contentModel = contentModelOf(frame.metaNode);
+		DescendantTable descendants = contentModel.getDescendantTable();
+
+		int state = 0;
+		int matched = -1;
+		for (int childNr = 0; childNr < children.size(); childNr++) {
+			Element child = children.get(childNr);
+
+			// Additional occurrence of the previous child.
+			if (matched >= 0) {
+				if (matches(frame, child, occurs[childNr], descendants.get(matched))) {
+					continue;
+				}
+				state = contentModel.getStateAfter(matched);
+				matched = -1;
+			}
+
+			int candidate = contentModel.getTransition(state, child.getNodeName());
+			if (candidate < 0) {
+				throw new NotStreamableException("unexpected element " + child.getNodeName()
+												 + " in " + frame.element.getNodeName());
+			}
+			matches(frame, child, occurs[childNr], descendants.get(candidate));
+			matched = candidate;
+		}
+
+		if (matched >= 0) {
+			state = contentModel.getStateAfter(matched);
+		}
+		if (!contentModel.isAccepting(state)) {
+			throw new NotStreamableException("required element missing in " + frame.element.getNodeName());
+		}
+	}
+
+	/**
+	 * @return True if child can be mapped to descendant. False if the names differ.
+	 * @throws NotStreamableException If the child would have to be mapped
+	 * 								  differently than it already is.
+	 */
+	private boolean matches(final ElementFrame parent,
+							final Element child,
+							final int occurs,
+							final MetaNode descendant) throws NotStreamableException {
+		if (!descendant.getName().equals(child.getNodeName())) {
+			return false;
+		}
+
+		if (descendant != candidateFor(parent, child.getNodeName())) {
+			throw new NotStreamableException(child.getNodeName() + " matches another declaration");
+		}
+
+		NodeConstraint constraint = descendant.getConstraint();
+		if (occurs < constraint.getMinOccurs()
+			|| (occurs > constraint.getMaxOccurs() && constraint.getMaxOccurs() != NodeConstraint.UNBOUNDED)) {
+			throw new NotStreamableException("invalid number of " + child.getNodeName()
+											 + " in " + parent.element.getNodeName());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Appends a comment or processing instruction.
+	 */
+	private static void appendMisc(final ElementFrame current,
+								   final Node node,
+								   final Document document) throws NotStreamableException {
+		if (current == null) {
+			document.appendChild(node);
+		} else {
+			if (current.metaNode.getConstraint().canHaveTextContent()) {
+				throw new NotStreamableException(node.getNodeName() + " inside text content");
+			}
+			flushText(current);
+			current.element.appendChild(node);
+		}
+	}
+
+	/**
+	 * Appends pending character data of element content. Whitespace is
+	 * dropped if the element may only contain elements.
+	 */
+	private static void flushText(final ElementFrame frame) {
+		if (frame.text.length() == 0) {
+			return;
+		}
+
+		if (!frame.isElementOnly() || !isWhitespace(frame.text)) {
+			frame.element.appendChild(frame.element.getOwnerDocument().createTextNode(frame.text.toString()));
+		}
+		frame.text.setLength(0);
+	}
+
+	/**
+	 * Completes the content of an element whose end tag was read:
+	 * text content is normalized or replaced by the default value
+	 * if the element is empty.
+	 */
+	private static void finishText(final ElementFrame frame) throws NotStreamableException {
+		NodeConstraint constraint = frame.metaNode.getConstraint();
+		if (!constraint.canHaveTextContent()) {
+			flushText(frame);
+			return;
+		}
+
+		String value = null;
+		if (frame.text.length() == 0) {
+			value = constraint.hasFixedValue() ? constraint.getFixedValue() : constraint.getDefaultValue();
+			if (value != null) {
+				value = canonical(normalize(value, constraint), constraint.getTypeName());
+			}
+		} else {
+			value = normalize(frame.text.toString(), constraint);
+		}
+
+		if (value != null && !value.isEmpty()) {
+			frame.element.appendChild(frame.element.getOwnerDocument().createTextNode(value));
+		}
+		frame.text.setLength(0);
+	}
+
+	/**
+	 * Normalizes whitespace of a value according to its type.
+	 *
+	 * @throws NotStreamableException If the whitespace handling of the type is unknown.
+	 */
+	private static String normalize(final String value, final NodeConstraint constraint) throws NotStreamableException {
+		String whiteSpace = null;
+		TypeRestriction restriction = constraint.getTypeRestriction();
+		if (restriction != null) {
+			whiteSpace = restriction.getWhiteSpace();
+		}
+		if (whiteSpace == null) {
+			String typeName = constraint.getTypeName();
+			if (typeName == null || PRESERVING_TYPES.contains(typeName)) {
+				whiteSpace = PRESERVE;
+			} else if (typeName.equals("normalizedString")) {
+				whiteSpace = REPLACE;
+			} else if (COLLAPSING_TYPES.contains(typeName)) {
+				whiteSpace = COLLAPSE;
+			} else {
+				throw new NotStreamableException("unknown whitespace handling of type " + typeName);
+			}
+		}
+
+		if (whiteSpace.equals(PRESERVE)) {
+			return value;
+		}
+
+		StringBuilder normalized = new StringBuilder(value.length());
+		boolean pendingSpace = false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			boolean space = (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+			if (whiteSpace.equals(REPLACE)) {
+				normalized.append(space ? ' ' : c);
+			} else if (space) {
+				pendingSpace = normalized.length() > 0;
+			} else {
+				if (pendingSpace) {
+					normalized.append(' ');
+					pendingSpace = false;
+				}
+				normalized.append(c);
+			}
+		}
+
+		return normalized.toString();
+	}
+
+	/**
+	 * Returns the canonical representation of a (normalized) value, which is
+	 * what the schema validating parser inserts as default content of elements.
+	 *
+	 * @throws NotStreamableException If the canonical representation of the type is not supported.
+	 */
+	private static String canonical(final String value, final String typeName) throws NotStreamableException {
+		if (typeName == null || LEXICAL_DEFAULT_TYPES.contains(typeName)) {
+			return value;
+		}
+
+		try {
+			if (INTEGER_TYPES.contains(typeName)) {
+				return new BigInteger(value).toString();
+			} else if (typeName.equals("boolean")) {
+				if (value.equals("1")) {
+					return "true";
+				} else if (value.equals("0")) {
+					return "false";
+				}
+				return value;
+			} else if (typeName.equals("double") || typeName.equals("float")) {
+				if (value.equals("INF") || value.equals("-INF") || value.equals("NaN")) {
+					return value;
+				}
+				String decimal = typeName.equals("double") ? Double.toString(Double.parseDouble(value))
+														   : Float.toString(Float.parseFloat(value));
+				BigDecimal number = new BigDecimal(decimal);
+				if (number.signum() == 0) {
+					return "0.0E1";
+				}
+				// Mantissa with a single digit before the point followed by the exponent, e.g. 2.0E1.
+				number = number.stripTrailingZeros();
+				String digits = number.unscaledValue().abs().toString();
+				int exponent = digits.length() - 1 - number.scale();
+				return ((number.signum() < 0) ? "-" : "") + digits.charAt(0) + "."
+					   + ((digits.length() > 1) ? digits.substring(1) : "0") + "E" + exponent;
+			}
+		} catch (NumberFormatException e) {
+			throw new NotStreamableException("invalid default value " + value);
+		}
+
+		throw new NotStreamableException("unknown canonical representation of type " + typeName);
+	}
+
+	private static boolean isWhitespace(final CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static String qualifiedName(final String prefix, final String localName) {
+		if (prefix == null || prefix.isEmpty()) {
+			return localName;
+		}
+
+		return prefix + ":" + localName;
+	}
+
+	/**
+	 * An element whose end tag has not been read yet.
+	 */
+	private static final class ElementFrame {
+
+		final Element element;
+		final MetaNode metaNode;
+		/** Element children read so far. */
+		final List<Element> children = new ArrayList<Element>();
+		/** Character data not yet appended. */
+		final StringBuilder text = new StringBuilder();
+
+		ElementFrame(final Element element, final MetaNode metaNode) {
+			this.element = element;
+			this.metaNode = metaNode;
+		}
+
+		/**
+		 * @return True if the element may only contain elements (whitespace is ignorable).
+		 */
+		boolean isElementOnly() {
+			if (this.metaNode.getConstraint().canHaveTextContent()) {
+				return false;
+			}
+			for (MetaNode child : this.metaNode.getChildren()) {
+				if (child.getKind() != MetaXMLNodeKind.ATTRIBUTE) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Thrown if a document cannot be loaded in a single pass.
+	 */
+	private static class NotStreamableException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		NotStreamableException(final String message) {
+			super(message);
+		}
+	}
+}
@@ -1,12 +1,12 @@
 package de.mpg.cbs.edled.core;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.swing.tree.DefaultMutableTreeNode;
-
 import org.apache.log4j.Logger;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -20,6 +20,9 @@ import de.mpg.cbs.edled.core.metatree.NodeConstraint;
 import de.mpg.cbs.edled.core.metatree.MetaNode.MetaXMLNodeKind;
 import de.mpg.cbs.edled.core.metatree.NodeConstraint.AttributeUse;
 import de.mpg.cbs.edled.core.validation.EDLRule;
+import de.mpg.cbs.edled.core.validation.NumberCache;
+import de.mpg.cbs.edled.core.validation.SimpleTypeValidator;
+import de.mpg.cbs.edled.core.validation.TypedValue;
 import de.mpg.cbs.edled.core.validation.ValidationResult;
 import de.mpg.cbs.edled.xml.XMLUtility;
 
@@ -27,39 +30,33 @@ import de.mpg.cbs.edled.xml.XMLUtility;
 
 /**
  * A TreeManager manages different tree representations of the same XML document 
- * (like the meta tree, the XML document itself or the model needed for a JTree).
+ * (like the meta tree and the XML document itself).
  * 
  * @author Oliver Z.
  */
-public class TreeManager {
+public class TreeManager implements NumberCache {
 	
 	private static final Logger LOG = Logger.getLogger(TreeManager.class);
 	
+	/** Error count of an element whose errors were not counted yet. */
+	static final int UNCOUNTED = -1;
+	
 	/** Document used for node creation. */
 	private Document xmlDocument = null;
 	
-	/** Mapping DOM nodes to the meta tree. */
-	private Map<Node, MetaNode> xmlNodeToMetaXMLNode = null;
-	/** Mapping DOM nodes to the model for the JTree. */
-	private Map<Node, DefaultMutableTreeNode> xmlNodeToTreeNode = null;
-	
-	/** Map for caching manipulation options for each node. */
-	private Map<Node, List<ManipulationOption>> manipulationOptions = null;
-	
-	/** Map for caching validation results for each node. */
-	private Map<Node, ValidationResult> validationResults = null;
-	/** Map for storing the relevant rules for each node. */
-	private Map<Node, List<EDLRule>> relevantRules = null;
+	/** 
+	 * Annotations of all managed DOM nodes: meta node, cached manipulation 
+	 * options, cached validation result and relevant rules. 
+	 */
+	private Map<Node, NodeAnnotation> annotations = null;
 	/** Map for storing the relevant nodes for each rule. */
 	private Map<EDLRule, List<Node>> rulesUsingNodes = null;
 	
-	/** 
-	 * Map for storing used IDs.
-	 * The first node in the list is the node which holds the ID.
-	 * The following nodes are candidates for the ID if the first node gets a different ID
-	 * or gets deleted.
-	 */
-	private static final Map<String, List<Node>> nodeIDs = new HashMap<String, List<Node>>();
+	/** Content models (and descendant tables) of the meta nodes used so far. */
+	private final Map<MetaNode, ContentModel> contentModels = new IdentityHashMap<MetaNode, ContentModel>();
+	
+	/** IDs and ID references of the managed document. */
+	private final IDRegistry idRegistry = new IDRegistry();
 	
 	/** Attributes that are whitelisted (meaning they will be just taken "as is" without validation). */
 	private List<String> attributeWhitelist = new LinkedList<String>();
@@ -72,19 +69,11 @@ public class TreeManager {
 	TreeManager(final Document xmlDocument) {
 		this.xmlDocument = xmlDocument;
 		
-		this.xmlNodeToMetaXMLNode = new HashMap<Node, MetaNode>();
-		this.xmlNodeToTreeNode = new HashMap<Node, DefaultMutableTreeNode>();
-		
-		this.manipulationOptions = new HashMap<Node, List<ManipulationOption>>();
-		
-		this.validationResults = new HashMap<Node, ValidationResult>();
-		this.relevantRules = new HashMap<Node, List<EDLRule>>();
+		this.annotations = new IdentityHashMap<Node, NodeAnnotation>();
 		this.rulesUsingNodes = new HashMap<EDLRule, List<Node>>();
 		
 		this.attributeWhitelist.add("xmlns:xsi");
 		this.attributeWhitelist.add("xsi:noNamespaceSchemaLocation");
-		
-		TreeManager.nodeIDs.clear();
 	}
 	
 	/**
@@ -94,16 +83,8 @@ public class TreeManager {
 	 * @return	   MetaNode for the given node. Null if it does not exist.
 	 */
 	public MetaNode getMetaNode(final Node node) {
-		return this.xmlNodeToMetaXMLNode.get(node);
-	}
-	/**
-	 * Returns the DefaultMutableTreeNode (part of the JTree model) for a given DOM node.
-	 * 
-	 * @param node A Node object.
-	 * @return	   DefaultMutableTreeNode representing the given node in the JTree model.
-	 */
-	public DefaultMutableTreeNode getTreeNode(final Node node) {
-		return this.xmlNodeToTreeNode.get(node);
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? null : annotation.metaNode;
 	}
 	/**
 	 * Returns all cached manipulation options for a DOM node.
@@ -113,11 +94,8 @@ public class TreeManager {
 	 * 			   Null if no options are cached.
 	 */
 	synchronized public List<ManipulationOption> getOptions(final Node node) {
-//		if (this.manipulationOptions.containsKey(node)) {
-			return this.manipulationOptions.get(node);
-//		} else {
-//			return null;
-//		}
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? null : annotation.options;
 	}
 	/**
 	 * Returns the cached ValidationResult for a DOM node.
@@ -127,7 +105,8 @@ public class TreeManager {
 	 * 			   Null if no ValidationResult is cached. 
 	 */
 	synchronized public ValidationResult getValidationResult(final Node node) {
-		return this.validationResults.get(node);
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? null : annotation.validationResult;
 	}
 	/**
 	 * Returns all EDL rules that a relevant for a given node (use the node
@@ -137,33 +116,242 @@ public class TreeManager {
 	 * @return	   All relevant rules for the given node. Null if none is relevant.
 	 */
 	synchronized public List<EDLRule> getRelevantRules(final Node node) {
-		return this.relevantRules.get(node);
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? null : annotation.relevantRules;
+	}
+	/**
+	 * Returns all nodes a rule referred to when it was evaluated last.
+	 * 
+	 * @param rule An EDLRule object.
+	 * @return	   Nodes used by the rule. Null if the rule was not evaluated yet.
+	 */
+	synchronized List<Node> getUsedNodes(final EDLRule rule) {
+		return this.rulesUsingNodes.get(rule);
 	}
 	synchronized public Map<EDLRule, List<Node>> getRulesUsingNodes() {
 		return new HashMap<EDLRule, List<Node>>(this.rulesUsingNodes);
 	}
-
-	public List<MetaNode> getNonCompDirectDescendants(final MetaNode metaNode) {
-		List<MetaNode> nonCompDirectDescendants = new LinkedList<MetaNode>();
+	
+	/**
+	 * @param node A node.
+	 * @return	   The cached indicators of the node (see Indicators). 
+	 * 			   Indicators.UNKNOWN if not cached.
+	 */
+	synchronized int getIndicators(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? Indicators.UNKNOWN : annotation.indicators;
+	}
+	/**
+	 * Caches the indicators of a mapped node until it changes (see 
+	 * invalidateIndicators). Ignored for unmapped nodes.
+	 * 
+	 * @param node		 A node.
+	 * @param indicators Bitmask of Indicators flags.
+	 */
+	synchronized void putIndicators(final Node node, final int indicators) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation != null) {
+			annotation.indicators = indicators;
+		}
+	}
+	
+	/**
+	 * @param element An element.
+	 * @return		  The number of invalid nodes in the subtree of the element
+	 * 				  (see putErrors). UNCOUNTED if not counted.
+	 */
+	synchronized int getErrors(final Node element) {
+		NodeAnnotation annotation = this.annotations.get(element);
+		return (annotation == null) ? UNCOUNTED : annotation.errors;
+	}
+	/**
+	 * Keeps the number of invalid nodes in the subtree of a mapped element.
+	 * The count is updated as the validity of the nodes changes (see 
+	 * updateErrors) and dropped when the subtree changes. Ignored for 
+	 * unmapped elements.
+	 * 
+	 * The errors of the child elements (and the validity of the attributes)
+	 * have to be counted before, using countInvalid.
+	 * 
+	 * @param element An element.
+	 * @param errors  Invalid nodes in the subtree of the element.
+	 */
+	synchronized void putErrors(final Node element, final int errors) {
+		NodeAnnotation annotation = this.annotations.get(element);
+		if (annotation != null) {
+			annotation.errors = errors;
+		}
+	}
+	/**
+	 * Counts the validity of a single node into the errors of its element.
+	 * 
+	 * @param node A node.
+	 * @return	   1 if the cached validation result of the node is invalid,
+	 * 			   0 otherwise (also if the node was not validated).
+	 */
+	synchronized int countInvalid(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation == null || annotation.validationResult == null) {
+			return 0;
+		}
+		annotation.invalid = !annotation.validationResult.isValid();
+		return annotation.invalid ? 1 : 0;
+	}
+	/**
+	 * Updates the error counts of the ancestors of a node whose validity may
+	 * have changed (e.g. after a rule using the node was evaluated). 
+	 * Takes O(depth) if the validity changed, O(1) otherwise.
+	 * 
+	 * @param node A node.
+	 */
+	synchronized void updateErrors(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation == null || annotation.validationResult == null) {
+			return;
+		}
 		
-		for (MetaNode child : metaNode.getChildren()) {
-			switch(child.getKind()) {
-			case ATTRIBUTE:
-				break;
-			case ELEMENT:
-				nonCompDirectDescendants.add(child);
-				break;
-			case CHOICE_COMPOSITOR:
-			case GROUP_COMPOSITOR:
-			case SEQUENCE_COMPOSITOR:
-				nonCompDirectDescendants.addAll(getNonCompDirectDescendants(child));
-				break;
-			default:
-				throw new RuntimeException("getNonCompLeaves: child has unspecified node kind!");
+		boolean invalid = !annotation.validationResult.isValid();
+		if (invalid != annotation.invalid) {
+			annotation.invalid = invalid;
+			addErrors(elementOf(node), invalid ? 1 : -1);
+			invalidateIndicators(node);
+		}
+	}
+	
+	/**
+	 * Adds to the errors of an element and its ancestors. Stops at the first
+	 * element whose errors are not counted, as its ancestors are not counted
+	 * either.
+	 */
+	private void addErrors(final Node element, final int delta) {
+		for (Node current = element; 
+			 current != null && current.getNodeType() == Node.ELEMENT_NODE; 
+			 current = current.getParentNode()) {
+			NodeAnnotation annotation = this.annotations.get(current);
+			if (annotation != null) {
+				if (annotation.errors == UNCOUNTED) {
+					return;
+				}
+				annotation.errors += delta;
+			}
+		}
+	}
+	
+	/**
+	 * Drops the error counts of the element of a node and of its ancestors,
+	 * e.g. after the subtree of the element changed.
+	 */
+	private void invalidateErrors(final Node node) {
+		for (Node current = elementOf(node); 
+			 current != null && current.getNodeType() == Node.ELEMENT_NODE; 
+			 current = current.getParentNode()) {
+			NodeAnnotation annotation = this.annotations.get(current);
+			if (annotation != null) {
+				if (annotation.errors == UNCOUNTED) {
+					return;
+				}
+				annotation.errors = UNCOUNTED;
 			}
 		}
+	}
+	
+	/**
+	 * @return The owner element of an attribute, the node itself otherwise.
+	 */
+	private static Node elementOf(final Node node) {
+		return (node.getNodeType() == Node.ATTRIBUTE_NODE) ? ((Attr) node).getOwnerElement() : node;
+	}
+	
+	/**
+	 * @param node A mapped node.
+	 * @return	   Position of the node in the file it was loaded from. 
+	 * 			   Null if unknown (e.g. the node was created by the editor).
+	 */
+	public SourceLocation getSourceLocation(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		return (annotation == null) ? null : annotation.sourceLocation;
+	}
+	
+	/**
+	 * Returns the parsed value of a node. The value is parsed only if it
+	 * changed since the last call, values of unmanaged nodes are not cached.
+	 * 
+	 * @param node  A node.
+	 * @param value The current (text) value of the node.
+	 * @return		The parsed value.
+	 */
+	synchronized public TypedValue getTypedValue(final Node node, final String value) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation == null) {
+			return SimpleTypeValidator.getSingleton().parse(value, null);
+		}
 		
-		return nonCompDirectDescendants;
+		TypedValue typedValue = annotation.typedValue;
+		if (typedValue == null || !typedValue.isValueOf(value)) {
+			NodeConstraint constraint = (annotation.metaNode == null) ? null : annotation.metaNode.getConstraint();
+			typedValue = SimpleTypeValidator.getSingleton().parse(value, constraint);
+			annotation.typedValue = typedValue;
+		}
+		return typedValue;
+	}
+	
+	/**
+	 * Drops the parsed value of a node, e.g. after the value was set.
+	 * 
+	 * @param node A node.
+	 */
+	synchronized public void invalidateTypedValue(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation != null) {
+			annotation.typedValue = null;
+		}
+	}
+	
+	/**
+	 * Returns the numeric value of a node (see getTypedValue).
+	 * 
+	 * @param node  A node.
+	 * @param value The current (text) value of the node.
+	 * @return		The value as number. NaN if it is not a number.
+	 */
+	@Override
+	public double getNumber(final Node node, final String value) {
+		return getTypedValue(node, value).getNumber();
+	}
+	
+	/**
+	 * @return The IDs and ID references of the managed document.
+	 */
+	public IDRegistry getIDRegistry() {
+		return this.idRegistry;
+	}
+
+	/**
+	 * Returns the element descendants of a meta node which are only separated
+	 * from it by compositors (sequences, choices, groups).
+	 * 
+	 * @param metaNode A meta node (usually an element).
+	 * @return		   The descendants in schema order (unmodifiable).
+	 */
+	public List<MetaNode> getNonCompDirectDescendants(final MetaNode metaNode) {
+		return getDescendantTable(metaNode).getDescendants();
+	}
+	
+	synchronized DescendantTable getDescendantTable(final MetaNode metaNode) {
+		return getContentModel(metaNode).getDescendantTable();
+	}
+	
+	/**
+	 * Returns the content model of a meta node, compiling it on first request.
+	 */
+	synchronized ContentModel getContentModel(final MetaNode metaNode) {
+		ContentModel contentModel = this.contentModels.get(metaNode);
+		if (contentModel == null) {
+			contentModel = new ContentModel(metaNode);
+			this.contentModels.put(metaNode, contentModel);
+		}
+		
+		return contentModel;
 	}
 
 	/**
@@ -178,88 +366,102 @@ public class TreeManager {
 	 * 				   or null if there was no such mapped value.
 	 */
 	private MetaNode put(final Node node, final MetaNode metaNode) {
-		NodeConstraint constraint = metaNode.getConstraint();
-		if (constraint != null) {
-			if (constraint.hasTypeName() && constraint.getTypeName().equals("ID")) {
-				TreeManager.putID(node);
-			}
-		}
+		updateIDs(node, metaNode.getConstraint());
 		
-		return this.xmlNodeToMetaXMLNode.put(node, metaNode);
+		NodeAnnotation annotation = annotate(node);
+		MetaNode previous = annotation.metaNode;
+		annotation.metaNode = metaNode;
+		if (previous != metaNode) {
+			// Parsed for another type.
+			annotation.typedValue = null;
+		}
+		return previous;
 	}
-	private DefaultMutableTreeNode put(final Node node, final DefaultMutableTreeNode treeNode) {
-		return this.xmlNodeToTreeNode.put(node, treeNode);
+	
+	/**
+	 * Maps a node whose structure has already been checked against its 
+	 * meta node (see StreamingDocumentLoader). Like put, it does not map
+	 * child elements or attributes.
+	 * 
+	 * @param node	   Node that acts as the mapping key.
+	 * @param metaNode MetaXMLNode that represents the mapped value.
+	 */
+	void map(final Node node, final MetaNode metaNode) {
+		put(node, metaNode);
 	}
 	
 	synchronized List<ManipulationOption> put(final Node node, final List<ManipulationOption> options) {
-		return this.manipulationOptions.put(node, options);
+		NodeAnnotation annotation = annotate(node);
+		List<ManipulationOption> previous = annotation.options;
+		annotation.options = options;
+		return previous;
 	}
 	synchronized ValidationResult put(final Node node, final ValidationResult validationResult) {
-		return this.validationResults.put(node, validationResult);
+		NodeAnnotation annotation = annotate(node);
+		ValidationResult previous = annotation.validationResult;
+		annotation.validationResult = validationResult;
+		updateErrors(node);
+		return previous;
 	}
-	synchronized List<EDLRule> putRelevantRules(final Node node, final List<EDLRule> relevantRules) {
-		return this.relevantRules.put(node, relevantRules);
+	/**
+	 * Puts several validation results into the manager at once.
+	 * 
+	 * @param results Nodes mapped to their new validation results.
+	 */
+	synchronized void putAll(final Map<Node, ValidationResult> results) {
+		for (Map.Entry<Node, ValidationResult> result : results.entrySet()) {
+			annotate(result.getKey()).validationResult = result.getValue();
+			updateErrors(result.getKey());
+		}
 	}
-	synchronized List<Node> put(final EDLRule rule, final List<Node> usedNodes) {
-		return this.rulesUsingNodes.put(rule, usedNodes);
+	synchronized List<EDLRule> putRelevantRules(final Node node, final List<EDLRule> relevantRules) {
+		NodeAnnotation annotation = annotate(node);
+		List<EDLRule> previous = annotation.relevantRules;
+		annotation.relevantRules = relevantRules;
+		return previous;
 	}
-	public static void putID(final Node node) {
-//		short nodeType = node.getNodeType();
-		String id = XMLUtility.getNodeValue(node);
-		if (id == null 
-				|| id.isEmpty()
-				//|| (nodeType != Node.ATTRIBUTE_NODE && nodeType != Node.ELEMENT_NODE)
-				) {
-			return;
+	
+	/**
+	 * Returns the annotation of a node, creating it if the node is not annotated yet.
+	 */
+	private NodeAnnotation annotate(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation == null) {
+			annotation = new NodeAnnotation();
+			this.annotations.put(node, annotation);
 		}
 		
-		if (TreeManager.nodeIDs.containsKey(id)) {
-			List<Node> idApplicants = TreeManager.nodeIDs.get(id);
-			if (!idApplicants.contains(node)) {
-				LOG.trace("Put ID applicant: " + id + " node: " + node.hashCode());
-				idApplicants.add(node);
-				LOG.trace(TreeManager.nodeIDs);
-			}
-		} else {
-			LOG.trace("Put ID: " + id + " node: " + node.hashCode());
-			List<Node> idQueue = new LinkedList<Node>();
-			idQueue.add(node);
-			TreeManager.nodeIDs.put(id, idQueue);
-			LOG.trace(TreeManager.nodeIDs);
-		}
+		return annotation;
 	}
-	public static void removeID(final Node node) {
-		TreeManager.removeID(XMLUtility.getNodeValue(node), node);
+	void putSourceLocation(final Node node, final SourceLocation location) {
+		annotate(node).sourceLocation = location;
 	}
-	public static void removeID(final String id, final Node node) {
-//		short nodeType = node.getNodeType();
-//		if (nodeType != Node.ATTRIBUTE_NODE && nodeType != Node.ELEMENT_NODE) {
-//			return;
-//		}
-		
-		if (TreeManager.nodeIDs.containsKey(id)) {
-			List<Node> nodesWithID = TreeManager.nodeIDs.get(id);
-			nodesWithID.remove(node);
-//			System.out.println("Remove ID: " + id + " node: " + node.hashCode());
-//			System.out.println(TreeManager.nodeIDs);
-			if (nodesWithID.isEmpty()) {
-				TreeManager.nodeIDs.remove(id);
-			}
+	synchronized List<Node> put(final EDLRule rule, final List<Node> usedNodes) {
+		return this.rulesUsingNodes.put(rule, usedNodes);
+	}
+	/**
+	 * Updates the registered ID respectively ID references of a node
+	 * after its value changed.
+	 * 
+	 * @param node A mapped node.
+	 */
+	void updateIDs(final Node node) {
+		MetaNode metaNode = getMetaNode(node);
+		if (metaNode != null) {
+			updateIDs(node, metaNode.getConstraint());
 		}
 	}
-//	public static boolean isIDinUse(final String id) {
-//		if (TreeManager.nodeIDs.containsKey(id)) {
-//			return true;
-//		}
-//		
-//		return false;
-//	}
-	public static Node getNodeForID(final String id) {
-		if (TreeManager.nodeIDs.containsKey(id)) {
-			return TreeManager.nodeIDs.get(id).get(0);
+	private void updateIDs(final Node node, final NodeConstraint constraint) {
+		if (constraint == null || !constraint.hasTypeName()) {
+			return;
 		}
 		
-		return null;
+		String typeName = constraint.getTypeName();
+		if (typeName.equals("ID")) {
+			this.idRegistry.putID(node, XMLUtility.getNodeValue(node));
+		} else if (typeName.equals("IDREF") || typeName.equals("IDREFS")) {
+			this.idRegistry.putReferences(node, XMLUtility.getNodeValue(node));
+		}
 	}
 	
 	public boolean mapExisting(final Node xmlNode, final MetaNode metaNode) {
@@ -269,6 +471,14 @@ public class TreeManager {
 			return false;
 		}
 		
+		int occurs = (xmlNode.getNodeType() == Node.ELEMENT_NODE) ? XMLUtility.getOccurs(xmlNode) : 1;
+		return mapExisting(xmlNode, metaNode, occurs);
+	}
+	
+	/**
+	 * @param occurs Occurrences of xmlNode (see XMLUtility.getOccurs).
+	 */
+	private boolean mapExisting(final Node xmlNode, final MetaNode metaNode, final int occurs) {
 		if (metaNode.getName().compareTo(xmlNode.getNodeName()) != 0) {
 			LOG.trace("couldn't map, because names dont match (xml!=meta): " + xmlNode.getNodeName() + "!=" + metaNode.getName());
 			return false;
@@ -278,7 +488,6 @@ public class TreeManager {
 			Element xmlElem = (Element) xmlNode;
 			NodeConstraint constraint = metaNode.getConstraint();
 			if (metaNode.getKind() == MetaXMLNodeKind.ELEMENT) {
-				int occurs = XMLUtility.getOccurs(xmlElem);
 				int minOccurs = constraint.getMinOccurs();
 				int maxOccurs = constraint.getMaxOccurs();
 				if (occurs < minOccurs
@@ -296,14 +505,8 @@ public class TreeManager {
 					Attr attr = (Attr) attributes.item(attrNr);
 					MetaNode metaAttr = metaAttributes.get(attr.getNodeName());
 					if (metaAttr != null) {
+						// Also registers IDs and ID references.
 						put(attr, metaAttr);
-						// Add attribute value to IDs.
-						NodeConstraint attrConstraint = metaAttr.getConstraint();
-						if (attrConstraint != null 
-							&& attrConstraint.hasTypeName() 
-							&& attrConstraint.getTypeName().equals("ID")) {
-							TreeManager.putID(attr);
-						}
 					} else if (!this.attributeWhitelist.contains(attr.getNodeName())) {
 //						xmlElem.removeAttributeNode(attr);
 						destroy(xmlNode);
@@ -313,100 +516,60 @@ public class TreeManager {
 					attrNr++;
 				}
 				
-				// Check whether children of xmlNode confirm.
-				NodeList children = xmlElem.getChildNodes();
-				int childNr = 0;
-				Node child = children.item(childNr);
-				List<MetaNode> descendants = getNonCompDirectDescendants(metaNode);
-				int descendantNr = 0;
-				// Working around the IndexOutOfBoundsException: descendant is null when descendantNr is out of bounds.
-				MetaNode descendant = (descendantNr < descendants.size()) ? descendants.get(descendantNr) : null;
-				
-				while (child != null
-					   && descendant != null) {
+				// Check whether children of xmlNode confirm by running them through the content model.
+				List<Node> children = new ArrayList<Node>();
+				for (Node child = xmlElem.getFirstChild(); child != null; child = child.getNextSibling()) {
 					if (child.getNodeType() == Node.ELEMENT_NODE) {
-						
-						if (mapExisting(child, descendant)) {
-							// Map additional occurrences of element child.
-							do {
-								childNr++;
-								child = children.item(childNr);
-								// Skip whitespace.
-								while (child != null
-									   && child.getNodeType() != Node.ELEMENT_NODE) {
-									childNr++;
-									child = children.item(childNr);
-								}
-							
-							} while (mapExisting(child, descendant));
-							
-							// skip additional choice options
-							MetaNode descendantParent = descendant.getParent();
-							if (descendantParent.getKind() == MetaXMLNodeKind.CHOICE_COMPOSITOR) {
-								List<MetaNode> choiceAlternatives = descendantParent.getChildren();
-								while (descendant != null
-									   && choiceAlternatives.contains(descendant)) {
-									descendantNr++;
-									descendant = (descendantNr < descendants.size()) ? descendants.get(descendantNr) : null;
-								}
-							} else {
-								descendantNr++;
-								descendant = (descendantNr < descendants.size()) ? descendants.get(descendantNr) : null;
-							}
-						} else {
-							NodeConstraint descConstraint = descendant.getConstraint();
-							if (descConstraint.getMinOccurs() != 0
-								&& descendant.getParent().getKind() != MetaXMLNodeKind.CHOICE_COMPOSITOR) {
-								destroy(xmlElem);
-								LOG.trace("couldn't map, because desc is not optional");
-								return false;
-							}
-							descendantNr++;
-							descendant = (descendantNr < descendants.size()) ? descendants.get(descendantNr) : null;
-						}
-					} else {
-						childNr++;
-						child = children.item(childNr);
+						children.add(child);
 					}
 				}
+				int[] childOccurs = ContentModel.getOccurrences(children);
+				ContentModel contentModel = getContentModel(metaNode);
+				DescendantTable descendants = contentModel.getDescendantTable();
 				
-				// Evaluate
-				if (child == null
-					&& descendant != null) {
-					// Check whether remaining descendants are optional (read: either unused choice options or have minOccurs == 0).
-					while (descendant != null) {
-						NodeConstraint descConstraint = descendant.getConstraint();
-						if (descConstraint.getMinOccurs() != 0) {
-							destroy(xmlElem);
-							LOG.trace("couldn't map, because remaining descs are not optional");
-							return false;
+				int state = 0;
+				// Descendant the previous child was mapped to. -1 if none.
+				int matched = -1;
+				for (int childNr = 0; childNr < children.size(); childNr++) {
+					Node child = children.get(childNr);
+					
+					// Map additional occurrences of the previous child.
+					if (matched >= 0) {
+						if (mapExisting(child, descendants.get(matched), childOccurs[childNr])) {
+							continue;
 						}
-						descendantNr++;
-						descendant = (descendantNr < descendants.size()) ? descendants.get(descendantNr) : null;
+						state = contentModel.getStateAfter(matched);
+						matched = -1;
 					}
 					
-				} else if (child != null
-						   && descendant == null) {
-					// If there are unmapped children left: return false!
-					while (child != null) {
-						if (child.getNodeType() == Node.ELEMENT_NODE) {
-							destroy(xmlElem);
-							LOG.trace("couldn't map, because unmapped children is left: " + child.getNodeName());
-							return false;
-						}
-						
-						childNr++;
-						child = children.item(childNr);
+					int candidate = contentModel.getTransition(state, child.getNodeName());
+					while (candidate >= 0
+						   && !mapExisting(child, descendants.get(candidate), childOccurs[childNr])) {
+						// Try further descendants with the same name if the failed one is optional.
+						candidate = contentModel.isSkippable(candidate) 
+									? contentModel.getTransition(candidate + 1, child.getNodeName()) 
+									: -1;
+					}
+					if (candidate < 0) {
+						destroy(xmlElem);
+						LOG.trace("couldn't map, because child is unexpected or a desc is not optional: " + child.getNodeName());
+						return false;
 					}
+					matched = candidate;
+				}
+				
+				if (matched >= 0) {
+					state = contentModel.getStateAfter(matched);
+				}
+				if (!contentModel.isAccepting(state)) {
+					// Remaining descendants are not optional.
+					destroy(xmlElem);
+					LOG.trace("couldn't map, because remaining descs are not optional");
+					return false;
 				}
 			}
 			
 			put(xmlElem, metaNode);
-			// Add value to IDs.
-			if (constraint.hasTypeName() 
-					&& constraint.getTypeName().equals("ID")) {
-				TreeManager.putID(xmlElem);
-			}
 			
 			LOG.trace("mapped " + xmlElem.getNodeName() + " to " + metaNode.getName());
 			return true;
@@ -532,35 +695,6 @@ public class TreeManager {
 		return xmlNodes;
 	}
 	
-	public DefaultMutableTreeNode create(final Node xmlNode) {
-		DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(xmlNode);
-		this.put(xmlNode, treeNode);
-		
-		NodeList children = xmlNode.getChildNodes();
-		int childNr = 0;
-		while (childNr < children.getLength()) {
-			
-			Node childXMLNode = children.item(childNr);
-			
-			short childNodeKind = childXMLNode.getNodeType();
-			if (childNodeKind == Node.ELEMENT_NODE) {
-			
-//				List<Node> nodeChoices = this.nodeConstraints.get(childXMLNode).getNodesInChoicePool();
-//				if (nodeChoices == null) {
-//					treeNode.add(this.buildTree(childXMLNode));
-//				} else {
-//					if (nodeChoices.get(0).getNodeName().compareTo(childXMLNode.getNodeName()) == 0) {
-//						treeNode.add(this.buildTree(childXMLNode));
-//					}
-//				}
-				treeNode.add(create(childXMLNode));
-			}
-			
-			childNr++;
-		}
-		return treeNode;
-	}
-	
 	/**
 	 * Removes a XML node as well as all of its child nodes and attributes
 	 * for the manager.
@@ -568,18 +702,12 @@ public class TreeManager {
 	 * @param node The XML node which should be removed recursively from the mapper.
 	 */
 	public void destroy(final Node node) {
-		_destroy(node, false);
-	}
-	public void invalidateOptions(final Node node) {
-		_destroy(node, true);
-	}
-	private void _destroy(final Node node, boolean optionsOnly) {
 		
 		if (node.hasChildNodes()) {
 			NodeList children = node.getChildNodes();
 			int childNr = 0;
 			while (childNr < children.getLength()) {
-				_destroy(children.item(childNr), optionsOnly);
+				destroy(children.item(childNr));
 				childNr++;
 			}
 		}
@@ -588,31 +716,106 @@ public class TreeManager {
 			NamedNodeMap attrs = node.getAttributes();
 			int attrNr = 0;
 			while (attrNr < attrs.getLength()) {
-				_destroy(attrs.item(attrNr), optionsOnly);
+				destroy(attrs.item(attrNr));
 				attrNr++;
 			}
 		}
 		
-		if (!optionsOnly) {
-			this.xmlNodeToMetaXMLNode.remove(node);
-			this.xmlNodeToTreeNode.remove(node);
-			
-			this.validationResults.remove(node);
-			removeRuleEntries(node);
-			
-			TreeManager.removeID(node);
+		NodeAnnotation annotation = this.annotations.remove(node);
+		if (annotation != null) {
+			removeRuleEntries(node, annotation);
+		}
+		
+		this.idRegistry.removeID(node);
+		this.idRegistry.removeReferences(node);
+	}
+	
+	/**
+	 * Drops the cached manipulation options of a single node
+	 * (e.g. after an attribute was added to it), as well as the error counts
+	 * of the node and its ancestors.
+	 * 
+	 * @param node A mapped node.
+	 */
+	synchronized public void invalidateOptions(final Node node) {
+		NodeAnnotation annotation = this.annotations.get(node);
+		if (annotation != null) {
+			annotation.options = null;
 		}
+		invalidateIndicators(node);
+		invalidateErrors(node);
+	}
+	
+	/**
+	 * Drops the indicators of a node and of its ancestors, whose indicators
+	 * include the validity of their descendants and the options of their
+	 * attributes.
+	 * 
+	 * @param node A node whose options, validation result or children changed.
+	 */
+	synchronized void invalidateIndicators(final Node node) {
+		Node current = node;
+		while (current != null) {
+			NodeAnnotation annotation = this.annotations.get(current);
+			if (annotation != null) {
+				annotation.indicators = Indicators.UNKNOWN;
+			}
+			current = (current.getNodeType() == Node.ATTRIBUTE_NODE) 
+					  ? ((Attr) current).getOwnerElement() 
+					  : current.getParentNode();
+		}
+	}
+	
+	/**
+	 * Invalidates the options of an element and its child elements, e.g. 
+	 * after several children were added or removed.
+	 * 
+	 * @param parent An element.
+	 */
+	public void invalidateOptionsBelow(final Node parent) {
+		invalidateOptions(parent);
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			invalidateOptions(child);
+		}
+	}
+	/**
+	 * Drops the cached manipulation options affected by inserting or removing
+	 * a child node: the options of the parent (addable children) and of the
+	 * elements in the runs of equally named siblings next to the insertion
+	 * respectively removal point (occurrences, previous sibling).
+	 * Options of all other nodes stay valid.
+	 * 
+	 * @param parent The node whose children changed.
+	 * @param prev	 The node now preceding the insertion/removal point. Null if none.
+	 * @param next	 The node now following the insertion/removal point. Null if none.
+	 */
+	public void invalidateOptionsAround(final Node parent, final Node prev, final Node next) {
+		invalidateOptions(parent);
 		
-		this.manipulationOptions.remove(node);
+		if (prev != null) {
+			String name = prev.getNodeName();
+			for (Node sibling = prev; 
+				 sibling != null && sibling.getNodeName().equals(name); 
+				 sibling = sibling.getPreviousSibling()) {
+				invalidateOptions(sibling);
+			}
+		}
+		if (next != null) {
+			String name = next.getNodeName();
+			for (Node sibling = next; 
+				 sibling != null && sibling.getNodeName().equals(name); 
+				 sibling = sibling.getNextSibling()) {
+				invalidateOptions(sibling);
+			}
+		}
 	}
 	
-	private void removeRuleEntries(final Node node) {
-		List<EDLRule> relevantRulesForNode = this.relevantRules.get(node);
-		if (relevantRulesForNode != null) {
-			for (EDLRule rule : relevantRulesForNode) {
+	private void removeRuleEntries(final Node node, final NodeAnnotation annotation) {
+		if (annotation.relevantRules != null) {
+			for (EDLRule rule : annotation.relevantRules) {
 				this.rulesUsingNodes.get(rule).remove(node);
 			}
 		}
-		this.relevantRules.remove(node);
+		annotation.relevantRules = null;
 	}
 }
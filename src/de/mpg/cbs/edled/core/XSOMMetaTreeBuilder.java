@@ -162,6 +162,13 @@ public class XSOMMetaTreeBuilder implements MetaTreeBuilder {
 		return true;
 	}
 	
+	/**
+	 * @return The parsed XML schemas. Null if parsing failed.
+	 */
+	public XSSchemaSet getSchemaSet() {
+		return this.schemaset;
+	}
+	
 	@Override
 	public MetaNode buildMetaXMLTree(final String elemName) {
 		MetaElem documentElem = new MetaElem(elemName, new NodeConstraint());
@@ -0,0 +1,363 @@
+package de.mpg.cbs.edled.core.metatree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import de.mpg.cbs.edled.core.metatree.MetaNode.MetaXMLNodeKind;
+import de.mpg.cbs.edled.core.metatree.NodeConstraint.AttributeUse;
+
+/**
+ * Binary snapshot of the meta trees built from a XSD together with the
+ * result of validating the XSD itself.
+ *
+ * The snapshot is identified by the checksum of the XSD content, so a
+ * snapshot file can be reused by later sessions as long as the XSD did not change.
+ *
+ * File layout (big endian):
+ * <pre>
+ * int    magic ("EDLM")
+ * int    format version
+ * long   XSD checksum
+ * byte   XSD validity (-1 unknown, 0 invalid, 1 valid)
+ * int    number of trees
+ * (string elementName, node root)*
+ * </pre>
+ * where a node is written in preorder as its kind, name, constraint,
+ * children and (for elements) attributes.
+ * Strings are stored as UTF-8 byte count (-1 for null) followed by the bytes.
+ *
+ * @author Oliver Z.
+ */
+public class MetaTreeSnapshot {
+
+	private static final Logger logger = Logger.getLogger(MetaTreeSnapshot.class);
+
+	private static final int MAGIC = 0x45444C4D;
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte UNKNOWN = -1;
+	private static final String CHARSET = "UTF-8";
+
+	private final long checksum;
+	private Boolean xsdValidity = null;
+	/** Meta trees identified by the name of their root element. */
+	private final Map<String, MetaNode> metaTrees = new LinkedHashMap<String, MetaNode>();
+
+	/**
+	 * @param checksum Checksum of the XSD the snapshot is taken from.
+	 */
+	public MetaTreeSnapshot(final long checksum) {
+		this.checksum = checksum;
+	}
+
+	public long getChecksum() {
+		return this.checksum;
+	}
+
+	/**
+	 * @return True/false if the XSD is known to be a valid/invalid XML schema.
+	 * 		   Null if the XSD has not been validated yet.
+	 */
+	public Boolean getXSDValidity() {
+		return this.xsdValidity;
+	}
+	public void setXSDValidity(final boolean valid) {
+		this.xsdValidity = Boolean.valueOf(valid);
+	}
+
+	/**
+	 * @param elemName Name of the root element.
+	 * @return		   The meta tree of the element. Null if it is not part of the snapshot.
+	 */
+	public MetaNode getMetaTree(final String elemName) {
+		return this.metaTrees.get(elemName);
+	}
+	public void putMetaTree(final String elemName, final MetaNode metaTree) {
+		this.metaTrees.put(elemName, metaTree);
+	}
+	public Set<String> getElementNames() {
+		return Collections.unmodifiableSet(this.metaTrees.keySet());
+	}
+
+	/**
+	 * Reads a snapshot file by mapping it into memory.
+	 *
+	 * @param file	   The snapshot file.
+	 * @param checksum Checksum of the XSD the snapshot must belong to.
+	 * @return		   The snapshot. Null if the file does not exist, is corrupted
+	 * 				   or belongs to another XSD.
+	 */
+	public static MetaTreeSnapshot read(final File file, final long checksum) {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		FileInputStream instream = null;
+		try {
+			instream = new FileInputStream(file);
+			FileChannel channel = instream.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC
+				|| buffer.getInt() != FORMAT_VERSION
+				|| buffer.getLong() != checksum) {
+				logger.info("Ignoring outdated meta tree snapshot " + file.getPath());
+				return null;
+			}
+
+			MetaTreeSnapshot snapshot = new MetaTreeSnapshot(checksum);
+			byte validity = buffer.get();
+			if (validity != UNKNOWN) {
+				snapshot.setXSDValidity(validity == 1);
+			}
+			int treeCount = buffer.getInt();
+			for (int i = 0; i < treeCount; i++) {
+				String elemName = readString(buffer);
+				snapshot.putMetaTree(elemName, readNode(buffer));
+			}
+
+			return snapshot;
+		} catch (IOException e) {
+			logger.warn("Could not read meta tree snapshot " + file.getPath(), e);
+		} catch (BufferUnderflowException e) {
+			logger.warn("Meta tree snapshot " + file.getPath() + " is truncated.");
+		} catch (IllegalArgumentException e) {
+			logger.warn("Meta tree snapshot " + file.getPath() + " is corrupted.", e);
+		} finally {
+			if (instream != null) {
+				try {
+					instream.close();
+				} catch (IOException e) {
+					logger.warn("Could not close meta tree snapshot " + file.getPath(), e);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes the snapshot. The file is replaced only after the snapshot
+	 * was written completely.
+	 *
+	 * @param file The snapshot file.
+	 * @return	   True if the snapshot was written.
+	 */
+	public boolean write(final File file) {
+		File tempFile = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(this.checksum);
+			if (this.xsdValidity == null) {
+				out.writeByte(UNKNOWN);
+			} else {
+				out.writeByte(this.xsdValidity.booleanValue() ? 1 : 0);
+			}
+			out.writeInt(this.metaTrees.size());
+			for (Map.Entry<String, MetaNode> entry : this.metaTrees.entrySet()) {
+				writeString(out, entry.getKey());
+				writeNode(out, entry.getValue());
+			}
+			out.close();
+			out = null;
+
+			if (file.exists() && !file.delete()) {
+				logger.warn("Could not replace meta tree snapshot " + file.getPath());
+				return false;
+			}
+			return tempFile.renameTo(file);
+		} catch (IOException e) {
+			logger.warn("Could not write meta tree snapshot " + file.getPath(), e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					logger.warn("Could not close meta tree snapshot " + tempFile.getPath(), e);
+				}
+			}
+			tempFile.delete();
+		}
+
+		return false;
+	}
+
+	private static void writeNode(final DataOutputStream out, final MetaNode node) throws IOException {
+		out.writeByte(node.getKind().ordinal());
+		writeString(out, node.getName());
+		writeConstraint(out, node.getConstraint());
+
+		List<MetaNode> children = node.getChildren();
+		out.writeInt(children.size());
+		for (MetaNode child : children) {
+			writeNode(out, child);
+		}
+
+		if (node.getKind() == MetaXMLNodeKind.ELEMENT) {
+			Map<String, MetaNode> attributes = node.getAttributes();
+			out.writeInt(attributes.size());
+			for (MetaNode attribute : attributes.values()) {
+				writeNode(out, attribute);
+			}
+		}
+	}
+
+	private static MetaNode readNode(final ByteBuffer buffer) throws IOException {
+		byte kindOrdinal = buffer.get();
+		if (kindOrdinal < 0 || kindOrdinal >= MetaXMLNodeKind.values().length) {
+			throw new IllegalArgumentException("Unknown meta node kind " + kindOrdinal + ".");
+		}
+		MetaXMLNodeKind kind = MetaXMLNodeKind.values()[kindOrdinal];
+		String name = readString(buffer);
+		NodeConstraint constraint = readConstraint(buffer);
+
+		MetaNode node = null;
+		switch (kind) {
+		case ELEMENT:
+			node = new MetaElem(name, constraint);
+			break;
+		case ATTRIBUTE:
+			node = new MetaAttr(name, constraint);
+			break;
+		case GROUP_COMPOSITOR:
+			node = new MetaGroup(constraint);
+			break;
+		case SEQUENCE_COMPOSITOR:
+			node = new MetaSequence(constraint);
+			break;
+		case CHOICE_COMPOSITOR:
+			node = new MetaChoice(constraint);
+			break;
+		}
+
+		int childCount = buffer.getInt();
+		for (int i = 0; i < childCount; i++) {
+			node.add(readNode(buffer));
+		}
+
+		if (kind == MetaXMLNodeKind.ELEMENT) {
+			int attributeCount = buffer.getInt();
+			for (int i = 0; i < attributeCount; i++) {
+				node.add(readNode(buffer));
+			}
+		}
+
+		return node;
+	}
+
+	private static void writeConstraint(final DataOutputStream out,
+										final NodeConstraint constraint) throws IOException {
+		out.writeBoolean(constraint.canHaveTextContent());
+		writeString(out, constraint.getTypeName());
+		out.writeInt(constraint.getMinOccurs());
+		out.writeInt(constraint.getMaxOccurs());
+		writeString(out, constraint.getDefaultValue());
+		writeString(out, constraint.getFixedValue());
+		out.writeByte(constraint.hasAttributeUse() ? constraint.getAttributeUse().ordinal() : UNKNOWN);
+		writeString(out, constraint.getAppInfo());
+
+		TypeRestriction restriction = constraint.getTypeRestriction();
+		out.writeBoolean(restriction != null);
+		if (restriction != null) {
+			writeString(out, restriction.getBaseType());
+			List<String> enumeration = restriction.getEnumeration();
+			if (enumeration == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(enumeration.size());
+				for (String value : enumeration) {
+					writeString(out, value);
+				}
+			}
+			writeString(out, restriction.getTotalDigits());
+			writeString(out, restriction.getFractionDigits());
+			writeString(out, restriction.getMaxExclusive());
+			writeString(out, restriction.getMaxInclusive());
+			writeString(out, restriction.getMinExclusive());
+			writeString(out, restriction.getMinInclusive());
+			writeString(out, restriction.getLength());
+			writeString(out, restriction.getMaxLength());
+			writeString(out, restriction.getMinLength());
+			writeString(out, restriction.getPattern());
+			writeString(out, restriction.getWhiteSpace());
+		}
+	}
+
+	private static NodeConstraint readConstraint(final ByteBuffer buffer) throws IOException {
+		NodeConstraint constraint = new NodeConstraint();
+
+		if (buffer.get() != 0) {
+			constraint.initCanHaveTextContent(true);
+		}
+		constraint.initTypeName(readString(buffer));
+		constraint.initMinOccurs(buffer.getInt());
+		constraint.initMaxOccurs(buffer.getInt());
+		constraint.initDefaultValue(readString(buffer));
+		constraint.initFixedValue(readString(buffer));
+		byte use = buffer.get();
+		if (use != UNKNOWN) {
+			constraint.initAttributeUse(AttributeUse.values()[use]);
+		}
+		constraint.initAppInfo(readString(buffer));
+
+		if (buffer.get() != 0) {
+			TypeRestriction restriction = new TypeRestriction(readString(buffer));
+			int enumerationSize = buffer.getInt();
+			for (int i = 0; i < enumerationSize; i++) {
+				restriction.addEnumerationValue(readString(buffer));
+			}
+			restriction.initTotalDigits(readString(buffer));
+			restriction.initFractionDigits(readString(buffer));
+			restriction.initMaxExclusive(readString(buffer));
+			restriction.initMaxInclusive(readString(buffer));
+			restriction.initMinExclusive(readString(buffer));
+			restriction.initMinInclusive(readString(buffer));
+			restriction.initLength(readString(buffer));
+			restriction.initMaxLength(readString(buffer));
+			restriction.initMinLength(readString(buffer));
+			restriction.initPattern(readString(buffer));
+			restriction.initWhitespace(readString(buffer));
+			constraint.initTypeRestriction(restriction);
+		}
+
+		return constraint;
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(CHARSET);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+}
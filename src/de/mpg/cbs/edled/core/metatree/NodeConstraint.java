@@ -2,6 +2,8 @@ package de.mpg.cbs.edled.core.metatree;
 
 import com.sun.xml.xsom.XSParticle;
 
+import de.mpg.cbs.edled.core.validation.FacetValidator;
+
 public class NodeConstraint {
 	
 	public enum AttributeUse {
@@ -19,6 +21,8 @@ public class NodeConstraint {
 	private int canHaveTextContent = -1;
 	private String typeName = null;
 	private TypeRestriction typeRestriction = null;
+	/** The type restriction compiled for validation, see SimpleTypeValidator. */
+	private FacetValidator facetValidator = null;
 	
 	private int maxOccurs = NodeConstraint.DEFAULT_OCCURS;
 	private int minOccurs = NodeConstraint.DEFAULT_OCCURS;
@@ -114,6 +118,20 @@ public class NodeConstraint {
 		return this.typeRestriction;
 	}
 	
+	public NodeConstraint initFacetValidator(final FacetValidator facetValidator) {
+		if (this.facetValidator == null) {
+			this.facetValidator = facetValidator;
+		}
+		
+		return this;
+	}
+	/**
+	 * @return The compiled type restriction. Null if it was not compiled yet.
+	 */
+	public FacetValidator getFacetValidator() {
+		return this.facetValidator;
+	}
+	
 	public NodeConstraint initMaxOccurs(final int maxOccurs) {
 		if (this.maxOccurs == NodeConstraint.DEFAULT_OCCURS) {
 			this.maxOccurs = maxOccurs;
@@ -0,0 +1,65 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.List;
+
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.IDRegistry;
+import de.mpg.cbs.edled.core.metatree.NodeConstraint;
+
+/**
+ * Immutable copy of the values of all elements and attributes of a document
+ * (together with their constraints). Validating a snapshot does not touch 
+ * the DOM, which is not safe for concurrent access, not even for reading.
+ * 
+ * The nodes are only kept as identity keys and must not be accessed while
+ * validating the snapshot.
+ */
+public final class DocumentSnapshot {
+	
+	private final Node[] nodes;
+	private final NodeConstraint[] constraints;
+	private final String[] values;
+	private final IDRegistry ids;
+	
+	/**
+	 * @param nodes		  Nodes of the document.
+	 * @param constraints Constraint of each node.
+	 * @param values	  Value of each node. Null for nodes without text content.
+	 * @param ids		  IDs of the document. Must not change while the snapshot is validated.
+	 */
+	public DocumentSnapshot(final List<Node> nodes,
+							final List<NodeConstraint> constraints,
+							final List<String> values,
+							final IDRegistry ids) {
+		if (nodes.size() != constraints.size()
+			|| nodes.size() != values.size()) {
+			throw new IllegalArgumentException("Snapshot lists differ in size!");
+		}
+		
+		this.nodes = nodes.toArray(new Node[nodes.size()]);
+		this.constraints = constraints.toArray(new NodeConstraint[constraints.size()]);
+		this.values = values.toArray(new String[values.size()]);
+		this.ids = ids;
+	}
+	
+	public int size() {
+		return this.nodes.length;
+	}
+	
+	public Node getNode(final int index) {
+		return this.nodes[index];
+	}
+	
+	public NodeConstraint getConstraint(final int index) {
+		return this.constraints[index];
+	}
+	
+	public String getValue(final int index) {
+		return this.values[index];
+	}
+	
+	public IDRegistry getIDRegistry() {
+		return this.ids;
+	}
+}
@@ -1,6 +1,6 @@
 package de.mpg.cbs.edled.core.validation;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +21,11 @@ public class EDLRule extends Observable {
 	private final List<EDLRuleLiteral> conclusion;
 	private final String message;
 	
+	/** Resolved parameter values, reused for every evaluation. */
+	private final ParameterVector parameterValues;
+	/** Parameters indexed by their slot in parameterValues. */
+	private final EDLRuleParameter[] parameterSlots;
+	
 	private boolean value;
 	
 	public EDLRule(final String id,
@@ -34,6 +39,18 @@ public class EDLRule extends Observable {
 		this.conclusion = conclusion;
 		this.message = message;
 		
+		this.parameterValues = new ParameterVector(new ArrayList<String>(parameters.keySet()));
+		this.parameterSlots = new EDLRuleParameter[this.parameterValues.size()];
+		for (int slot = 0; slot < this.parameterSlots.length; slot++) {
+			this.parameterSlots[slot] = parameters.get(this.parameterValues.name(slot));
+		}
+		for (EDLRuleLiteral literal : premise) {
+			literal.bind(this.parameterValues);
+		}
+		for (EDLRuleLiteral literal : conclusion) {
+			literal.bind(this.parameterValues);
+		}
+		
 		this.value = false;
 	}
 	
@@ -65,58 +82,98 @@ public class EDLRule extends Observable {
 //	}
 	
 	public List<Node> evaluate(final Document xmlDocument) {
-		ParameterEvaluationResult paramEvalRslt = resolveParameters(xmlDocument);
+		return evaluate(xmlDocument, null);
+	}
+	
+	/**
+	 * Evaluates the rule, taking the numeric values of its parameters from a cache.
+	 * 
+	 * @param xmlDocument The document to evaluate the rule in.
+	 * @param numbers	  Numeric values of the document's nodes. May be null.
+	 * @return			  The nodes referenced by the parameters.
+	 */
+	public List<Node> evaluate(final Document xmlDocument, final NumberCache numbers) {
+		List<Node> referencedNodes = resolve(xmlDocument, numbers);
+		publish(decide());
 		
-		if (valueOfConjunctedLiterals(this.premise, paramEvalRslt.evaluatedParameters)) {
-			this.value = valueOfConjunctedLiterals(this.conclusion, paramEvalRslt.evaluatedParameters);
-		} else {
-			this.value = true;
+		return referencedNodes;
+	}
+	
+	/**
+	 * Computes the value of the rule from the parameters resolved by the
+	 * last call of resolve(). Touches neither the document nor the observers, 
+	 * so rules can be decided concurrently (each rule by one thread only).
+	 * 
+	 * @return True if the rule is satisfied.
+	 */
+	boolean decide() {
+		if (valueOfConjunctedLiterals(this.premise)) {
+			return valueOfConjunctedLiterals(this.conclusion);
 		}
 		
+		return true;
+	}
+	
+	/**
+	 * Sets the value of the rule and notifies the observers if it is satisfied.
+	 * 
+	 * @param value The decided value of the rule.
+	 */
+	void publish(final boolean value) {
+		this.value = value;
+		
 		if (this.value) {
 			setChanged();
 			notifyObservers(this);
 			deleteObservers();
 		}
-		
-		return paramEvalRslt.referencedNodes;
 	}
 	
 	public boolean isSatisfied() {
 		return this.value;
 	}
 	
-	private ParameterEvaluationResult resolveParameters(final Document xmlDocument) {
+	/**
+	 * Resolves all parameters into parameterValues.
+	 * 
+	 * @param xmlDocument The document to resolve the parameters in.
+	 * @param numbers	  Numeric values of the document's nodes. May be null.
+	 * @return			  The nodes referenced by the parameters.
+	 */
+	List<Node> resolve(final Document xmlDocument, final NumberCache numbers) {
 		
 		List<Node> referencedNodes = new LinkedList<Node>();
-		Map<String, String> evaluatedParameters = new HashMap<String, String>();
+		this.parameterValues.clear();
 
-		for (String paramName : this.parameters.keySet()) {
+		for (int slot = 0; slot < this.parameterSlots.length; slot++) {
 				
-			EDLRuleParameter param = this.parameters.get(paramName);
-			ParameterValue paramValue = param.evaluate(xmlDocument);
+			ParameterValue paramValue = this.parameterSlots[slot].evaluate(xmlDocument);
 			
 			if (!paramValue.isNull()) {
 				Node referencedNode = paramValue.getNodeList().item(0);
 				referencedNodes.add(referencedNode);
 				
 				if (paramValue.isNodeList()) {
-					evaluatedParameters.put(paramName, "");
+					this.parameterValues.set(slot, "");
 				} else if (paramValue.isNodeValue()) {
-					evaluatedParameters.put(paramName, XMLUtility.getNodeValue(referencedNode));
+					String value = XMLUtility.getNodeValue(referencedNode);
+					if (numbers != null && value != null) {
+						this.parameterValues.set(slot, value, numbers.getNumber(referencedNode, value));
+					} else {
+						this.parameterValues.set(slot, value);
+					}
 				}
 			}
 		}
 		
-		return new ParameterEvaluationResult(referencedNodes, evaluatedParameters);
+		return referencedNodes;
 	}
 	
-	private boolean valueOfConjunctedLiterals(final List<EDLRuleLiteral> literals, 
-											  final Map<String, String> evaluatedParameters) {
+	private boolean valueOfConjunctedLiterals(final List<EDLRuleLiteral> literals) {
 		boolean conjunctedValue = true;
 		
 		for (EDLRuleLiteral literal : literals) {
-			switch (literal.evaluate(evaluatedParameters)) {
+			switch (literal.evaluate(this.parameterValues)) {
 			case TRUE:
 				break;
 			case FALSE:
@@ -137,16 +194,4 @@ public class EDLRule extends Observable {
 		return "EDLRule{id=" + this.id + ", msg=" + this.message + "}";
 	}
 	
-	private class ParameterEvaluationResult {
-		
-		final List<Node> referencedNodes;
-		final Map<String, String> evaluatedParameters;
-		
-		ParameterEvaluationResult(final List<Node> referencedNodes,
-								  final Map<String, String> evaluatedParameters) {
-			this.referencedNodes = referencedNodes;
-			this.evaluatedParameters = evaluatedParameters;
-		}
-	}
-	
 }
@@ -0,0 +1,123 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+
+/**
+ * Dependency index between document paths and EDL rules.
+ *
+ * The index is built once from the parameter paths of all rules. Each path
+ * is stored (without its positional predicates) in a trie of element names,
+ * so the rules depending on an edited node can be looked up by walking the
+ * node's path instead of evaluating every rule.
+ *
+ * @author Oliver Z.
+ */
+public class EDLRuleIndex {
+
+	/** Root of the trie. Its children are the possible document elements. */
+	private final PathEntry root = new PathEntry();
+	/** Rules with at least one parameter path that cannot be indexed. */
+	private final List<EDLRule> unindexedRules = new LinkedList<EDLRule>();
+
+	public EDLRuleIndex(final List<EDLRule> rules) {
+		for (EDLRule rule : rules) {
+			boolean indexable = true;
+			for (EDLRuleParameter param : rule.getParameters().values()) {
+				if (param.getNamePath() == null) {
+					indexable = false;
+				}
+			}
+
+			if (indexable) {
+				for (EDLRuleParameter param : rule.getParameters().values()) {
+					PathEntry entry = this.root;
+					for (String step : param.getNamePath()) {
+						entry = entry.child(step);
+					}
+					entry.add(rule);
+				}
+			} else {
+				this.unindexedRules.add(rule);
+			}
+		}
+	}
+
+	/**
+	 * Returns all rules whose parameters could be affected by a change of node
+	 * (or any node in its subtree). That is every rule with a parameter path
+	 * that is either a prefix of the node's path or lies below it.
+	 *
+	 * @param node The changed DOM node. Must still be attached to the document.
+	 * @return	   Rules that need to be re-evaluated.
+	 */
+	public List<EDLRule> getRulesAffectedBy(final Node node) {
+		Set<EDLRule> affected = new LinkedHashSet<EDLRule>(this.unindexedRules);
+
+		PathEntry entry = this.root;
+		for (String step : namePathOf(node)) {
+			entry = entry.children.get(step);
+			if (entry == null) {
+				break;
+			}
+			affected.addAll(entry.rules);
+		}
+		if (entry != null) {
+			entry.collectDescendantRules(affected);
+		}
+
+		return new LinkedList<EDLRule>(affected);
+	}
+
+	private static List<String> namePathOf(final Node node) {
+		LinkedList<String> namePath = new LinkedList<String>();
+
+		Node current = node;
+		if (current.getNodeType() == Node.ATTRIBUTE_NODE) {
+			namePath.addFirst("@" + current.getNodeName());
+			current = ((Attr) current).getOwnerElement();
+		}
+		while (current != null
+			   && current.getNodeType() == Node.ELEMENT_NODE) {
+			namePath.addFirst(current.getNodeName());
+			current = current.getParentNode();
+		}
+
+		return namePath;
+	}
+
+	private static class PathEntry {
+
+		final Map<String, PathEntry> children = new HashMap<String, PathEntry>();
+		final List<EDLRule> rules = new LinkedList<EDLRule>();
+
+		PathEntry child(final String step) {
+			PathEntry child = this.children.get(step);
+			if (child == null) {
+				child = new PathEntry();
+				this.children.put(step, child);
+			}
+			return child;
+		}
+
+		void add(final EDLRule rule) {
+			if (!this.rules.contains(rule)) {
+				this.rules.add(rule);
+			}
+		}
+
+		void collectDescendantRules(final Set<EDLRule> collected) {
+			for (PathEntry child : this.children.values()) {
+				collected.addAll(child.rules);
+				child.collectDescendantRules(collected);
+			}
+		}
+	}
+}
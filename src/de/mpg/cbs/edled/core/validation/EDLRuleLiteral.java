@@ -1,11 +1,24 @@
 package de.mpg.cbs.edled.core.validation;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 
+/**
+ * A single literal of an EDL rule premise or conclusion, e.g.
+ * "edlValidation_lowerThan(r6_1_2p2+r6_1_2p3,r6_1_2p4)".
+ * 
+ * The literal is tokenized and parsed only once (on construction) into an
+ * immutable expression tree. Rule parameters are referenced through slots
+ * of a ParameterVector, so evaluating a literal neither re-tokenizes nor
+ * allocates anything.
+ * 
+ * Missing parameters (no value in the vector) make functions evaluate to 
+ * FALSE, just like non-numeric values used in comparisons. An equality with
+ * a missing parameter in one of its operands evaluates to ERROR (it lacks 
+ * an operand then). Malformed literals always evaluate to ERROR.
+ */
 public class EDLRuleLiteral {
 	
 	public enum LiteralValue {
@@ -15,60 +28,93 @@ public class EDLRuleLiteral {
 	}
 	
 	private final String literal;
-	private LiteralValue value;
 	
+	/** Compiled expression tree. */
+	private final Expression expression;
+	/** Names of the parameters referenced by the literal, indexed by local slot. */
+	private final List<String> parameterNames = new LinkedList<String>();
+	/** Maps local slots to slots of the ParameterVector of the owning rule. */
+	private int[] slotBinding = new int[0];
+	
+	/* Compilation state. */
 	private List<LiteralToken> tokens;
-	private List<LiteralToken> tokensCopy;
+	private int tokenPosition;
+	private boolean malformed;
 	
 	public EDLRuleLiteral(final String literal) {
 		this.literal = literal;
-		this.value = null;
 		
+		this.tokens = new LinkedList<LiteralToken>();
+		this.malformed = false;
+		int position = 0;
+		while (position < this.literal.length() && !this.malformed) {
+			position = tokenize(position);
+		}
+		this.expression = compile();
 		this.tokens = null;
-		this.tokensCopy = null;
 	}
 	
+	public String getLiteral() {
+		return this.literal;
+	}
+	
+	/**
+	 * Binds the parameters referenced by this literal to the slots of a
+	 * ParameterVector. Parameters unknown to the vector stay unbound and
+	 * are treated as missing.
+	 * 
+	 * @param parameters The vector the literal will be evaluated against.
+	 */
+	void bind(final ParameterVector parameters) {
+		int[] binding = new int[this.parameterNames.size()];
+		int slot = 0;
+		for (String parameterName : this.parameterNames) {
+			binding[slot] = parameters.indexOf(parameterName);
+			slot++;
+		}
+		this.slotBinding = binding;
+	}
+	
+	/**
+	 * Evaluates the literal against the resolved parameters of its rule.
+	 * The literal must have been bound to parameters before (see bind).
+	 * 
+	 * @param parameters Parameter values.
+	 * @return			 Value of the literal.
+	 */
+	LiteralValue evaluate(final ParameterVector parameters) {
+		return this.expression.truth(parameters, this.slotBinding);
+	}
+	
+	/**
+	 * Evaluates the literal for the given parameter values.
+	 * Convenience method, evaluate(ParameterVector) should be 
+	 * preferred for repeated evaluation.
+	 * 
+	 * @param parameters Maps parameter names to their values. Missing 
+	 * 					 parameters are either absent or mapped to null.
+	 * @return			 Value of the literal.
+	 */
 	public LiteralValue evaluate(final Map<String, String> parameters) {
-		
-		this.value = null;
-		
-		// Tokenize if necessary.
-		if (this.tokens == null) {
-			this.tokens = new LinkedList<LiteralToken>();
-			int position = 0;
-			while (position < this.literal.length() && this.value != LiteralValue.ERROR) {
-				position = tokenize(position);
+		ParameterVector vector = new ParameterVector(this.parameterNames);
+		for (String parameterName : this.parameterNames) {
+			String parameterValue = parameters.get(parameterName);
+			if (parameterValue != null) {
+				vector.set(vector.indexOf(parameterName), parameterValue);
 			}
 		}
 		
-		// Resolve parameters and evaluate tokens.
-		this.tokensCopy = new LinkedList<LiteralToken>(this.tokens);
-		if (this.tokensCopy.size() > 0 /* && this.value != LiteralValue.ERROR */) {
-			resolveParameters(parameters);
-			
-			Range evalRange = new Range(0, this.tokensCopy.size());
-			evaluateTokensOver(evalRange);
-		} else {
-			this.value = LiteralValue.ERROR;
-		}
-		
-		// Get value from last token that is left after evaluation.
-		if (this.tokensCopy.size() == 1 && this.value != LiteralValue.ERROR) {
-			LiteralToken resultToken = this.tokensCopy.get(0);
-			if (resultToken.kind == LiteralTokenKind.BOOLEAN_TOKEN) {
-				if (resultToken.value.compareTo("TRUE") == 0) {
-					this.value = LiteralValue.TRUE;
-				} else {
-					this.value = LiteralValue.FALSE;
-				}
-			} else {
-				this.value = LiteralValue.ERROR;
-			}
-		} else {
-			this.value = LiteralValue.ERROR;
+		int[] binding = new int[this.parameterNames.size()];
+		for (int slot = 0; slot < binding.length; slot++) {
+			binding[slot] = slot;
 		}
 		
-		return this.value;
+		return this.expression.truth(vector, binding);
+	}
+	
+	@Override
+	public String toString() {
+		return "EDLRuleLiteral{" + this.literal + "}";
 	}
 	
 	private int tokenize(final int currentIndex) {
@@ -152,14 +198,14 @@ public class EDLRuleLiteral {
 					token = new LiteralToken(LiteralTokenKind.SYMBOL_TOKEN, "==");
 					position++;
 				} else {
-					this.value = LiteralValue.ERROR;
+					this.malformed = true;
 				}
 			} catch (IndexOutOfBoundsException e) {
-				this.value = LiteralValue.ERROR;
+				this.malformed = true;
 			}
 			break;
 		default:
-			this.value = LiteralValue.ERROR;
+			this.malformed = true;
 			break;
 		}
 		
@@ -195,7 +241,7 @@ public class EDLRuleLiteral {
 		int position = currentIndex;
 		
 		if (position >= this.literal.length()) {
-			this.value = LiteralValue.ERROR;
+			this.malformed = true;
 			return position;
 		}
 		
@@ -207,7 +253,7 @@ public class EDLRuleLiteral {
 		
 		while (!stringEndFound
 			   && (position < this.literal.length())
-			   && this.value != LiteralValue.ERROR) {
+			   && !this.malformed) {
 			
 			c = this.literal.charAt(position);
 			
@@ -227,7 +273,7 @@ public class EDLRuleLiteral {
 					position++;
 					
 				} catch (IndexOutOfBoundsException e) {
-					this.value = LiteralValue.ERROR;
+					this.malformed = true;
 				}
 			} else if (c == '\'') {
 				// End of string...
@@ -239,8 +285,8 @@ public class EDLRuleLiteral {
 			position++;
 		}
 		
-		if (!stringEndFound || this.value == LiteralValue.ERROR) {
-			this.value = LiteralValue.ERROR;
+		if (!stringEndFound || this.malformed) {
+			this.malformed = true;
 		} else {
 			this.tokens.add(new LiteralToken(LiteralTokenKind.STRING_TOKEN, buffer.toString()));
 		}
@@ -287,459 +333,191 @@ public class EDLRuleLiteral {
 						}
 					}
 				} else {
-					this.value = LiteralValue.ERROR;
+					this.malformed = true;
 				}
 			} else {
-				this.value = LiteralValue.ERROR;
+				this.malformed = true;
 			}
 		}
 		
-		if (this.value != LiteralValue.ERROR) {
+		if (!this.malformed) {
 			this.tokens.add(new LiteralToken(LiteralTokenKind.NUMBER_TOKEN, buffer.toString()));
 		}
 		
 		return position;
 	}
 	
-	private void resolveParameters(final Map<String, String> parameters) {
-		
-		List<LiteralToken> wordTokensToRemove = new LinkedList<LiteralToken>();
-		Map<LiteralToken, LiteralToken> wordTokensToReplace = new HashMap<LiteralToken, LiteralToken>();
-		
-		for (LiteralToken token : this.tokensCopy) {
-			if (token.kind == LiteralTokenKind.WORD_TOKEN
-				 && !isPredefinedEDLFunction(token.value)) {
-				
-				String paramValue = parameters.get(token.value);
-				
-				if (paramValue == null) {
-					wordTokensToRemove.add(token);
-				} else {
-					wordTokensToReplace.put(token, new LiteralToken(LiteralTokenKind.PARAMETER_TOKEN, paramValue));
-				}
-			}
+	private boolean isPredefinedEDLFunction(final String word) {
+		if (word.equals("edlValidation_biggerThan")
+			|| word.equals("edlValidation_lowerThan")
+			|| word.equals("edlValidation_equalOrBiggerThan")
+			|| word.equals("edlValidation_equalOrLowerThan")
+			|| word.equals("edlValidation_exists")
+			|| word.equals("edlValidation_strIsEqual")) {
+			
+			return true;
 		}
 		
-		this.tokensCopy.removeAll(wordTokensToRemove);
-		for (LiteralToken toReplace : wordTokensToReplace.keySet()) {
-			int toReplaceIndex = this.tokensCopy.indexOf(toReplace);
-			this.tokensCopy.set(toReplaceIndex, wordTokensToReplace.get(toReplace));
-		}
+		return false;
 	}
 	
-	private void evaluateTokensOver(final Range range) {
-		
-//		for (LiteralToken token : this.tokensCopy) {
-//			System.out.println(token);
-//		}
-		
-		evaluateBracketsOver(range);
-		evaluateArithmeticTermOver(range);
-	}
-	private void evaluateBracketsOver(final Range range) {
-		if (this.value == LiteralValue.ERROR) {
-			return;
+	/*=====================================*/
+	/*============= Compiler. =============*/
+	/*=====================================*/
+	
+	/*
+	 * Grammar (precedence climbing from equality to primary):
+	 *   literal        := equality
+	 *   equality       := additive ( '==' additive )*
+	 *   additive       := multiplicative ( ('+' | '-') multiplicative )*
+	 *   multiplicative := unary ( ('*' | '/') unary )*
+	 *   unary          := '-' unary | primary
+	 *   primary        := NUMBER | STRING | PARAMETER | FUNCTION '(' arguments ')' | '(' equality ')'
+	 */
+	private Expression compile() {
+		if (this.malformed || this.tokens.isEmpty()) {
+			return ERROR_EXPRESSION;
 		}
 		
-		Range bracketRange = rangeOfInnermostBracketPairIn(range);
-		if (bracketRange.count != 0) {
-			int openingBracketIndex = bracketRange.start;
-			int closingBracketIndex = bracketRange.start + bracketRange.count - 1;
-			int seperatorIndex = indexOfSymbol(",", bracketRange);
-			
-			if (isFunctionOpeningBracket(openingBracketIndex)) {
-				if (seperatorIndex < this.tokensCopy.size()) {
-					// Binary function.
-					removePair(openingBracketIndex, closingBracketIndex);
-					this.tokensCopy.remove(seperatorIndex - 1);
-					
-					Range leftArgRange = new Range(openingBracketIndex, 
-												   seperatorIndex - openingBracketIndex - 1);
-					evaluateTokensOver(leftArgRange);
-					
-					Range rightArgRange = new Range(openingBracketIndex + 1,
-													closingBracketIndex - seperatorIndex -1);
-					evaluateTokensOver(rightArgRange);
-					
-					if (leftArgRange.count != 0
-						&& rightArgRange.count != 0) {
-						leftArgRange.count  = 1;
-						rightArgRange.count = 1;
-					} else {
-						leftArgRange.count  = 0;
-						rightArgRange.count = 0;
-					}
-					evaluateBinaryFunctionWith(leftArgRange, rightArgRange);
-				} else {
-					// Unary function.
-					removePair(openingBracketIndex, closingBracketIndex);
-					
-					Range argumentRange = new Range(openingBracketIndex, 
-												    closingBracketIndex - openingBracketIndex - 1);
-					
-					evaluateUnaryFunctionWith(argumentRange);
-				}
-			} else {
-				if (seperatorIndex == this.tokensCopy.size()) {
-					// Encapsulation.
-					removePair(openingBracketIndex, closingBracketIndex);
-					Range evalRange = new Range(bracketRange.start, bracketRange.count - 2);
-					evaluateTokensOver(evalRange);
-				} else {
-					this.value = LiteralValue.ERROR;
-				}
-			}
-			Range recursionRange = new Range(range.start, range.count - bracketRange.count + 1);
-			evaluateBracketsOver(recursionRange);
+		this.tokenPosition = 0;
+		Expression compiled = parseEquality();
+		if (this.malformed || this.tokenPosition != this.tokens.size()) {
+			return ERROR_EXPRESSION;
 		}
+		
+		return compiled;
 	}
-	private void evaluateArithmeticTermOver(final Range range) {
-		if (this.value == LiteralValue.ERROR) {
-			return;
+	private Expression parseEquality() {
+		Expression left = parseAdditive();
+		while (!this.malformed && nextIsSymbol("==")) {
+			this.tokenPosition++;
+			left = new Equality(left, parseAdditive());
 		}
-		
-		// Unary minus.
-		int symbolIndex = indexOfSymbol("-", range);
-		if (symbolIndex < this.tokensCopy.size()) {
-			if (isUnaryMinus(symbolIndex, range)) {
-				evaluateUnaryMinus(symbolIndex);
-				Range newRange = new Range(range.start, range.count - 1);
-				evaluateArithmeticTermOver(newRange);
-				return;
+		return left;
+	}
+	private Expression parseAdditive() {
+		Expression left = parseMultiplicative();
+		while (!this.malformed) {
+			if (nextIsSymbol("+")) {
+				this.tokenPosition++;
+				left = new Arithmetic(LiteralArithmeticOperation.ADDITION, left, parseMultiplicative());
+			} else if (nextIsSymbol("-")) {
+				this.tokenPosition++;
+				left = new Arithmetic(LiteralArithmeticOperation.SUBTRACTION, left, parseMultiplicative());
+			} else {
+				break;
 			}
 		}
-		
-		// Multiplication, division.
-		symbolIndex = indexOfSymbol("*", range);
-		int altSymbolIndex = indexOfSymbol("/", range);
-		if (symbolIndex != altSymbolIndex) {
-			if (symbolIndex < altSymbolIndex) {
-				evaluateBinaryOperation(symbolIndex, LiteralArithmeticOperation.MULTIPLICATION);
-			} else if (symbolIndex > altSymbolIndex) {
-				evaluateBinaryOperation(altSymbolIndex, LiteralArithmeticOperation.DIVISION);
-			}
-			Range newRange = new Range(range.start, range.count - 2);
-			evaluateArithmeticTermOver(newRange);
-			return;
-		}
-		
-		// Addition, subtraction.
-		symbolIndex = indexOfSymbol("+", range);
-		altSymbolIndex = indexOfSymbol("-", range);
-		if (symbolIndex != altSymbolIndex) {
-			if (symbolIndex < altSymbolIndex) {
-				evaluateBinaryOperation(symbolIndex, LiteralArithmeticOperation.ADDITION);
-			} else if (symbolIndex > altSymbolIndex) {
-				evaluateBinaryOperation(altSymbolIndex, LiteralArithmeticOperation.SUBTRACTION);
+		return left;
+	}
+	private Expression parseMultiplicative() {
+		Expression left = parseUnary();
+		while (!this.malformed) {
+			if (nextIsSymbol("*")) {
+				this.tokenPosition++;
+				left = new Arithmetic(LiteralArithmeticOperation.MULTIPLICATION, left, parseUnary());
+			} else if (nextIsSymbol("/")) {
+				this.tokenPosition++;
+				left = new Arithmetic(LiteralArithmeticOperation.DIVISION, left, parseUnary());
+			} else {
+				break;
 			}
-			Range newRange = new Range(range.start, range.count - 2);
-			evaluateArithmeticTermOver(newRange);
-			return;
-		}
-		
-		// Equals.
-		symbolIndex = indexOfSymbol("==", range);
-		if (symbolIndex < this.tokensCopy.size()) {
-			evaluateEquals(symbolIndex);
 		}
+		return left;
 	}
-	
-	private void removePair(final int leftIndex, final int rightIndex) {
-		this.tokensCopy.remove(leftIndex);
-		this.tokensCopy.remove(rightIndex - 1);
-	}
-	private int indexOfSymbol(final String symbol, final Range range) {
-		int i = 0;
-		while (i < range.count
-			   && (i + range.start) < this.tokensCopy.size()) {
-			LiteralToken token = this.tokensCopy.get(range.start + i);
-			if (token.kind == LiteralTokenKind.SYMBOL_TOKEN
-				&& token.value.compareTo(symbol) == 0) {
-				return range.start + i;
-			}
-			i++;
+	private Expression parseUnary() {
+		if (nextIsSymbol("-")) {
+			this.tokenPosition++;
+			return new Negation(parseUnary());
 		}
-		
-		return this.tokensCopy.size();
+		return parsePrimary();
 	}
-	private Range rangeOfInnermostBracketPairIn(final Range range) {
+	private Expression parsePrimary() {
+		if (this.tokenPosition >= this.tokens.size()) {
+			this.malformed = true;
+			return ERROR_EXPRESSION;
+		}
 		
-		int openingBracketIndex = 0;
-		int closingBracketIndex = 0;
-		int bracketPairNr = 0;
-		int maxBracketPairNr = 0;
-		boolean openingBracketFound = false;
-		boolean closingBracketFound = false;
+		LiteralToken token = this.tokens.get(this.tokenPosition);
+		this.tokenPosition++;
 		
-		int lookupIndex = range.start;
-		while (!closingBracketFound
-			   && (lookupIndex < (range.start + range.count))
-			   && (lookupIndex < this.tokensCopy.size())) {
-			
-			LiteralToken lookupToken = this.tokensCopy.get(lookupIndex);
-			
-			if (lookupToken.kind == LiteralTokenKind.SYMBOL_TOKEN) {
-				String lookupTokenValue = lookupToken.value;
-				
-				if (lookupTokenValue.compareTo("(") == 0) {
-					bracketPairNr++;
-					if (bracketPairNr > maxBracketPairNr) {
-						maxBracketPairNr = bracketPairNr;
-						openingBracketIndex = lookupIndex;
-						openingBracketFound = true;
-					}
-				} else if (lookupTokenValue.compareTo(")") == 0) {
-					bracketPairNr--;
-					if (bracketPairNr == maxBracketPairNr - 1
-						|| bracketPairNr == 0) {
-						closingBracketIndex = lookupIndex;
-						closingBracketFound = true;
-					}
-				}
+		switch (token.kind) {
+		case NUMBER_TOKEN:
+			return new NumberConstant(Double.parseDouble(token.value));
+		case STRING_TOKEN:
+			return new StringConstant(token.value);
+		case WORD_TOKEN:
+			if (isPredefinedEDLFunction(token.value)) {
+				return parseFunction(token.value);
 			}
-			lookupIndex++;
-		}
-		
-		Range bracketPairRange;
-		if (closingBracketFound && openingBracketFound) {
-			bracketPairRange = new Range(openingBracketIndex, closingBracketIndex - openingBracketIndex + 1);
-		} else {
-			bracketPairRange = new Range(0, 0);
-		}
-		return bracketPairRange;
-	}
-	private boolean isFunctionOpeningBracket(final int bracketIndex) {
-		if (bracketIndex > 0) {
-			LiteralToken possibleWordToken = this.tokensCopy.get(bracketIndex - 1);
-			if (possibleWordToken.kind == LiteralTokenKind.WORD_TOKEN) {
-				return isPredefinedEDLFunction(possibleWordToken.value);
+			int slot = this.parameterNames.indexOf(token.value);
+			if (slot < 0) {
+				slot = this.parameterNames.size();
+				this.parameterNames.add(token.value);
 			}
-		}
-		
-		return false;
-	}
-	private boolean isUnaryMinus(final int minusIndex, final Range range) {
-		if (minusIndex == range.start) {
-			return true;
-		} else if (minusIndex > range.start
-				   && minusIndex < (range.start + range.count - 1)
-				   && minusIndex < (this.tokensCopy.size() - 1)) {
-			LiteralTokenKind possibleLeftOperandKind = this.tokensCopy.get(minusIndex - 1).kind;
-			LiteralTokenKind rightOperandKind = this.tokensCopy.get(minusIndex + 1).kind;
-			
-			// Left operand is no number/parameter, right operand is number/parameter.
-			if ((possibleLeftOperandKind != LiteralTokenKind.NUMBER_TOKEN
-				 && possibleLeftOperandKind != LiteralTokenKind.PARAMETER_TOKEN)
-				&& (rightOperandKind == LiteralTokenKind.NUMBER_TOKEN 
-					|| rightOperandKind == LiteralTokenKind.PARAMETER_TOKEN)) {
-				return true;
+			return new Parameter(slot);
+		case SYMBOL_TOKEN:
+			if (token.value.equals("(")) {
+				Expression encapsulated = parseEquality();
+				expectSymbol(")");
+				return encapsulated;
 			}
+			break;
+		default:
+			break;
 		}
 		
-		return false;
+		this.malformed = true;
+		return ERROR_EXPRESSION;
 	}
-	private boolean isPredefinedEDLFunction(final String word) {
-		if (word.equals("edlValidation_biggerThan")
-			|| word.equals("edlValidation_lowerThan")
-			|| word.equals("edlValidation_equalOrBiggerThan")
-			|| word.equals("edlValidation_equalOrLowerThan")
-			|| word.equals("edlValidation_exists")
-			|| word.equals("edlValidation_strIsEqual")) {
-			
-			return true;
-		}
+	private Expression parseFunction(final String function) {
+		expectSymbol("(");
 		
-		return false;
-	}
-	
-	private void evaluateUnaryFunctionWith(final Range argumentRange) {
-		if (this.tokensCopy.get(argumentRange.start - 1).value.compareTo("edlValidation_exists") == 0) {
-			evaluateEDLValidationExistsWith(argumentRange);
-		}
-	}
-	private void evaluateEDLValidationExistsWith(final Range argumentRange) {
-		LiteralToken resultToken;
-		if (argumentRange.count == 1) {
-			LiteralTokenKind tokenKind = this.tokensCopy.get(argumentRange.start).kind;
-			if (tokenKind == LiteralTokenKind.NUMBER_TOKEN
-				|| tokenKind == LiteralTokenKind.STRING_TOKEN
-				|| tokenKind == LiteralTokenKind.PARAMETER_TOKEN) {
-				
-				this.tokensCopy.remove(argumentRange.start);
-				resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "TRUE");
-				this.tokensCopy.set(argumentRange.start - 1, resultToken);
-			} else {
-				this.value = LiteralValue.ERROR;
+		List<Expression> arguments = new LinkedList<Expression>();
+		if (!nextIsSymbol(")")) {
+			arguments.add(parseEquality());
+			while (!this.malformed && nextIsSymbol(",")) {
+				this.tokenPosition++;
+				arguments.add(parseEquality());
 			}
-		} else {
-			resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-			this.tokensCopy.set(argumentRange.start - 1, resultToken);
-		}
-	}
-	
-	private void evaluateBinaryFunctionWith(final Range leftArgRange, 
-											final Range rightArgRange) {
-		if (leftArgRange.count == 0 || rightArgRange.count == 0) {
-			this.tokensCopy.clear();
-			this.value = LiteralValue.FALSE;
-			this.tokensCopy.add(new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE"));
-			return;
 		}
+		expectSymbol(")");
 		
-		if (this.tokensCopy.get(leftArgRange.start - 1).value.compareTo("edlValidation_strIsEqual") == 0) {
-			evaluateEDLValidationStrcmpWith(leftArgRange, rightArgRange);
-			
-		} else if (this.tokensCopy.get(leftArgRange.start - 1).value.compareTo("edlValidation_biggerThan") == 0) {
-			evaluateEDLValidationCompare(leftArgRange, rightArgRange, LiteralComparisonOperator.BIGGERTHAN);
-			
-		} else if (this.tokensCopy.get(leftArgRange.start - 1).value.compareTo("edlValidation_equalOrBiggerThan") == 0) {
-			evaluateEDLValidationCompare(leftArgRange, rightArgRange, LiteralComparisonOperator.EQUAL_OR_BIGGERTHAN);
-			
-		} else if (this.tokensCopy.get(leftArgRange.start - 1).value.compareTo("edlValidation_lowerThan") == 0) {
-			evaluateEDLValidationCompare(leftArgRange, rightArgRange, LiteralComparisonOperator.LOWERTHAN);
-			
-		} else if (this.tokensCopy.get(leftArgRange.start - 1).value.compareTo("edlValidation_equalOrLowerThan") == 0) {
-			evaluateEDLValidationCompare(leftArgRange, rightArgRange, LiteralComparisonOperator.EQUAL_OR_LOWERTHAN);
-			
-		}
-	}
-	private void evaluateEDLValidationStrcmpWith(final Range leftArgRange, 
-												 final Range rightArgRange) {
-		LiteralToken leftToken  = this.tokensCopy.get(leftArgRange.start);
-		LiteralToken rightToken = this.tokensCopy.get(rightArgRange.start);
-		
-		if ((leftToken.kind == LiteralTokenKind.PARAMETER_TOKEN || leftToken.kind == LiteralTokenKind.STRING_TOKEN)
-			&& (rightToken.kind == LiteralTokenKind.PARAMETER_TOKEN || rightToken.kind == LiteralTokenKind.STRING_TOKEN)) {
-			// Both function parameters are either a string or a rule parameter.
-			
-			LiteralToken resultToken;
-			if (leftToken.value.compareTo(rightToken.value) == 0) {
-				resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "TRUE");
-			} else {
-				resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
+		if (function.equals("edlValidation_exists")) {
+			if (arguments.size() == 1) {
+				return new Exists(arguments.get(0));
 			}
-			this.tokensCopy.set(leftArgRange.start - 1, resultToken);
-			removePair(leftArgRange.start, rightArgRange.start);
-		} else {
-			this.value = LiteralValue.ERROR;
-		}
-	}
-	private void evaluateEDLValidationCompare(final Range leftArgRange,
-											  final Range rightArgRange,
-											  final LiteralComparisonOperator op) {
-		LiteralToken leftToken  = this.tokensCopy.get(leftArgRange.start);
-		LiteralToken rightToken = this.tokensCopy.get(rightArgRange.start);
-		
-		if ((leftToken.kind == LiteralTokenKind.PARAMETER_TOKEN || leftToken.kind == LiteralTokenKind.NUMBER_TOKEN)
-			&& (rightToken.kind == LiteralTokenKind.PARAMETER_TOKEN || rightToken.kind == LiteralTokenKind.NUMBER_TOKEN)) {
-			// Both function parameters are either a number or a rule parameter.
-			
-			LiteralToken resultToken;
-			
-			try {
-				double leftValue  = Double.parseDouble(leftToken.value);
-				double rightValue = Double.parseDouble(rightToken.value);
-				if ((leftValue > rightValue && op == LiteralComparisonOperator.BIGGERTHAN)
-			        || (leftValue >= rightValue && op == LiteralComparisonOperator.EQUAL_OR_BIGGERTHAN)
-			        || (leftValue < rightValue && op == LiteralComparisonOperator.LOWERTHAN)
-			        || (leftValue <= rightValue && op == LiteralComparisonOperator.EQUAL_OR_LOWERTHAN)) {
-			        resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "TRUE");
-			    } else {
-			        resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-			    }
-			} catch (NumberFormatException e) {
-				resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
+		} else if (arguments.size() == 2) {
+			Expression left = arguments.get(0);
+			Expression right = arguments.get(1);
+			if (function.equals("edlValidation_strIsEqual")) {
+				return new StrIsEqual(left, right);
+			} else if (function.equals("edlValidation_biggerThan")) {
+				return new Comparison(LiteralComparisonOperator.BIGGERTHAN, left, right);
+			} else if (function.equals("edlValidation_equalOrBiggerThan")) {
+				return new Comparison(LiteralComparisonOperator.EQUAL_OR_BIGGERTHAN, left, right);
+			} else if (function.equals("edlValidation_lowerThan")) {
+				return new Comparison(LiteralComparisonOperator.LOWERTHAN, left, right);
+			} else if (function.equals("edlValidation_equalOrLowerThan")) {
+				return new Comparison(LiteralComparisonOperator.EQUAL_OR_LOWERTHAN, left, right);
 			}
-			
-			this.tokensCopy.set(leftArgRange.start - 1, resultToken);
-			removePair(leftArgRange.start, rightArgRange.start);
 		}
+		
+		return ERROR_EXPRESSION;
 	}
-
-	private void evaluateUnaryMinus(final int minusIndex) {
-		if (minusIndex < (this.tokensCopy.size() - 1)) {
-			LiteralToken operandToken = this.tokensCopy.get(minusIndex + 1);
-			if (operandToken.kind == LiteralTokenKind.NUMBER_TOKEN
-				|| operandToken.kind == LiteralTokenKind.PARAMETER_TOKEN) {
-				
-				LiteralToken resultToken;
-				try {
-					double operandValue = Double.parseDouble(operandToken.value);
-					operandValue *= -1.0;
-					resultToken = new LiteralToken(LiteralTokenKind.NUMBER_TOKEN, new Double(operandValue).toString());
-				} catch (NumberFormatException e) {
-					resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-				}
-				
-				this.tokensCopy.set(minusIndex, resultToken);
-				this.tokensCopy.remove(minusIndex + 1);
-			} else {
-				this.value = LiteralValue.ERROR;
-			}
-		} else {
-			this.value = LiteralValue.ERROR;
-		}
-	}
-	private void evaluateBinaryOperation(final int index,
-			 							 final LiteralArithmeticOperation op) {
-		if (index > 0 && index < (this.tokensCopy.size() - 1)) {
-			
-			LiteralToken resultToken;
-			try {
-				double leftValue  = Double.parseDouble(this.tokensCopy.get(index - 1).value);
-				double rightValue = Double.parseDouble(this.tokensCopy.get(index + 1).value);
-				
-				if (op == LiteralArithmeticOperation.MULTIPLICATION) {
-					leftValue *= rightValue;
-				} else if (op == LiteralArithmeticOperation.DIVISION) {
-					leftValue /= rightValue;
-				} else if (op == LiteralArithmeticOperation.ADDITION) {
-					leftValue += rightValue;
-				} else if (op == LiteralArithmeticOperation.SUBTRACTION) {
-					leftValue -= rightValue;
-				}
-				
-				resultToken = new LiteralToken(LiteralTokenKind.NUMBER_TOKEN, new Double(leftValue).toString());
-			} catch (NumberFormatException e) {
-				resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-			}
-			
-			
-			
-			this.tokensCopy.set(index - 1, resultToken);
-			removePair(index, index + 1);
-			
-		} else {
-			this.value = LiteralValue.ERROR;
+	private boolean nextIsSymbol(final String symbol) {
+		if (this.tokenPosition < this.tokens.size()) {
+			LiteralToken token = this.tokens.get(this.tokenPosition);
+			return token.kind == LiteralTokenKind.SYMBOL_TOKEN
+				   && token.value.equals(symbol);
 		}
+		return false;
 	}
-	private void evaluateEquals(final int equalsIndex) {
-		if (equalsIndex > 0 && equalsIndex < this.tokensCopy.size() - 1) {
-			LiteralToken leftOperand  = this.tokensCopy.get(equalsIndex - 1);
-			LiteralToken rightOperand = this.tokensCopy.get(equalsIndex + 1);
-			if ((leftOperand.kind == LiteralTokenKind.PARAMETER_TOKEN || leftOperand.kind == LiteralTokenKind.NUMBER_TOKEN)
-				&& (rightOperand.kind == LiteralTokenKind.PARAMETER_TOKEN || rightOperand.kind == LiteralTokenKind.NUMBER_TOKEN)) {
-				
-				LiteralToken resultToken;
-				try {
-					double leftValue  = Double.parseDouble(leftOperand.value);
-					double rightValue = Double.parseDouble(rightOperand.value);
-					if (leftValue == rightValue) {
-						resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "TRUE");
-					} else {
-						resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-					}
-				} catch (NumberFormatException e) {
-					resultToken = new LiteralToken(LiteralTokenKind.BOOLEAN_TOKEN, "FALSE");
-				}
-				
-				this.tokensCopy.set(equalsIndex - 1, resultToken);
-				removePair(equalsIndex, equalsIndex + 1);
-			} else {
-				this.value = LiteralValue.ERROR;
-			}
+	private void expectSymbol(final String symbol) {
+		if (nextIsSymbol(symbol)) {
+			this.tokenPosition++;
 		} else {
-			this.value = LiteralValue.ERROR;
+			this.malformed = true;
 		}
 	}
 	
@@ -765,25 +543,12 @@ public class EDLRuleLiteral {
 	}
 	
 	private enum LiteralTokenKind {
-		NULL_TOKEN,
-		BOOLEAN_TOKEN,
 		NUMBER_TOKEN,
 		STRING_TOKEN,
-		PARAMETER_TOKEN,
 		WORD_TOKEN,
 		SYMBOL_TOKEN;
 	}
 	
-	private class Range {
-		int start = -1;
-		int count = 0;
-		
-		Range(final int start, final int count) {
-			this.start = start;
-			this.count = count;
-		}
-	}
-	
 	private enum LiteralComparisonOperator {
 	    BIGGERTHAN,
 	    EQUAL_OR_BIGGERTHAN,
@@ -797,4 +562,278 @@ public class EDLRuleLiteral {
 	    SUBTRACTION;
 	}
 	
+	/*=====================================*/
+	/*========= Expression tree. ==========*/
+	/*=====================================*/
+	
+	/**
+	 * Immutable node of a compiled literal. Numeric evaluation yields NaN if
+	 * a value is missing or not a number, so a comparison involving such a 
+	 * value is never true.
+	 */
+	private static abstract class Expression {
+		
+		/** Whether the expression evaluates to a number (or NaN). */
+		boolean isNumeric() {
+			return false;
+		}
+		/** Whether the expression is a string constant or a parameter. */
+		boolean isTextual() {
+			return false;
+		}
+		
+		double number(final ParameterVector parameters, final int[] slots) {
+			return Double.NaN;
+		}
+		/** Textual value. Null if it is missing. */
+		String text(final ParameterVector parameters, final int[] slots) {
+			return null;
+		}
+		/** Whether the expression represents a single, present value. */
+		boolean exists(final ParameterVector parameters, final int[] slots) {
+			return false;
+		}
+		/** Whether none of the parameters used by the expression is missing. */
+		boolean isComplete(final ParameterVector parameters, final int[] slots) {
+			return true;
+		}
+		LiteralValue truth(final ParameterVector parameters, final int[] slots) {
+			return LiteralValue.ERROR;
+		}
+	}
+	
+	private static final Expression ERROR_EXPRESSION = new Expression() {};
+	
+	private static final class NumberConstant extends Expression {
+		private final double value;
+		
+		NumberConstant(final double value) {
+			this.value = value;
+		}
+		
+		@Override
+		boolean exists(final ParameterVector parameters, final int[] slots) {
+			return true;
+		}
+		@Override
+		boolean isNumeric() {
+			return true;
+		}
+		@Override
+		double number(final ParameterVector parameters, final int[] slots) {
+			return this.value;
+		}
+	}
+	
+	private static final class StringConstant extends Expression {
+		private final String value;
+		
+		StringConstant(final String value) {
+			this.value = value;
+		}
+		
+		@Override
+		boolean exists(final ParameterVector parameters, final int[] slots) {
+			return true;
+		}
+		@Override
+		boolean isTextual() {
+			return true;
+		}
+		@Override
+		String text(final ParameterVector parameters, final int[] slots) {
+			return this.value;
+		}
+	}
+	
+	private static final class Parameter extends Expression {
+		/** Local slot of the literal. */
+		private final int slot;
+		
+		Parameter(final int slot) {
+			this.slot = slot;
+		}
+		
+		@Override
+		boolean isNumeric() {
+			return true;
+		}
+		@Override
+		boolean isTextual() {
+			return true;
+		}
+		@Override
+		double number(final ParameterVector parameters, final int[] slots) {
+			return parameters.number(slots[this.slot]);
+		}
+		@Override
+		String text(final ParameterVector parameters, final int[] slots) {
+			return parameters.value(slots[this.slot]);
+		}
+		@Override
+		boolean exists(final ParameterVector parameters, final int[] slots) {
+			return parameters.value(slots[this.slot]) != null;
+		}
+		@Override
+		boolean isComplete(final ParameterVector parameters, final int[] slots) {
+			return exists(parameters, slots);
+		}
+	}
+	
+	private static final class Negation extends Expression {
+		private final Expression operand;
+		
+		Negation(final Expression operand) {
+			this.operand = operand;
+		}
+		
+		@Override
+		boolean isNumeric() {
+			return this.operand.isNumeric();
+		}
+		@Override
+		double number(final ParameterVector parameters, final int[] slots) {
+			return -this.operand.number(parameters, slots);
+		}
+		@Override
+		boolean isComplete(final ParameterVector parameters, final int[] slots) {
+			return this.operand.isComplete(parameters, slots);
+		}
+	}
+	
+	private static final class Arithmetic extends Expression {
+		private final LiteralArithmeticOperation op;
+		private final Expression left;
+		private final Expression right;
+		
+		Arithmetic(final LiteralArithmeticOperation op,
+				   final Expression left,
+				   final Expression right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		boolean isNumeric() {
+			return this.left.isNumeric() && this.right.isNumeric();
+		}
+		@Override
+		double number(final ParameterVector parameters, final int[] slots) {
+			double leftValue = this.left.number(parameters, slots);
+			double rightValue = this.right.number(parameters, slots);
+			switch (this.op) {
+			case MULTIPLICATION:
+				return leftValue * rightValue;
+			case DIVISION:
+				return leftValue / rightValue;
+			case ADDITION:
+				return leftValue + rightValue;
+			case SUBTRACTION:
+				return leftValue - rightValue;
+			default:
+				return Double.NaN;
+			}
+		}
+		@Override
+		boolean isComplete(final ParameterVector parameters, final int[] slots) {
+			return this.left.isComplete(parameters, slots)
+				   && this.right.isComplete(parameters, slots);
+		}
+	}
+	
+	private static final class Equality extends Expression {
+		private final Expression left;
+		private final Expression right;
+		
+		Equality(final Expression left, final Expression right) {
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		LiteralValue truth(final ParameterVector parameters, final int[] slots) {
+			if (!this.left.isNumeric() || !this.right.isNumeric()
+				|| !this.left.isComplete(parameters, slots)
+				|| !this.right.isComplete(parameters, slots)) {
+				return LiteralValue.ERROR;
+			}
+			if (this.left.number(parameters, slots) == this.right.number(parameters, slots)) {
+				return LiteralValue.TRUE;
+			}
+			return LiteralValue.FALSE;
+		}
+	}
+	
+	private static final class Exists extends Expression {
+		private final Expression argument;
+		
+		Exists(final Expression argument) {
+			this.argument = argument;
+		}
+		
+		@Override
+		LiteralValue truth(final ParameterVector parameters, final int[] slots) {
+			if (this.argument.exists(parameters, slots)) {
+				return LiteralValue.TRUE;
+			}
+			return LiteralValue.FALSE;
+		}
+	}
+	
+	private static final class StrIsEqual extends Expression {
+		private final Expression left;
+		private final Expression right;
+		
+		StrIsEqual(final Expression left, final Expression right) {
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		LiteralValue truth(final ParameterVector parameters, final int[] slots) {
+			if (!this.left.isTextual() || !this.right.isTextual()) {
+				return LiteralValue.ERROR;
+			}
+			String leftValue = this.left.text(parameters, slots);
+			String rightValue = this.right.text(parameters, slots);
+			if (leftValue != null 
+				&& rightValue != null
+				&& leftValue.equals(rightValue)) {
+				return LiteralValue.TRUE;
+			}
+			return LiteralValue.FALSE;
+		}
+	}
+	
+	private static final class Comparison extends Expression {
+		private final LiteralComparisonOperator op;
+		private final Expression left;
+		private final Expression right;
+		
+		Comparison(final LiteralComparisonOperator op,
+				   final Expression left,
+				   final Expression right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		LiteralValue truth(final ParameterVector parameters, final int[] slots) {
+			if (!this.left.isNumeric() || !this.right.isNumeric()) {
+				return LiteralValue.ERROR;
+			}
+			
+			double leftValue = this.left.number(parameters, slots);
+			double rightValue = this.right.number(parameters, slots);
+			if ((leftValue > rightValue && this.op == LiteralComparisonOperator.BIGGERTHAN)
+		        || (leftValue >= rightValue && this.op == LiteralComparisonOperator.EQUAL_OR_BIGGERTHAN)
+		        || (leftValue < rightValue && this.op == LiteralComparisonOperator.LOWERTHAN)
+		        || (leftValue <= rightValue && this.op == LiteralComparisonOperator.EQUAL_OR_LOWERTHAN)) {
+				return LiteralValue.TRUE;
+			}
+			return LiteralValue.FALSE;
+		}
+	}
 }
@@ -1,5 +1,9 @@
 package de.mpg.cbs.edled.core.validation;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import javax.xml.namespace.QName;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -17,6 +21,9 @@ public class EDLRuleParameter {
 		MATLABPATH;
 	}
 	
+	/** A single location step: an (attribute) name with an optional positional predicate. */
+	private static final Pattern SIMPLE_STEP = Pattern.compile("@?[A-Za-z_][\\w.\\-]*(\\[\\d+\\])?");
+
 	private final String id;
 	private final String name;
 	private final String xpathString;
@@ -81,7 +88,37 @@ public class EDLRuleParameter {
 	public String getPath() {
 		return this.xpathString;
 	}
-	
+
+	/**
+	 * Returns the location steps of the parameter path stripped of their
+	 * positional predicates, e.g. [rtExperiment, environment, logging, @doLogging]
+	 * for "rtExperiment/environment[1]/logging[1]/@doLogging".
+	 *
+	 * @return List of element names (and a trailing attribute name prefixed by '@').
+	 * 		   Null if the path is not a plain location path (wildcards, axes, functions...).
+	 */
+	public List<String> getNamePath() {
+		List<String> namePath = new LinkedList<String>();
+
+		String path = this.xpathString.trim();
+		if (path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		if (path.length() == 0) {
+			return null;
+		}
+
+		for (String step : path.split("/", -1)) {
+			if (!SIMPLE_STEP.matcher(step).matches()) {
+				return null;
+			}
+			int predicateStart = step.indexOf('[');
+			namePath.add((predicateStart < 0) ? step : step.substring(0, predicateStart));
+		}
+
+		return namePath;
+	}
+
 	public ParameterValue evaluate(final Document xmlDocument) {
 		ParameterValue value = null;
 		
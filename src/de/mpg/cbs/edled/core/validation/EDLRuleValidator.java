@@ -2,6 +2,7 @@ package de.mpg.cbs.edled.core.validation;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ public class EDLRuleValidator {
 //	private final File ruleFile;
 	private final Document ruleDocument;
 	private final List<EDLRule> rules = new LinkedList<EDLRule>();
+	/** Maps document paths to the rules depending on them. */
+	private final EDLRuleIndex ruleIndex;
 	
 	
 	public EDLRuleValidator(final File ruleFile) {
@@ -40,20 +43,56 @@ public class EDLRuleValidator {
 		} else {
 			logger.warn("Reading the rule XML file failed!");
 		}
+		this.ruleIndex = new EDLRuleIndex(this.rules);
 	}
 	
 	public Map<EDLRule, List<Node>> validate(final Document xmlDocument, final List<EDLRule> rules) {
-		Map<EDLRule, List<Node>> validatedRules = new HashMap<EDLRule, List<Node>>();
+		return validate(xmlDocument, rules, null);
+	}
+	
+	/**
+	 * Evaluates the given rules.
+	 * 
+	 * @param xmlDocument The document to evaluate the rules in.
+	 * @param rules		  Rules to evaluate.
+	 * @param numbers	  Numeric values of the document's nodes. May be null.
+	 * @return			  Rules mapped to the nodes their parameters refer to.
+	 */
+	public Map<EDLRule, List<Node>> validate(final Document xmlDocument, 
+											 final List<EDLRule> rules,
+											 final NumberCache numbers) {
+		Map<EDLRule, List<Node>> validatedRules = new LinkedHashMap<EDLRule, List<Node>>();
 		
 		for (EDLRule rule : rules) {
-			validatedRules.put(rule, rule.evaluate(xmlDocument));
+			validatedRules.put(rule, rule.evaluate(xmlDocument, numbers));
 		}
 		
 		return validatedRules;
 	}
 	
+	/**
+	 * Resolves the parameters of the given rules without deciding them.
+	 * The rules have to be decided afterwards, e.g. by a ParallelValidator.
+	 * 
+	 * @param xmlDocument The document to resolve the parameters in.
+	 * @param rules		  Rules to resolve.
+	 * @param numbers	  Numeric values of the document's nodes. May be null.
+	 * @return			  Rules mapped to the nodes their parameters refer to.
+	 */
+	public Map<EDLRule, List<Node>> resolve(final Document xmlDocument, 
+											final List<EDLRule> rules,
+											final NumberCache numbers) {
+		Map<EDLRule, List<Node>> resolvedRules = new LinkedHashMap<EDLRule, List<Node>>();
+		
+		for (EDLRule rule : rules) {
+			resolvedRules.put(rule, rule.resolve(xmlDocument, numbers));
+		}
+		
+		return resolvedRules;
+	}
+	
 	public Map<EDLRule, List<Node>> validate(final Document xmlDocument) {
-		Map<EDLRule, List<Node>> validatedRules = new HashMap<EDLRule, List<Node>>();
+		Map<EDLRule, List<Node>> validatedRules = new LinkedHashMap<EDLRule, List<Node>>();
 		
 		for (EDLRule rule : this.rules) {
 			validatedRules.put(rule, rule.evaluate(xmlDocument));
@@ -144,6 +183,18 @@ public class EDLRuleValidator {
 		return this.rules;
 	}
 	
+	/**
+	 * Returns the rules that have to be re-evaluated after node (or its subtree)
+	 * was added, removed or changed.
+	 * 
+	 * @param node The changed node. Must still be part of the document.
+	 * @return	   All rules with a parameter referring to node, one of its ancestors 
+	 * 			   or one of its descendants.
+	 */
+	public List<EDLRule> getRulesAffectedBy(final Node node) {
+		return this.ruleIndex.getRulesAffectedBy(node);
+	}
+	
 	public List<EDLRule> getRulesMissingParameters(Map<EDLRule, List<Node>> rulesUsingNodes) {
 		List<EDLRule> rulesMissingParameters = new LinkedList<EDLRule>();
 		
@@ -0,0 +1,283 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.text.DecimalFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Logger;
+
+import de.mpg.cbs.edled.core.metatree.TypeRestriction;
+
+/**
+ * The facets of a TypeRestriction compiled for validating values.
+ *
+ * Facet values are parsed once: the pattern is compiled, numeric bounds
+ * and lengths are parsed and the enumeration is hashed. A facet value that
+ * cannot be parsed makes every value invalid, as does a restriction of an
+ * unknown base type.
+ * Instances are immutable and shared by all nodes of a NodeConstraint
+ * (see NodeConstraint.getFacetValidator), so they may be used concurrently.
+ *
+ * @author Oliver Z.
+ */
+public final class FacetValidator {
+
+	private static final Logger logger = Logger.getLogger(FacetValidator.class);
+
+	/** How values are checked against the whiteSpace facet. */
+	enum WhiteSpaceCheck {
+		/** No whiteSpace facet or any whitespace is allowed. */
+		NONE,
+		/** No tabs, line feeds or carriage returns. */
+		REPLACED,
+		/** No leading or trailing whitespace. */
+		COLLAPSED,
+		/** No value satisfies the facet. */
+		INVALID;
+	}
+
+	private static final int NO_FACET = -1;
+
+	/** True if a facet can never be satisfied. */
+	private final boolean alwaysInvalid;
+
+	private final Set<String> enumeration;
+
+	private final int length;
+	private final int minLength;
+	private final int maxLength;
+
+	private final Pattern pattern;
+
+	private final WhiteSpaceCheck whiteSpace;
+
+	private final boolean hasNumericFacets;
+	private final boolean hasMinInclusive;
+	private final double minInclusive;
+	private final boolean hasMinExclusive;
+	private final double minExclusive;
+	private final boolean hasMaxInclusive;
+	private final double maxInclusive;
+	private final boolean hasMaxExclusive;
+	private final double maxExclusive;
+
+	private final int totalDigits;
+	private final int fractionDigits;
+	/** Formats numbers for the digit facets. Guarded by itself. */
+	private final DecimalFormat digitFormat;
+
+	/**
+	 * @param restriction	  The restriction to compile.
+	 * @param knownBaseType	  Whether the base type of the restriction is a built-in type.
+	 * @param whiteSpace	  How the whiteSpace facet applies to the base type.
+	 * @param nmtokenPattern  Regular expression replacing \c+ in patterns.
+	 */
+	FacetValidator(final TypeRestriction restriction,
+				   final boolean knownBaseType,
+				   final WhiteSpaceCheck whiteSpace,
+				   final String nmtokenPattern) {
+		boolean invalid = !knownBaseType || whiteSpace == WhiteSpaceCheck.INVALID;
+
+		List<String> enumerationValues = restriction.getEnumeration();
+		this.enumeration = (enumerationValues == null) ? null : new HashSet<String>(enumerationValues);
+
+		this.length = parseLength(restriction.getLength());
+		this.minLength = parseLength(restriction.getMinLength());
+		this.maxLength = parseLength(restriction.getMaxLength());
+		invalid = invalid
+				  || isInvalidLength(restriction.getLength(), this.length)
+				  || isInvalidLength(restriction.getMinLength(), this.minLength)
+				  || isInvalidLength(restriction.getMaxLength(), this.maxLength);
+
+		Pattern compiledPattern = null;
+		if (restriction.getPattern() != null) {
+			try {
+				compiledPattern = Pattern.compile(restriction.getPattern().replace("\\c+", nmtokenPattern));
+			} catch (PatternSyntaxException e) {
+				logger.warn("Cannot compile pattern facet " + restriction.getPattern() + ": " + e.getDescription());
+				invalid = true;
+			}
+		}
+		this.pattern = compiledPattern;
+
+		this.whiteSpace = whiteSpace;
+
+		this.hasMinInclusive = restriction.getMinInclusive() != null;
+		this.hasMinExclusive = restriction.getMinExclusive() != null;
+		this.hasMaxInclusive = restriction.getMaxInclusive() != null;
+		this.hasMaxExclusive = restriction.getMaxExclusive() != null;
+		this.hasNumericFacets = this.hasMinInclusive || this.hasMinExclusive
+								|| this.hasMaxInclusive || this.hasMaxExclusive;
+		this.minInclusive = parseBound(restriction.getMinInclusive());
+		this.minExclusive = parseBound(restriction.getMinExclusive());
+		this.maxInclusive = parseBound(restriction.getMaxInclusive());
+		this.maxExclusive = parseBound(restriction.getMaxExclusive());
+		invalid = invalid
+				  || isInvalidBound(restriction.getMinInclusive())
+				  || isInvalidBound(restriction.getMinExclusive())
+				  || isInvalidBound(restriction.getMaxInclusive())
+				  || isInvalidBound(restriction.getMaxExclusive());
+
+		this.totalDigits = parseDigits(restriction.getTotalDigits());
+		this.fractionDigits = parseDigits(restriction.getFractionDigits());
+		invalid = invalid
+				  || (restriction.getTotalDigits() != null && this.totalDigits == NO_FACET)
+				  || (restriction.getFractionDigits() != null && this.fractionDigits == NO_FACET);
+		this.digitFormat = (this.totalDigits != NO_FACET || this.fractionDigits != NO_FACET)
+						   ? new DecimalFormat("#*.#*")
+						   : null;
+
+		this.alwaysInvalid = invalid;
+	}
+
+	/**
+	 * @param value The (text) value of a node.
+	 * @return		True if the value satisfies all facets.
+	 */
+	public boolean validate(final String value) {
+		if (this.alwaysInvalid) {
+			return false;
+		}
+
+		if (this.enumeration != null && !this.enumeration.contains(value)) {
+			return false;
+		}
+
+		// TODO: handle hexBinary and base64Binary (length == number of octets) seperately
+		if ((this.length != NO_FACET && value.length() != this.length)
+			|| (this.minLength != NO_FACET && value.length() < this.minLength)
+			|| (this.maxLength != NO_FACET && value.length() > this.maxLength)) {
+			return false;
+		}
+
+		if (this.pattern != null && !this.pattern.matcher(value).matches()) {
+			return false;
+		}
+
+		if (!validWhiteSpace(value)) {
+			return false;
+		}
+
+		if (this.hasNumericFacets) {
+			// NaN (not a number) fails every bound.
+			double number = NumberScanner.toNumber(value);
+			if ((this.hasMinInclusive && !(number >= this.minInclusive))
+				|| (this.hasMinExclusive && !(number > this.minExclusive))
+				|| (this.hasMaxInclusive && !(number <= this.maxInclusive))
+				|| (this.hasMaxExclusive && !(number < this.maxExclusive))) {
+				return false;
+			}
+		}
+
+		if (this.digitFormat != null) {
+			return validDigits(value);
+		}
+
+		return true;
+	}
+
+	private boolean validWhiteSpace(final String value) {
+		switch (this.whiteSpace) {
+		case REPLACED:
+			return value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0;
+		case COLLAPSED:
+			// Same as value.equals(value.trim()), which also rejects values of spaces only.
+			int last = value.length() - 1;
+			return last < 0 || (value.charAt(0) > ' ' && value.charAt(last) > ' ');
+		default:
+			return true;
+		}
+	}
+
+	private boolean validDigits(final String value) {
+		double number = NumberScanner.toNumber(value);
+		if (Double.isNaN(number)) {
+			return false;
+		}
+		String formattedValue;
+		synchronized (this.digitFormat) {
+			formattedValue = this.digitFormat.format(number);
+		}
+
+		if (this.totalDigits != NO_FACET
+			&& formattedValue.replace(".", "").length() != this.totalDigits) {
+			return false;
+		}
+		if (this.fractionDigits != NO_FACET) {
+			String[] numberParts = formattedValue.split("\\.");
+			boolean validFraction = (numberParts.length == 2 && numberParts[1].length() == this.fractionDigits)
+									|| (numberParts.length == 1
+										&& formattedValue.startsWith(".")
+										&& numberParts[0].length() == this.fractionDigits);
+			if (!validFraction) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The length. NO_FACET if the facet is missing or not a non-negative integer.
+	 */
+	private static int parseLength(final String facet) {
+		if (facet == null) {
+			return NO_FACET;
+		}
+
+		for (int charNr = (facet.startsWith("+") ? 1 : 0); charNr < facet.length(); charNr++) {
+			char c = facet.charAt(charNr);
+			if (c < '0' || c > '9') {
+				return NO_FACET;
+			}
+		}
+		try {
+			return Integer.parseInt(facet);
+		} catch (NumberFormatException e) {
+			return NO_FACET;
+		}
+	}
+	private static boolean isInvalidLength(final String facet, final int parsed) {
+		return facet != null && parsed == NO_FACET;
+	}
+
+	private static double parseBound(final String facet) {
+		if (facet == null) {
+			return Double.NaN;
+		}
+
+		try {
+			return Double.parseDouble(facet);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+	private static boolean isInvalidBound(final String facet) {
+		if (facet == null) {
+			return false;
+		}
+
+		try {
+			Double.parseDouble(facet);
+			return false;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static int parseDigits(final String facet) {
+		if (facet == null) {
+			return NO_FACET;
+		}
+
+		try {
+			int digits = Integer.parseInt(facet);
+			return (digits < 0) ? NO_FACET : digits;
+		} catch (NumberFormatException e) {
+			return NO_FACET;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package de.mpg.cbs.edled.core.validation;
+
+import org.w3c.dom.Node;
+
+/**
+ * Numeric values of DOM nodes, parsed once per node value.
+ * Used by EDL rules to look up their numeric parameters.
+ *
+ * @author Oliver Z.
+ */
+public interface NumberCache {
+
+	/**
+	 * @param node  A node.
+	 * @param value The current (text) value of the node.
+	 * @return		The value as number (see NumberScanner.toNumber). NaN if it is not a number.
+	 */
+	double getNumber(Node node, String value);
+}
@@ -0,0 +1,315 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single pass scanners for the lexical spaces of the numeric XSD types.
+ *
+ * A value is checked and converted to a double at once, without creating
+ * objects or throwing exceptions for invalid values. Ranges of the integer
+ * types are checked exactly on the digits, so e.g. 18446744073709551616 is
+ * not a valid unsignedLong although it equals the maximum as a double.
+ * Leading and trailing whitespace is ignored, as the whiteSpace facet of all
+ * numeric types is collapse.
+ *
+ * @author Oliver Z.
+ */
+public final class NumberScanner {
+
+	/** The numeric XSD types and the ranges of the integer types. */
+	public enum NumericType {
+		DOUBLE("double"),
+		FLOAT("float"),
+		DECIMAL("decimal"),
+		INTEGER("integer", null, null, true),
+		NON_POSITIVE_INTEGER("nonPositiveInteger", "0", null, true),
+		NEGATIVE_INTEGER("negativeInteger", "0", null, false),
+		LONG("long", "9223372036854775807", "9223372036854775808", true),
+		INT("int", "2147483647", "2147483648", true),
+		SHORT("short", "32767", "32768", true),
+		BYTE("byte", "127", "128", true),
+		NON_NEGATIVE_INTEGER("nonNegativeInteger", null, "0", true),
+		POSITIVE_INTEGER("positiveInteger", null, "0", false),
+		UNSIGNED_LONG("unsignedLong", "18446744073709551615", "0", true),
+		UNSIGNED_INT("unsignedInt", "4294967295", "0", true),
+		UNSIGNED_SHORT("unsignedShort", "65535", "0", true),
+		UNSIGNED_BYTE("unsignedByte", "255", "0", true);
+
+		private static final Map<String, NumericType> typesByName = new HashMap<String, NumericType>();
+		static {
+			for (NumericType type : values()) {
+				typesByName.put(type.typeName, type);
+			}
+		}
+
+		private final String typeName;
+		private final boolean integer;
+		/** Digits of the largest positive value. Null if unbounded. */
+		private final String maxPositive;
+		/** Digits of the absolute value of the smallest negative value. Null if unbounded. */
+		private final String maxNegative;
+		private final boolean zeroAllowed;
+
+		private NumericType(final String typeName) {
+			this.typeName = typeName;
+			this.integer = false;
+			this.maxPositive = null;
+			this.maxNegative = null;
+			this.zeroAllowed = true;
+		}
+		private NumericType(final String typeName,
+							final String maxPositive,
+							final String maxNegative,
+							final boolean zeroAllowed) {
+			this.typeName = typeName;
+			this.integer = true;
+			this.maxPositive = maxPositive;
+			this.maxNegative = maxNegative;
+			this.zeroAllowed = zeroAllowed;
+		}
+
+		/**
+		 * @param typeName Name of a predefined XSD type, e.g. "unsignedInt".
+		 * @return		   The numeric type of that name. Null if the type is not numeric.
+		 */
+		public static NumericType forTypeName(final String typeName) {
+			return (typeName == null) ? null : typesByName.get(typeName);
+		}
+
+		public String getTypeName() {
+			return this.typeName;
+		}
+	}
+
+	/** Largest mantissa that converts to a double exactly. */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Largest mantissa that can take another digit without overflowing. */
+	private static final long MAX_ACCUMULATED_MANTISSA = (Long.MAX_VALUE - 9) / 10;
+	/** Exponents beyond this are infinite or zero anyway (and cannot overflow an int). */
+	private static final int MAX_EXPONENT = 100000;
+	/** Powers of ten that are exact doubles. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private NumberScanner() {
+	}
+
+	/**
+	 * Scans a value of a numeric type.
+	 *
+	 * @param text The value.
+	 * @param type Its type.
+	 * @return	   The value as double (rounded to nearest). NaN if the value
+	 * 			   is invalid (or NaN, see isValid).
+	 */
+	public static double scan(final String text, final NumericType type) {
+		int start = trimmedStart(text);
+		int end = trimmedEnd(text, start);
+
+		if (type.integer) {
+			return scanInteger(text, start, end, type);
+		}
+		if (type != NumericType.DECIMAL) {
+			int length = end - start;
+			if (length == 3 && text.startsWith("INF", start)) {
+				return Double.POSITIVE_INFINITY;
+			} else if (length == 4 && text.startsWith("-INF", start)) {
+				return Double.NEGATIVE_INFINITY;
+			} else if (length == 3 && text.startsWith("NaN", start)) {
+				return Double.NaN;
+			}
+		}
+		return scanDecimal(text, start, end, type != NumericType.DECIMAL);
+	}
+
+	/**
+	 * @param text The value.
+	 * @param type Its type.
+	 * @return	   True if the value is in the lexical space and in the range of the type.
+	 */
+	public static boolean isValid(final String text, final NumericType type) {
+		if (!Double.isNaN(scan(text, type))) {
+			return true;
+		}
+
+		// Only double and float have NaN in their value space.
+		if (type != NumericType.DOUBLE && type != NumericType.FLOAT) {
+			return false;
+		}
+		int start = trimmedStart(text);
+		int end = trimmedEnd(text, start);
+		return end - start == 3 && text.startsWith("NaN", start);
+	}
+
+	/**
+	 * Converts a value of any numeric type.
+	 *
+	 * @param text The value.
+	 * @return	   The value as double. NaN if it is not a number.
+	 */
+	public static double toNumber(final String text) {
+		return scan(text, NumericType.DOUBLE);
+	}
+
+	private static double scanInteger(final String text,
+									  final int start,
+									  final int end,
+									  final NumericType type) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+			negative = text.charAt(pos) == '-';
+			pos++;
+		}
+		if (pos == end) {
+			return Double.NaN;
+		}
+
+		while (pos < end - 1 && text.charAt(pos) == '0') {
+			pos++;
+		}
+		int digitsStart = pos;
+		long magnitude = 0;
+		for (; pos < end; pos++) {
+			char c = text.charAt(pos);
+			if (c < '0' || c > '9') {
+				return Double.NaN;
+			}
+			magnitude = magnitude * 10 + (c - '0');
+		}
+
+		int digitCount = end - digitsStart;
+		boolean zero = digitCount == 1 && text.charAt(digitsStart) == '0';
+		if (zero) {
+			return type.zeroAllowed ? 0.0 : Double.NaN;
+		}
+		String max = negative ? type.maxNegative : type.maxPositive;
+		if (max != null && compareDigits(text, digitsStart, end, max) > 0) {
+			return Double.NaN;
+		}
+
+		// Up to 18 digits fit into a long, whose conversion rounds to nearest.
+		double value = (digitCount <= 18) ? magnitude : Double.parseDouble(text.substring(digitsStart, end));
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Compares a run of digits without leading zeros with the digits of a bound.
+	 */
+	private static int compareDigits(final String text, final int start, final int end, final String bound) {
+		int length = end - start;
+		if (length != bound.length()) {
+			return length - bound.length();
+		}
+		for (int digitNr = 0; digitNr < length; digitNr++) {
+			int difference = text.charAt(start + digitNr) - bound.charAt(digitNr);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return 0;
+	}
+
+	private static double scanDecimal(final String text,
+									  final int start,
+									  final int end,
+									  final boolean exponentAllowed) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+			negative = text.charAt(pos) == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		boolean exactMantissa = true;
+		int digitCount = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+		for (; pos < end; pos++) {
+			char c = text.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				digitCount++;
+				if (point) {
+					fractionDigits++;
+				}
+				if (mantissa <= MAX_ACCUMULATED_MANTISSA) {
+					mantissa = mantissa * 10 + (c - '0');
+				} else {
+					exactMantissa = false;
+				}
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digitCount == 0) {
+			return Double.NaN;
+		}
+
+		int exponent = 0;
+		if (pos < end) {
+			char c = text.charAt(pos);
+			if (!exponentAllowed || (c != 'e' && c != 'E')) {
+				return Double.NaN;
+			}
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+				negativeExponent = text.charAt(pos) == '-';
+				pos++;
+			}
+			if (pos == end) {
+				return Double.NaN;
+			}
+			for (; pos < end; pos++) {
+				c = text.charAt(pos);
+				if (c < '0' || c > '9') {
+					return Double.NaN;
+				}
+				if (exponent < MAX_EXPONENT) {
+					exponent = exponent * 10 + (c - '0');
+				}
+			}
+			if (negativeExponent) {
+				exponent = -exponent;
+			}
+		}
+
+		int scale = exponent - fractionDigits;
+		if (!exactMantissa
+			|| mantissa > MAX_EXACT_MANTISSA
+			|| scale < -22 || scale > 22) {
+			// The value is valid, so Java's parser accepts it as well.
+			return Double.parseDouble(text.substring(start, end));
+		}
+
+		// Both operands are exact, so a single operation rounds correctly.
+		double value = (scale < 0) ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private static int trimmedStart(final String text) {
+		int start = 0;
+		while (start < text.length() && isWhiteSpace(text.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+	private static int trimmedEnd(final String text, final int start) {
+		int end = text.length();
+		while (end > start && isWhiteSpace(text.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	private static boolean isWhiteSpace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+}
@@ -0,0 +1,160 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Validates document snapshots and decides EDL rules on a pool of worker threads.
+ * 
+ * Work is split into chunks of consecutive snapshot entries (respectively rules).
+ * Small workloads are validated directly on the calling thread.
+ */
+public class ParallelValidator {
+	
+	/** Below this number of snapshot entries the calling thread validates alone. */
+	private static final int MIN_PARALLEL_ENTRIES = 256;
+	/** Number of chunks per worker thread (for load balancing). */
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	private static ParallelValidator singleton = null;
+	
+	private final int threadCount;
+	private final ExecutorService executor;
+	
+	/**
+	 * @param threadCount Number of worker threads.
+	 */
+	public ParallelValidator(final int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+		this.executor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactory() {
+			private int threadNr = 0;
+			
+			@Override
+			public synchronized Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "EDLed-Validation-" + this.threadNr++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * @return Shared validator using one thread per available processor.
+	 */
+	public static synchronized ParallelValidator getSingleton() {
+		if (ParallelValidator.singleton == null) {
+			ParallelValidator.singleton = new ParallelValidator(Runtime.getRuntime().availableProcessors());
+		}
+		
+		return ParallelValidator.singleton;
+	}
+	
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+	
+	/**
+	 * Validates all values of a snapshot against their simple types and decides
+	 * the given rules. The rules must have been resolved before
+	 * (see EDLRuleValidator.resolve), their decided values are published 
+	 * on the calling thread.
+	 * 
+	 * @param snapshot Snapshot of the document.
+	 * @param rules	   Resolved rules.
+	 * @return		   Validity of each snapshot entry (same index).
+	 */
+	public boolean[] validate(final DocumentSnapshot snapshot,
+							  final List<EDLRule> rules) {
+		final boolean[] validValues = new boolean[snapshot.size()];
+		final EDLRule[] ruleArray = rules.toArray(new EDLRule[rules.size()]);
+		final boolean[] ruleValues = new boolean[ruleArray.length];
+		
+		List<Callable<Object>> tasks = new LinkedList<Callable<Object>>();
+		
+		int chunkCount = (snapshot.size() < MIN_PARALLEL_ENTRIES) ? 1 : this.threadCount * CHUNKS_PER_THREAD;
+		int chunkSize = (snapshot.size() + chunkCount - 1) / chunkCount;
+		for (int start = 0; start < snapshot.size(); start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(snapshot.size(), start + chunkSize);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					validateValues(snapshot, from, to, validValues);
+					return null;
+				}
+			});
+		}
+		
+		int ruleChunkSize = (ruleArray.length + this.threadCount - 1) / this.threadCount;
+		for (int start = 0; start < ruleArray.length; start += ruleChunkSize) {
+			final int from = start;
+			final int to = Math.min(ruleArray.length, start + ruleChunkSize);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (int ruleNr = from; ruleNr < to; ruleNr++) {
+						ruleValues[ruleNr] = ruleArray[ruleNr].decide();
+					}
+					return null;
+				}
+			});
+		}
+		
+		if (snapshot.size() < MIN_PARALLEL_ENTRIES) {
+			for (Callable<Object> task : tasks) {
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new RuntimeException("Validation failed!", e);
+				}
+			}
+		} else {
+			runAll(tasks);
+		}
+		
+		for (int ruleNr = 0; ruleNr < ruleArray.length; ruleNr++) {
+			ruleArray[ruleNr].publish(ruleValues[ruleNr]);
+		}
+		
+		return validValues;
+	}
+	
+	private void validateValues(final DocumentSnapshot snapshot,
+								final int from,
+								final int to,
+								final boolean[] validValues) {
+		SimpleTypeValidator typeValidator = SimpleTypeValidator.getSingleton();
+		
+		for (int index = from; index < to; index++) {
+			if (snapshot.getConstraint(index).canHaveTextContent()) {
+				validValues[index] = typeValidator.validate(snapshot.getValue(index), 
+															snapshot.getNode(index), 
+															snapshot.getConstraint(index),
+															snapshot.getIDRegistry());
+			} else {
+				validValues[index] = true;
+			}
+		}
+	}
+	
+	private void runAll(final List<Callable<Object>> tasks) {
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(this.executor.invokeAll(tasks));
+			for (Future<Object> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for validation!", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Validation failed!", e.getCause());
+		}
+	}
+}
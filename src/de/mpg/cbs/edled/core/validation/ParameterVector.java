@@ -0,0 +1,82 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolved parameter values of an EDL rule, addressed by slot.
+ * 
+ * Numeric values are parsed once when a value is set (or taken from a
+ * NumberCache), so literals using a parameter several times (or in several
+ * literals) do not parse it again.
+ * A vector is reused for every evaluation of its rule.
+ */
+final class ParameterVector {
+	
+	private final String[] names;
+	private final String[] values;
+	private final double[] numbers;
+	
+	ParameterVector(final List<String> names) {
+		this.names = names.toArray(new String[names.size()]);
+		this.values = new String[this.names.length];
+		this.numbers = new double[this.names.length];
+		clear();
+	}
+	
+	/**
+	 * @param name A parameter name.
+	 * @return	   The slot of the parameter. -1 if there is no such parameter.
+	 */
+	int indexOf(final String name) {
+		for (int slot = 0; slot < this.names.length; slot++) {
+			if (this.names[slot].equals(name)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+	
+	int size() {
+		return this.names.length;
+	}
+	
+	String name(final int slot) {
+		return this.names[slot];
+	}
+	
+	/** Marks all parameters as missing. */
+	void clear() {
+		Arrays.fill(this.values, null);
+		Arrays.fill(this.numbers, Double.NaN);
+	}
+	
+	void set(final int slot, final String value) {
+		set(slot, value, (value == null) ? Double.NaN : NumberScanner.toNumber(value));
+	}
+	
+	/**
+	 * @param value	 Value of the parameter.
+	 * @param number The value parsed before (see NumberScanner.toNumber).
+	 */
+	void set(final int slot, final String value, final double number) {
+		this.values[slot] = value;
+		this.numbers[slot] = number;
+	}
+	
+	/**
+	 * @param slot Slot of a parameter (may be -1).
+	 * @return	   Value of the parameter. Null if it is missing.
+	 */
+	String value(final int slot) {
+		return (slot < 0) ? null : this.values[slot];
+	}
+	
+	/**
+	 * @param slot Slot of a parameter (may be -1).
+	 * @return	   Numeric value of the parameter. NaN if it is missing or not a number.
+	 */
+	double number(final int slot) {
+		return (slot < 0) ? Double.NaN : this.numbers[slot];
+	}
+}
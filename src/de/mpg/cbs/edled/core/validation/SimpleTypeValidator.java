@@ -1,6 +1,5 @@
 package de.mpg.cbs.edled.core.validation;
 
-import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -9,9 +8,11 @@ import java.util.regex.Pattern;
 
 import org.w3c.dom.Node;
 
-import de.mpg.cbs.edled.core.TreeManager;
+import de.mpg.cbs.edled.core.IDRegistry;
 import de.mpg.cbs.edled.core.metatree.NodeConstraint;
 import de.mpg.cbs.edled.core.metatree.TypeRestriction;
+import de.mpg.cbs.edled.core.validation.FacetValidator.WhiteSpaceCheck;
+import de.mpg.cbs.edled.core.validation.NumberScanner.NumericType;
 import de.mpg.cbs.edled.xml.XMLUtility;
 import de.mpg.cbs.edled.xml.XSDTypeName;
 
@@ -31,16 +32,11 @@ public class SimpleTypeValidator {
 	private static final String EXTENDER_CLASS = "\\u00B7\\u02D0\\u02D1\\u0387\\u0640\\u0E46\\u0EC6\\u3005\\u3031-\\u3035\\u309D-\\u309E\\u30FC-\\u30FE";
 	
 	private static final String ANYURI_PATTERN = "([a-zA-Z0-9\\-_\\.!\\~\\*'\\(\\);/\\?:\\@\\&=\\+$,]|(%[a-fA-F0-9]{2}))*";
-	private static final String DECIMAL_PATTERN = "[\\+\\-]?[\\d]+[\\.[\\d]+]?";
-	private static final String INTEGER_PATTERN = "[\\+\\-]?[\\d]+";
 	private static final String NCNAME_PATTERN = "[[\\w" + "[" + COMBINING_CHAR_CLASS + "[" + EXTENDER_CLASS + "]" + "]" + "]&&[^\\d]][\\w\\.\\-" + "[" + COMBINING_CHAR_CLASS + "[" + EXTENDER_CLASS + "]" + "]" + "]*";
 	private static final String NMTOKEN_PATTERN = "[[\\S]&&[^\\,]]+";
-	private static final String NONNEGATIVE_INTEGER_PATTERN = "[\\+]?[\\d]+";
 	
-	private static final double UNSIGNED_INT_MAX  = 4294967295.0;
-	private static final double UNSIGNED_LONG_MAX = 18446744073709551615.0;
-	
-	private static SimpleTypeValidator singleton = null;
+	/** Created eagerly, validation may run on several threads. */
+	private static final SimpleTypeValidator singleton = new SimpleTypeValidator();
 	
 	private final Map<XSDTypeName, Pattern> patterns = new HashMap<XSDTypeName, Pattern>();
 	
@@ -49,11 +45,8 @@ public class SimpleTypeValidator {
 	private SimpleTypeValidator() {
 		// Precompile patterns for faster validation.
 		this.patterns.put(XSDTypeName.anyURI, Pattern.compile(ANYURI_PATTERN));
-		this.patterns.put(XSDTypeName.decimal, Pattern.compile(DECIMAL_PATTERN));
-		this.patterns.put(XSDTypeName.integer, Pattern.compile(INTEGER_PATTERN));
 		this.patterns.put(XSDTypeName.NCName, Pattern.compile(NCNAME_PATTERN));
 		this.patterns.put(XSDTypeName.NMTOKEN, Pattern.compile(NMTOKEN_PATTERN));
-		this.patterns.put(XSDTypeName.nonNegativeInteger, Pattern.compile(NONNEGATIVE_INTEGER_PATTERN));
 		
 		this.typeRestrictionValidator = new TypeRestrictionValidator();
 	}
@@ -61,27 +54,110 @@ public class SimpleTypeValidator {
 
 	
 	public static SimpleTypeValidator getSingleton() {
-		if (SimpleTypeValidator.singleton == null) {
-			SimpleTypeValidator.singleton = new SimpleTypeValidator();
-		}
-		
 		return SimpleTypeValidator.singleton;
 	}
 	
+	/**
+	 * Validates the value of a node.
+	 * 
+	 * @param toValidate The node.
+	 * @param constraint Constraint of the node.
+	 * @param ids		 IDs of the node's document (needed for ID and IDREF checks).
+	 * @return			 True if the value is valid.
+	 */
 	public boolean validate(final Node toValidate, 
-							final NodeConstraint constraint) {
-		return validateAgainstBaseType(toValidate, constraint)
-			   && validateAgainstTypeRestriction(toValidate, constraint);
+							final NodeConstraint constraint,
+							final IDRegistry ids) {
+		return validate(XMLUtility.getNodeValue(toValidate), toValidate, constraint, ids);
+	}
+	
+	/**
+	 * Validates a value that was read from a node before. Does not access 
+	 * the DOM, hence it is safe to call concurrently (as long as no IDs are 
+	 * changed at the same time).
+	 * 
+	 * @param value		 The (text) value of the node. Null is treated as empty value.
+	 * @param toValidate The node the value belongs to (needed for ID checks).
+	 * @param constraint Constraint of the node.
+	 * @param ids		 IDs of the node's document (needed for ID and IDREF checks).
+	 * @return			 True if the value is valid.
+	 */
+	public boolean validate(final String value,
+							final Node toValidate,
+							final NodeConstraint constraint,
+							final IDRegistry ids) {
+		String textToValidate = (value == null) ? "" : value;
+		
+		return validateAgainstBaseType(textToValidate, toValidate, constraint, ids)
+			   && this.typeRestrictionValidator.validate(textToValidate, constraint);
+	}
+	
+	/**
+	 * Validates a value parsed before. Only values of types depending on 
+	 * the document (IDs) are checked again.
+	 * 
+	 * @param typedValue The parsed value of the node (see parse).
+	 * @param toValidate The node the value belongs to (needed for ID checks).
+	 * @param constraint Constraint of the node.
+	 * @param ids		 IDs of the node's document (needed for ID and IDREF checks).
+	 * @return			 True if the value is valid.
+	 */
+	public boolean validate(final TypedValue typedValue,
+							final Node toValidate,
+							final NodeConstraint constraint,
+							final IDRegistry ids) {
+		if (typedValue.isValidityKnown()) {
+			return typedValue.isValid();
+		}
+		
+		return validate(typedValue.getText(), toValidate, constraint, ids);
 	}
 	
-	private boolean validateAgainstBaseType(final Node toValidate, 
-										    final NodeConstraint constraint) {
+	/**
+	 * Parses the value of a node according to the node's type and validates
+	 * it as far as possible without knowing the node's document.
+	 * 
+	 * @param value		 The (text) value of the node. Null is treated as empty value.
+	 * @param constraint Constraint of the node. Null if unknown.
+	 * @return			 The parsed value.
+	 */
+	public TypedValue parse(final String value, final NodeConstraint constraint) {
+		String text = (value == null) ? "" : value;
+		if (constraint == null) {
+			return new TypedValue(text, NumberScanner.toNumber(text), null);
+		}
+		
+		String typeName = constraint.getTypeName();
+		NumericType numericType = NumericType.forTypeName(typeName);
+		if (numericType != null) {
+			double number = NumberScanner.scan(text, numericType);
+			boolean valid = !Double.isNaN(number) || NumberScanner.isValid(text, numericType);
+			if (!valid) {
+				// Invalid for the type, but maybe still a number (e.g. 1.5 for an int).
+				number = NumberScanner.toNumber(text);
+			}
+			return new TypedValue(text, 
+								  number, 
+								  Boolean.valueOf(valid && this.typeRestrictionValidator.validate(text, constraint)));
+		}
 		
-		String textToValidate = XMLUtility.getNodeValue(toValidate);
-		if (textToValidate == null) {
-			textToValidate = "";
+		double number = NumberScanner.toNumber(text);
+		if (typeName != null
+			&& (typeName.equals("ID") || typeName.equals("IDREF") || typeName.equals("IDREFS"))) {
+			return new TypedValue(text, number, null);
 		}
 		
+		return new TypedValue(text,
+							  number,
+							  Boolean.valueOf(validateAgainstBaseType(text, null, constraint, null)
+									  		  && this.typeRestrictionValidator.validate(text, constraint)));
+	}
+	
+	private boolean validateAgainstBaseType(final String textToValidate,
+											final Node toValidate, 
+										    final NodeConstraint constraint,
+										    final IDRegistry ids) {
+		
 		String typeName = constraint.getTypeName();
 		
 		if (typeName == null) {
@@ -93,6 +169,10 @@ public class SimpleTypeValidator {
 			|| typeName.equals("string")) {
 			return true;
 		}
+		NumericType numericType = NumericType.forTypeName(typeName);
+		if (numericType != null) {
+			return NumberScanner.isValid(textToValidate, numericType);
+		}
 		if (typeName.equals("anyURI")) {
 			return isAnyURI(textToValidate);
 		}
@@ -100,33 +180,18 @@ public class SimpleTypeValidator {
 		if (typeName.equals("boolean")) {
 			return isBoolean(textToValidate);
 		}
-		if (typeName.equals("decimal")) {
-			return isDecimal(textToValidate);
-		}
-		if (typeName.equals("double")) {
-			return isDouble(textToValidate);
-		}
-		if (typeName.equals("int")) {
-			return isInt(textToValidate);
-		}
-		if (typeName.equals("integer")) {
-			return isInteger(textToValidate);
-		}
-		if (typeName.equals("long")) {
-			return isLong(textToValidate);
-		}
 		if (typeName.equals("NCName")) {
 			return isNCName(textToValidate);
 		}
 		if (typeName.equals("ID")) {
-			return isValidID(textToValidate, toValidate);
+			return isValidID(textToValidate, toValidate, ids);
 		}
 		if (typeName.equals("IDREF")) {
-			return isValidIDREF(textToValidate);
+			return isValidIDREF(textToValidate, ids);
 		}
 		if (typeName.equals("IDREFS")) {
 			for (String id : splitListType(textToValidate)) {
-				if (!isValidIDREF(id)) {
+				if (!isValidIDREF(id, ids)) {
 					return false;
 				}
 			}
@@ -135,44 +200,25 @@ public class SimpleTypeValidator {
 		if (typeName.equals("NMTOKEN")) {
 			return isNMToken(textToValidate);
 		}
-		if (typeName.equals("nonNegativeInteger")) {
-			return isNonNegativeInteger(textToValidate);
-		}
 		if (typeName.equals("token")) {
 			return isToken(textToValidate);
 		}
-		if (typeName.equals("unsignedInt")) {
-			return isUnsignedInt(textToValidate);
-		}
-		if (typeName.equals("unsignedLong")) {
-			return isUnsignedLong(textToValidate);
-		}
 		
 		return false;
 	}
-	private boolean validateAgainstTypeRestriction(final Node toValidate,
-												   final NodeConstraint constraint) {
-		String textToValidate = XMLUtility.getNodeValue(toValidate);
-		if (textToValidate == null) {
-			textToValidate = "";
-		}
-
-		return this.typeRestrictionValidator.validate(toValidate, constraint);
-	}
-	
-	private boolean isValidID(final String id, final Node node) {
+	private boolean isValidID(final String id, final Node node, final IDRegistry ids) {
 		boolean valid = isNCName(id);
 		
 		if (valid) {
-			if (TreeManager.getNodeForID(id) != node) {
+			if (ids.getNodeForID(id) != node) {
 				valid = false;
 			}
 		}
 		
 		return valid;
 	}
-	private boolean isValidIDREF(final String id) {
-		return isNCName(id) && (TreeManager.getNodeForID(id) != null);
+	private boolean isValidIDREF(final String id, final IDRegistry ids) {
+		return isNCName(id) && ids.isIDInUse(id);
 	}
 	
 	private boolean isAnyURI(final String toValidate) {
@@ -188,54 +234,12 @@ public class SimpleTypeValidator {
 		
 		return false;
 	}
-	private boolean isDecimal(final String toValidate) {
-		return this.patterns.get(XSDTypeName.decimal).matcher(toValidate).matches();
-	}
-	private boolean isDouble(final String toValidate) {
-		boolean isDouble = true;
-		
-		try {
-			Double.parseDouble(toValidate);
-		} catch (NumberFormatException e) {
-			isDouble = false;
-		}
-		
-		return isDouble;
-	}
-	private boolean isInt(final String toValidate) {
-		boolean isInt = true;
-		
-		try {
-			Integer.parseInt(toValidate);
-		} catch (NumberFormatException e) {
-			isInt = false;
-		}
-		
-		return isInt;
-	}
-	private boolean isInteger(final String toValidate) {
-		return this.patterns.get(XSDTypeName.integer).matcher(toValidate).matches();
-	}
-	private boolean isLong(final String toValidate) {
-		boolean isLong = true;
-		
-		try {
-			Long.parseLong(toValidate);
-		} catch (NumberFormatException e) {
-			isLong = false;
-		}
-		
-		return isLong;
-	}
 	private boolean isNCName(final String toValidate) {
 		return this.patterns.get(XSDTypeName.NCName).matcher(toValidate).matches();
 	}
 	private boolean isNMToken(final String toValidate) {
 		return this.patterns.get(XSDTypeName.NMTOKEN).matcher(toValidate).matches();
 	}
-	private boolean isNonNegativeInteger(final String toValidate) {
-		return this.patterns.get(XSDTypeName.nonNegativeInteger).matcher(toValidate).matches();
-	}
 	private boolean isToken(final String toValidate) {
 		
 		if (toValidate.contains("\n")
@@ -252,37 +256,6 @@ public class SimpleTypeValidator {
 		
 		return true;
 	}
-
-	private boolean isUnsignedInt(final String toValidate) {
-		boolean isUnsignedInt = isUnsignedLong(toValidate);
-		try {
-			double value = Double.parseDouble(toValidate);
-			if (value > SimpleTypeValidator.UNSIGNED_INT_MAX) {
-				isUnsignedInt = false;
-			}
-		} catch (NumberFormatException e) {
-			isUnsignedInt = false;
-		}
-		
-		return isUnsignedInt;
-	}
-	private boolean isUnsignedLong(final String toValidate) {
-		boolean isUnsignedLong = isNonNegativeInteger(toValidate);
-		
-		try {
-			/* Need to work with double here because Java doesn't support 
-			 * unsigned types. 
-			 */
-			double value = Double.parseDouble(toValidate);
-			if (!(value >= 0.0 && value <= SimpleTypeValidator.UNSIGNED_LONG_MAX)) {
-				isUnsignedLong = false;
-			}
-		} catch (NumberFormatException e) {
-			isUnsignedLong = false;
-		}
-		
-		return isUnsignedLong;
-	}
 	
 	private List<String> splitListType(final String toSplit) {
 		return Arrays.asList(toSplit.split(" "));
@@ -357,77 +330,43 @@ public class SimpleTypeValidator {
 			this.predefinedTypeHierarchy.put(XSDTypeName.unsignedByte, XSDTypeName.unsignedShort);
 		}
 		
-		public boolean validate(final Node node, 
+		public boolean validate(final String nodeValue, 
 								final NodeConstraint constraint) {
-			String nodeValue = XMLUtility.getNodeValue(node);
-			if (nodeValue == null) {
-				nodeValue = "";
+			if (!constraint.hasTypeRestriction()) {
+				return true;
 			}
-
-			boolean valid = true;
-			if (constraint.hasTypeRestriction()) {
-				TypeRestriction restriction = constraint.getTypeRestriction();
-				List<String> enumeration = restriction.getEnumeration();
-				if (enumeration != null) {
-					valid = valid && validEnumeration(nodeValue, enumeration); 
-				}
-				
-				XSDTypeName baseType = XSDTypeName.valueOfSave(restriction.getBaseType());
-				if (baseType == null) {
-					return false;
-				}
-				
-				String restrictionFacet = restriction.getLength();
-				if (restrictionFacet != null) {
-					valid = valid && validLength(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getMinLength();
-				if (restrictionFacet != null) {
-					valid = valid && validMinLength(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getMaxLength();
-				if (restrictionFacet != null) {
-					valid = valid && validMaxLength(nodeValue, restrictionFacet, true);
-				}
-				
-				restrictionFacet = restriction.getPattern();
-				if (restrictionFacet != null) {
-					valid = valid && validPattern(nodeValue, restrictionFacet);
-				}
-				
-				restrictionFacet = restriction.getWhiteSpace();
-				if (restrictionFacet != null) {
-					valid = valid && validWhiteSpace(nodeValue, baseType, restrictionFacet, true);
-				}
-				
-				restrictionFacet = restriction.getMaxInclusive();
-				if (restrictionFacet != null) {
-					valid = valid && validMaxInclusive(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getMaxExclusive();
-				if (restrictionFacet != null) {
-					valid = valid && validMaxExclusive(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getMinExclusive();
-				if (restrictionFacet != null) {
-					valid = valid && validMinExclusive(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getMinInclusive();
-				if (restrictionFacet != null) {
-					valid = valid && validMinInclusive(nodeValue, restrictionFacet, true);
-				}
-				
-				restrictionFacet = restriction.getTotalDigits();
-				if (restrictionFacet != null) {
-					valid = valid && validTotalDigits(nodeValue, restrictionFacet, true);
-				}
-				restrictionFacet = restriction.getFractionDigits();
-				if (restrictionFacet != null) {
-					valid = valid && validFractionDigits(nodeValue, restrictionFacet, true);
+			
+			FacetValidator facetValidator = constraint.getFacetValidator();
+			if (facetValidator == null) {
+				// Compiling twice on concurrent first use is harmless, the validators are equivalent.
+				facetValidator = compile(constraint.getTypeRestriction());
+				constraint.initFacetValidator(facetValidator);
+			}
+			
+			return facetValidator.validate(nodeValue);
+		}
+		
+		private FacetValidator compile(final TypeRestriction restriction) {
+			XSDTypeName baseType = XSDTypeName.valueOfSave(restriction.getBaseType());
+			
+			WhiteSpaceCheck whiteSpaceCheck = WhiteSpaceCheck.NONE;
+			String whiteSpace = restriction.getWhiteSpace();
+			if (whiteSpace != null
+				&& baseType != null) {
+				if (whiteSpace.equals("preserve")
+					|| baseType == XSDTypeName.string) {
+					whiteSpaceCheck = WhiteSpaceCheck.NONE;
+				} else if (whiteSpace.equals("replace")) {
+					whiteSpaceCheck = WhiteSpaceCheck.REPLACED;
+				} else if (whiteSpace.equals("collapse") 
+						   || !isDerivedFrom(baseType, XSDTypeName.string)) {
+					whiteSpaceCheck = WhiteSpaceCheck.COLLAPSED;
+				} else {
+					whiteSpaceCheck = WhiteSpaceCheck.INVALID;
 				}
 			}
 			
-			return valid;
+			return new FacetValidator(restriction, baseType != null, whiteSpaceCheck, NMTOKEN_PATTERN);
 		}
 		
 		private boolean isDerivedFrom(final XSDTypeName someType,
@@ -444,222 +383,6 @@ public class SimpleTypeValidator {
 
 			return false;
 		}
-		
-		private boolean validLength(final String value, 
-									final String length, 
-									final boolean fixed) {
-			
-			int lengthParsed;
-			
-			try {
-				if (patterns.get(XSDTypeName.nonNegativeInteger).matcher(length).matches()) {
-					lengthParsed = Integer.parseInt(length);
-					
-					// TODO: handle haxBinary and base64Binary (length == number of octets) seperately
-					if (value.length() == lengthParsed) {
-						return true;
-					}
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		private boolean validMinLength(final String value,
-									   final String minLength,
-									   final boolean fixed) {
-			int minLengthParsed;
-			
-			try {
-				if (patterns.get(XSDTypeName.nonNegativeInteger).matcher(minLength).matches()) {
-					minLengthParsed = Integer.parseInt(minLength);
-					
-					// TODO: handle haxBinary and base64Binary (length == number of octets) seperately
-					if (value.length() >= minLengthParsed) {
-						return true;
-					}
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		private boolean validMaxLength(final String value,
-									   final String maxLength,
-									   final boolean fixed) {
-			int maxLengthParsed;
-			
-			try {
-				if (patterns.get(XSDTypeName.nonNegativeInteger).matcher(maxLength).matches()) {
-					maxLengthParsed = Integer.parseInt(maxLength);
-					
-					// TODO: handle hexBinary and base64Binary (length == number of octets) seperately
-					if (value.length() <= maxLengthParsed) {
-						return true;
-					}
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		
-		private boolean validPattern(final String value,
-									 final String pattern) {
-			return value.matches(pattern.replace("\\c+", NMTOKEN_PATTERN));
-		}
-		private boolean validEnumeration(final String value,
-									     final List<String> enumeration) {
-			return enumeration.contains(value);
-		}
-		private boolean validWhiteSpace(final String value,
-										final XSDTypeName baseType,
-										final String whiteSpaceProperty,
-										final boolean fixed) {
-			
-			if (whiteSpaceProperty.equals("preserve")
-				|| baseType == XSDTypeName.string) {
-				return true;
-			}
-			if (whiteSpaceProperty.equals("replace")) {
-				if (value.contains("\t") || value.contains("\n") || value.contains("\r")) {
-					return false;
-				} else {
-					return true;
-				}
-			}
-			if (whiteSpaceProperty.equals("collapse") 
-				|| !isDerivedFrom(baseType, XSDTypeName.string)) {
-				if (!value.matches("[\\x20]{2,}")    // contains no sequences of space characters
-					&& value.equals(value.trim())) { // no leading or trailing spaces
-					return true;
-				}
-			}
-			return false;
-		}
-		
-		private boolean validMinInclusive(final String value,
-										  final String border,
-										  final boolean fixed) {
-			double valueParsed;
-			double borderParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				borderParsed = Double.parseDouble(border);
-				if (valueParsed >= borderParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		private boolean validMinExclusive(final String value,
-										  final String border,
-										  final boolean fixed) {
-			double valueParsed;
-			double borderParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				borderParsed = Double.parseDouble(border);
-				if (valueParsed > borderParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		private boolean validMaxInclusive(final String value,
-										  final String border,
-										  final boolean fixed) {
-			double valueParsed;
-			double borderParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				borderParsed = Double.parseDouble(border);
-				if (valueParsed <= borderParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-				return false;
-			}
-			
-			return false;
-		}
-		private boolean validMaxExclusive(final String value,
-										  final String border,
-										  final boolean fixed) {
-			double valueParsed;
-			double borderParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				borderParsed = Double.parseDouble(border);
-				if (valueParsed < borderParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-			}
-			
-			return false;
-		}
-		
-		private boolean validTotalDigits(final String value,
-										 final String totalDigits,
-										 final boolean fixed) {
-			double valueParsed;
-			int totalDigitsParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				totalDigitsParsed = Integer.parseInt(totalDigits);
-				
-				DecimalFormat format = new DecimalFormat("#*.#*");
-				String formattedValue = format.format(valueParsed).replace(".", "");
-				if (formattedValue.length() == totalDigitsParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-			}
-			
-			return false;
-		}
-		private boolean validFractionDigits(final String value,
-											final String fractionDigits,
-											final boolean fixed) {
-			double valueParsed;
-			int fractionDigitsParsed;
-			
-			try {
-				valueParsed = Double.parseDouble(value);
-				fractionDigitsParsed = Integer.parseInt(fractionDigits);
-				
-				DecimalFormat format = new DecimalFormat("#*.#*");
-				String formattedValue = format.format(valueParsed);
-				List<String> numberParts = Arrays.asList(formattedValue.split("\\."));
-				if (numberParts.size() == 2
-					&& numberParts.get(1).length() == fractionDigitsParsed) {
-					return true;
-				}
-				if (numberParts.size() == 1
-					&& formattedValue.startsWith(".")
-					&& numberParts.get(0).length() == fractionDigitsParsed) {
-					return true;
-				}
-			} catch (NumberFormatException e) {
-			}
-			
-			return false;
-		}
 	}
 
 }
@@ -0,0 +1,74 @@
+package de.mpg.cbs.edled.core.validation;
+
+/**
+ * The value of a node parsed according to the node's simple type, along
+ * with its validity against that type.
+ *
+ * Created by SimpleTypeValidator.parse and cached per node until the node's
+ * value changes (see Model.getTypedValue), so validation, EDL rules and
+ * plugins share a single parse per value. Immutable.
+ *
+ * @author Oliver Z.
+ */
+public final class TypedValue {
+
+	private final String text;
+	private final double number;
+	/** Validity against the node's type. Null if it depends on the document (IDs, IDREFs). */
+	private final Boolean valid;
+
+	TypedValue(final String text, final double number, final Boolean valid) {
+		this.text = text;
+		this.number = number;
+		this.valid = valid;
+	}
+
+	/**
+	 * @return The (text) value.
+	 */
+	public String getText() {
+		return this.text;
+	}
+
+	/**
+	 * @return The value as number (see NumberScanner.toNumber). NaN if it is not a number.
+	 */
+	public double getNumber() {
+		return this.number;
+	}
+
+	/**
+	 * @return True if getNumber is not NaN.
+	 */
+	public boolean isNumber() {
+		return !Double.isNaN(this.number);
+	}
+
+	/**
+	 * @return True if isValid does not depend on other nodes of the document.
+	 */
+	public boolean isValidityKnown() {
+		return this.valid != null;
+	}
+
+	/**
+	 * @return True if the value is valid against its type, including all
+	 * 		   facets. False if invalid or unknown (see isValidityKnown).
+	 */
+	public boolean isValid() {
+		return this.valid != null && this.valid.booleanValue();
+	}
+
+	/**
+	 * @param value The current value of the node.
+	 * @return		True if this was parsed from value.
+	 */
+	public boolean isValueOf(final String value) {
+		return this.text.equals((value == null) ? "" : value);
+	}
+
+	@Override
+	public String toString() {
+		return this.text;
+	}
+}
@@ -0,0 +1,143 @@
+package de.mpg.cbs.edled.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.EditListener;
+import de.mpg.cbs.edled.core.Model;
+
+/**
+ * The nodes of a model's document that are configured by plugins, i.e. the
+ * nodes selected by the XPaths of the plugins' ReplacementManagers.
+ *
+ * The XPaths are evaluated once and the nodes kept until an edit may select
+ * other nodes: inserting or replacing a node (which may add an earlier match)
+ * or removing a configured node, one of its ancestors or a sibling of them
+ * (which changes positions along the path). Changed values and removals
+ * elsewhere in the document are ignored, so XPaths selecting nodes by
+ * their values or by positions off their path are not tracked.
+ *
+ * @author Oliver Z.
+ */
+public final class PluginNodeIndex implements EditListener {
+	
+	/** */
+	private static final Logger logger = Logger.getLogger(PluginNodeIndex.class);
+	
+	/** The model whose document is indexed. */
+	private final Model model;
+	/** The plugins whose nodes are indexed. */
+	private final List<Plugin> plugins;
+	/**
+	 * Configured nodes (by identity) mapped to their plugins. Null if they
+	 * have to be looked up again. Guarded by the model's lock.
+	 */
+	private Map<Node, Plugin> nodes = null;
+	
+	/**
+	 * Creates an index and registers it for the edits of the model.
+	 *
+	 * @param model	  The model whose document is indexed.
+	 * @param plugins The plugins whose nodes are indexed.
+	 */
+	public PluginNodeIndex(final Model model, final Collection<Plugin> plugins) {
+		this.model = model;
+		this.plugins = new ArrayList<Plugin>(plugins);
+		model.addEditListener(this);
+	}
+	
+	/**
+	 * Stops following the edits of the model (e.g. if another document is
+	 * opened).
+	 */
+	public void close() {
+		this.model.removeEditListener(this);
+	}
+	
+	/**
+	 * Returns the configured nodes, looking them up if the document changed
+	 * since the last call.
+	 *
+	 * @return Unmodifiable map from the configured nodes (compared by
+	 * 		   identity) to their plugins. Not changed by later edits.
+	 */
+	public Map<Node, Plugin> getNodes() {
+		// Don't read the document while the model thread changes it.
+		synchronized (this.model) {
+			if (this.nodes == null) {
+				this.nodes = Collections.unmodifiableMap(lookup());
+			}
+			return this.nodes;
+		}
+	}
+	
+	private Map<Node, Plugin> lookup() {
+		Map<Node, Plugin> found = new IdentityHashMap<Node, Plugin>();
+		
+		for (Plugin plugin : this.plugins) {
+			ReplacementManager mapper = plugin.getReplacementManager(false);
+			if (mapper != null) {
+				for (XPathExpression xpath : mapper.getXPaths()) {
+					try {
+						Node node = (Node) xpath.evaluate(this.model.getDocument(), XPathConstants.NODE);
+						if (node != null) {
+							found.put(node, plugin);
+						}
+					} catch (XPathExpressionException e) {
+						logger.debug("XPathException while querying for nodes which are configured by plugins", e);
+					}
+				}
+			}
+		}
+		
+		return found;
+	}
+	
+	@Override
+	public void nodeInserted(final Node node) {
+		this.nodes = null;
+	}
+	
+	@Override
+	public void nodeRemoving(final Node node) {
+		if (this.nodes == null) {
+			return;
+		}
+		
+		// Also the positions of the following siblings change.
+		Node parent = parentOf(node);
+		for (Node configured : this.nodes.keySet()) {
+			for (Node current = parentOf(configured); current != null; current = parentOf(current)) {
+				if (current == parent) {
+					this.nodes = null;
+					return;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void nodeValueChanged(final Node node) {
+	}
+	
+	@Override
+	public void nodeReplaced(final Node replacement) {
+		this.nodes = null;
+	}
+	
+	private static Node parentOf(final Node node) {
+		return (node.getNodeType() == Node.ATTRIBUTE_NODE) ? ((Attr) node).getOwnerElement() : node.getParentNode();
+	}
+}
@@ -152,6 +152,46 @@ public class FileUtility {
 		}
 	}
 	
+	/**
+	 * Replaces a file by another one (e.g. a completely written temporary 
+	 * file) without losing both if that fails.
+	 * 
+	 * On platforms that do not replace existing files when renaming, target 
+	 * is moved to a backup (target path + ".bak") first, which is restored if 
+	 * replacement cannot be moved into place and deleted afterwards. If the 
+	 * application crashes in between, the backup and replacement are left 
+	 * next to target.
+	 * 
+	 * @param replacement File to move to target.
+	 * @param target	  File to replace.
+	 * @throws IOException If target could not be replaced. Then replacement 
+	 * 					   is kept, and target also unless its backup could 
+	 * 					   not be restored (see the log). 
+	 */
+	public static void replace(final File replacement, final File target) throws IOException {
+		if (replacement.renameTo(target)) {
+			return;
+		}
+		if (!target.exists()) {
+			throw new IOException("Could not move " + replacement.getPath() + " to " + target.getPath());
+		}
+		
+		File backup = new File(target.getPath() + ".bak");
+		backup.delete();
+		if (!target.renameTo(backup)) {
+			throw new IOException("Could not move " + target.getPath() + " to " + backup.getPath());
+		}
+		if (!replacement.renameTo(target)) {
+			if (!backup.renameTo(target)) {
+				logger.error("Could not restore " + target.getPath() + " from " + backup.getPath());
+			}
+			throw new IOException("Could not move " + replacement.getPath() + " to " + target.getPath());
+		}
+		if (!backup.delete()) {
+			logger.warn("Could not delete " + backup.getPath());
+		}
+	}
+	
 	public static Map<String, String> readMapFile(final String path) {
 		return FileUtility.readMapFile(new File(path));
 	}
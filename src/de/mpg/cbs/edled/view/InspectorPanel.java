@@ -12,6 +12,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import de.mpg.cbs.edled.core.ManipulationOption;
+import de.mpg.cbs.edled.core.ModelTask;
 import de.mpg.cbs.edled.core.RuleViolationNotification;
 import de.mpg.cbs.edled.core.ManipulationOption.ManipulationOptionKind;
 import de.mpg.cbs.edled.core.metatree.MetaNode;
@@ -80,6 +82,46 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	 *  will show the node description/annotation. */
 	private Icon infoIcon = null;
 
+	/** The element currently shown. */
+	private Node shownNode = null;
+	/** MetaNode of the element the components were built for. */
+	private MetaNode shownMetaNode = null;
+	/** Layout of the element the components were built for (see layoutOf). */
+	private List<String> shownLayout = null;
+	/** Components showing the element (first) and its attributes. */
+	private final List<ValueInput> inputs = new ArrayList<ValueInput>();
+	/** Options of the buttons adding attributes to the shown element. */
+	private final List<ManipulationOption> addOptions = new ArrayList<ManipulationOption>();
+	/** True while showValue fills in the values, which are no edits. */
+	private boolean patching = false;
+	
+	/** Components showing the value of a node (the element or an attribute). */
+	@SuppressWarnings("rawtypes") // JComboBox is not generic in Java 6.
+	private static final class ValueInput {
+		/** The node currently shown. */
+		private Node node = null;
+		/** Manipulation options of the node (removal of an attribute). */
+		private List<ManipulationOption> options = null;
+		/** Label showing the name of the node. */
+		private final JLabel label;
+		/** Text color of the label if the node is valid. */
+		private final Color labelForeground;
+		/** Constraint of the shown nodes. */
+		private final NodeConstraint constraint;
+		/** Field showing the value. Null if there is none or a combo box. */
+		private JTextField textField = null;
+		/** Whether the field shows a path chosen by a file chooser. */
+		private boolean fileChooser = false;
+		/** Drop down menu showing the value. Null if not used. */
+		private JComboBox comboBox = null;
+		
+		private ValueInput(final JLabel label, final NodeConstraint constraint) {
+			this.label = label;
+			this.labelForeground = label.getForeground();
+			this.constraint = constraint;
+		}
+	}
+	
 	/** Constructor. */
 	public InspectorPanel(final View view) {
 		this.view = view;
@@ -97,17 +139,46 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 		this.tree = tree;
 	}
 
+	/**
+	 * Shows nothing and drops the components built so far, e.g. when 
+	 * another document is opened, so they keep no nodes of the previous one.
+	 */
+	void clear() {
+		showNodeInfo(null, null);
+	}
+
 	/** 
 	 * Displays detailed information (value, type, attributes, etc.) about
 	 * one node.
 	 * 
+	 * If the node needs the same components as the node shown before (same
+	 * type, attributes and options, see layoutOf), only the values and 
+	 * validity colours of the components are updated.
+	 * 
 	 * @param xmlNode  The node to display in detail.
 	 * @param metaNode MetaNode of parameter xmlNode.
 	 */
 	public void showNodeInfo(final Node xmlNode, final MetaNode metaNode) {
+		List<String> nodeLayout = null;
+		if (xmlNode != null 
+			&& metaNode != null 
+			&& xmlNode.getNodeType() == Node.ELEMENT_NODE) {
+			nodeLayout = layoutOf(xmlNode, metaNode);
+			if (metaNode == this.shownMetaNode 
+				&& nodeLayout.equals(this.shownLayout)) {
+				show(xmlNode);
+				return;
+			}
+		}
+		
 		// Clear view.
 		this.removeAll();
 		this.repaint();
+		this.shownNode = null;
+		this.shownMetaNode = null;
+		this.shownLayout = null;
+		this.inputs.clear();
+		this.addOptions.clear();
 
 		// Keep showing nothing if null parameters were passed.
 		if (xmlNode == null || metaNode == null) {
@@ -142,12 +213,8 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 				nodeNameLabel = new JLabel(labelText);
 			}
 			
-			ValidationResult validationResult = view
-					.getValidationResultForNode(xmlNode, false);
-			if (!validationResult.isValid()) {
-				nodeNameLabel.setForeground(Color.RED);
-				printViolatedRules(validationResult);
-			}
+			ValueInput nodeInput = new ValueInput(nodeNameLabel, edlNodeConstraint);
+			this.inputs.add(nodeInput);
 			nodeNamePane.add(nodeNameLabel);
 			this.add(nodeNamePane);
 			this.layout.putConstraint(SpringLayout.NORTH, nodeNamePane, 0,
@@ -162,8 +229,7 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 
 				JPanel nodeValuePane = new JPanel();
 
-				Component nodeValueField = buildCompForNode(xmlNode, metaNode,
-														    nodeNameLabel);
+				Component nodeValueField = buildCompForNode(xmlNode, nodeInput);
 
 				this.layout.putConstraint(SpringLayout.NORTH, nodeValuePane, 0,
 						SpringLayout.SOUTH, prefComp);
@@ -209,12 +275,8 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 					JPanel attrNamePane = new JPanel();
 					final JLabel attrNameLabel = new JLabel(currentAttribute
 							.getNodeName());
-					ValidationResult attrValidationResult = view
-							.getValidationResultForNode(currentAttribute, false);
-					if (!attrValidationResult.isValid()) {
-						attrNameLabel.setForeground(Color.RED);
-						printViolatedRules(attrValidationResult);
-					}
+					final ValueInput attrInput = new ValueInput(attrNameLabel, attrConstraint);
+					this.inputs.add(attrInput);
 					attrNamePane.add(attrNameLabel);
 
 					if (attrConstraint.hasTypeName()) {
@@ -232,25 +294,39 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 					JPanel attrValuePane = new JPanel();
 
 					Component attrValueComp = buildCompForNode(
-							currentAttribute, attrMetaNode, attrNameLabel);
+							currentAttribute, attrInput);
 					attrValuePane.add(attrValueComp);
 
 					// Show removal button after attribute value field.
-					final List<ManipulationOption> attrOptions = this.view
-							.getManipulationOptionsForNode(currentAttribute);
-					if (!attrOptions.isEmpty()) {
+					if (!this.view.getManipulationOptionsForNode(currentAttribute).isEmpty()) {
 						JButton removeButton = new JButton("remove");
 						attrValuePane.add(removeButton);
 						removeButton.addActionListener(new ActionListener() {
 
 							@Override
 							public void actionPerformed(ActionEvent e) {
-								attrOptions.get(0).execute();
-								showNodeInfo(xmlNode, metaNode);
-
-								if (tree != null) {
-									tree.repaint();
-								}
+								final ManipulationOption option = attrInput.options.get(0);
+								final Node shownNode = InspectorPanel.this.shownNode;
+								final MetaNode shownMetaNode = InspectorPanel.this.shownMetaNode;
+								view.execute(new ModelTask<Void>() {
+									@Override
+									protected Void run() {
+										option.execute();
+										return null;
+									}
+									@Override
+									protected void done(final Void result) {
+										showNodeInfo(shownNode, shownMetaNode);
+										
+										if (tree != null) {
+											tree.repaint();
+										}
+									}
+									@Override
+									protected void failed(final Throwable failure) {
+										done(null);
+									}
+								});
 							}
 						});
 					}
@@ -267,10 +343,11 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 			}
 
 			// Show buttons for addition of optional attributes.
-			for (ManipulationOption _option : this.view
+			for (ManipulationOption option : this.view
 					.getManipulationOptionsForNode(xmlNode)) {
-				final ManipulationOption option = _option;
 				if (option.getKind() == ManipulationOptionKind.ADD_ATTRIBUTE) {
+					final int optionNr = this.addOptions.size();
+					this.addOptions.add(option);
 					JPanel attrAddPane = new JPanel();
 					JButton addButton = new JButton(option
 							.getOptionDescription());
@@ -279,12 +356,28 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 
 						@Override
 						public void actionPerformed(ActionEvent e) {
-							option.execute();
-							showNodeInfo(xmlNode, metaNode);
-
-							if (tree != null) {
-								tree.repaint();
-							}
+							final ManipulationOption addOption = addOptions.get(optionNr);
+							final Node shownNode = InspectorPanel.this.shownNode;
+							final MetaNode shownMetaNode = InspectorPanel.this.shownMetaNode;
+							view.execute(new ModelTask<Void>() {
+								@Override
+								protected Void run() {
+									addOption.execute();
+									return null;
+								}
+								@Override
+								protected void done(final Void result) {
+									showNodeInfo(shownNode, shownMetaNode);
+									
+									if (tree != null) {
+										tree.repaint();
+									}
+								}
+								@Override
+								protected void failed(final Throwable failure) {
+									done(null);
+								}
+							});
 						}
 					});
 
@@ -296,6 +389,10 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 					prefComp = attrAddPane;
 				}
 			}
+			
+			this.shownMetaNode = metaNode;
+			this.shownLayout = nodeLayout;
+			show(xmlNode);
 		}
 
 		// Recalculate the preferred size of this JPanel since SpringLayout
@@ -322,20 +419,138 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	}
 
 	/**
-	 * Builds the value input component (e.g. textfield, drop down, file chooser
-	 * button, etc.) for one node.
+	 * Describes the components needed to show an element: the input 
+	 * methods of the element and its attributes, which attributes can be
+	 * removed and which can be added.
 	 * 
-	 * @param node
-	 * @param metaNode
-	 * @param nodeLabel
-	 * @return
+	 * @param xmlNode  An element.
+	 * @param metaNode MetaNode of xmlNode.
+	 * @return		   Equal lists for elements (with the same MetaNode) 
+	 * 				   that can be shown by the same components.
 	 */
-	private Component buildCompForNode(final Node node,
-									   final MetaNode metaNode,
-									   final JLabel nodeLabel) {
+	private List<String> layoutOf(final Node xmlNode, final MetaNode metaNode) {
+		List<String> nodeLayout = new ArrayList<String>();
 		InputMethodMap imp = Configuration.getInstance().getInputMethodMap();
+		
 		NodeConstraint constraint = metaNode.getConstraint();
+		if (constraint.canHaveTextContent()) {
+			nodeLayout.add(imp.getMethodFor(xmlNode, constraint).name());
+		}
+		
+		NamedNodeMap attrs = xmlNode.getAttributes();
+		if (attrs.getLength() > 0) {
+			nodeLayout.add("@");
+		}
+		for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+			Node attr = attrs.item(attrNr);
+			if (!this.view.isWhitelisted(attr)) {
+				MetaNode attrMetaNode = metaNode.getAttributes().get(attr.getNodeName());
+				nodeLayout.add("@" + attr.getNodeName() 
+							   + " " + imp.getMethodFor(attr, attrMetaNode.getConstraint()).name()
+							   + " " + this.view.getManipulationOptionsForNode(attr).isEmpty());
+			}
+		}
+		
+		for (ManipulationOption option : this.view.getManipulationOptionsForNode(xmlNode)) {
+			if (option.getKind() == ManipulationOptionKind.ADD_ATTRIBUTE) {
+				nodeLayout.add("+" + option.getOptionDescription());
+			}
+		}
+		
+		return nodeLayout;
+	}
+	
+	/**
+	 * Shows the values and validity of an element and its attributes in the
+	 * components built for it (or an element with the same layout).
+	 * 
+	 * @param xmlNode An element.
+	 */
+	private void show(final Node xmlNode) {
+		this.shownNode = xmlNode;
+		this.patching = true;
+		try {
+			int inputNr = 0;
+			showValue(this.inputs.get(inputNr++), xmlNode);
+			
+			NamedNodeMap attrs = xmlNode.getAttributes();
+			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
+				Node attr = attrs.item(attrNr);
+				if (!this.view.isWhitelisted(attr)) {
+					showValue(this.inputs.get(inputNr++), attr);
+				}
+			}
+			
+			this.addOptions.clear();
+			for (ManipulationOption option : this.view.getManipulationOptionsForNode(xmlNode)) {
+				if (option.getKind() == ManipulationOptionKind.ADD_ATTRIBUTE) {
+					this.addOptions.add(option);
+				}
+			}
+		} finally {
+			this.patching = false;
+		}
+		
+		this.repaint();
+	}
+	
+	/**
+	 * Shows the value and validity of a node in its input components.
+	 * 
+	 * @param input The components showing node.
+	 * @param node  The element or one of its attributes.
+	 */
+	private void showValue(final ValueInput input, final Node node) {
+		input.node = node;
+		input.options = this.view.getManipulationOptionsForNode(node);
+		
+		ValidationResult validationResult = this.view.getValidationResultForNode(node, false);
+		if (validationResult.isValid()) {
+			input.label.setForeground(input.labelForeground);
+		} else {
+			input.label.setForeground(Color.RED);
+			printViolatedRules(validationResult);
+		}
+		
+		NodeConstraint constraint = input.constraint;
 		String nodeText = XMLUtility.getNodeValue(node);
+		if (input.comboBox != null) {
+			// Index 0 is the empty value.
+			int selectedIndex = 0;
+			for (int itemNr = 0; itemNr < input.comboBox.getItemCount(); itemNr++) {
+				if (nodeText.compareTo((String) input.comboBox.getItemAt(itemNr)) == 0) {
+					selectedIndex = itemNr;
+				}
+			}
+			input.comboBox.setSelectedIndex(selectedIndex);
+		} else if (input.textField != null) {
+			if (input.fileChooser) {
+				input.textField.setText(nodeText);
+			} else if (constraint.hasFixedValue()) {
+				input.textField.setText(constraint.getFixedValue());
+			} else if (constraint.hasDefaultValue()
+					   && nodeText.trim().compareTo("") == 0) {
+				input.textField.setText(constraint.getDefaultValue());
+			} else {
+				input.textField.setText(nodeText);
+			}
+			input.textField.setForeground(input.label.getForeground());
+		}
+	}
+	
+	/**
+	 * Builds the value input component (e.g. textfield, drop down, file chooser
+	 * button, etc.) for one node. The values are filled in by showValue.
+	 * 
+	 * @param node  The node to build the input component for.
+	 * @param input The components showing node. Takes the built text field
+	 * 				or combo box.
+	 * @return		The input component.
+	 */
+	private Component buildCompForNode(final Node node,
+									   final ValueInput input) {
+		InputMethodMap imp = Configuration.getInstance().getInputMethodMap();
+		NodeConstraint constraint = input.constraint;
 		
 		InputMethod method = imp.getMethodFor(node, constraint);
 		
@@ -347,16 +562,16 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 			// Fall through because a directory chooser is basically a file chooser
 		case FILECHOOSER:
 			JPanel filePanel = new JPanel();
-			JTextField filePathField = new JTextField(nodeText, 
-													  InspectorPanel.TEXTFIELD_WIDTH);
-			filePathField.setForeground(nodeLabel.getForeground());
-			filePathField.addKeyListener(buildTextFieldKeyListener(node, nodeLabel, filePathField));
+			JTextField filePathField = new JTextField(InspectorPanel.TEXTFIELD_WIDTH);
+			filePathField.addKeyListener(buildTextFieldKeyListener(input, filePathField));
 			JButton fileChooserCaller = new JButton(DEFAULT_FILE_NAME);
 			fileChooserCaller.addActionListener(buildFileChooserActionListener(
-													node, 
+													input, 
 													filePathField, 
 													fileChooserCaller, 
 													directoriesOnly));
+			input.textField = filePathField;
+			input.fileChooser = true;
 			
 			filePanel.add(filePathField);
 			filePanel.add(fileChooserCaller);
@@ -374,20 +589,12 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 
 			if (valueEnum == null) {
 				// textfield
-				final JTextField textfield = new JTextField(nodeText,
-						InspectorPanel.TEXTFIELD_WIDTH);
-				textfield.setForeground(nodeLabel.getForeground());
+				final JTextField textfield = new JTextField(InspectorPanel.TEXTFIELD_WIDTH);
 
-				if (constraint.hasDefaultValue()
-						&& textfield.getText().trim().compareTo("") == 0) {
-					textfield.setText(constraint.getDefaultValue());
-				}
 				if (constraint.hasFixedValue()) {
-					textfield.setText(constraint.getFixedValue());
 					textfield.setEditable(false);
 				} else {
-					textfield.addKeyListener(buildTextFieldKeyListener(node,
-							nodeLabel, textfield));
+					textfield.addKeyListener(buildTextFieldKeyListener(input, textfield));
 				}
 				// textfield.addActionListener(new ActionListener() {
 				// @Override
@@ -396,6 +603,7 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 				// node.setTextContent(textFieldTextToNodeText(textfield.getText()));
 				// }
 				// });
+				input.textField = textfield;
 
 				comp = textfield;
 			} else {
@@ -403,16 +611,9 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 				List<String> valueEnumCopy = new LinkedList<String>(valueEnum);
 				valueEnumCopy.add(0, "");
 				JComboBox combobox = new JComboBox(valueEnumCopy.toArray());
-				combobox.setSelectedIndex(0);
-				for (String possibleValue : valueEnumCopy) {
-					if (nodeText.compareTo(possibleValue) == 0) {
-						combobox.setSelectedIndex(valueEnumCopy
-								.indexOf(possibleValue));
-					}
-				}
 
-				combobox.addActionListener(buildComboBoxActionListener(node,
-						nodeLabel));
+				combobox.addActionListener(buildComboBoxActionListener(input));
+				input.comboBox = combobox;
 				comp = combobox;
 			}
 		}
@@ -423,19 +624,16 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	/**
 	 * Builds the KeyListener for JTextField inputs.
 	 * 
-	 * @param node		The DOM node whose value will be changed according to
-	 * 					the text field input.
-	 * @param label		JLabel accompanying the text field input (usually 
-	 * 					displaying the name of node).
+	 * @param input		The components showing the DOM node whose value will
+	 * 					be changed according to the text field input.
 	 * @param textfield The text field input.
 	 * @return			A KeyListener updating and revalidating the value of 
-	 * 					node each time the value of textfield is changed.
-	 * 					Side effect: the text color of label and textfield is
-	 * 					changed to black (red) when the node value is valid
-	 * 					(invalid).
+	 * 					the node each time the value of textfield is changed.
+	 * 					Side effect: the text color of the node's label and 
+	 * 					textfield is changed to black (red) when the node 
+	 * 					value is valid (invalid).
 	 */
-	private KeyListener buildTextFieldKeyListener(final Node node,
-			final JLabel label, 
+	private KeyListener buildTextFieldKeyListener(final ValueInput input,
 			final JTextField textfield) {
 		
 		return new KeyListener() {
@@ -449,21 +647,38 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 					return;
 				}
 				
-				view.setNodeValue(node, textfield.getText());
-				ValidationResult validationResult = view
-						.getValidationResultForNode(node, false);
-				if (validationResult.isValid()) {
-					label.setForeground(Color.BLACK);
-					textfield.setForeground(Color.BLACK);
-				} else {
-					label.setForeground(Color.RED);
-					textfield.setForeground(Color.RED);
-					printViolatedRules(validationResult);
-				}
-
-				if (tree != null) {
-					tree.repaint();
-				}
+				// Keystrokes made while the value is validated are coalesced.
+				final Node node = input.node;
+				final String value = textfield.getText();
+				view.execute(node, new ModelTask<ValidationResult>() {
+					@Override
+					protected ValidationResult run() {
+						view.setNodeValue(node, value);
+						return view.getValidationResultForNode(node, false);
+					}
+					@Override
+					protected void done(final ValidationResult validationResult) {
+						// The components may show another node by now.
+						if (input.node == node) {
+							if (validationResult.isValid()) {
+								input.label.setForeground(Color.BLACK);
+								textfield.setForeground(Color.BLACK);
+							} else {
+								input.label.setForeground(Color.RED);
+								textfield.setForeground(Color.RED);
+								printViolatedRules(validationResult);
+							}
+						}
+						
+						if (tree != null) {
+							tree.repaint();
+						}
+					}
+					@Override
+					protected void failed(final Throwable failure) {
+						showAgain(input, node);
+					}
+				});
 			}
 
 			@Override
@@ -476,37 +691,54 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	/**
 	 * Builds the ActionListener for combo box inputs.
 	 * 
-	 * @param node  The DOM node whose value will be changed according to the
-	 * 				combo box selection.
-	 * @param label JLabel accompanying the combo box (usually displaying the
-	 * 				name of node).
+	 * @param input The components showing the DOM node whose value will be
+	 * 				changed according to the combo box selection.
 	 * @return		A ActionListener that should be assigned to a combo box.
 	 *              The action listener will be updating and revalidating the 
-	 *              value of node each time the value of the combo box is 
-	 *              changed.
-	 * 				Side effect: the text color of label is changed to black 
-	 * 			    (red) when the node value is valid (invalid).
+	 *              value of the node each time the value of the combo box is 
+	 *              changed (but not if showValue selects the node's value).
+	 * 				Side effect: the text color of the node's label is 
+	 * 				changed to black (red) when the node value is valid 
+	 * 				(invalid).
 	 */
-	private ActionListener buildComboBoxActionListener(final Node node,
-													   final JLabel label) {
+	private ActionListener buildComboBoxActionListener(final ValueInput input) {
 		return new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				JComboBox comboBox = (JComboBox) e.getSource();
-				view.setNodeValue(node, (String) comboBox.getSelectedItem());
-
-				ValidationResult validationResult = view
-						.getValidationResultForNode(node, false);
-				if (validationResult.isValid()) {
-					label.setForeground(Color.BLACK);
-				} else {
-					label.setForeground(Color.RED);
-					printViolatedRules(validationResult);
-				}
-
-				if (tree != null) {
-					tree.repaint();
+				if (patching) {
+					return;
 				}
+				
+				JComboBox comboBox = (JComboBox) e.getSource();
+				final Node node = input.node;
+				final String value = (String) comboBox.getSelectedItem();
+				view.execute(node, new ModelTask<ValidationResult>() {
+					@Override
+					protected ValidationResult run() {
+						view.setNodeValue(node, value);
+						return view.getValidationResultForNode(node, false);
+					}
+					@Override
+					protected void done(final ValidationResult validationResult) {
+						// The components may show another node by now.
+						if (input.node == node) {
+							if (validationResult.isValid()) {
+								input.label.setForeground(Color.BLACK);
+							} else {
+								input.label.setForeground(Color.RED);
+								printViolatedRules(validationResult);
+							}
+						}
+						
+						if (tree != null) {
+							tree.repaint();
+						}
+					}
+					@Override
+					protected void failed(final Throwable failure) {
+						showAgain(input, node);
+					}
+				});
 			}
 		};
 	}
@@ -515,8 +747,9 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	 * Builds the ActionListener for buttons that should launch file chooser
 	 * inputs.
 	 * 
-	 * @param node	          The DOM node whose value will be changed according 
-	 * 						  to the selected file (path).
+	 * @param input	          The components showing the DOM node whose value 
+	 * 						  will be changed according to the selected file
+	 * 						  (path).
 	 * @param pathField       JTextField that displays the (editable) file path.
 	 * @param button 		  JButton that pops up the file chooser dialog when
 	 * 						  pressed (the returned action listener should be 
@@ -527,10 +760,10 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 	 * 						  or   regular files (false).
 	 * @return				  A ActionListener launching a file chooser. Should
 	 * 						  be assigned to argument button. The generated
-	 * 						  file chooser changes the value of node to the 
-	 * 						  selected file.
+	 * 						  file chooser changes the value of the node to 
+	 * 						  the selected file.
 	 */
-	private ActionListener buildFileChooserActionListener(final Node node,
+	private ActionListener buildFileChooserActionListener(final ValueInput input,
 														  final JTextField pathField,
 														  final JButton button,
 														  final boolean directoriesOnly) {
@@ -570,12 +803,42 @@ public class InspectorPanel extends JPanel implements TreeReceiver {
 					}
 					
 					pathField.setText(relativizedPath);
-					view.setNodeValue(node, relativizedPath);
+					final Node node = input.node;
+					final String value = relativizedPath;
+					view.execute(node, new ModelTask<Void>() {
+						@Override
+						protected Void run() {
+							view.setNodeValue(node, value);
+							return null;
+						}
+						@Override
+						protected void failed(final Throwable failure) {
+							showAgain(input, node);
+						}
+					});
 				}
 			}
 		};
 	}
 	
+	/**
+	 * Shows the value of a node again after an edit of it failed, so the 
+	 * components do not keep the value (and validity) of the edit.
+	 * 
+	 * @param input The components the edit was made in.
+	 * @param node	The edited node.
+	 */
+	private void showAgain(final ValueInput input, final Node node) {
+		// The components may show another node by now.
+		if (input.node == node) {
+			showNodeInfo(this.shownNode, this.shownMetaNode);
+		}
+		
+		if (this.tree != null) {
+			this.tree.repaint();
+		}
+	}
+	
 	private MouseListener buildTooltipMouseListener(final String text) {
 		return new MouseAdapter() {
 			@Override
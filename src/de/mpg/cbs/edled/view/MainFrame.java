@@ -36,6 +36,8 @@ import javax.swing.JTree;
 import javax.swing.KeyStroke;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
 import de.mpg.cbs.edled.plugin.Plugin;
 import de.mpg.cbs.edled.util.Configuration;
@@ -218,6 +220,48 @@ public class MainFrame extends JFrame implements TreeReceiver {
 		JMenu editMenu = new JMenu("Edit");
 		editMenu.setMnemonic(KeyEvent.VK_E);
 		
+		// Undo.
+		final JMenuItem undoItem = new JMenuItem("Undo");
+		undoItem.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				view.undo();
+			}
+		});
+		undoItem.setAccelerator(KeyStroke.getKeyStroke('Z', this.accelerator_mask));
+		editMenu.add(undoItem);
+		
+		// Redo.
+		final JMenuItem redoItem = new JMenuItem("Redo");
+		redoItem.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				view.redo();
+			}
+		});
+		redoItem.setAccelerator(KeyStroke.getKeyStroke('Z', this.accelerator_mask | InputEvent.SHIFT_DOWN_MASK));
+		editMenu.add(redoItem);
+		
+		editMenu.addMenuListener(new MenuListener() {
+			@Override
+			public void menuSelected(MenuEvent e) {
+				undoItem.setEnabled(view.canUndo());
+				redoItem.setEnabled(view.canRedo());
+			}
+			@Override
+			public void menuDeselected(MenuEvent e) {
+				// Accelerators work while the menu is closed.
+				undoItem.setEnabled(true);
+				redoItem.setEnabled(true);
+			}
+			@Override
+			public void menuCanceled(MenuEvent e) {
+				menuDeselected(e);
+			}
+		});
+		
+		editMenu.addSeparator();
+		
 		// Preferences.
 		item = new JMenuItem("Preferences");
 		item.addActionListener(new ActionListener() {
@@ -1,6 +1,10 @@
 package de.mpg.cbs.edled.view;
 
 import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -21,10 +25,37 @@ public class MultiInspectorPanel extends InspectorPanel {
 	
 	private static final int TOP_PADDING  = 25;
 	private static final int LEFT_PADDING = 10;
+	/** Maximum number of panels kept in the pool per MetaNode. */
+	private static final int MAX_POOLED_PANELS = 32;
 
+	/** 
+	 * Inspector panels built so far, by the MetaNode of the nodes they show.
+	 * Reused for nodes of the same type, so a panel usually only has to 
+	 * update its values (see InspectorPanel.showNodeInfo). Emptied when 
+	 * another document is opened (see clear).
+	 */
+	private final Map<MetaNode, List<InspectorPanel>> pool = new IdentityHashMap<MetaNode, List<InspectorPanel>>();
+	
+	/** Pane listing the child entries. */
+	private final JPanel childPane;
+	/** Heading of childPane. */
+	private final JLabel childrenLabel;
+	
 	public MultiInspectorPanel(final View view) {
 		super(view);
 		setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
+		
+		this.childPane = new JPanel();
+		this.childPane.setBorder(new EmptyBorder(TOP_PADDING, LEFT_PADDING, 0, 0));
+		this.childPane.setLayout(new BoxLayout(this.childPane, BoxLayout.PAGE_AXIS));
+		this.childrenLabel = new JLabel();
+	}
+	
+	@Override
+	void clear() {
+		showNodeInfo(null, null);
+		this.childPane.removeAll();
+		this.pool.clear();
 	}
 	
 	@Override
@@ -39,8 +70,10 @@ public class MultiInspectorPanel extends InspectorPanel {
 		}
 		
 		if (xmlNode.getNodeType() == Node.ELEMENT_NODE) {
+			// Panels of the pool taken for this node, by MetaNode.
+			Map<MetaNode, Integer> taken = new IdentityHashMap<MetaNode, Integer>();
 		
-			InspectorPanel nodeInspectorPanel = new InspectorPanel(this.view);
+			InspectorPanel nodeInspectorPanel = takePanel(metaNode, taken);
 			add(nodeInspectorPanel);
 			nodeInspectorPanel.showNodeInfo(xmlNode, metaNode);
 			nodeInspectorPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 
@@ -55,9 +88,7 @@ public class MultiInspectorPanel extends InspectorPanel {
 			}
 			
 			if (elemNodeCount > 0) {
-				JPanel childPane = new JPanel();
-				childPane.setBorder(new EmptyBorder(TOP_PADDING, LEFT_PADDING, 0, 0));
-				childPane.setLayout(new BoxLayout(childPane, BoxLayout.PAGE_AXIS));
+				this.childPane.removeAll();
 				
 				String childrenLabelStr = "<html><b>Child ";
 				if (elemNodeCount > 1) {
@@ -66,24 +97,29 @@ public class MultiInspectorPanel extends InspectorPanel {
 					childrenLabelStr += "entry";
 				}
 				childrenLabelStr += ":</b></html>";
-				JLabel childrenLabel = new JLabel(childrenLabelStr); 
+				this.childrenLabel.setText(childrenLabelStr); 
 				
-				childPane.add(childrenLabel);
+				this.childPane.add(this.childrenLabel);
 				
 				for (int i = 0; i < children.getLength(); i++) {
 					Node childNode = children.item(i);
 					MetaNode childMetaNode = this.view.getMetaXMLNodeForNode(childNode);
+					if (childNode.getNodeType() != Node.ELEMENT_NODE
+						|| childMetaNode == null) {
+						// Would show nothing.
+						continue;
+					}
 					
-					InspectorPanel childInspectorPanel = new InspectorPanel(this.view);
+					InspectorPanel childInspectorPanel = takePanel(childMetaNode, taken);
 					
-					childPane.add(childInspectorPanel);
+					this.childPane.add(childInspectorPanel);
 					childInspectorPanel.showNodeInfo(childNode, childMetaNode);
 					childInspectorPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 
 																	 childInspectorPanel.getPreferredSize().height));
 				}
 			
 //				childPane.setMaximumSize(childPane.getPreferredSize());
-				add(childPane);
+				add(this.childPane);
 				
 				add(Box.createVerticalGlue());
 			}
@@ -94,4 +130,35 @@ public class MultiInspectorPanel extends InspectorPanel {
 		repaint();
 	}
 
+	/**
+	 * Takes a panel for a node from the pool, building one if all panels 
+	 * for the node's type are taken already. Built panels are kept in the
+	 * pool up to MAX_POOLED_PANELS per type.
+	 * 
+	 * @param metaNode MetaNode of the node to show.
+	 * @param taken	   Number of panels taken so far for the node to show, 
+	 * 				   by MetaNode.
+	 * @return		   A panel not showing another node of the node to show.
+	 */
+	private InspectorPanel takePanel(final MetaNode metaNode, final Map<MetaNode, Integer> taken) {
+		List<InspectorPanel> panels = this.pool.get(metaNode);
+		if (panels == null) {
+			panels = new ArrayList<InspectorPanel>();
+			this.pool.put(metaNode, panels);
+		}
+		
+		Integer takenCount = taken.get(metaNode);
+		int panelNr = (takenCount == null) ? 0 : takenCount.intValue();
+		taken.put(metaNode, Integer.valueOf(panelNr + 1));
+		if (panelNr < panels.size()) {
+			return panels.get(panelNr);
+		}
+		
+		InspectorPanel panel = new InspectorPanel(this.view);
+		if (panels.size() < MAX_POOLED_PANELS) {
+			panels.add(panel);
+		}
+		return panel;
+	}
+
 }
@@ -3,6 +3,8 @@ package de.mpg.cbs.edled.view;
 import java.util.Observable;
 import java.util.Observer;
 
+import javax.swing.SwingUtilities;
+
 import de.mpg.cbs.edled.core.Notification;
 
 
@@ -23,7 +25,18 @@ public class ObservingNotificationItem extends NotificationItem implements Obser
 	}
 
 	@Override
-	public void update(Observable o, Object arg) {
+	public void update(final Observable o, final Object arg) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			// Rules are evaluated on the model thread.
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					update(o, arg);
+				}
+			});
+			return;
+		}
+		
 		if (this.n == o) {
 			this.n = null;
 			this.pane.remove(this);
@@ -3,21 +3,17 @@ package de.mpg.cbs.edled.view;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
-import java.util.List;
 
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreeCellRenderer;
 
-import org.w3c.dom.Attr;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
-import de.mpg.cbs.edled.core.ManipulationOption;
+import de.mpg.cbs.edled.core.Indicators;
 
 
 /**
@@ -25,15 +21,33 @@ import de.mpg.cbs.edled.core.ManipulationOption;
  * of the XML/EDL document structure). Displays icons indicating validation
  * status and manipulations options next to each node.
  * 
+ * The rendering components are created once and reused for every node; only
+ * the text and the visibility of the icons change per node.
+ * 
  * @author Oliver Z.
  */
 public class TreeRenderer implements TreeCellRenderer {
-
+	
 	/** Default padding width (space reserved for icons) for rendered nodes. */
 	private static final int RENDERED_COMP_EXTRA_WIDTH = 50;
 	/** Default height of a rendered node. */
 	private static final int RENDERED_COMP_HEIGHT = 20;
 	
+	/** 
+	 * Flag of the plugin icon. Not one of the Indicators, because it depends
+	 * on the plugins, not on the model.
+	 */
+	private static final int PLUGIN_INDICATOR = 1 << 30;
+	/** Flags of the icons, in the order they are displayed. */
+	private static final int[] INDICATOR_FLAGS = {Indicators.ERROR,
+												  PLUGIN_INDICATOR,
+												  Indicators.ADD,
+												  Indicators.ADD_ATTRIBUTE,
+												  Indicators.ADD_CHILD,
+												  Indicators.CHOICE,
+												  Indicators.REMOVE,
+												  Indicators.REMOVE_ATTRIBUTE};
+	
 	/** Reference to the view fascade. */
 	private View view = null;
 	/** Using the DefaultTreeCellRenderer to render the textual part of the node. */
@@ -42,6 +56,13 @@ public class TreeRenderer implements TreeCellRenderer {
 	/** Object that provides all needed application icons. */
 	private final IconProvider iconProvider;
 	
+	/** Component returned for every node. */
+	private final JPanel renderedComp;
+	/** Panel holding the icons next to the node name. */
+	private final JPanel indicatorPane;
+	/** Icons for the INDICATOR_FLAGS (same order). */
+	private final JLabel[] indicatorLabels;
+	
 	/** 
 	 * Constructor.
 	 * 
@@ -52,8 +73,32 @@ public class TreeRenderer implements TreeCellRenderer {
 		this.defaultRenderer = new DefaultTreeCellRenderer();
 		
 		this.iconProvider = IconProvider.getInstance();
+		
+		this.renderedComp = new JPanel();
+		this.renderedComp.setLayout(new BoxLayout(this.renderedComp, BoxLayout.X_AXIS));
+		this.renderedComp.setBackground(Color.WHITE);
+		this.renderedComp.setBorder(null);
+		this.renderedComp.add(this.defaultRenderer);
+		
+		this.indicatorPane = new JPanel();
+		this.indicatorPane.setBackground(Color.WHITE);
+		this.indicatorPane.setBorder(null);
+		this.indicatorPane.setAlignmentX(Component.LEFT_ALIGNMENT);
+		
+		this.indicatorLabels = new JLabel[] {this.iconProvider.makeErrorLabel(),
+											 this.iconProvider.makePluginLabel(),
+											 this.iconProvider.makeAddLabel(),
+											 this.iconProvider.makeAddAttributeLabel(),
+											 this.iconProvider.makeAddChildLabel(),
+											 this.iconProvider.makeChoiceLabel(),
+											 this.iconProvider.makeRemoveLabel(),
+											 this.iconProvider.makeRemoveAttributeLabel()};
+		for (JLabel label : this.indicatorLabels) {
+			this.indicatorPane.add(label);
+		}
+		this.renderedComp.add(this.indicatorPane);
 	}
-
+	
 	@Override
 	public Component getTreeCellRendererComponent(JTree tree,
 			  									  Object value,
@@ -62,14 +107,7 @@ public class TreeRenderer implements TreeCellRenderer {
 			  									  boolean leaf,
 			  									  int row,
 			  									  boolean hasFocus) {
-		DefaultMutableTreeNode currentNode = (DefaultMutableTreeNode) value;
-		Node currentXMLNode = (Node) currentNode.getUserObject();
-		
-		JPanel renderedComp = new JPanel();
-//		renderedComp.setLayout(new BorderLayout());
-		renderedComp.setLayout(new BoxLayout(renderedComp, BoxLayout.X_AXIS));
-		renderedComp.setBackground(Color.WHITE);
-		renderedComp.setBorder(null);
+		Node currentXMLNode = (Node) value;
 		
 		Component defaultComp = this.defaultRenderer.getTreeCellRendererComponent(tree, 
 				   																  currentXMLNode.getNodeName(), 
@@ -80,109 +118,28 @@ public class TreeRenderer implements TreeCellRenderer {
 				   																  hasFocus);
 		defaultComp.setMaximumSize(defaultComp.getPreferredSize());
 		
-		renderedComp.add(defaultComp);
-		
-		JPanel indicatorPane = new JPanel();
-		indicatorPane.setBackground(Color.WHITE);
-		indicatorPane.setBorder(null);
-		
-		JLabel label = null;
-		if (!this.view.getValidationResultForNode(currentXMLNode, true).isValid()) {
-			label = this.iconProvider.makeErrorLabel();
-			indicatorPane.add(label);
-		}
-		
+		int indicators = this.view.getIndicatorsForNode(currentXMLNode);
 		if (this.view.getNodesConfiguredByPlugins().containsKey(currentXMLNode)) {
-			label = this.iconProvider.makePluginLabel();
-			indicatorPane.add(label);
+			indicators |= PLUGIN_INDICATOR;
 		}
-		
-		boolean hasAddOption = false;
-		boolean hasAddAttrOption = false;
-		boolean hasAddChildOption = false;
-		boolean hasChoiceOption = false;
-		boolean hasRemoveOption = false;
-		boolean hasAttrRemoveOption = false;
-		
-		for (ManipulationOption option : this.view.getManipulationOptionsForNode(currentXMLNode)) {
-			switch (option.getKind()) {
-			case ADD_ADDITIONAL:
-				if (!hasAddOption) {
-					label = this.iconProvider.makeAddLabel();
-					indicatorPane.add(label);
-					hasAddOption = true;
-				}
-				break;
-			case ADD_ATTRIBUTE:
-				if (!hasAddAttrOption) {
-					label = this.iconProvider.makeAddAttributeLabel();
-					indicatorPane.add(label);
-					hasAddAttrOption = true;
-				}
-				break;
-			case ADD_CHILD:
-				if (!hasAddChildOption) {
-					label = this.iconProvider.makeAddChildLabel();
-					indicatorPane.add(label);
-					hasAddChildOption = true;
-				}
-				break;
-			case CHOICE:
-				if (!hasChoiceOption) {
-					label = this.iconProvider.makeChoiceLabel();
-					indicatorPane.add(label);
-					hasChoiceOption = true;
-				}
-				break;
-			case REMOVE:
-				if (!hasRemoveOption) {
-					label = this.iconProvider.makeRemoveLabel();
-					indicatorPane.add(label);
-					hasRemoveOption = true;
-				}
-				break;
-			
-			/* Commented out because this case only occurs, when the manipulations options for 
-			 * an optional attribute are requested - not its owner element's options!          
-			 */
-//			case REMOVE_ATTRIBUTE:
-//				if (optionIndicators.indexOf(XMLTreeRenderer.REMOVE_ATTRIBUTE_INDICATOR) == -1) {
-//					optionIndicators.append(XMLTreeRenderer.REMOVE_ATTRIBUTE_INDICATOR);
-//				}
-//				break;
-			default:
-				throw new RuntimeException("Undefined ManipulationOptionKind occured!");
-			}
-		}
-		
-		if (currentXMLNode.hasAttributes()) {
-			NamedNodeMap attrs = currentXMLNode.getAttributes();
-			for (int attrNr = 0; attrNr < attrs.getLength(); attrNr++) {
-				Attr attr = (Attr) attrs.item(attrNr);
-				List<ManipulationOption> options = this.view.getManipulationOptionsForNode(attr);
-				if (options != null
-					&& options.size() > 0
-					&& !hasAttrRemoveOption) {
-					
-//					ManipulationOption removeAttrOption = options.get(0);
-					label = this.iconProvider.makeRemoveAttributeLabel();
-					indicatorPane.add(label);
-					hasAttrRemoveOption = true;
-				}
-			}
+		for (int i = 0; i < INDICATOR_FLAGS.length; i++) {
+			this.indicatorLabels[i].setVisible((indicators & INDICATOR_FLAGS[i]) != 0);
 		}
 		
-		indicatorPane.setAlignmentX(Component.LEFT_ALIGNMENT);
-		indicatorPane.setMaximumSize(indicatorPane.getPreferredSize());
-		renderedComp.add(indicatorPane);
+		// The panels are reused, so their cached layout must be recomputed.
+		this.indicatorPane.invalidate();
+		this.indicatorPane.setMaximumSize(this.indicatorPane.getPreferredSize());
 		
-		Dimension size = new Dimension(renderedComp.getPreferredSize());
+		this.renderedComp.setPreferredSize(null);
+		this.renderedComp.setMaximumSize(null);
+		this.renderedComp.invalidate();
+		Dimension size = this.renderedComp.getPreferredSize();
 		size.width += TreeRenderer.RENDERED_COMP_EXTRA_WIDTH;
 		size.height = RENDERED_COMP_HEIGHT;
-		renderedComp.setPreferredSize(size);
-		renderedComp.setMaximumSize(size);
+		this.renderedComp.setPreferredSize(size);
+		this.renderedComp.setMaximumSize(size);
 		
-		return renderedComp;
+		return this.renderedComp;
 	}
 
 }
@@ -10,15 +10,16 @@ import java.util.List;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JTree;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreeSelectionModel;
 
 import org.w3c.dom.Node;
 
 import de.mpg.cbs.edled.core.ManipulationOption;
+import de.mpg.cbs.edled.core.ModelTask;
 import de.mpg.cbs.edled.core.ManipulationOption.ManipulationOptionKind;
 
 
@@ -79,11 +80,10 @@ public class TreeView extends JTree {
 			@Override
 			public void valueChanged(TreeSelectionEvent e) {
 				
-				DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) self.getLastSelectedPathComponent();
-				if (selectedNode == null) {
+				Node selectedXMLNode = (Node) self.getLastSelectedPathComponent();
+				if (selectedXMLNode == null) {
 					return;
 				}
-				Node selectedXMLNode = (Node) selectedNode.getUserObject();
 				
 				inspector.showNodeInfo(selectedXMLNode, 
 									   self.view.getMetaXMLNodeForNode(selectedXMLNode));
@@ -100,7 +100,7 @@ public class TreeView extends JTree {
 			        	self.setSelectionRow(selRow);
 			        }
 			        
-			        DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) self.getLastSelectedPathComponent();
+			        Node selectedNode = (Node) self.getLastSelectedPathComponent();
 					if (selectedNode == null) {
 						return;
 					}
@@ -112,9 +112,8 @@ public class TreeView extends JTree {
 				}
 			}
 
-			private JPopupMenu buildPopupMenuFor(final DefaultMutableTreeNode selectedNode) {
+			private JPopupMenu buildPopupMenuFor(final Node selectedXMLNode) {
 
-				Node selectedXMLNode = (Node) selectedNode.getUserObject();
 				List<ManipulationOption> options = self.view.getManipulationOptionsForNode(selectedXMLNode);
 				
 				JPopupMenu popup = new JPopupMenu();
@@ -137,6 +136,28 @@ public class TreeView extends JTree {
 		});
 
 		this.setCellRenderer(new TreeRenderer(this.view));
+		
+		// Lazy tree models release the children of collapsed nodes.
+		if (edlTree instanceof TreeExpansionListener) {
+			this.addTreeExpansionListener((TreeExpansionListener) edlTree);
+		}
+	}
+	
+	/**
+	 * Tree nodes are DOM nodes: show their names (e.g. for keyboard navigation).
+	 */
+	@Override
+	public String convertValueToText(Object value, 
+									 boolean selected,
+									 boolean expanded, 
+									 boolean leaf, 
+									 int row,
+									 boolean hasFocus) {
+		if (value instanceof Node) {
+			return ((Node) value).getNodeName();
+		}
+		
+		return super.convertValueToText(value, selected, expanded, leaf, row, hasFocus);
 	}
 
 	/**
@@ -164,21 +185,51 @@ public class TreeView extends JTree {
 		@Override
 		public void actionPerformed(ActionEvent e) {
 			if (this.option != null) {
-				this.option.execute();
-//				self.repaint();
-				if (this.option.getKind() == ManipulationOptionKind.REMOVE
-					|| this.option.getKind() == ManipulationOptionKind.CHOICE) {
+				final ManipulationOption option = this.option;
+				if (option.getKind() == ManipulationOptionKind.REMOVE
+					|| option.getKind() == ManipulationOptionKind.CHOICE) {
+					// The shown node is about to be removed.
 					self.inspector.showNodeInfo(null, null);
-				} else {
-					DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) self.getLastSelectedPathComponent();
-					if (selectedNode == null) {
-						self.inspector.showNodeInfo(null, null);
+				}
+				self.view.execute(new ModelTask<Void>() {
+					@Override
+					protected Void run() {
+						option.execute();
+						return null;
 					}
-					Node selectedXMLNode = (Node) selectedNode.getUserObject();
-					
-					inspector.showNodeInfo(selectedXMLNode, 
-										   self.view.getMetaXMLNodeForNode(selectedXMLNode));
+					@Override
+					protected void done(final Void result) {
+						showSelectedNode(option);
+					}
+					@Override
+					protected void failed(final Throwable failure) {
+						// The option may be applied partially or not at all.
+						showSelectedNode(null);
+						self.repaint();
+					}
+				});
+			}
+		}
+		
+		/**
+		 * @param option Executed option. Shows the selected node anyway if 
+		 * 				 null.
+		 */
+		private void showSelectedNode(final ManipulationOption option) {
+//			self.repaint();
+			if (option != null
+				&& (option.getKind() == ManipulationOptionKind.REMOVE
+					|| option.getKind() == ManipulationOptionKind.CHOICE)) {
+				self.inspector.showNodeInfo(null, null);
+			} else {
+				Node selectedXMLNode = (Node) self.getLastSelectedPathComponent();
+				if (selectedXMLNode == null) {
+					self.inspector.showNodeInfo(null, null);
+					return;
 				}
+				
+				inspector.showNodeInfo(selectedXMLNode, 
+									   self.view.getMetaXMLNodeForNode(selectedXMLNode));
 			}
 		}
 	}
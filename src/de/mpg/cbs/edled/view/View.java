@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.List;
 import java.util.Map;
 
+import javax.swing.JOptionPane;
 import javax.swing.JTextArea;
 import javax.swing.UIManager;
 
@@ -13,6 +14,8 @@ import org.w3c.dom.Node;
 import de.mpg.cbs.edled.Application;
 import de.mpg.cbs.edled.core.ManipulationOption;
 import de.mpg.cbs.edled.core.Model;
+import de.mpg.cbs.edled.core.ModelExecutor;
+import de.mpg.cbs.edled.core.ModelTask;
 import de.mpg.cbs.edled.core.Notification;
 import de.mpg.cbs.edled.core.StringNotification;
 import de.mpg.cbs.edled.core.Notification.NotificationKind;
@@ -92,6 +95,10 @@ public class View {
 	 * @param model The model object encapsulating the tree model.
 	 */
 	public void setModel(final Model model) {
+		// The model is edited on the model thread, the tree is updated on the EDT.
+		model.treeModel().setPublisher(ModelExecutor.EDT);
+		// Drop the components showing nodes of the previous document.
+		this.edlInspectorPanel.clear();
 		this.mainWindow.setTree(new TreeView(model.treeModel(), this.edlInspectorPanel, this));
 	}
 	/**
@@ -116,6 +123,10 @@ public class View {
 	ValidationResult getValidationResultForNode(final Node node, final boolean deep) {
 		return this.controller.getModel().getValidationResult(node, deep);
 	}
+	
+	int getIndicatorsForNode(final Node node) {
+		return this.controller.getModel().getIndicators(node);
+	}
 
 	/** 
 	 * Requests the creation of a new XML (EDL) document from the app controller.
@@ -143,7 +154,6 @@ public class View {
 	 */
 	void save(final File file) {
 		this.controller.save(file, true);
-		this.controller.getModel().revalidate();
 	}
 	
 	/**
@@ -166,7 +176,27 @@ public class View {
 	}
 	
 	/**
-	 * Sets the value of a node.
+	 * Runs an edit of the model on the model thread.
+	 * 
+	 * @param task The edit. Its done part updates the view afterwards.
+	 */
+	void execute(final ModelTask<?> task) {
+		this.controller.getExecutor().execute(task);
+	}
+	/**
+	 * Runs an edit of the model on the model thread, replacing a queued
+	 * edit with the same key (see ModelExecutor.coalesce).
+	 * 
+	 * @param key  Identifies the edits that supersede each other.
+	 * @param task The edit. Its done part updates the view afterwards.
+	 */
+	void execute(final Object key, final ModelTask<?> task) {
+		this.controller.getExecutor().coalesce(key, task);
+	}
+	
+	/**
+	 * Sets the value of a node. Has to be called on the model thread
+	 * (see execute).
 	 * 
 	 * @param node     Node whose value needs to be changed.
 	 * @param newValue The new string value.
@@ -175,6 +205,45 @@ public class View {
 		this.controller.getModel().setNodeValue(node, newValue);
 	}
 	
+	/**
+	 * Reverts the last edit of the current model (if any).
+	 */
+	void undo() {
+		this.edlInspectorPanel.showNodeInfo(null, null); // Edited node may be removed.
+		final Model model = this.controller.getModel();
+		if (model != null) {
+			execute(new ModelTask<Boolean>() {
+				@Override
+				protected Boolean run() {
+					return Boolean.valueOf(model.undo());
+				}
+			});
+		}
+	}
+	/**
+	 * Applies the last undone edit of the current model again (if any).
+	 */
+	void redo() {
+		this.edlInspectorPanel.showNodeInfo(null, null);
+		final Model model = this.controller.getModel();
+		if (model != null) {
+			execute(new ModelTask<Boolean>() {
+				@Override
+				protected Boolean run() {
+					return Boolean.valueOf(model.redo());
+				}
+			});
+		}
+	}
+	boolean canUndo() {
+		Model model = this.controller.getModel();
+		return model != null && model.canUndo();
+	}
+	boolean canRedo() {
+		Model model = this.controller.getModel();
+		return model != null && model.canRedo();
+	}
+	
 	/**
 	 * Asks the model whether a certain node is whitelisted meaning
 	 * it is not subject to validation.
@@ -304,6 +373,19 @@ public class View {
 //			    					  JOptionPane.WARNING_MESSAGE);
 	}
 	
+	/**
+	 * Convenience method for asking the user a yes/no question.
+	 * 
+	 * @param question The question to show in the dialog.
+	 * @return		   True if the user answered yes.
+	 */
+	public boolean confirm(final String question) {
+		return JOptionPane.showConfirmDialog(this.mainWindow, 
+											 question, 
+											 getAppName(), 
+											 JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+	}
+	
 	public String getAppName() {
 		return this.controller.getName();
 	}
@@ -1,14 +1,18 @@
 package de.mpg.cbs.edled.xml;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -19,6 +23,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -29,6 +34,8 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import de.mpg.cbs.edled.util.FileUtility;
+
 /**
  * Collection of convenience functions to handle
  * common XML tasks.
@@ -178,13 +185,21 @@ public class XMLUtility {
 	/**
 	 * Saves a DOM document to a given file.
 	 * 
+	 * The document is written to a temporary file next to the given file
+	 * first, which then replaces the given file (see FileUtility.replace).
+	 * So if writing fails (e.g. the application crashes), the previous 
+	 * content of the file is kept.
+	 * 
 	 * @param doc  The document to save/write.
 	 * @param file The file to write to.
+	 * @return	   True if the document was written.
 	 */
-	public static void saveDocument(final Document doc, final File file) {
+	public static boolean saveDocument(final Document doc, final File file) {
 		doc.setXmlStandalone(true);
 		Source source = new DOMSource(doc);
-		Result result = new StreamResult(file);
+		File tempFile = new File(file.getPath() + ".tmp");
+		FileOutputStream outstream = null;
+		boolean written = false;
 		
 		try {
 			Transformer transformer = TransformerFactory.newInstance().newTransformer();
@@ -192,16 +207,44 @@ public class XMLUtility {
 //			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
 			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
 			
-			transformer.transform(source, result);
+			outstream = new FileOutputStream(tempFile);
+			OutputStream bufferedStream = new BufferedOutputStream(outstream, 64 * 1024);
+			transformer.transform(source, new StreamResult(bufferedStream));
+			bufferedStream.flush();
+			// Make sure the content is on disk before it replaces the old file.
+			outstream.getFD().sync();
+			outstream.close();
+			outstream = null;
+			written = true;
+			
+			FileUtility.replace(tempFile, file);
+			return true;
 		} catch (TransformerConfigurationException e) {
 			logger.error("Document saving failed with exception!", e);
 		} catch (TransformerFactoryConfigurationError e) {
 			logger.error("Document saving failed with exception!", e);
 		} catch (TransformerException e) {
 			logger.error("Document saving failed with exception!", e);
+		} catch (IOException e) {
+			logger.error("Document saving failed with exception!", e);
+		} finally {
+			if (outstream != null) {
+				try {
+					outstream.close();
+				} catch (IOException e) {
+					logger.warn("Could not close " + tempFile.getPath(), e);
+				}
+			}
+			// Keep the written document if the file itself is gone.
+			if (written && tempFile.exists() && !file.exists()) {
+				logger.error("Kept the document in " + tempFile.getPath());
+			} else {
+				tempFile.delete();
+			}
 		}
+		
+		return false;
 	}
 	
 	/**
@@ -273,35 +316,43 @@ public class XMLUtility {
 		return null;
 	}
 	
-//	public static List<String> validate(final Node node, final Schema schema) {
-//		
-//		final List<String> errorMessages = new LinkedList<String>();
-//		
-//		Validator validator = schema.newValidator();
-//		validator.setErrorHandler(new ErrorHandler() {
-//			@Override
-//			public void warning(SAXParseException e) throws SAXException {
-//				errorMessages.add("Warning: " + e.getMessage());
-//			}
-//			@Override
-//			public void fatalError(SAXParseException e) throws SAXException {
-//				errorMessages.add("Critical error: " + e.getMessage());
-//			}
-//			@Override
-//			public void error(SAXParseException e) throws SAXException {
-//				errorMessages.add("Non-critical error: " + e.getMessage());
-//			}
-//		});
-//		
-//		try {
-//			validator.validate(new DOMSource(node));
-//		} catch (SAXException e) {
-//			logger.error("Node validation failed with exception!", e);
-//		} catch (IOException e) {
-//			logger.error("Node validation failed with exception!", e);
-//		}
-//		
-//		return errorMessages;
-//	}
+	/**
+	 * Validates a DOM node (usually a document) against a XML schema.
+	 * The node is not modified (no default values are added).
+	 * 
+	 * @param node	 The node to validate.
+	 * @param schema The XML schema.
+	 * @return		 Messages of all warnings and errors. Empty if node is valid.
+	 */
+	public static List<String> validate(final Node node, final Schema schema) {
+		
+		final List<String> errorMessages = new LinkedList<String>();
+		
+		Validator validator = schema.newValidator();
+		validator.setErrorHandler(new ErrorHandler() {
+			@Override
+			public void warning(SAXParseException e) throws SAXException {
+				errorMessages.add("Warning: " + e.getMessage());
+			}
+			@Override
+			public void fatalError(SAXParseException e) throws SAXException {
+				errorMessages.add("Critical error: " + e.getMessage());
+			}
+			@Override
+			public void error(SAXParseException e) throws SAXException {
+				errorMessages.add("Non-critical error: " + e.getMessage());
+			}
+		});
+		
+		try {
+			validator.validate(new DOMSource(node));
+		} catch (SAXException e) {
+			logger.error("Node validation failed with exception!", e);
+		} catch (IOException e) {
+			logger.error("Node validation failed with exception!", e);
+		}
+		
+		return errorMessages;
+	}
 
 }
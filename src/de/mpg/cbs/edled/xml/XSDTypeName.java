@@ -49,18 +49,18 @@ public enum XSDTypeName {
 	/* Numerical types. */
 	decimal,
 	integer,
-	nonPositiveInteger,	// Type check not yet implemented.
-	long_,				// Type check not yet implemented.
+	nonPositiveInteger,
+	long_,
 	nonNegativeInteger,
 	negativeInteger,
 	int_,
 	unsignedLong,
-	positiveInteger,	// Type check not yet implemented.	
-	short_,				// Type check not yet implemented.
+	positiveInteger,
+	short_,
 	unsignedInt,
-	byte_,				// Type check not yet implemented.
-	unsignedShort,		// Type check not yet implemented.
-	unsignedByte;		// Type check not yet implemented.
+	byte_,
+	unsignedShort,
+	unsignedByte;
 	
 	/**
 	 * Converts a string value into a XSDTypeName enum value.
@@ -107,7 +107,7 @@ public class DesignPlugin implements Plugin {
 			if (model.getValidationResult(paradigmNode, true).isValid()) {
 				DesignElement newDesign = null;
 				try {
-					newDesign = new DesignElement(paradigmNode, trNode, measurementsNode, refFctsNode);
+					newDesign = new DesignElement(model, paradigmNode, trNode, measurementsNode, refFctsNode);
 				} catch(IllegalArgumentException e) {
 					LOGGER.warn("IllegalArgumentException while initializing DesignElement from DOM nodes.", e);
 				} catch(IndexOutOfBoundsException e) {
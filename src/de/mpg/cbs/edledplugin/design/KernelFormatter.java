@@ -8,7 +8,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import de.mpg.cbs.edled.xml.XMLUtility;
+import de.mpg.cbs.edled.core.Model;
 import de.mpg.cbs.edledplugin.design.bart.DesignElement;
 import de.mpg.cbs.edledplugin.design.bart.DoubleGammaKernel;
 import de.mpg.cbs.edledplugin.design.bart.GloverKernel;
@@ -18,6 +18,13 @@ import de.mpg.cbs.edledplugin.design.bart.GloverKernel.GloverParams;
 
 public class KernelFormatter {
 	
+	/** Model whose parsed values are used. */
+	private final Model model;
+	
+	public KernelFormatter(final Model model) {
+		this.model = model;
+	}
+	
 	/**
 	 * 
 	 * @param referenceFunctionsNode
@@ -32,14 +39,14 @@ public class KernelFormatter {
 			Element gammaKernelElem = (Element) gammaKernelNodes.item(refNr);
 			String refFctID = gammaKernelElem.getAttribute("refFctID");
 			if (!refFctID.equals("")) {
-				double tPeak1 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("tPeak1").item(0)));
-				double mWidth1 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("mWidth1").item(0)));
-				double scale1 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("scale1").item(0)));
-				double tPeak2 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("tPeak2").item(0)));
-				double mWidth2 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("mWidth2").item(0)));
-				double scale2 = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("scale2").item(0)));
-				double offset = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("offset").item(0)));
-				double overallWidth = Double.parseDouble(XMLUtility.getNodeValue(gammaKernelElem.getElementsByTagName("overallWidth").item(0)));
+				double tPeak1 = doubleValueOf(gammaKernelElem, "tPeak1");
+				double mWidth1 = doubleValueOf(gammaKernelElem, "mWidth1");
+				double scale1 = doubleValueOf(gammaKernelElem, "scale1");
+				double tPeak2 = doubleValueOf(gammaKernelElem, "tPeak2");
+				double mWidth2 = doubleValueOf(gammaKernelElem, "mWidth2");
+				double scale2 = doubleValueOf(gammaKernelElem, "scale2");
+				double offset = doubleValueOf(gammaKernelElem, "offset");
+				double overallWidth = doubleValueOf(gammaKernelElem, "overallWidth");
 				
 				GammaParams params = new GammaParams(tPeak1, 
 													 mWidth1, 
@@ -76,14 +83,14 @@ public class KernelFormatter {
 			Element gloverKernelElem = (Element) gloverKernelNodes.item(refNr);
 			String refFctID = gloverKernelElem.getAttribute("refFctID");
 			if (!refFctID.equals("")) {
-				int overallWidth = Integer.parseInt(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("overallWidth").item(0)));
-				double peak1 = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("tPeak1").item(0)));
-				double scale1 = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("tPeak1Scale").item(0)));
-				double peak2 = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("tPeak2").item(0)));
-				double scale2 = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("tPeak2Scale").item(0)));
-				double offset = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("offset").item(0)));
-				double ratioTPeaks = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("ratioTPeaks").item(0)));
-				double heightScale = Double.parseDouble(XMLUtility.getNodeValue(gloverKernelElem.getElementsByTagName("heightScale").item(0)));
+				int overallWidth = intValueOf(gloverKernelElem, "overallWidth");
+				double peak1 = doubleValueOf(gloverKernelElem, "tPeak1");
+				double scale1 = doubleValueOf(gloverKernelElem, "tPeak1Scale");
+				double peak2 = doubleValueOf(gloverKernelElem, "tPeak2");
+				double scale2 = doubleValueOf(gloverKernelElem, "tPeak2Scale");
+				double offset = doubleValueOf(gloverKernelElem, "offset");
+				double ratioTPeaks = doubleValueOf(gloverKernelElem, "ratioTPeaks");
+				double heightScale = doubleValueOf(gloverKernelElem, "heightScale");
 				
 				GloverParams params = new GloverParams(overallWidth, 
 													   peak1, 
@@ -105,4 +112,31 @@ public class KernelFormatter {
 		return kernels;
 	}
 	
+	/**
+	 * @return The value of the first child element of the given name.
+	 * @throws IllegalArgumentException If there is no such child or its value is not a number.
+	 */
+	private double doubleValueOf(final Element parent, final String childName) {
+		Node child = parent.getElementsByTagName(childName).item(0);
+		if (child == null) {
+			throw new IllegalArgumentException("Missing " + childName + " in " + parent.getNodeName() + ".");
+		}
+		double value = this.model.getNumericValue(child);
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Value of " + childName + " is not a number.");
+		}
+		return value;
+	}
+	/**
+	 * @return The value of the first child element of the given name.
+	 * @throws IllegalArgumentException If there is no such child or its value is not an int.
+	 */
+	private int intValueOf(final Element parent, final String childName) {
+		double value = doubleValueOf(parent, childName);
+		if ((double) (int) value != value) {
+			throw new IllegalArgumentException("Value of " + childName + " is not an int.");
+		}
+		return (int) value;
+	}
+	
 }
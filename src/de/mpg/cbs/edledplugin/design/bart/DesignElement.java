@@ -6,11 +6,12 @@ import java.util.Map;
 import java.util.Observable;
 
 import org.apache.log4j.Logger;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import de.mpg.cbs.edled.xml.XMLUtility;
+import de.mpg.cbs.edled.core.Model;
 import de.mpg.cbs.edledplugin.design.KernelFormatter;
 import flanagan.complex.Complex;
 import flanagan.math.FourierTransform;
@@ -118,7 +119,14 @@ public class DesignElement extends Observable {
 	private FourierTransform[] fftPlanInverse;
 	
 	/* ===== Constructors ===== */
-	public DesignElement(final Node paradigmNode,
+	/**
+	 * Creates a design from the nodes of an EDL document. Numeric values 
+	 * are taken from the model's parsed values.
+	 * 
+	 * @throws IllegalArgumentException If a node is missing or has an invalid value.
+	 */
+	public DesignElement(final Model model,
+						 final Node paradigmNode,
 						 final Node trNode,
 						 final Node measurementsNode,
 						 final Node refFctsNode) {
@@ -146,13 +154,13 @@ public class DesignElement extends Observable {
 		}
 		
 		// TR
-		this.repetitionTimeInMs = Long.parseLong(XMLUtility.getNodeValue(trNode));
+		this.repetitionTimeInMs = longValueOf(model, trNode);
 		if (this.repetitionTimeInMs < 0) {
 			throw new IllegalArgumentException("Tried to create DesignElement with negative repetition time (TR).");
 		}
 		
 		// NumberTimesteps
-		this.numberTimesteps = Integer.parseInt(XMLUtility.getNodeValue(measurementsNode));
+		this.numberTimesteps = intValueOf(model, measurementsNode);
 		if (this.numberTimesteps < 0) {
 			throw new IllegalArgumentException("Tried to create DesignElement with negative timestep count.");
 		}
@@ -174,7 +182,7 @@ public class DesignElement extends Observable {
 		this.numberSamplesForInit = numberSamplesForInit;
 		
 		// Fetch reference functions (gGamma/gloverKernel)
-		KernelFormatter kernelFormatter = new KernelFormatter();
+		KernelFormatter kernelFormatter = new KernelFormatter(model);
 		this.gammaKernels = kernelFormatter.createGammaKernels(refFctsNode,
 															   this.getNumberSamplesForInit());
 		this.gloverKernels = kernelFormatter.createGloverKernels(refFctsNode, 
@@ -193,12 +201,9 @@ public class DesignElement extends Observable {
 			for (int trialNr = 0; trialNr < statEventNodes.getLength(); trialNr++) {
 				Element statEventElem = (Element) statEventNodes.item(trialNr);
 				
-				String timeAttrValue = statEventElem.getAttribute("time");
-				float onset = timeAttrValue.equals("") ? ONSET_DEFAULT : Float.parseFloat(timeAttrValue);
-				String durationAttrValue = statEventElem.getAttribute("duration");
-				float duration = durationAttrValue.equals("") ? DURATION_DEFAULT : Float.parseFloat(durationAttrValue);
-				String heightAttrValue = statEventElem.getAttribute("parametricScaleFactor");
-				float height = heightAttrValue.equals("") ? HEIGHT_DEFAULT : Float.parseFloat(heightAttrValue);
+				float onset = floatValueOf(model, statEventElem.getAttributeNode("time"), ONSET_DEFAULT);
+				float duration = floatValueOf(model, statEventElem.getAttributeNode("duration"), DURATION_DEFAULT);
+				float height = floatValueOf(model, statEventElem.getAttributeNode("parametricScaleFactor"), HEIGHT_DEFAULT);
 				
 				if (duration < 0.0f) { 
 					duration = 1.0f; 
@@ -424,6 +429,44 @@ public class DesignElement extends Observable {
 		return result;
 	}
 	
+	/**
+	 * @return The value of a node as whole number.
+	 * @throws IllegalArgumentException If the value is not a whole number.
+	 */
+	private static long longValueOf(final Model model, final Node node) {
+		double value = model.getNumericValue(node);
+		if ((double) (long) value != value) {
+			throw new IllegalArgumentException("Value of " + node.getNodeName() + " is not a whole number.");
+		}
+		return (long) value;
+	}
+	/**
+	 * @return The value of a node as whole number.
+	 * @throws IllegalArgumentException If the value is not a whole number 
+	 * 									or out of the range of int.
+	 */
+	private static int intValueOf(final Model model, final Node node) {
+		long value = longValueOf(model, node);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Value of " + node.getNodeName() + " is out of the range of int.");
+		}
+		return (int) value;
+	}
+	/**
+	 * @return The value of an attribute. defaultValue if the attribute is missing or empty.
+	 * @throws IllegalArgumentException If the value is not a number.
+	 */
+	private static float floatValueOf(final Model model, final Attr attr, final float defaultValue) {
+		if (attr == null || attr.getValue().equals("")) {
+			return defaultValue;
+		}
+		double value = model.getNumericValue(attr);
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Value of " + attr.getName() + " is not a number.");
+		}
+		return (float) value;
+	}
+	
 	/* ===== Methods ===== */
 	public void convolve(final int col, 
 						 final int eventNr, 
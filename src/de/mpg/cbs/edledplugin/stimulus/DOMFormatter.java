@@ -10,11 +10,14 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.FilenameUtils;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import de.mpg.cbs.edled.core.Model;
+import de.mpg.cbs.edled.core.validation.NumberScanner;
 import de.mpg.cbs.edled.util.Configuration;
 import de.mpg.cbs.edled.util.FileUtility;
 import de.mpg.cbs.edled.xml.XMLUtility;
@@ -24,6 +27,19 @@ import de.mpg.cbs.edled.xml.XMLUtility;
 
 public class DOMFormatter {
 	
+	/** Model whose parsed values are used when filling. Null to parse values here. */
+	private final Model model;
+	
+	public DOMFormatter() {
+		this(null);
+	}
+	/**
+	 * @param model Model of the documents to fill from.
+	 */
+	public DOMFormatter(final Model model) {
+		this.model = model;
+	}
+	
 	public Node xmlTreeFor(final Screen screen) {
 		Document doc = null;
 		try {
@@ -448,34 +464,19 @@ public class DOMFormatter {
 		
 		Element timetableElem = (Element) timetableNode;
 		
-		long timeTolerance;
-		try {
-			timeTolerance = Long.parseLong(timetableElem.getAttribute("timeTolerance").trim());
-		} catch (NumberFormatException e) {
-			timeTolerance = 0;
-		}
-		timetable.setTolerance(timeTolerance);
+		timetable.setTolerance(longValueOf(timetableElem.getAttributeNode("timeTolerance"), 0));
 		
 		int repeats;
 		Element designElem  = (Element) timetableElem.getElementsByTagName("blockStimulusDesign").item(0);
 		if (designElem != null) {
-			try {
-				repeats = Integer.parseInt(designElem.getAttribute("repeats").trim());
-			} catch (NumberFormatException e) {
-				repeats = 1;
-			}
+			long repeatsValue = longValueOf(designElem.getAttributeNode("repeats"), 1);
+			repeats = (repeatsValue <= Integer.MAX_VALUE) ? (int) repeatsValue : 1;
 		} else {
 			designElem = (Element) timetableElem.getElementsByTagName("freeStimulusDesign").item(0);
 			repeats = 1;
 		}
 		
-		long duration;
-		try {
-			duration = Long.parseLong(designElem.getAttribute("overallPresLength").trim());
-		} catch (NumberFormatException e) {
-			duration = 0;
-		}
-		timetable.setDuration(duration);
+		timetable.setDuration(longValueOf(designElem.getAttributeNode("overallPresLength"), 0));
 		
 		int eventCounter = 0;
 		int repeatCounter = 1;
@@ -529,12 +530,9 @@ public class DOMFormatter {
 	private StimEvent buildStimEventFrom(final Node eventNode, 
 										 final MediaObjectList mediaObjects) {
 		Element eventElem = (Element) eventNode;
-		long eventTime;
-		long eventDuration;
-		try {
-			eventTime = Long.parseLong(eventElem.getAttribute("time").trim());
-			eventDuration = Long.parseLong(eventElem.getAttribute("duration").trim());
-		} catch (NumberFormatException e) {
+		double eventTime = numberOf(eventElem.getAttributeNode("time"));
+		double eventDuration = numberOf(eventElem.getAttributeNode("duration"));
+		if (!isWholeNumber(eventTime) || !isWholeNumber(eventDuration)) {
 			eventTime = 0;
 			eventDuration = 0;
 		}
@@ -542,7 +540,38 @@ public class DOMFormatter {
 		String mediaObjID = XMLUtility.getNodeValue(eventElem.getElementsByTagName("mObjectID").item(0)).trim();
         MediaObject mediaObj = mediaObjects.getMediaObject(mediaObjID);
         
-        return new StimEvent(eventTime, eventDuration, mediaObj);
+        return new StimEvent((long) eventTime, (long) eventDuration, mediaObj);
+	}
+	
+	/**
+	 * @param attr			An attribute. May be null.
+	 * @param defaultValue	Value if the attribute is missing or not a whole number.
+	 * @return				The value of the attribute as whole number.
+	 */
+	private long longValueOf(final Attr attr, final long defaultValue) {
+		double value = numberOf(attr);
+		return isWholeNumber(value) ? (long) value : defaultValue;
+	}
+	
+	/**
+	 * @param attr An attribute. May be null.
+	 * @return	   The numeric value of the attribute. NaN if the attribute is
+	 * 			   missing or not a number.
+	 */
+	private double numberOf(final Attr attr) {
+		if (attr == null) {
+			return Double.NaN;
+		}
+		
+		return (this.model != null) ? this.model.getNumericValue(attr) 
+									: NumberScanner.toNumber(attr.getValue());
+	}
+	
+	/**
+	 * @return True if value is a whole number in the range of long (not NaN).
+	 */
+	private static boolean isWholeNumber(final double value) {
+		return (double) (long) value == value;
 	}
 	
 }
@@ -143,7 +143,7 @@ public class StimulusPlugin implements Plugin {
 			Node screenNode = (Node) this.nodeMapper.xpathFor(SCREEN_KEY).evaluate(doc, XPathConstants.NODE);
 			Node mediaObjListNode = (Node) this.nodeMapper.xpathFor(MEDIAOBJECTLIST_KEY).evaluate(doc, XPathConstants.NODE);
 			Node timetableNode = (Node) this.nodeMapper.xpathFor(TIMETABLE_KEY).evaluate(doc, XPathConstants.NODE);
-			DOMFormatter formatter = new DOMFormatter();
+			DOMFormatter formatter = new DOMFormatter(model);
 			if (model.getValidationResult(screenNode, true).isValid()) {
 				formatter.fill(this.pluginModel.getScreen(), screenNode);
 			}
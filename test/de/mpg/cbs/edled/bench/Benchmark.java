@@ -0,0 +1,58 @@
+package de.mpg.cbs.edled.bench;
+
+/**
+ * A measured operation of the benchmark suite (see BenchmarkRunner).
+ *
+ * setUp is called once before warming up, prepare before each invocation
+ * of run. Only run is timed. The result of run is consumed by the runner
+ * so the JIT cannot drop the operation.
+ *
+ * @author Oliver Z.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+	private final String parameter;
+
+	/**
+	 * @param name		Name of the measured operation.
+	 * @param parameter What the operation is measured on, e.g. a file name.
+	 */
+	protected Benchmark(final String name, final String parameter) {
+		this.name = name;
+		this.parameter = parameter;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String getParameter() {
+		return this.parameter;
+	}
+
+	/**
+	 * Untimed preparation before the first invocation.
+	 */
+	public void setUp() {
+	}
+
+	/**
+	 * Untimed preparation before each invocation.
+	 */
+	public void prepare() {
+	}
+
+	/**
+	 * The measured operation.
+	 *
+	 * @return Any result of the operation.
+	 */
+	public abstract Object run();
+
+	/**
+	 * Releases resources after the last invocation.
+	 */
+	public void tearDown() {
+	}
+}
@@ -0,0 +1,171 @@
+package de.mpg.cbs.edled.bench;
+
+import java.util.Locale;
+
+/**
+ * Minimal benchmark harness measuring the average time per invocation.
+ *
+ * Each benchmark is run for a number of warmup iterations (discarded)
+ * followed by the measurement iterations. An iteration invokes the
+ * benchmark repeatedly until its time is used up, but at least once.
+ * Every invocation is timed separately, so untimed per-invocation
+ * preparation (Benchmark.prepare) does not distort the result. This is
+ * accurate for operations taking at least a few microseconds.
+ *
+ * @author Oliver Z.
+ */
+public class BenchmarkRunner {
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+
+	/** Combined results of all invocations, see consume. */
+	private int sink = 0;
+
+	/**
+	 * @param warmupIterations		Number of discarded iterations.
+	 * @param measurementIterations Number of measured iterations.
+	 * @param iterationMillis		Minimum duration of an iteration.
+	 */
+	public BenchmarkRunner(final int warmupIterations,
+						   final int measurementIterations,
+						   final long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = Math.max(1, measurementIterations);
+		this.iterationNanos = iterationMillis * 1000000L;
+	}
+
+	/**
+	 * Runs a benchmark.
+	 *
+	 * @param benchmark The benchmark.
+	 * @return			The measured times.
+	 */
+	public Result run(final Benchmark benchmark) {
+		benchmark.setUp();
+		try {
+			for (int iteration = 0; iteration < this.warmupIterations; iteration++) {
+				iterate(benchmark, null);
+			}
+
+			double[] nanosPerOp = new double[this.measurementIterations];
+			long[] ops = new long[1];
+			for (int iteration = 0; iteration < this.measurementIterations; iteration++) {
+				nanosPerOp[iteration] = iterate(benchmark, ops);
+			}
+
+			return new Result(benchmark, nanosPerOp, ops[0]);
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * @return Combination of all results, only to be printed so that
+	 * 		   the results cannot be optimized away.
+	 */
+	public int getSink() {
+		return this.sink;
+	}
+
+	/**
+	 * Runs a single iteration.
+	 *
+	 * @param totalOps Incremented by the number of invocations (if not null).
+	 * @return		   Average time per invocation in nanoseconds.
+	 */
+	private double iterate(final Benchmark benchmark, final long[] totalOps) {
+		long timed = 0;
+		long ops = 0;
+		long end = System.nanoTime() + this.iterationNanos;
+		do {
+			benchmark.prepare();
+			long start = System.nanoTime();
+			Object result = benchmark.run();
+			timed += System.nanoTime() - start;
+			consume(result);
+			ops++;
+		} while (System.nanoTime() < end);
+
+		if (totalOps != null) {
+			totalOps[0] += ops;
+		}
+
+		return (double) timed / ops;
+	}
+
+	private void consume(final Object result) {
+		this.sink = 31 * this.sink + ((result == null) ? 0 : result.hashCode());
+	}
+
+	/**
+	 * Measured times of a benchmark.
+	 */
+	public static class Result {
+
+		private final Benchmark benchmark;
+		private final double mean;
+		private final double deviation;
+		private final double min;
+		private final long ops;
+
+		Result(final Benchmark benchmark, final double[] nanosPerOp, final long ops) {
+			this.benchmark = benchmark;
+			this.ops = ops;
+
+			double sum = 0;
+			double min = Double.MAX_VALUE;
+			for (double nanos : nanosPerOp) {
+				sum += nanos;
+				min = Math.min(min, nanos);
+			}
+			this.mean = sum / nanosPerOp.length;
+			this.min = min;
+
+			double squares = 0;
+			for (double nanos : nanosPerOp) {
+				squares += (nanos - this.mean) * (nanos - this.mean);
+			}
+			this.deviation = (nanosPerOp.length > 1) ? Math.sqrt(squares / (nanosPerOp.length - 1)) : 0;
+		}
+
+		public Benchmark getBenchmark() {
+			return this.benchmark;
+		}
+		/**
+		 * @return Mean time per invocation over all iterations in microseconds.
+		 */
+		public double getMeanMicros() {
+			return this.mean / 1000.0;
+		}
+		/**
+		 * @return Standard deviation of the iteration means in microseconds.
+		 */
+		public double getDeviationMicros() {
+			return this.deviation / 1000.0;
+		}
+		/**
+		 * @return Mean time per invocation of the fastest iteration in microseconds.
+		 */
+		public double getMinMicros() {
+			return this.min / 1000.0;
+		}
+		/**
+		 * @return Number of measured invocations.
+		 */
+		public long getOps() {
+			return this.ops;
+		}
+
+		/**
+		 * @return Tab separated name, parameter, mean, deviation, minimum (us/op) and invocations.
+		 */
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%s\t%s\t%.3f\t%.3f\t%.3f\t%d",
+								 this.benchmark.getName(), this.benchmark.getParameter(),
+								 getMeanMicros(), getDeviationMicros(), getMinMicros(), this.ops);
+		}
+	}
+}
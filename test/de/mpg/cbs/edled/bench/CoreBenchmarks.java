@@ -0,0 +1,265 @@
+package de.mpg.cbs.edled.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import de.mpg.cbs.edled.core.Model;
+import de.mpg.cbs.edled.core.SchemaCache;
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.StreamingDocumentLoader;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.core.validation.LiteralBenchmark;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+/**
+ * Benchmarks of the EDL core: loading, mapping and validating documents
+ * and computing manipulation options.
+ *
+ * Measured on all EDL files in test/res and edl/ plus copies of a base
+ * file whose statEvents are repeated 10 and 100 times. Operations needing
+ * a Model are skipped for files that are not schema compliant, loading
+ * with StreamingDocumentLoader for files it rejects.
+ * Run from the project directory:
+ *
+ * java -cp bin:res/lib/* de.mpg.cbs.edled.bench.CoreBenchmarks
+ *
+ * System properties (defaults in brackets):
+ * bench.warmup [3], bench.iterations [5], bench.time [200] ms per iteration,
+ * bench.filter [.*] regex matched against "name parameter",
+ * bench.scale [test/res/mainExp_glover.edl] base of the scaled files,
+ * bench.xsd [res/xsd/rtExperiment_v15.xsd], bench.rules [res/rules/edlValidation_rules.xml].
+ *
+ * Prints one tab separated line per benchmark: name, file, mean, standard
+ * deviation and minimum time per operation (us) and the number of operations.
+ *
+ * @author Oliver Z.
+ */
+public class CoreBenchmarks {
+
+	private static final String[] EDL_DIRECTORIES = {"test/res", "edl"};
+	private static final String EDL_EXTENSION = ".edl";
+	/** Element repeated in the scaled files. */
+	private static final String SCALED_ELEMENT = "statEvent";
+	private static final int[] SCALE_FACTORS = {10, 100};
+
+	private final CachedSchema cachedSchema;
+	private final File edlRulesFile;
+	private final BenchmarkRunner runner;
+	private final Pattern filter;
+
+	public CoreBenchmarks(final File xsdFile,
+						  final File edlRulesFile,
+						  final BenchmarkRunner runner,
+						  final Pattern filter) {
+		this.cachedSchema = SchemaCache.getSingleton().get(xsdFile);
+		this.edlRulesFile = edlRulesFile;
+		this.runner = runner;
+		this.filter = filter;
+	}
+
+	/**
+	 * Runs all benchmarks on a file.
+	 */
+	public void runAll(final File file) {
+		final String parameter = file.getName();
+		final EDLRuleValidator edlValidator = new EDLRuleValidator(this.edlRulesFile);
+
+		run(new Benchmark("XMLUtility.loadDocument", parameter) {
+			@Override
+			public Object run() {
+				return XMLUtility.loadDocument(file, cachedSchema.getSchema());
+			}
+		});
+
+		// Rejected files would time the rejection instead of loading.
+		final StreamingDocumentLoader loader = new StreamingDocumentLoader(this.cachedSchema);
+		if (loader.load(file, edlValidator) == null) {
+			System.err.println("Skipping StreamingDocumentLoader.load of " + parameter + " (rejected).");
+		} else {
+			run(new Benchmark("StreamingDocumentLoader.load", parameter) {
+				@Override
+				public Object run() {
+					return loader.load(file, edlValidator);
+				}
+			});
+		}
+
+		final Document document = XMLUtility.loadDocument(file, this.cachedSchema.getSchema());
+		if (document == null || createModel(document, edlValidator) == null) {
+			System.err.println("Skipping model benchmarks of " + parameter + " (not schema compliant).");
+			return;
+		}
+
+		// Mapping does not change the document, so it can be mapped again and again.
+		run(new Benchmark("Model(Document)", parameter) {
+			@Override
+			public Object run() {
+				return new Model(document, cachedSchema, edlValidator);
+			}
+		});
+
+		run(new Benchmark("Model.revalidate", parameter) {
+			private Model model;
+			@Override
+			public void setUp() {
+				this.model = createModel(document, edlValidator);
+			}
+			@Override
+			public Object run() {
+				this.model.revalidate(false);
+				return this.model;
+			}
+		});
+
+		run(new Benchmark("Model.revalidate(parallel)", parameter) {
+			private Model model;
+			@Override
+			public void setUp() {
+				this.model = createModel(document, edlValidator);
+			}
+			@Override
+			public Object run() {
+				this.model.revalidate(true);
+				return this.model;
+			}
+		});
+
+		// Options are cached per node, so each invocation needs a fresh model.
+		run(new Benchmark("Model.getManipulationOptionsFor(all)", parameter) {
+			private final List<Node> elements = new ArrayList<Node>();
+			private Model model;
+			@Override
+			public void setUp() {
+				collectElements(document.getDocumentElement(), this.elements);
+			}
+			@Override
+			public void prepare() {
+				this.model = createModel(document, edlValidator);
+			}
+			@Override
+			public Object run() {
+				int optionCount = 0;
+				for (Node element : this.elements) {
+					optionCount += this.model.getManipulationOptionsFor(element).size();
+				}
+				return Integer.valueOf(optionCount);
+			}
+		});
+
+		run(new LiteralBenchmark(parameter, document, new EDLRuleValidator(this.edlRulesFile)));
+	}
+
+	private void run(final Benchmark benchmark) {
+		if (this.filter.matcher(benchmark.getName() + " " + benchmark.getParameter()).find()) {
+			System.out.println(this.runner.run(benchmark));
+		}
+	}
+
+	private Model createModel(final Document document, final EDLRuleValidator edlValidator) {
+		try {
+			return new Model(document, this.cachedSchema, edlValidator);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static void collectElements(final Node node, final List<Node> elements) {
+		elements.add(node);
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				collectElements(child, elements);
+			}
+		}
+	}
+
+	/**
+	 * Writes a copy of a file with each SCALED_ELEMENT repeated.
+	 *
+	 * @param base	  The original file.
+	 * @param factor  How often each element occurs in the copy.
+	 * @param toDir	  Directory for the copy.
+	 * @return		  The copy. Null if it could not be written.
+	 */
+	static File scale(final File base, final int factor, final File toDir) {
+		Document document = XMLUtility.loadDocument(base, null);
+		if (document == null) {
+			return null;
+		}
+
+		NodeList elements = document.getElementsByTagName(SCALED_ELEMENT);
+		List<Node> originals = new ArrayList<Node>(elements.getLength());
+		for (int elemNr = 0; elemNr < elements.getLength(); elemNr++) {
+			originals.add(elements.item(elemNr));
+		}
+		for (Node original : originals) {
+			for (int copy = 1; copy < factor; copy++) {
+				original.getParentNode().insertBefore(original.cloneNode(true), original.getNextSibling());
+			}
+		}
+
+		String name = base.getName();
+		int extension = name.lastIndexOf('.');
+		File scaled = new File(toDir, name.substring(0, extension) + "_x" + factor + name.substring(extension));
+		scaled.deleteOnExit();
+
+		return XMLUtility.saveDocument(document, scaled) ? scaled : null;
+	}
+
+	/**
+	 * Benchmark suite entry point (see class description).
+	 */
+	public static void main(String[] args) {
+		Logger.getRootLogger().addAppender(new ConsoleAppender(new PatternLayout("[%-5p]: %m%n"),
+															   ConsoleAppender.SYSTEM_ERR));
+		Logger.getRootLogger().setLevel(Level.ERROR);
+
+		BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("bench.warmup", 3).intValue(),
+													 Integer.getInteger("bench.iterations", 5).intValue(),
+													 Long.getLong("bench.time", 200).longValue());
+		CoreBenchmarks benchmarks = new CoreBenchmarks(
+				new File(System.getProperty("bench.xsd", "res/xsd/rtExperiment_v15.xsd")),
+				new File(System.getProperty("bench.rules", "res/rules/edlValidation_rules.xml")),
+				runner,
+				Pattern.compile(System.getProperty("bench.filter", ".*")));
+
+		List<File> files = new ArrayList<File>();
+		for (String directory : EDL_DIRECTORIES) {
+			File[] entries = new File(directory).listFiles();
+			if (entries != null) {
+				Arrays.sort(entries);
+				for (File entry : entries) {
+					if (entry.getName().endsWith(EDL_EXTENSION)) {
+						files.add(entry);
+					}
+				}
+			}
+		}
+		File scaleBase = new File(System.getProperty("bench.scale", "test/res/mainExp_glover.edl"));
+		File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+		for (int factor : SCALE_FACTORS) {
+			File scaled = scale(scaleBase, factor, tmpDir);
+			if (scaled != null) {
+				files.add(scaled);
+			} else {
+				System.err.println("Could not scale " + scaleBase.getPath() + " by " + factor);
+			}
+		}
+
+		System.out.println("benchmark\tfile\tmean[us/op]\tstddev[us/op]\tmin[us/op]\tops");
+		for (File file : files) {
+			benchmarks.runAll(file);
+		}
+		System.err.println("(" + runner.getSink() + ")");
+	}
+}
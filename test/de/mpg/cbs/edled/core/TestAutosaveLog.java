@@ -0,0 +1,234 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.validation.Schema;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.util.FileUtility;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+
+public class TestAutosaveLog {
+
+	private static final File XSD_FILE = new File("res/xsd/rtExperiment_v15.xsd");
+	private static final File RULES_FILE = new File("res/rules/edlValidation_rules.xml");
+	private static final File EDL_FILE = new File("test/res/mainExp_glover.edl");
+	/** Maximum time (ms) to wait for the writer thread. */
+	private static final long TIMEOUT = 10000;
+
+	private File directory;
+	private Schema schema;
+	private Model model;
+	private Document document;
+	private AutosaveLog log;
+	/** Header of the log started for the unedited document. */
+	private String header;
+
+	@Before
+	public void setUp() throws Exception {
+		this.directory = File.createTempFile("autosave", "");
+		this.directory.delete();
+		this.directory.mkdir();
+
+		CachedSchema cachedSchema = SchemaCache.getSingleton().get(XSD_FILE);
+		this.schema = cachedSchema.getSchema();
+		this.document = XMLUtility.loadDocument(EDL_FILE, this.schema);
+		this.model = new Model(this.document, cachedSchema, new EDLRuleValidator(RULES_FILE));
+		// Write the records right away, starting with a snapshot of the 
+		// unedited document, so the edits are recovered from the records.
+		this.log = new AutosaveLog(this.directory, 0);
+		this.log.start(this.model, EDL_FILE, true);
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!logFile().exists() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(logFile().exists());
+		this.header = FileUtility.lines(logFile()).get(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.log.close(TIMEOUT);
+		FileUtils.deleteDirectory(this.directory);
+	}
+
+	@Test
+	public void testRecordKinds() {
+		List<Element> leaves = leaves();
+
+		// V
+		setValue(leaves.get(0), "changed");
+
+		// A, V (attribute) and D (attribute)
+		Element element = leaves.get(1);
+		synchronized (this.model) {
+			element.setAttribute("autosaveTest", "added");
+			this.log.nodeInserted(element.getAttributeNode("autosaveTest"));
+		}
+		setValue(element.getAttributeNode("autosaveTest"), "changed");
+		synchronized (this.model) {
+			Attr attr = element.getAttributeNode("autosaveTest");
+			this.log.nodeRemoving(attr);
+			element.removeAttributeNode(attr);
+		}
+
+		// I
+		Element copied = leaves.get(2);
+		synchronized (this.model) {
+			Node copy = copied.cloneNode(true);
+			copied.getParentNode().insertBefore(copy, copied);
+			this.log.nodeInserted(copy);
+		}
+
+		// R
+		Element replaced = leaves.get(4);
+		synchronized (this.model) {
+			Node replacement = replaced.cloneNode(true);
+			replacement.setTextContent("replaced");
+			replaced.getParentNode().replaceChild(replacement, replaced);
+			this.log.nodeReplaced(replacement);
+		}
+
+		// D
+		Element removed = leaves.get(5);
+		synchronized (this.model) {
+			this.log.nodeRemoving(removed);
+			removed.getParentNode().removeChild(removed);
+		}
+
+		assertRecovered();
+	}
+
+	@Test
+	public void testEscaping() {
+		List<Element> leaves = leaves();
+		String[] values = {"a\tb", "a\nb", "a\\b", "a\\tb", "\\", "a\r\nb\\"};
+		for (int valueNr = 0; valueNr < values.length; valueNr++) {
+			setValue(leaves.get(valueNr), values[valueNr]);
+		}
+		Element element = leaves.get(values.length);
+		synchronized (this.model) {
+			element.setAttribute("autosaveTest", "a\t\\n\nb");
+			this.log.nodeInserted(element.getAttributeNode("autosaveTest"));
+		}
+
+		assertRecovered();
+		// Recovered from the records, not from a snapshot.
+		Assert.assertEquals(1 + values.length + 1, FileUtility.lines(logFile()).size());
+	}
+
+	@Test
+	public void testPartialLastLine() throws IOException {
+		List<Element> leaves = leaves();
+		setValue(leaves.get(0), "changed");
+		this.log.close(TIMEOUT);
+
+		// Crashed while writing the next record.
+		FileOutputStream out = new FileOutputStream(logFile(), true);
+		try {
+			out.write("V\t/0\tpart".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		assertRecovered();
+	}
+
+	@Test
+	public void testCompaction() {
+		List<Element> leaves = leaves();
+		setValue(leaves.get(0), "before save");
+		this.log.saved(this.model, EDL_FILE);
+
+		// The first edit after saving is compacted into a new snapshot.
+		setValue(leaves.get(1), "after save");
+		Element removed = leaves.get(2);
+		synchronized (this.model) {
+			this.log.nodeRemoving(removed);
+			removed.getParentNode().removeChild(removed);
+		}
+		setValue(leaves.get(3), "after compaction");
+		this.log.close(TIMEOUT);
+
+		// A new header and (at most) the records after the first edit.
+		List<String> lines = FileUtility.lines(logFile());
+		Assert.assertTrue(lines.get(0).startsWith("G\t"));
+		Assert.assertFalse(this.header.equals(lines.get(0)));
+		Assert.assertTrue(lines.size() <= 3);
+		assertRecovered();
+	}
+
+	@Test
+	public void testSaved() {
+		setValue(leaves().get(0), "changed");
+		this.log.saved(this.model, EDL_FILE);
+		this.log.close(TIMEOUT);
+
+		Assert.assertFalse(new AutosaveLog(this.directory).hasRecovery());
+	}
+
+	private void assertRecovered() {
+		this.log.close(TIMEOUT);
+		AutosaveLog recovery = new AutosaveLog(this.directory);
+		Assert.assertTrue(recovery.hasRecovery());
+		Assert.assertEquals(EDL_FILE.getPath(), recovery.getRecoveryFile().getPath());
+		Assert.assertTrue(this.document.getDocumentElement().isEqualNode(recover().getDocumentElement()));
+	}
+
+	private Document recover() {
+		Document recovered = new AutosaveLog(this.directory).recover(this.schema);
+		Assert.assertNotNull(recovered);
+		return recovered;
+	}
+
+	private File logFile() {
+		return new File(this.directory, "autosave.log");
+	}
+
+	/**
+	 * Changes the value of a node like the model does.
+	 */
+	private void setValue(final Node node, final String value) {
+		synchronized (this.model) {
+			XMLUtility.setNodeValue(node, value);
+			this.log.nodeValueChanged(node);
+		}
+	}
+
+	/**
+	 * @return Elements having a text value only, in document order.
+	 */
+	private List<Element> leaves() {
+		List<Element> leaves = new ArrayList<Element>();
+		collectLeaves(this.document.getDocumentElement(), leaves);
+		return leaves;
+	}
+	private static void collectLeaves(final Element element, final List<Element> leaves) {
+		boolean leaf = true;
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				leaf = false;
+				collectLeaves((Element) child, leaves);
+			}
+		}
+		if (leaf && element.getTextContent().trim().length() > 0) {
+			leaves.add(element);
+		}
+	}
+}
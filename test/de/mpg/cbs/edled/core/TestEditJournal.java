@@ -0,0 +1,78 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestEditJournal {
+	
+	private final static long EDIT_SIZE = 100;
+	
+	private EditJournal journal;
+	/** Values of the "document", changed by the edits. */
+	private List<Integer> values;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.journal = new EditJournal(10 * EDIT_SIZE);
+		this.values = new ArrayList<Integer>();
+	}
+	
+	@Test
+	public void testUndoRedo() {
+		add(1);
+		add(2);
+		Assert.assertTrue(this.journal.undo());
+		Assert.assertEquals(1, this.values.size());
+		Assert.assertTrue(this.journal.redo());
+		Assert.assertEquals(2, this.values.size());
+		Assert.assertFalse(this.journal.redo());
+		
+		// Recording drops the edits that could be redone.
+		this.journal.undo();
+		add(3);
+		Assert.assertFalse(this.journal.canRedo());
+		this.journal.undo();
+		this.journal.undo();
+		Assert.assertTrue(this.values.isEmpty());
+		Assert.assertFalse(this.journal.undo());
+	}
+	
+	@Test
+	public void testCapacity() {
+		for (int value = 0; value < 100; value++) {
+			add(value);
+		}
+		Assert.assertEquals(10 * EDIT_SIZE, this.journal.getSize());
+		
+		int undone = 0;
+		while (this.journal.undo()) {
+			undone++;
+		}
+		Assert.assertEquals(10, undone);
+		Assert.assertEquals(90, this.values.size());
+		Assert.assertEquals(10 * EDIT_SIZE, this.journal.getSize());
+	}
+	
+	private void add(final int value) {
+		this.values.add(Integer.valueOf(value));
+		this.journal.record(new EditJournal.Edit() {
+			@Override
+			public void undo() {
+				values.remove(values.size() - 1);
+			}
+			@Override
+			public void redo() {
+				values.add(Integer.valueOf(value));
+			}
+			@Override
+			public long getSize() {
+				return EDIT_SIZE;
+			}
+		});
+	}
+}
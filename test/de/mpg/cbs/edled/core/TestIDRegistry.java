@@ -0,0 +1,67 @@
+package de.mpg.cbs.edled.core;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+
+public class TestIDRegistry {
+	
+	private final static String ID = "stim1";
+	private final static String OTHER_ID = "stim2";
+	
+	private IDRegistry ids;
+	
+	private Node holder;
+	private Node applicant;
+	private Node referrer;
+	
+	@Before
+	public void setUp() throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		this.holder = doc.createAttribute("stimID");
+		this.applicant = doc.createAttribute("stimID");
+		this.referrer = doc.createAttribute("stimRef");
+		
+		this.ids = new IDRegistry();
+		this.ids.putID(this.holder, ID);
+		this.ids.putID(this.applicant, ID);
+		this.ids.putReferences(this.referrer, ID + " " + OTHER_ID);
+	}
+
+	@Test
+	public void testHolder() {
+		Assert.assertSame(this.holder, this.ids.getNodeForID(ID));
+		Assert.assertNull(this.ids.getNodeForID(OTHER_ID));
+	}
+	
+	@Test
+	public void testApplicantTakesOver() {
+		this.ids.takeChangedIDs();
+		this.ids.removeID(this.holder);
+		Assert.assertSame(this.applicant, this.ids.getNodeForID(ID));
+		Assert.assertTrue(this.ids.takeChangedIDs().contains(ID));
+		
+		this.ids.putID(this.applicant, OTHER_ID);
+		Assert.assertFalse(this.ids.isIDInUse(ID));
+		Assert.assertSame(this.applicant, this.ids.getNodeForID(OTHER_ID));
+	}
+	
+	@Test
+	public void testDanglingReferences() {
+		Assert.assertTrue(this.ids.getReferringNodes(OTHER_ID).contains(this.referrer));
+		Assert.assertEquals(1, this.ids.getDanglingReferences().size());
+		
+		this.ids.putReferences(this.referrer, ID);
+		Assert.assertTrue(this.ids.getDanglingReferences().isEmpty());
+		Assert.assertTrue(this.ids.getReferringNodes(OTHER_ID).isEmpty());
+		
+		this.ids.removeID(this.holder);
+		this.ids.removeID(this.applicant);
+		Assert.assertEquals(1, this.ids.getDanglingReferences().size());
+	}
+}
@@ -0,0 +1,93 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.core.ManipulationOption.ManipulationOptionKind;
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+
+public class TestModel {
+
+	private static final File XSD_FILE = new File("res/xsd/rtExperiment_v15.xsd");
+	private static final File RULES_FILE = new File("res/rules/edlValidation_rules.xml");
+	private static final File EDL_FILE = new File("test/res/mainExp_glover.edl");
+
+	private Model model;
+	private Document document;
+	/** Tree model events not published yet. */
+	private List<Runnable> unpublished;
+
+	@Before
+	public void setUp() throws Exception {
+		CachedSchema cachedSchema = SchemaCache.getSingleton().get(XSD_FILE);
+		this.document = XMLUtility.loadDocument(EDL_FILE, cachedSchema.getSchema());
+		this.model = new Model(this.document, cachedSchema, new EDLRuleValidator(RULES_FILE));
+		this.unpublished = new ArrayList<Runnable>();
+		this.model.treeModel().setPublisher(new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				TestModel.this.unpublished.add(command);
+			}
+		});
+	}
+
+	/**
+	 * A removed node may still be painted until the removal is published
+	 * (the tree keeps its old children until then).
+	 */
+	@Test
+	public void testQueryRemovedNodeBeforePublished() {
+		Node removed = this.document.getElementsByTagName("logFolder").item(0);
+		Node parent = removed.getParentNode();
+		this.model.getIndicators(removed);
+
+		option(removed, ManipulationOptionKind.REMOVE).execute();
+		Assert.assertNull(removed.getParentNode());
+		Assert.assertFalse(this.unpublished.isEmpty());
+
+		Assert.assertEquals(0, this.model.getIndicators(removed));
+		Assert.assertTrue(this.model.getValidationResult(removed, true).isValid());
+		Assert.assertTrue(this.model.getValidationResult(removed, false).isValid());
+		this.model.getIndicators(parent);
+
+		for (Runnable event : this.unpublished) {
+			event.run();
+		}
+	}
+
+	@Test
+	public void testSetUnchangedValue() {
+		Node node = this.document.getElementsByTagName("logFolder").item(0);
+		String value = XMLUtility.getNodeValue(node);
+
+		this.model.setNodeValue(node, value);
+		Assert.assertFalse(this.model.canUndo());
+
+		this.model.setNodeValue(node, value + "2");
+		Assert.assertTrue(this.model.canUndo());
+		Assert.assertTrue(this.model.undo());
+		Assert.assertEquals(value, XMLUtility.getNodeValue(node));
+		Assert.assertFalse(this.model.canUndo());
+	}
+
+	private ManipulationOption option(final Node node, final ManipulationOptionKind kind) {
+		for (ManipulationOption option : this.model.getManipulationOptionsFor(node)) {
+			if (option.getKind() == kind) {
+				return option;
+			}
+		}
+		Assert.fail("No " + kind + " option for " + node.getNodeName() + ".");
+		return null;
+	}
+}
@@ -0,0 +1,146 @@
+package de.mpg.cbs.edled.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestModelExecutor {
+	
+	/** Runs the done part of the tasks on the model thread. */
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(final Runnable command) {
+			command.run();
+		}
+	};
+	
+	private ModelExecutor executor;
+	/** Values of the "model", appended by the tasks. */
+	private List<String> values;
+	/** Results handed to done. */
+	private List<String> results;
+	/** Failures handed to failed. */
+	private List<Throwable> failures;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.executor = new ModelExecutor(DIRECT);
+		this.values = Collections.synchronizedList(new ArrayList<String>());
+		this.results = Collections.synchronizedList(new ArrayList<String>());
+		this.failures = Collections.synchronizedList(new ArrayList<Throwable>());
+	}
+	
+	@Test
+	public void testOrder() {
+		for (int value = 0; value < 100; value++) {
+			this.executor.execute(append(String.valueOf(value)));
+		}
+		this.executor.flush();
+		
+		Assert.assertEquals(100, this.values.size());
+		for (int value = 0; value < 100; value++) {
+			Assert.assertEquals(String.valueOf(value), this.values.get(value));
+		}
+		Assert.assertEquals(this.values, this.results);
+	}
+	
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		this.executor.execute(new ModelTask<Void>() {
+			@Override
+			protected Void run() {
+				started.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			}
+		});
+		started.await();
+		
+		// Queued while the model thread is busy.
+		Object key = new Object();
+		this.executor.coalesce(key, append("a1"));
+		this.executor.coalesce(key, append("a2"));
+		this.executor.execute(append("b"));
+		this.executor.coalesce(key, append("a3"));
+		this.executor.coalesce(key, append("a4"));
+		proceed.countDown();
+		this.executor.flush();
+		
+		// A task only replaces the last queued one, so b is not overtaken.
+		Assert.assertEquals(3, this.values.size());
+		Assert.assertEquals("a2", this.values.get(0));
+		Assert.assertEquals("b", this.values.get(1));
+		Assert.assertEquals("a4", this.values.get(2));
+		Assert.assertEquals(this.values, this.results);
+		
+		// The key is free again once its task was started.
+		this.executor.coalesce(key, append("a5"));
+		this.executor.flush();
+		this.executor.coalesce(key, append("a6"));
+		this.executor.flush();
+		Assert.assertEquals(5, this.values.size());
+	}
+	
+	@Test
+	public void testFailingTask() {
+		this.executor.execute(failing(new IllegalStateException("Failing on purpose.")));
+		this.executor.execute(append("after"));
+		// Errors do not stop the model thread either.
+		this.executor.execute(failing(new StackOverflowError()));
+		this.executor.execute(append("after error"));
+		this.executor.flush();
+		
+		Assert.assertEquals(2, this.values.size());
+		Assert.assertEquals(this.values, this.results);
+		Assert.assertEquals(2, this.failures.size());
+		Assert.assertTrue(this.failures.get(0) instanceof IllegalStateException);
+		Assert.assertTrue(this.failures.get(1) instanceof StackOverflowError);
+	}
+	
+	private ModelTask<String> failing(final Throwable failure) {
+		return new ModelTask<String>() {
+			@Override
+			protected String run() {
+				if (failure instanceof Error) {
+					throw (Error) failure;
+				}
+				throw (RuntimeException) failure;
+			}
+			@Override
+			protected void done(final String result) {
+				results.add("failed");
+			}
+			@Override
+			protected void failed(final Throwable failure) {
+				failures.add(failure);
+			}
+		};
+	}
+	
+	private ModelTask<String> append(final String value) {
+		return new ModelTask<String>() {
+			@Override
+			protected String run() {
+				values.add(value);
+				return value;
+			}
+			@Override
+			protected void done(final String result) {
+				results.add(result);
+			}
+		};
+	}
+}
@@ -0,0 +1,76 @@
+package de.mpg.cbs.edled.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import de.mpg.cbs.edled.core.SchemaCache.CachedSchema;
+import de.mpg.cbs.edled.core.validation.EDLRuleValidator;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+
+public class TestStreamingDocumentLoader {
+
+	private static final File XSD_FILE = new File("res/xsd/rtExperiment_v15.xsd");
+	private static final File RULES_FILE = new File("res/rules/edlValidation_rules.xml");
+	private static final String[] EDL_DIRECTORIES = {"test/res", "edl"};
+	private static final String EDL_EXTENSION = ".edl";
+
+	private CachedSchema cachedSchema;
+	private EDLRuleValidator edlValidator;
+
+	@Before
+	public void setUp() throws Exception {
+		this.cachedSchema = SchemaCache.getSingleton().get(XSD_FILE);
+		this.edlValidator = new EDLRuleValidator(RULES_FILE);
+	}
+
+	/**
+	 * The loaded documents equal the ones of the schema-validating parser
+	 * (whitespace, default values, normalized values), and documents are
+	 * rejected exactly if the parsed ones cannot be mapped either.
+	 */
+	@Test
+	public void testSameDocumentAsParser() {
+		StreamingDocumentLoader loader = new StreamingDocumentLoader(this.cachedSchema);
+		int loaded = 0;
+		for (File file : edlFiles()) {
+			Model model = loader.load(file, this.edlValidator);
+			Document parsed = XMLUtility.loadDocument(file, this.cachedSchema.getSchema());
+
+			if (model != null) {
+				Assert.assertNotNull(file.getPath(), parsed);
+				Assert.assertTrue(file.getPath(), parsed.isEqualNode(model.getDocument()));
+				loaded++;
+			} else if (parsed != null) {
+				try {
+					new Model(parsed, this.cachedSchema, this.edlValidator);
+					Assert.fail(file.getPath() + " was rejected, but can be mapped.");
+				} catch (RuntimeException e) {
+					// Rejected as well.
+				}
+			}
+		}
+		Assert.assertTrue(loaded > 0);
+	}
+
+	private static List<File> edlFiles() {
+		List<File> files = new ArrayList<File>();
+		for (String directory : EDL_DIRECTORIES) {
+			File[] entries = new File(directory).listFiles();
+			if (entries != null) {
+				for (File entry : entries) {
+					if (entry.isFile() && entry.getName().endsWith(EDL_EXTENSION)) {
+						files.add(entry);
+					}
+				}
+			}
+		}
+		return files;
+	}
+}
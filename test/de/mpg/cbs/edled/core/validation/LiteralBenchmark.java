@@ -0,0 +1,83 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import de.mpg.cbs.edled.bench.Benchmark;
+import de.mpg.cbs.edled.core.validation.EDLRuleLiteral.LiteralValue;
+import de.mpg.cbs.edled.core.validation.EDLRuleParameter.ParameterValue;
+import de.mpg.cbs.edled.xml.XMLUtility;
+
+/**
+ * Evaluates the premise and conclusion literals of all EDL rules against
+ * their parameters resolved in a document, like EDLRule.decide does.
+ * Resolving the parameters is not measured.
+ *
+ * Lives in the validation package since literals are evaluated against
+ * package private ParameterVectors.
+ *
+ * @author Oliver Z.
+ */
+public class LiteralBenchmark extends Benchmark {
+
+	private final Document document;
+	private final EDLRuleValidator edlValidator;
+
+	private EDLRuleLiteral[] literals;
+	private ParameterVector[] parameters;
+
+	public LiteralBenchmark(final String parameter,
+							final Document document,
+							final EDLRuleValidator edlValidator) {
+		super("EDLRuleLiteral.evaluate", parameter);
+		this.document = document;
+		this.edlValidator = edlValidator;
+	}
+
+	@Override
+	public void setUp() {
+		List<EDLRuleLiteral> literalList = new ArrayList<EDLRuleLiteral>();
+		List<ParameterVector> parameterList = new ArrayList<ParameterVector>();
+
+		for (EDLRule rule : this.edlValidator.getRules()) {
+			ParameterVector vector = new ParameterVector(new ArrayList<String>(rule.getParameters().keySet()));
+			for (int slot = 0; slot < vector.size(); slot++) {
+				ParameterValue value = rule.getParameters().get(vector.name(slot)).evaluate(this.document);
+				if (!value.isNull()) {
+					Node referencedNode = value.getNodeList().item(0);
+					vector.set(slot, value.isNodeValue() ? XMLUtility.getNodeValue(referencedNode) : "");
+				}
+			}
+
+			List<EDLRuleLiteral> ruleLiterals = new ArrayList<EDLRuleLiteral>(rule.getPremise());
+			ruleLiterals.addAll(rule.getConclusion());
+			for (EDLRuleLiteral literal : ruleLiterals) {
+				// Same slots as the rule's own vector, which has the same parameter order.
+				literal.bind(vector);
+				literalList.add(literal);
+				parameterList.add(vector);
+			}
+		}
+
+		this.literals = literalList.toArray(new EDLRuleLiteral[literalList.size()]);
+		this.parameters = parameterList.toArray(new ParameterVector[parameterList.size()]);
+	}
+
+	/**
+	 * @return Number of true literals.
+	 */
+	@Override
+	public Object run() {
+		int trueLiterals = 0;
+		for (int literalNr = 0; literalNr < this.literals.length; literalNr++) {
+			if (this.literals[literalNr].evaluate(this.parameters[literalNr]) == LiteralValue.TRUE) {
+				trueLiterals++;
+			}
+		}
+
+		return Integer.valueOf(trueLiterals);
+	}
+}
@@ -0,0 +1,48 @@
+package de.mpg.cbs.edled.core.validation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mpg.cbs.edled.core.validation.EDLRuleLiteral.LiteralValue;
+
+
+public class TestEDLRuleLiteral {
+
+	@Test
+	public void testEquality() {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("p", "5");
+		parameters.put("text", "five");
+
+		Assert.assertEquals(LiteralValue.TRUE, evaluate("p == 5", parameters));
+		Assert.assertEquals(LiteralValue.TRUE, evaluate("-p + 10 == (2 + 3)", parameters));
+		Assert.assertEquals(LiteralValue.FALSE, evaluate("p == 4", parameters));
+		// Not a number.
+		Assert.assertEquals(LiteralValue.FALSE, evaluate("text == 5", parameters));
+	}
+
+	@Test
+	public void testMissingParameter() {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("p", "5");
+
+		// An equality lacks an operand.
+		Assert.assertEquals(LiteralValue.ERROR, evaluate("missing == 5", parameters));
+		Assert.assertEquals(LiteralValue.ERROR, evaluate("p == missing", parameters));
+		Assert.assertEquals(LiteralValue.ERROR, evaluate("missing + 1 == p", parameters));
+		Assert.assertEquals(LiteralValue.ERROR, evaluate("-missing == p", parameters));
+
+		// Functions are not fulfilled.
+		Assert.assertEquals(LiteralValue.FALSE, evaluate("edlValidation_exists(missing)", parameters));
+		Assert.assertEquals(LiteralValue.FALSE, evaluate("edlValidation_biggerThan(missing,p)", parameters));
+		Assert.assertEquals(LiteralValue.FALSE, evaluate("edlValidation_strIsEqual(p,missing)", parameters));
+		Assert.assertEquals(LiteralValue.TRUE, evaluate("edlValidation_exists(p)", parameters));
+	}
+
+	private static LiteralValue evaluate(final String literal, final Map<String, String> parameters) {
+		return new EDLRuleLiteral(literal).evaluate(parameters);
+	}
+}
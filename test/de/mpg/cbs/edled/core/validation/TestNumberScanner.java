@@ -0,0 +1,64 @@
+package de.mpg.cbs.edled.core.validation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mpg.cbs.edled.core.validation.NumberScanner.NumericType;
+
+
+public class TestNumberScanner {
+
+	@Test
+	public void testIntegerRanges() {
+		Assert.assertTrue(NumberScanner.isValid("2147483647", NumericType.INT));
+		Assert.assertTrue(NumberScanner.isValid("-2147483648", NumericType.INT));
+		Assert.assertFalse(NumberScanner.isValid("2147483648", NumericType.INT));
+		Assert.assertTrue(NumberScanner.isValid("+0002147483647", NumericType.INT));
+
+		Assert.assertTrue(NumberScanner.isValid("18446744073709551615", NumericType.UNSIGNED_LONG));
+		Assert.assertFalse(NumberScanner.isValid("18446744073709551616", NumericType.UNSIGNED_LONG));
+		Assert.assertTrue(NumberScanner.isValid("-0", NumericType.UNSIGNED_INT));
+		Assert.assertFalse(NumberScanner.isValid("-1", NumericType.UNSIGNED_INT));
+		Assert.assertFalse(NumberScanner.isValid("4294967296", NumericType.UNSIGNED_INT));
+
+		Assert.assertFalse(NumberScanner.isValid("0", NumericType.POSITIVE_INTEGER));
+		Assert.assertFalse(NumberScanner.isValid("-000", NumericType.NEGATIVE_INTEGER));
+		Assert.assertTrue(NumberScanner.isValid("-1", NumericType.NON_POSITIVE_INTEGER));
+		Assert.assertTrue(NumberScanner.isValid("123456789012345678901234567890", NumericType.INTEGER));
+	}
+
+	@Test
+	public void testLexicalSpaces() {
+		Assert.assertTrue(NumberScanner.isValid("1.5", NumericType.DECIMAL));
+		Assert.assertTrue(NumberScanner.isValid("-.5", NumericType.DECIMAL));
+		Assert.assertTrue(NumberScanner.isValid("5.", NumericType.DECIMAL));
+		Assert.assertFalse(NumberScanner.isValid("1e5", NumericType.DECIMAL));
+		Assert.assertFalse(NumberScanner.isValid("1.5", NumericType.INT));
+		Assert.assertFalse(NumberScanner.isValid("", NumericType.INT));
+		Assert.assertFalse(NumberScanner.isValid("+", NumericType.INTEGER));
+
+		Assert.assertTrue(NumberScanner.isValid("1.5E-3", NumericType.DOUBLE));
+		Assert.assertTrue(NumberScanner.isValid("-INF", NumericType.DOUBLE));
+		Assert.assertTrue(NumberScanner.isValid("NaN", NumericType.FLOAT));
+		Assert.assertTrue(NumberScanner.isValid(" 2.5\n", NumericType.DOUBLE));
+		Assert.assertFalse(NumberScanner.isValid("NaN", NumericType.DECIMAL));
+		Assert.assertFalse(NumberScanner.isValid("Infinity", NumericType.DOUBLE));
+		Assert.assertFalse(NumberScanner.isValid("1d", NumericType.DOUBLE));
+		Assert.assertFalse(NumberScanner.isValid("0x10", NumericType.DOUBLE));
+		Assert.assertFalse(NumberScanner.isValid("1e", NumericType.DOUBLE));
+		Assert.assertFalse(NumberScanner.isValid(".", NumericType.DOUBLE));
+	}
+
+	@Test
+	public void testValues() {
+		String[] values = {"0", "-0.0", "1.5", "0.1", "3.14159", "2500", "-7.25e-3", "1e22", "1e23",
+						   "123456789012345678", "12345678901234567890", "9007199254740993",
+						   "0.30000000000000004", "4.9e-324", "1.7976931348623157E308"};
+		for (String value : values) {
+			Assert.assertEquals(value, Double.parseDouble(value), NumberScanner.toNumber(value), 0.0);
+		}
+		Assert.assertEquals(Double.POSITIVE_INFINITY, NumberScanner.toNumber("INF"), 0.0);
+		Assert.assertTrue(Double.isNaN(NumberScanner.toNumber("abc")));
+		Assert.assertEquals(-42.0, NumberScanner.scan("-0042", NumericType.INT), 0.0);
+	}
+}
@@ -2,8 +2,13 @@ package de.mpg.cbs.edled.util;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -94,4 +99,22 @@ public class TestFileUtility {
 	    }
 	}
 
+	@Test
+	public void testReplace() throws IOException {
+		File target = File.createTempFile("replace", ".txt");
+		File replacement = new File(target.getPath() + ".tmp");
+		try {
+			FileUtility.writeLines(target, Arrays.asList("old"));
+			FileUtility.writeLines(replacement, Arrays.asList("new"));
+			
+			FileUtility.replace(replacement, target);
+			assertEquals(Arrays.asList("new"), FileUtility.lines(target));
+			assertFalse(replacement.exists());
+			assertFalse(new File(target.getPath() + ".bak").exists());
+		} finally {
+			target.delete();
+			replacement.delete();
+		}
+	}
+
 }